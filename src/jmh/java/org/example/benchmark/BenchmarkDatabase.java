@@ -0,0 +1,28 @@
+package org.example.benchmark;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.service.ServiceRegistry;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+final class BenchmarkDatabase {
+    private BenchmarkDatabase() {
+    }
+
+    static SessionFactory sessionFactory(PostgreSQLContainer<?> postgres) {
+        Configuration configuration = new Configuration();
+
+        configuration.addAnnotatedClass(org.example.domain.User.class);
+        configuration.addAnnotatedClass(org.example.domain.OutboxEvent.class);
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("jakarta.persistence.validation.mode", "none");
+
+        ServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build();
+        return configuration.buildSessionFactory(registry);
+    }
+}
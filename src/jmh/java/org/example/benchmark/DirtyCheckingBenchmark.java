@@ -0,0 +1,85 @@
+package org.example.benchmark;
+
+import org.example.dao.UserDaoImpl;
+import org.example.domain.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.openjdk.jmh.annotations.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare runs with and without build-time enhancement:
+ * mvn -Pbench verify exec:exec -Dbench.args="DirtyChecking -prof gc"
+ * mvn -Pbench verify exec:exec -Dbench.args="DirtyChecking -prof gc" -Dhibernate.enhance.phase=none
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DirtyCheckingBenchmark {
+    @Param({"1", "100", "1000"})
+    private int managedEntities;
+
+    private PostgreSQLContainer<?> postgres;
+    private SessionFactory sessionFactory;
+    private UserDaoImpl userDao;
+    private Session session;
+    private Transaction transaction;
+    private List<User> managed;
+    private User detached;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:18").withDatabaseName("userdb").withUsername("userapp").withPassword("password");
+        postgres.start();
+        sessionFactory = BenchmarkDatabase.sessionFactory(postgres);
+        userDao = new UserDaoImpl(sessionFactory);
+        for (int i = 0; i < managedEntities; i++) {
+            userDao.create(new User("name" + i, i + "user@mail.ru", 20));
+        }
+        detached = userDao.read(1L);
+    }
+
+    @Setup(Level.Iteration)
+    public void openSession() {
+        session = sessionFactory.openSession();
+        transaction = session.beginTransaction();
+        managed = session.createSelectionQuery("from User u order by u.id", User.class).getResultList();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeSession() {
+        transaction.rollback();
+        session.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public void flushOneDirtyEntity() {
+        managed.get(counter++ % managed.size()).setAge(20 + counter % 50);
+        session.flush();
+    }
+
+    @Benchmark
+    public void flushWithoutChanges() {
+        session.flush();
+    }
+
+    @Benchmark
+    public User mergeDetachedUpdate() {
+        detached.setAge(20 + counter++ % 50);
+        return userDao.update(detached);
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.benchmark;
+
+import org.example.storage.FsyncPolicy;
+import org.example.storage.LogStructuredUserStore;
+import org.example.storage.StorageSettings;
+import org.example.storage.StoredUser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Write throughput of the embedded store, e.g. mvn -Pbench verify exec:exec -Dbench.args="LogStore"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogStoreBenchmark {
+    @Param({"NEVER", "GROUP"})
+    private FsyncPolicy fsync;
+
+    private Path directory;
+    private LogStructuredUserStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("log-store-bench");
+        store = LogStructuredUserStore.open(StorageSettings.defaults(directory).withFsyncPolicy(fsync));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void singleWriter() {
+        insert();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void concurrentWriters() {
+        insert();
+    }
+
+    private void insert() {
+        long id = store.nextId();
+        store.insert(new StoredUser(id, "Benchmark User", "bench" + id + "@mail.ru", 30, id, id, StoredUser.NO_TIME));
+    }
+}
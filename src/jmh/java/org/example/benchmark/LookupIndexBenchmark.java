@@ -0,0 +1,91 @@
+package org.example.benchmark;
+
+import org.example.collections.EmailHashIndex;
+import org.example.collections.LongIntHashMap;
+import org.example.collections.LongObjectHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupIndexBenchmark {
+    @Param({"10000", "1000000"})
+    private int size;
+
+    private long[] ids;
+    private String[] emails;
+    private LongIntHashMap primitiveIds;
+    private Map<Long, Integer> boxedIds;
+    private LongObjectHashMap<String> primitiveObjects;
+    private Map<Long, String> boxedObjects;
+    private EmailHashIndex emailIndex;
+    private Map<String, Long> emailMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ids = new long[size];
+        emails = new String[size];
+        primitiveIds = new LongIntHashMap(size, -1);
+        boxedIds = new HashMap<>(size * 2);
+        primitiveObjects = new LongObjectHashMap<>(size);
+        boxedObjects = new HashMap<>(size * 2);
+        emailIndex = new EmailHashIndex(size);
+        emailMap = new ConcurrentHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            long id = i * 7L + 1;
+            ids[i] = id;
+            emails[i] = "user" + id + "@mail.ru";
+            primitiveIds.put(id, i);
+            boxedIds.put(id, i);
+            primitiveObjects.put(id, emails[i]);
+            boxedObjects.put(id, emails[i]);
+            emailIndex.put(emails[i], id);
+            emailMap.put(emails[i], id);
+        }
+    }
+
+    @Benchmark
+    public int longIntHashMapGet() {
+        return primitiveIds.get(ids[next()]);
+    }
+
+    @Benchmark
+    public Integer hashMapLongIntegerGet() {
+        return boxedIds.get(ids[next()]);
+    }
+
+    @Benchmark
+    public String longObjectHashMapGet() {
+        return primitiveObjects.get(ids[next()]);
+    }
+
+    @Benchmark
+    public String hashMapLongStringGet() {
+        return boxedObjects.get(ids[next()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long emailHashIndexFind() {
+        return emailIndex.find(emails[next()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Long concurrentHashMapEmailGet() {
+        return emailMap.get(emails[next()]);
+    }
+
+    private int next() {
+        return ThreadLocalRandom.current().nextInt(size);
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.benchmark;
+
+import org.example.dao.UserDaoImpl;
+import org.example.domain.User;
+import org.example.domain.UserView;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReadPathBenchmark {
+    private static final int USERS = 1_000;
+
+    private PostgreSQLContainer<?> postgres;
+    private SessionFactory sessionFactory;
+    private UserDaoImpl userDao;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:18").withDatabaseName("userdb").withUsername("userapp").withPassword("password");
+        postgres.start();
+        sessionFactory = BenchmarkDatabase.sessionFactory(postgres);
+        userDao = new UserDaoImpl(sessionFactory);
+        for (int i = 0; i < USERS; i++) {
+            userDao.create(new User("name" + i, i + "user@mail.ru", 20 + i % 50));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public User entityRead() {
+        return userDao.read(randomId());
+    }
+
+    @Benchmark
+    public UserView projectionRead() {
+        return userDao.readView(randomId());
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, USERS + 1);
+    }
+}
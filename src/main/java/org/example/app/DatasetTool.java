@@ -0,0 +1,77 @@
+package org.example.app;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.dataset.CsvFileSink;
+import org.example.dataset.DatasetGenerator;
+import org.example.dataset.DatasetLoader;
+import org.example.dataset.DatasetSink;
+import org.example.dataset.PostgresCopySink;
+import org.example.util.HibernateUtil;
+import org.hibernate.SessionFactory;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+public class DatasetTool {
+    private static final Logger log = LogManager.getLogger(DatasetTool.class);
+
+    public static void main(String[] args) {
+        if (args.length < 2 || !(args[0].equals("db") || args[0].equals("file") && args.length >= 3)) {
+            printUsage();
+            return;
+        }
+        SessionFactory sf = null;
+        try {
+            int position = args[0].equals("file") ? 2 : 1;
+            long count = Long.parseLong(args[position]);
+            Map<String, String> options = options(args, position + 1);
+            long seed = Long.parseLong(options.getOrDefault("--seed", "42"));
+            long start = Long.parseLong(options.getOrDefault("--start", "0"));
+            int batch = Integer.parseInt(options.getOrDefault("--batch", "10000"));
+            int threads = Integer.parseInt(options.getOrDefault("--threads",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+            LocalDate until = LocalDate.parse(options.getOrDefault("--until", LocalDate.now(ZoneOffset.UTC).toString()));
+            int years = Integer.parseInt(options.getOrDefault("--years", "3"));
+            Instant untilInstant = until.atStartOfDay(ZoneOffset.UTC).toInstant();
+            Instant fromInstant = until.minusYears(years).atStartOfDay(ZoneOffset.UTC).toInstant();
+
+            DatasetLoader loader = new DatasetLoader(new DatasetGenerator(seed, fromInstant, untilInstant), batch, threads);
+            DatasetSink sink;
+            if (args[0].equals("file")) {
+                sink = new CsvFileSink(Path.of(args[1]));
+            } else {
+                sf = HibernateUtil.getSessionFactory();
+                sink = new PostgresCopySink(sf);
+            }
+            try (sink) {
+                System.out.println("Generated " + loader.load(start, count, sink) + " users");
+            }
+        } catch (Exception e) {
+            log.error("Dataset generation failed", e);
+            System.out.println("Error message: " + e.getMessage());
+        } finally {
+            if (sf != null) sf.close();
+        }
+    }
+
+    private static Map<String, String> options(String[] args, int from) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = from; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            options.put(args[i], args[i + 1]);
+        }
+        return options;
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: db <count> | file <path[.gz]> <count>"
+                + " [--seed N] [--start index] [--batch N] [--threads N] [--until yyyy-MM-dd] [--years N]");
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.app;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.concurrency.DatabaseGuard;
+import org.example.dao.OperationTimeouts;
+import org.example.dao.UnitOfWork;
+import org.example.dao.UserDaoImpl;
+import org.example.dao.UserDaoSettings;
+import org.example.load.LoadGenerator;
+import org.example.load.LoadMode;
+import org.example.load.LoadReport;
+import org.example.load.LoadSettings;
+import org.example.load.OperationMix;
+import org.example.service.UserService;
+import org.example.util.HibernateUtil;
+import org.hibernate.SessionFactory;
+
+import java.time.Duration;
+import java.util.Locale;
+
+public class LoadTool {
+    private static final Logger log = LogManager.getLogger(LoadTool.class);
+
+    public static void main(String[] args) {
+        LoadSettings settings;
+        try {
+            settings = parse(args);
+        } catch (RuntimeException e) {
+            System.out.println("Error message: " + e.getMessage());
+            printUsage();
+            return;
+        }
+        SessionFactory sf = HibernateUtil.getSessionFactory();
+        try {
+            DatabaseGuard guard = DatabaseGuard.standard();
+            UserDaoImpl userDao = new UserDaoImpl(sf, UserDaoSettings.defaults()
+                    .withGuard(guard)
+                    .withTimeouts(OperationTimeouts.defaults()));
+            UserService userService = new UserService(userDao, null, new UnitOfWork(sf, guard));
+            LoadReport report = new LoadGenerator(userService, settings).run();
+            report.print(System.out);
+        } catch (Exception e) {
+            log.error("Load run failed", e);
+            System.out.println("Error message: " + e.getMessage());
+        } finally {
+            sf.close();
+        }
+    }
+
+    static LoadSettings parse(String[] args) {
+        LoadSettings settings = LoadSettings.defaults();
+        for (int i = 0; i < args.length; i++) {
+            String flag = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + flag);
+            }
+            String value = args[++i];
+            settings = switch (flag) {
+                case "--mode" -> settings.withMode(LoadMode.valueOf(value.toUpperCase(Locale.ROOT)));
+                case "--threads" -> settings.withConcurrency(Integer.parseInt(value));
+                case "--rate" -> settings.withRate(Integer.parseInt(value));
+                case "--duration" -> settings.withDuration(Duration.ofSeconds(Long.parseLong(value)));
+                case "--report-every" -> settings.withReportInterval(Duration.ofSeconds(Long.parseLong(value)));
+                case "--mix" -> settings.withMix(OperationMix.parse(value));
+                case "--seed-users" -> settings.withSeedUsers(Integer.parseInt(value));
+                case "--zipf" -> settings.withZipfTheta(Double.parseDouble(value));
+                case "--think-ms" -> settings.withThinkTime(Duration.ofMillis(Long.parseLong(value)));
+                case "--seed" -> settings.withRandomSeed(Long.parseLong(value));
+                default -> throw new IllegalArgumentException("Unknown option " + flag);
+            };
+        }
+        return settings;
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: [--mode open|closed] [--threads N] [--rate opsPerSecond] [--duration seconds]"
+                + " [--report-every seconds] [--mix create=10,read=60,update=15,delete=5,search=10]"
+                + " [--seed-users N] [--zipf theta] [--think-ms millis] [--seed N]");
+    }
+}
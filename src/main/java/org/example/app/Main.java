@@ -2,12 +2,27 @@ package org.example.app;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.example.cache.InvalidationListener;
+import org.example.cache.OffHeapUserStore;
+import org.example.cache.PgNotifyInvalidationBus;
+import org.example.collections.BloomFilter;
+import org.example.collections.EmailHashIndex;
+import org.example.concurrency.DatabaseGuard;
+import org.example.dao.OperationTimeouts;
+import org.example.dao.StartupWarmUp;
+import org.example.dao.UnitOfWork;
+import org.example.dao.UserDaoSettings;
+import org.example.metrics.HotKeys;
+import org.example.metrics.Readiness;
 import org.example.util.HibernateUtil;
 import org.example.domain.User;
+import org.example.domain.UserView;
 import org.example.dao.UserDaoImpl;
+import org.example.service.CacheWarmer;
 import org.example.service.UserService;
 import org.hibernate.SessionFactory;
 
+import java.time.Duration;
 import java.util.Scanner;
 
 import static org.example.util.InputUtil.*;
@@ -17,10 +32,41 @@ public class Main {
 
     public static void main(String[] args) {
         SessionFactory sf = null;
+        PgNotifyInvalidationBus invalidationBus = null;
         try {
             sf = HibernateUtil.getSessionFactory();
-            UserDaoImpl userDao = new UserDaoImpl(sf);
-            UserService userService = new UserService(userDao);
+            long cacheBytes = Long.getLong("userapp.cache.bytes", 0L);
+            OffHeapUserStore cache = cacheBytes > 0 ? new OffHeapUserStore(cacheBytes) : null;
+            UserDaoSettings settings = UserDaoSettings.defaults()
+                    .withGuard(DatabaseGuard.standard())
+                    .withTimeouts(OperationTimeouts.defaults())
+                    .withEmailIndex(new EmailHashIndex(10_000))
+                    .withEmailFilter(new BloomFilter(
+                            Long.getLong("userapp.emailFilter.expectedEmails", 1_000_000L),
+                            Double.parseDouble(System.getProperty("userapp.emailFilter.fpp", "0.01"))));
+            if (cache != null && Boolean.getBoolean("userapp.cache.invalidation")) {
+                invalidationBus = PgNotifyInvalidationBus.forSessionFactory(sf);
+                invalidationBus.subscribe(InvalidationListener.forCache(cache));
+                invalidationBus.start();
+                settings = settings.withInvalidationBus(invalidationBus);
+            }
+            UserDaoImpl userDao = new UserDaoImpl(sf, settings);
+            userDao.loadEmailFilter();
+            Readiness readiness = new Readiness();
+            readiness.registerMBean();
+            if (Boolean.getBoolean("userapp.warmUp")) {
+                StartupWarmUp.standard(sf, userDao).run(readiness);
+            } else {
+                readiness.markReady();
+            }
+            int warmUpUsers = Integer.getInteger("userapp.cache.warmUpUsers", 0);
+            if (cache != null && warmUpUsers > 0) {
+                new CacheWarmer(userDao, cache, warmUpUsers,
+                        Duration.ofMillis(Long.getLong("userapp.cache.warmUpBudgetMillis", 10_000L))).start();
+            }
+            HotKeys hotKeys = HotKeys.standard();
+            hotKeys.registerMBean();
+            UserService userService = new UserService(userDao, cache, new UnitOfWork(sf, settings.guard()), hotKeys, readiness);
             try (Scanner sc = new Scanner(System.in)) {
                 run(userService, sc);
             }
@@ -29,6 +75,7 @@ public class Main {
             log.fatal("Fatal error during startup/run. Exiting with code 1.", t);
             System.exit(1);
         } finally {
+            if (invalidationBus != null) invalidationBus.close();
             if (sf != null) {
                 try {
                     sf.close();
@@ -64,6 +111,10 @@ public class Main {
                     delete(sc, userService);
                     break;
 
+                case ("hot"):
+                    hot(userService);
+                    break;
+
                 default:
                     printUnknownCommand();
             }
@@ -72,7 +123,7 @@ public class Main {
     }
 
     private static void printWelcome() {
-        System.out.println("Commands: create | read | update | delete | exit");
+        System.out.println("Commands: create | read | update | delete | hot | exit");
     }
 
     public static void create(Scanner sc, UserService userService) {
@@ -96,7 +147,7 @@ public class Main {
         System.out.println("Enter user id");
         Long id = readId(sc);
         try {
-            User user = userService.readUser(id);
+            UserView user = userService.viewUser(id);
             System.out.println("User by your id: " + user);
         } catch (IllegalArgumentException | IllegalStateException e) {
             log.warn("Read failed: {}", e.getMessage());
@@ -123,6 +174,15 @@ public class Main {
         }
     }
 
+    private static void hot(UserService userService) {
+        HotKeys hotKeys = userService.getHotKeys();
+        if (hotKeys == null || !hotKeys.isEnabled()) {
+            System.out.println("Hot key analytics is disabled");
+            return;
+        }
+        hotKeys.report(10).forEach(System.out::println);
+    }
+
     private static void delete(Scanner sc, UserService userService) {
         System.out.println("Enter user id");
         Long id = readId(sc);
@@ -136,6 +196,6 @@ public class Main {
     }
 
     private static void printUnknownCommand() {
-        System.out.println("Unknown command. Use: create | read | update | delete | exit");
+        System.out.println("Unknown command. Use: create | read | update | delete | hot | exit");
     }
 }
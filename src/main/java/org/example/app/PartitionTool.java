@@ -0,0 +1,59 @@
+package org.example.app;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.maintenance.PartitionMaintenance;
+import org.example.util.HibernateUtil;
+import org.hibernate.SessionFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+
+public class PartitionTool {
+    private static final Logger log = LogManager.getLogger(PartitionTool.class);
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            printUsage();
+            return;
+        }
+        SessionFactory sf = HibernateUtil.getSessionFactory();
+        try {
+            PartitionMaintenance maintenance = new PartitionMaintenance(sf);
+            switch (args[0]) {
+                case ("list"):
+                    maintenance.listPartitions().forEach(System.out::println);
+                    break;
+
+                case ("ensure"):
+                    int monthsAhead = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+                    System.out.println("Created: " + maintenance.ensureMonthlyPartitions(YearMonth.now(), monthsAhead));
+                    break;
+
+                case ("archive"):
+                    if (args.length < 3) {
+                        printUsage();
+                        return;
+                    }
+                    YearMonth cutoff = YearMonth.now().minusMonths(Integer.parseInt(args[1]));
+                    Path directory = Files.createDirectories(Path.of(args[2]));
+                    maintenance.archiveOlderThan(cutoff, directory)
+                            .forEach(p -> System.out.println("Archived " + p.name() + " -> " + p.file() + " (" + p.rows() + " rows)"));
+                    break;
+
+                default:
+                    printUsage();
+            }
+        } catch (Exception e) {
+            log.error("Partition maintenance failed", e);
+            System.out.println("Error message: " + e.getMessage());
+        } finally {
+            sf.close();
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: list | ensure [monthsAhead] | archive <monthsToKeep> <directory>");
+    }
+}
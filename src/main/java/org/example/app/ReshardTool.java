@@ -0,0 +1,89 @@
+package org.example.app;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.dao.ShardedUserDao;
+import org.example.dao.UserDaoSettings;
+import org.example.sharding.Resharder;
+import org.example.sharding.ShardCatalog;
+import org.example.sharding.ShardRouter;
+import org.example.sharding.ShardRouter.KeyRange;
+import org.example.util.HibernateUtil;
+import org.hibernate.SessionFactory;
+
+import java.util.List;
+
+public class ReshardTool {
+    private static final Logger log = LogManager.getLogger(ReshardTool.class);
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            printUsage();
+            return;
+        }
+        List<SessionFactory> shards = List.of();
+        try {
+            shards = HibernateUtil.buildShardSessionFactories();
+            ShardRouter router = new ShardRouter(shards.size(), ShardCatalog.loadRanges(shards.get(0)));
+            switch (args[0]) {
+                case ("prepare"):
+                    prepare(shards, router);
+                    break;
+
+                case ("ranges"):
+                    router.overrides().forEach(System.out::println);
+                    break;
+
+                case ("stats"):
+                    try (ShardedUserDao dao = new ShardedUserDao(shards, UserDaoSettings.defaults(), router)) {
+                        dao.stats().forEach(System.out::println);
+                    }
+                    break;
+
+                case ("move"):
+                    if (args.length < 4) {
+                        printUsage();
+                        return;
+                    }
+                    System.out.println(new Resharder(shards, router)
+                            .move(Long.parseLong(args[1]), Long.parseLong(args[2]), Integer.parseInt(args[3])));
+                    break;
+
+                case ("directory"):
+                    System.out.println("Registered " + new Resharder(shards, router).rebuildDirectory() + " emails");
+                    break;
+
+                default:
+                    printUsage();
+            }
+        } catch (Exception e) {
+            log.error("Resharding failed", e);
+            System.out.println("Error message: " + e.getMessage());
+        } finally {
+            shards.forEach(SessionFactory::close);
+        }
+    }
+
+    // rows that existed before sharding keep their ids, so their shard gets an override covering them
+    private static void prepare(List<SessionFactory> shards, ShardRouter router) {
+        KeyRange legacy = null;
+        for (int i = 0; i < shards.size(); i++) {
+            long maxId = ShardCatalog.prepare(shards.get(i), i, shards.size());
+            if (maxId == 0) continue;
+            if (legacy != null) {
+                throw new IllegalStateException("Shards " + legacy.shard() + " and " + i + " both hold rows from before sharding");
+            }
+            legacy = new KeyRange(1, maxId + 1, i);
+        }
+        if (legacy != null && !router.overrides().contains(legacy)) {
+            router.assign(legacy);
+            ShardCatalog.saveRanges(shards.get(0), router.overrides());
+        }
+        System.out.println("Prepared " + shards.size() + " shards" + (legacy == null ? "" : ", existing rows kept by " + legacy));
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage (-D" + HibernateUtil.SHARDS_PROPERTY + "=<jdbcUrl>,<jdbcUrl>,...): "
+                + "prepare | ranges | stats | move <fromId> <toId> <shard> | directory");
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.cache;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+/**
+ * Delivers invalidations synchronously to subscribers in the same JVM. Stands in for
+ * {@link PgNotifyInvalidationBus} in tests and single-instance setups.
+ */
+public class InProcessInvalidationBus implements InvalidationBus {
+    private final InvalidationDispatcher dispatcher = new InvalidationDispatcher();
+
+    @Override
+    public void publish(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        dispatcher.published(1);
+        dispatcher.received(now, System.currentTimeMillis());
+        dispatcher.deliver(new LinkedHashSet<>(userIds));
+    }
+
+    @Override
+    public void subscribe(InvalidationListener listener) {
+        dispatcher.subscribe(listener);
+    }
+
+    /**
+     * Simulates lost notifications, as {@link PgNotifyInvalidationBus} does after reconnecting.
+     */
+    public void flushAll() {
+        dispatcher.flushAll("requested");
+    }
+
+    @Override
+    public InvalidationStats stats() {
+        return dispatcher.stats();
+    }
+
+    @Override
+    public void close() {
+    }
+}
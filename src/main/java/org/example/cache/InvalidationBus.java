@@ -0,0 +1,19 @@
+package org.example.cache;
+
+import java.util.Collection;
+
+/**
+ * Tells every app instance which users changed so each can drop them from its local cache. Messages are published
+ * after the writing transaction commits and delivered at most once; whenever a bus can't vouch that a subscriber saw
+ * every message it calls {@link InvalidationListener#flush()} instead.
+ */
+public interface InvalidationBus extends AutoCloseable {
+    void publish(Collection<Long> userIds);
+
+    void subscribe(InvalidationListener listener);
+
+    InvalidationStats stats();
+
+    @Override
+    void close();
+}
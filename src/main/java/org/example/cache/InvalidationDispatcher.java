@@ -0,0 +1,85 @@
+package org.example.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.load.LatencyHistogram;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class InvalidationDispatcher {
+    private static final Logger log = LogManager.getLogger(InvalidationDispatcher.class);
+
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong publishFailures = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    void subscribe(InvalidationListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Invalidation listener can't be null");
+        }
+        listeners.add(listener);
+    }
+
+    void published(int messages) {
+        published.addAndGet(messages);
+    }
+
+    void publishFailed() {
+        publishFailures.incrementAndGet();
+    }
+
+    void received(long publishedAtMillis, long receivedAtMillis) {
+        received.incrementAndGet();
+        lag.record(TimeUnit.MILLISECONDS.toNanos(Math.max(0, receivedAtMillis - publishedAtMillis)));
+    }
+
+    void reconnected() {
+        reconnects.incrementAndGet();
+    }
+
+    void deliver(Collection<Long> userIds) {
+        if (userIds.isEmpty()) return;
+        batches.incrementAndGet();
+        invalidated.addAndGet(userIds.size());
+        for (InvalidationListener listener : listeners) {
+            try {
+                listener.invalidate(userIds);
+            } catch (RuntimeException e) {
+                log.warn("Invalidation listener failed on {} users, flushing it", userIds.size(), e);
+                flush(listener);
+            }
+        }
+    }
+
+    void flushAll(String reason) {
+        flushes.incrementAndGet();
+        log.info("Flushing local caches: {}", reason);
+        for (InvalidationListener listener : listeners) {
+            flush(listener);
+        }
+    }
+
+    InvalidationStats stats() {
+        return new InvalidationStats(published.get(), publishFailures.get(), received.get(), invalidated.get(),
+                batches.get(), flushes.get(), reconnects.get(), lag.percentileMillis(50), lag.percentileMillis(99),
+                lag.maxNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private void flush(InvalidationListener listener) {
+        try {
+            listener.flush();
+        } catch (RuntimeException e) {
+            log.error("Invalidation listener failed to flush", e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.cache;
+
+import java.util.Collection;
+
+public interface InvalidationListener {
+    void invalidate(Collection<Long> userIds);
+
+    /**
+     * Called when invalidations may have been lost, e.g. while the listener was reconnecting.
+     */
+    void flush();
+
+    static InvalidationListener forCache(OffHeapUserStore cache) {
+        return new InvalidationListener() {
+            @Override
+            public void invalidate(Collection<Long> userIds) {
+                for (Long id : userIds) {
+                    cache.invalidate(id);
+                }
+            }
+
+            @Override
+            public void flush() {
+                cache.clear();
+            }
+        };
+    }
+}
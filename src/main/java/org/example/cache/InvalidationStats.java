@@ -0,0 +1,10 @@
+package org.example.cache;
+
+/**
+ * @param lagP99Millis time from the writer's commit to the invalidation reaching this instance; across hosts it
+ *                     includes clock skew
+ */
+public record InvalidationStats(long published, long publishFailures, long received, long invalidated, long batches,
+                                long flushes, long reconnects, double lagP50Millis, double lagP99Millis,
+                                double lagMaxMillis) {
+}
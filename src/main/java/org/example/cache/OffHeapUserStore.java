@@ -0,0 +1,384 @@
+package org.example.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.collections.EmailHash;
+import org.example.collections.LongIntHashMap;
+import org.example.collections.LongLongHashMap;
+import org.example.domain.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+public class OffHeapUserStore {
+    private static final Logger log = LogManager.getLogger(OffHeapUserStore.class);
+
+    // length(4) id(8) age(4) createdAt(8) updatedAt(8) nameLength(2) emailLength(2)
+    static final int HEADER_BYTES = 36;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int AVERAGE_RECORD_BYTES = 96;
+    private static final int MISSING = -1;
+    private static final int INVALIDATION_STRIPE_BITS = 10;
+
+    private final ByteBuffer buffer;
+    private final int capacityBytes;
+    private final LongIntHashMap index;
+    private final LongLongHashMap emailIndex;
+    private final StampedLock lock = new StampedLock();
+    private byte[] scratch = new byte[256];
+    private int writeOffset;
+    private int deadBytes;
+    private Set<Long> invalidatedWhileWarming;
+    private Set<Long> emailsInvalidatedWhileWarming;
+    private boolean clearedWhileWarming;
+    private final long[] idInvalidations = new long[1 << INVALIDATION_STRIPE_BITS];
+    private final long[] emailInvalidations = new long[1 << INVALIDATION_STRIPE_BITS];
+    private long clearedAt;
+    private volatile long invalidations;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    public OffHeapUserStore(long capacityBytes) {
+        if (capacityBytes < HEADER_BYTES || capacityBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Off-heap store capacity must be between "
+                    + HEADER_BYTES + " and " + Integer.MAX_VALUE + " bytes");
+        }
+        this.capacityBytes = (int) capacityBytes;
+        this.buffer = ByteBuffer.allocateDirect(this.capacityBytes);
+        this.index = new LongIntHashMap(Math.max(16, this.capacityBytes / AVERAGE_RECORD_BYTES), MISSING);
+        this.emailIndex = new LongLongHashMap(Math.max(16, this.capacityBytes / AVERAGE_RECORD_BYTES), MISSING);
+    }
+
+    public boolean put(User user) {
+        if (user == null || user.getId() == null) {
+            throw new IllegalArgumentException("Only persisted users can be cached");
+        }
+        long id = user.getId();
+        byte[] name = bytes(user.getName());
+        byte[] email = bytes(user.getEmail());
+        if (name.length > MAX_STRING_BYTES || email.length > MAX_STRING_BYTES) {
+            invalidate(id);
+            rejected.increment();
+            return false;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            return store(user, name, email);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Marks the point a read-through starts from; pass it to {@link #putIfNotInvalidatedSince} once the row is loaded.
+     */
+    public long invalidationStamp() {
+        return invalidations;
+    }
+
+    /**
+     * Caches a user loaded after {@link #invalidationStamp} returned {@code since}, unless its id or email (or a key
+     * sharing their stripe) was invalidated in between: a read racing a write can't park the old row in the cache.
+     */
+    public boolean putIfNotInvalidatedSince(User user, long since) {
+        if (user == null || user.getId() == null) {
+            throw new IllegalArgumentException("Only persisted users can be cached");
+        }
+        byte[] name = bytes(user.getName());
+        byte[] email = bytes(user.getEmail());
+        if (name.length > MAX_STRING_BYTES || email.length > MAX_STRING_BYTES) {
+            invalidate(user.getId());
+            rejected.increment();
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (clearedAt > since || idInvalidations[stripe(user.getId())] > since
+                    || emailInvalidations[stripe(EmailHash.of(user.getEmail() == null ? "" : user.getEmail()))] > since) {
+                return false;
+            }
+            return store(user, name, email);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Starts remembering invalidations so {@link #warm} can tell a preloaded row went stale before it was stored.
+     */
+    public void beginWarmUp() {
+        long stamp = lock.writeLock();
+        try {
+            if (invalidatedWhileWarming != null) {
+                throw new IllegalStateException("Cache warm-up is already running");
+            }
+            invalidatedWhileWarming = new HashSet<>();
+            emailsInvalidatedWhileWarming = new HashSet<>();
+            clearedWhileWarming = false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Caches a user read by a warm-up query unless it is already cached, or it (or its email) was invalidated after
+     * {@link #beginWarmUp}: the row may predate that write, and live reads always win.
+     */
+    public boolean warm(User user) {
+        if (user == null || user.getId() == null) {
+            throw new IllegalArgumentException("Only persisted users can be cached");
+        }
+        byte[] name = bytes(user.getName());
+        byte[] email = bytes(user.getEmail());
+        if (name.length > MAX_STRING_BYTES || email.length > MAX_STRING_BYTES) return false;
+        long stamp = lock.writeLock();
+        try {
+            if (invalidatedWhileWarming == null) {
+                throw new IllegalStateException("Cache warm-up is not running");
+            }
+            if (clearedWhileWarming || index.get(user.getId()) != MISSING
+                    || invalidatedWhileWarming.contains(user.getId())
+                    || emailsInvalidatedWhileWarming.contains(EmailHash.of(user.getEmail() == null ? "" : user.getEmail()))) {
+                return false;
+            }
+            return store(user, name, email);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void endWarmUp() {
+        long stamp = lock.writeLock();
+        try {
+            invalidatedWhileWarming = null;
+            emailsInvalidatedWhileWarming = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean store(User user, byte[] name, byte[] email) {
+        long id = user.getId();
+        int length = HEADER_BYTES + name.length + email.length;
+        releaseRecord(index.remove(id));
+        if (writeOffset + length > capacityBytes && deadBytes > 0) {
+            compact();
+        }
+        if (writeOffset + length > capacityBytes) {
+            rejected.increment();
+            log.debug("Off-heap store is full, user id={} not cached", id);
+            return false;
+        }
+        int offset = writeOffset;
+        buffer.putInt(offset, length);
+        buffer.putLong(offset + 4, id);
+        buffer.putInt(offset + 12, user.getAge() == null ? 0 : user.getAge());
+        buffer.putLong(offset + 16, millis(user.getCreatedAt()));
+        buffer.putLong(offset + 24, millis(user.getUpdatedAt()));
+        buffer.putShort(offset + 32, (short) name.length);
+        buffer.putShort(offset + 34, (short) email.length);
+        buffer.put(offset + HEADER_BYTES, name);
+        buffer.put(offset + HEADER_BYTES + name.length, email);
+        writeOffset += length;
+        index.put(id, offset);
+        emailIndex.put(EmailHash.of(user.getEmail() == null ? "" : user.getEmail()), id);
+        return true;
+    }
+
+    public User get(long id) {
+        long stamp = lock.readLock();
+        try {
+            int offset = index.get(id);
+            if (offset == MISSING) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return decode(offset);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean invalidate(long id) {
+        long stamp = lock.writeLock();
+        try {
+            if (invalidatedWhileWarming != null) invalidatedWhileWarming.add(id);
+            idInvalidations[stripe(id)] = ++invalidations;
+            return releaseRecord(index.remove(id));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean invalidateByEmail(String email) {
+        byte[] wanted = bytes(email);
+        long stamp = lock.writeLock();
+        try {
+            if (emailsInvalidatedWhileWarming != null) emailsInvalidatedWhileWarming.add(EmailHash.of(email));
+            emailInvalidations[stripe(EmailHash.of(email))] = ++invalidations;
+            long id = emailIndex.get(EmailHash.of(email));
+            if (id == MISSING) return false;
+            int offset = index.get(id);
+            if (offset == MISSING || !emailEquals(offset, wanted)) return false;
+            return releaseRecord(index.remove(id));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            if (invalidatedWhileWarming != null) clearedWhileWarming = true;
+            clearedAt = ++invalidations;
+            index.clear();
+            emailIndex.clear();
+            writeOffset = 0;
+            deadBytes = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    public int getUsedBytes() {
+        long stamp = lock.readLock();
+        try {
+            return writeOffset - deadBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int getDeadBytes() {
+        long stamp = lock.readLock();
+        try {
+            return deadBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getCompactions() {
+        return compactions.sum();
+    }
+
+    private static int stripe(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - INVALIDATION_STRIPE_BITS));
+    }
+
+    private boolean releaseRecord(int offset) {
+        if (offset == MISSING) return false;
+        long id = buffer.getLong(offset + 4);
+        long emailHash = EmailHash.of(readEmail(offset));
+        if (emailIndex.get(emailHash) == id) emailIndex.remove(emailHash);
+        deadBytes += buffer.getInt(offset);
+        return true;
+    }
+
+    private void compact() {
+        int read = 0;
+        int write = 0;
+        while (read < writeOffset) {
+            int length = buffer.getInt(read);
+            long id = buffer.getLong(read + 4);
+            if (index.get(id) == read) {
+                if (write != read) {
+                    if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+                    buffer.get(read, scratch, 0, length);
+                    buffer.put(write, scratch, 0, length);
+                    index.put(id, write);
+                }
+                write += length;
+            }
+            read += length;
+        }
+        log.debug("Off-heap store compacted: reclaimed {} bytes", writeOffset - write);
+        writeOffset = write;
+        deadBytes = 0;
+        compactions.increment();
+    }
+
+    private User decode(int offset) {
+        int nameLength = Short.toUnsignedInt(buffer.getShort(offset + 32));
+        byte[] name = new byte[nameLength];
+        buffer.get(offset + HEADER_BYTES, name);
+
+        User user = new User(new String(name, StandardCharsets.UTF_8), readEmail(offset), buffer.getInt(offset + 12));
+        user.setId(buffer.getLong(offset + 4));
+        user.setCreatedAt(date(buffer.getLong(offset + 16)));
+        user.setUpdatedAt(date(buffer.getLong(offset + 24)));
+        return user;
+    }
+
+    private String readEmail(int offset) {
+        int nameLength = Short.toUnsignedInt(buffer.getShort(offset + 32));
+        byte[] email = new byte[Short.toUnsignedInt(buffer.getShort(offset + 34))];
+        buffer.get(offset + HEADER_BYTES + nameLength, email);
+        return new String(email, StandardCharsets.UTF_8);
+    }
+
+    private boolean emailEquals(int offset, byte[] wanted) {
+        int nameLength = Short.toUnsignedInt(buffer.getShort(offset + 32));
+        int emailLength = Short.toUnsignedInt(buffer.getShort(offset + 34));
+        if (emailLength != wanted.length) return false;
+        int start = offset + HEADER_BYTES + nameLength;
+        for (int i = 0; i < emailLength; i++) {
+            if (buffer.get(start + i) != wanted[i]) return false;
+        }
+        return true;
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long millis(Date date) {
+        return date == null ? NO_DATE : date.getTime();
+    }
+
+    private static Date date(long millis) {
+        return millis == NO_DATE ? null : new Date(millis);
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapUserStore{" + "entries=" + size() + ", usedBytes=" + getUsedBytes() + ", deadBytes=" + getDeadBytes()
+                + ", capacityBytes=" + capacityBytes + ", hits=" + getHits() + ", misses=" + getMisses() + '}';
+    }
+}
@@ -0,0 +1,330 @@
+package org.example.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Invalidation over PostgreSQL {@code LISTEN/NOTIFY}. Committed writes are queued and sent by a publisher thread on
+ * its own connection, coalescing everything queued since the last send into {@code <commitMillis>:<id>,<id>...}
+ * payloads. A listener thread holds a dedicated {@code LISTEN} connection and hands each batch of notifications to
+ * the subscribers at once. Notifications sent while that connection is down are gone, so every (re)connect flushes
+ * the subscribers.
+ */
+public class PgNotifyInvalidationBus implements InvalidationBus {
+    public static final String DEFAULT_CHANNEL = "users_invalidation";
+    public static final String LISTENER_APPLICATION_NAME = "userapp-invalidation-listener";
+    // the server rejects payloads of 8000 bytes or more
+    static final int MAX_PAYLOAD_BYTES = 7_900;
+    private static final Logger log = LogManager.getLogger(PgNotifyInvalidationBus.class);
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+    private static final String NOTIFY_SQL = "SELECT pg_notify(?, ?)";
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String channel;
+    private final Duration pollInterval;
+    private final Duration maxBackoff;
+    private final InvalidationDispatcher dispatcher = new InvalidationDispatcher();
+    private final BlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+    private volatile boolean listening;
+    private Thread listener;
+    private Thread publisher;
+    private Connection publishConnection;
+
+    public PgNotifyInvalidationBus(String url, String username, String password) {
+        this(url, username, password, DEFAULT_CHANNEL, Duration.ofMillis(500), Duration.ofSeconds(5));
+    }
+
+    public PgNotifyInvalidationBus(String url, String username, String password, String channel, Duration pollInterval,
+                                   Duration maxBackoff) {
+        if (url == null || url.isBlank()) {
+            throw new IllegalArgumentException("JDBC url can't be empty");
+        }
+        if (channel == null || !CHANNEL.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Channel must be a lower-case identifier: " + channel);
+        }
+        if (pollInterval == null || pollInterval.toMillis() < 1) {
+            throw new IllegalArgumentException("Poll interval must be at least 1ms");
+        }
+        if (maxBackoff == null || maxBackoff.toMillis() < INITIAL_BACKOFF_MILLIS) {
+            throw new IllegalArgumentException("Max backoff must be at least " + INITIAL_BACKOFF_MILLIS + "ms");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.channel = channel;
+        this.pollInterval = pollInterval;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Connects to the same database as the session factory, outside its pool.
+     */
+    public static PgNotifyInvalidationBus forSessionFactory(SessionFactory sessionFactory) {
+        Object url = sessionFactory.getProperties().get("hibernate.connection.url");
+        if (url == null) {
+            throw new IllegalStateException("Session factory has no hibernate.connection.url");
+        }
+        return new PgNotifyInvalidationBus(url.toString(),
+                (String) sessionFactory.getProperties().get("hibernate.connection.username"),
+                (String) sessionFactory.getProperties().get("hibernate.connection.password"));
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        listener = new Thread(this::listen, "invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+        publisher = new Thread(this::drain, "invalidation-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+        log.info("Invalidation bus started on channel {}", channel);
+    }
+
+    @Override
+    public void publish(Collection<Long> userIds) {
+        if (!running) {
+            throw new IllegalStateException("Invalidation bus is not started");
+        }
+        if (userIds == null || userIds.isEmpty()) return;
+        pending.add(new Pending(List.copyOf(userIds), System.currentTimeMillis()));
+    }
+
+    @Override
+    public void subscribe(InvalidationListener listener) {
+        dispatcher.subscribe(listener);
+    }
+
+    public boolean isListening() {
+        return listening;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    @Override
+    public InvalidationStats stats() {
+        return dispatcher.stats();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) return;
+        running = false;
+        publisher.interrupt();
+        listener.interrupt();
+        try {
+            publisher.join(pollInterval.toMillis() + 5_000);
+            listener.join(pollInterval.toMillis() + 5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sendPending();
+        closePublishConnection();
+        log.info("Invalidation bus stopped: {}", stats());
+    }
+
+    private void listen() {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = connect(LISTENER_APPLICATION_NAME)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                listening = true;
+                if (connectedBefore) dispatcher.reconnected();
+                connectedBefore = true;
+                backoff = INITIAL_BACKOFF_MILLIS;
+                dispatcher.flushAll("listening on " + channel);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications((int) pollInterval.toMillis());
+                    if (notifications != null && notifications.length > 0) receive(notifications);
+                }
+            } catch (SQLException e) {
+                if (!running) break;
+                if (listening) {
+                    listening = false;
+                    dispatcher.flushAll("listener connection lost");
+                }
+                log.warn("Invalidation listener can't listen on {}, retrying in {}ms", channel, backoff, e);
+                if (!sleep(backoff)) break;
+                backoff = Math.min(maxBackoff.toMillis(), backoff * 2);
+            }
+        }
+        listening = false;
+    }
+
+    private void receive(PGNotification[] notifications) {
+        long now = System.currentTimeMillis();
+        Set<Long> ids = new LinkedHashSet<>();
+        for (PGNotification notification : notifications) {
+            if (!channel.equals(notification.getName())) continue;
+            try {
+                dispatcher.received(decode(notification.getParameter(), ids), now);
+            } catch (IllegalArgumentException e) {
+                log.warn("Malformed invalidation payload '{}'", notification.getParameter(), e);
+                dispatcher.flushAll("malformed payload");
+                return;
+            }
+        }
+        dispatcher.deliver(ids);
+    }
+
+    private void drain() {
+        while (running) {
+            try {
+                Pending first = pending.poll(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first != null) send(first);
+            } catch (InterruptedException e) {
+                if (running) Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void sendPending() {
+        Pending first = pending.poll();
+        if (first != null) send(first);
+    }
+
+    private void send(Pending first) {
+        List<Pending> batch = new ArrayList<>();
+        batch.add(first);
+        pending.drainTo(batch);
+        Set<Long> ids = new LinkedHashSet<>();
+        long committedAt = first.committedAtMillis();
+        for (Pending p : batch) {
+            ids.addAll(p.userIds());
+            committedAt = Math.min(committedAt, p.committedAtMillis());
+        }
+        List<String> payloads = encode(committedAt, ids, MAX_PAYLOAD_BYTES);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                notify(payloads);
+                dispatcher.published(payloads.size());
+                return;
+            } catch (SQLException e) {
+                closePublishConnection();
+                if (attempt == 2) {
+                    dispatcher.publishFailed();
+                    log.error("Can't publish invalidation of {} users, other instances stay stale until they flush", ids.size(), e);
+                    return;
+                }
+                log.warn("Invalidation publish failed, retrying on a new connection", e);
+            }
+        }
+    }
+
+    private void notify(List<String> payloads) throws SQLException {
+        if (publishConnection == null || publishConnection.isClosed()) {
+            publishConnection = connect("userapp-invalidation-publisher");
+        }
+        try (PreparedStatement statement = publishConnection.prepareStatement(NOTIFY_SQL)) {
+            for (String payload : payloads) {
+                statement.setString(1, channel);
+                statement.setString(2, payload);
+                statement.execute();
+            }
+        }
+    }
+
+    private void closePublishConnection() {
+        if (publishConnection == null) return;
+        try {
+            publishConnection.close();
+        } catch (SQLException e) {
+            log.debug("Error closing invalidation publish connection", e);
+        }
+        publishConnection = null;
+    }
+
+    private Connection connect(String applicationName) throws SQLException {
+        Properties properties = new Properties();
+        if (username != null) properties.setProperty("user", username);
+        if (password != null) properties.setProperty("password", password);
+        properties.setProperty("ApplicationName", applicationName);
+        properties.setProperty("tcpKeepAlive", "true");
+        return DriverManager.getConnection(url, properties);
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    static List<String> encode(long committedAtMillis, Collection<Long> userIds, int maxBytes) {
+        String prefix = committedAtMillis + ":";
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(prefix);
+        for (Long id : userIds) {
+            String value = Long.toString(id);
+            if (payload.length() > prefix.length() && payload.length() + 1 + value.length() > maxBytes) {
+                payloads.add(payload.toString());
+                payload.setLength(prefix.length());
+            }
+            if (payload.length() > prefix.length()) payload.append(',');
+            payload.append(value);
+        }
+        if (payload.length() > prefix.length()) payloads.add(payload.toString());
+        return payloads;
+    }
+
+    /**
+     * Adds the payload's user ids to {@code into} and returns its commit time.
+     */
+    static long decode(String payload, Collection<Long> into) {
+        int colon = payload == null ? -1 : payload.indexOf(':');
+        if (colon <= 0 || colon == payload.length() - 1) {
+            throw new IllegalArgumentException("Expected <commitMillis>:<id>[,<id>...]");
+        }
+        try {
+            long committedAt = Long.parseLong(payload, 0, colon, 10);
+            int start = colon + 1;
+            while (start <= payload.length()) {
+                int comma = payload.indexOf(',', start);
+                int end = comma < 0 ? payload.length() : comma;
+                into.add(Long.parseLong(payload, start, end, 10));
+                start = end + 1;
+            }
+            return committedAt;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected <commitMillis>:<id>[,<id>...]", e);
+        }
+    }
+
+    private record Pending(List<Long> userIds, long committedAtMillis) {
+    }
+}
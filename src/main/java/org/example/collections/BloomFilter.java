@@ -0,0 +1,122 @@
+package org.example.collections;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class BloomFilter {
+    private static final double LN2 = Math.log(2);
+    private static final long MAX_BITS = (long) Integer.MAX_VALUE * Long.SIZE;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashFunctions;
+    private final long expectedInsertions;
+    private final double targetFalsePositiveRate;
+    private final LongAdder insertions = new LongAdder();
+    private final LongAdder positives = new LongAdder();
+    private final LongAdder negatives = new LongAdder();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("Expected insertions must be positive");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (LN2 * LN2));
+        bits = Math.max(Long.SIZE, (bits + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+        if (bits > MAX_BITS) {
+            throw new IllegalArgumentException("Bloom filter for " + expectedInsertions + " entries at rate "
+                    + falsePositiveRate + " is too large");
+        }
+        this.words = new AtomicLongArray((int) (bits / Long.SIZE));
+        this.bitCount = bits;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bits / expectedInsertions * LN2));
+        this.expectedInsertions = expectedInsertions;
+        this.targetFalsePositiveRate = falsePositiveRate;
+    }
+
+    public void put(long hash) {
+        long h1 = hash;
+        long h2 = Hashing.mix(hash) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+        insertions.increment();
+    }
+
+    public boolean mightContain(long hash) {
+        long h1 = hash;
+        long h2 = Hashing.mix(hash) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                negatives.increment();
+                return false;
+            }
+        }
+        positives.increment();
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0L);
+        }
+        insertions.reset();
+    }
+
+    public long bitCount() {
+        return bitCount;
+    }
+
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    public long memoryBytes() {
+        return bitCount / Byte.SIZE;
+    }
+
+    public long expectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public double targetFalsePositiveRate() {
+        return targetFalsePositiveRate;
+    }
+
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    public long getPositives() {
+        return positives.sum();
+    }
+
+    public long getNegatives() {
+        return negatives.sum();
+    }
+
+    public double estimatedFalsePositiveRate() {
+        long setBits = 0;
+        for (int i = 0; i < words.length(); i++) {
+            setBits += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) setBits / bitCount, hashFunctions);
+    }
+
+    @Override
+    public String toString() {
+        return "BloomFilter{" + "bits=" + bitCount + ", hashFunctions=" + hashFunctions + ", memoryBytes=" + memoryBytes()
+                + ", insertions=" + getInsertions() + ", targetFpp=" + targetFalsePositiveRate
+                + ", estimatedFpp=" + String.format("%.6f", estimatedFalsePositiveRate())
+                + ", positives=" + getPositives() + ", negatives=" + getNegatives() + '}';
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.collections;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class CountMinSketch {
+    private static final int DEPTH = 4;
+
+    private final AtomicIntegerArray counters;
+    private final int widthMask;
+    private final int width;
+    private final long sampleSize;
+    private final AtomicLong additions = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+    private final ReentrantLock aging = new ReentrantLock();
+
+    /**
+     * @param width      counters per row, rounded up to a power of two
+     * @param sampleSize additions after which every counter is halved, so old traffic fades out
+     */
+    public CountMinSketch(int width, long sampleSize) {
+        if (width < 1 || width > 1 << 26) {
+            throw new IllegalArgumentException("Width must be between 1 and " + (1 << 26));
+        }
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("Sample size must be positive");
+        }
+        this.width = Integer.highestOneBit(Math.max(2, width) - 1) << 1;
+        this.widthMask = this.width - 1;
+        this.counters = new AtomicIntegerArray(DEPTH * this.width);
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Counts one occurrence and returns the new estimate. Rows are incremented unconditionally: a conservative update
+     * would drop concurrent hits on the same key, undercounting exactly the hot keys this is meant to find.
+     */
+    public int add(long hash) {
+        long h1 = Hashing.mix(hash);
+        long h2 = (h1 >>> 32) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(slot(h1, h2, row)));
+        }
+        if (additions.incrementAndGet() >= sampleSize) age();
+        return estimate;
+    }
+
+    public int estimate(long hash) {
+        long h1 = Hashing.mix(hash);
+        long h2 = (h1 >>> 32) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(slot(h1, h2, row)));
+        }
+        return estimate;
+    }
+
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        additions.set(0);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int depth() {
+        return DEPTH;
+    }
+
+    public long memoryBytes() {
+        return (long) counters.length() * Integer.BYTES;
+    }
+
+    public long sampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Number of times the counters have been halved; callers keeping derived counts compare it to age them too.
+     */
+    public long getResets() {
+        return resets.get();
+    }
+
+    private void age() {
+        if (!aging.tryLock()) return;
+        try {
+            if (additions.get() < sampleSize) return;
+            for (int i = 0; i < counters.length(); i++) {
+                int current = counters.get(i);
+                while (current != 0 && !counters.compareAndSet(i, current, current >>> 1)) {
+                    current = counters.get(i);
+                }
+            }
+            additions.addAndGet(-sampleSize / 2 - 1);
+            resets.incrementAndGet();
+        } finally {
+            aging.unlock();
+        }
+    }
+
+    private int slot(long h1, long h2, int row) {
+        return row * width + (int) ((h1 + row * h2) & widthMask);
+    }
+
+    @Override
+    public String toString() {
+        return "CountMinSketch{" + "width=" + width + ", depth=" + DEPTH + ", memoryBytes=" + memoryBytes()
+                + ", sampleSize=" + sampleSize + ", resets=" + getResets() + '}';
+    }
+}
@@ -0,0 +1,27 @@
+package org.example.collections;
+
+public final class EmailHash {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private EmailHash() {
+    }
+
+    public static long of(String email) {
+        if (email == null) {
+            throw new IllegalArgumentException("Email must not be null");
+        }
+        int start = 0;
+        int end = email.length();
+        while (start < end && Character.isWhitespace(email.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(email.charAt(end - 1))) end--;
+
+        long hash = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            char c = Character.toLowerCase(email.charAt(i));
+            hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return Hashing.mix(hash);
+    }
+}
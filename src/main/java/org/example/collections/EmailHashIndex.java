@@ -0,0 +1,138 @@
+package org.example.collections;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+public final class EmailHashIndex {
+    public static final long MISSING = -1L;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public EmailHashIndex(int expectedSize, int concurrency) {
+        if (concurrency < 1 || concurrency > 1 << 16) {
+            throw new IllegalArgumentException("Concurrency must be between 1 and 65536");
+        }
+        int stripeCount = Integer.highestOneBit(concurrency);
+        if (stripeCount < concurrency) stripeCount <<= 1;
+        this.stripes = new Stripe[stripeCount];
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+        int perStripe = Math.max(16, expectedSize / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    public EmailHashIndex(int expectedSize) {
+        this(expectedSize, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public long find(String email) {
+        long hash = EmailHash.of(email);
+        Stripe stripe = stripe(hash);
+        long stamp = stripe.lock.readLock();
+        long id;
+        try {
+            id = stripe.ids.get(hash);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+        if (id == MISSING) misses.increment();
+        else hits.increment();
+        return id;
+    }
+
+    public void put(String email, long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Id must not be negative");
+        }
+        long hash = EmailHash.of(email);
+        Stripe stripe = stripe(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.ids.put(hash, id);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    public long remove(String email) {
+        long hash = EmailHash.of(email);
+        Stripe stripe = stripe(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            return stripe.ids.remove(hash);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean remove(String email, long id) {
+        long hash = EmailHash.of(email);
+        Stripe stripe = stripe(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            if (stripe.ids.get(hash) != id) return false;
+            stripe.ids.remove(hash);
+            return true;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.ids.clear();
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                size += stripe.ids.size();
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Stripe stripe(long hash) {
+        return stripes.length == 1 ? stripes[0] : stripes[(int) (hash >>> stripeShift)];
+    }
+
+    @Override
+    public String toString() {
+        return "EmailHashIndex{" + "entries=" + size() + ", stripes=" + stripes.length + ", hits=" + getHits() + ", misses=" + getMisses() + '}';
+    }
+
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        final LongLongHashMap ids;
+
+        Stripe(int expectedSize) {
+            this.ids = new LongLongHashMap(expectedSize, MISSING);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.collections;
+
+final class Hashing {
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private Hashing() {
+    }
+
+    static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    static int capacityFor(int expectedSize, float loadFactor) {
+        long needed = Math.max(4L, (long) Math.ceil(expectedSize / (double) loadFactor) + 1);
+        if (needed > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Expected size " + expectedSize + " is too large");
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+}
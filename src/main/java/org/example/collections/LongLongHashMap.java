@@ -0,0 +1,147 @@
+package org.example.collections;
+
+import java.util.Arrays;
+
+public final class LongLongHashMap {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final long missingValue;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    public LongLongHashMap(int expectedSize, long missingValue) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size must not be negative");
+        }
+        this.missingValue = missingValue;
+        allocate(Hashing.capacityFor(expectedSize, LOAD_FACTOR));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    public long get(long key) {
+        if (key == 0) return hasZeroKey ? zeroValue : missingValue;
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == 0) return missingValue;
+            if (k == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public long put(long key, long value) {
+        if (key == 0) {
+            long previous = hasZeroKey ? zeroValue : missingValue;
+            if (!hasZeroKey) size++;
+            hasZeroKey = true;
+            zeroValue = value;
+            return previous;
+        }
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == 0) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > resizeAt) rehash();
+                return missingValue;
+            }
+            if (k == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public long remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) return missingValue;
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == 0) return missingValue;
+            if (k == key) {
+                long previous = values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void shiftBack(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long k = keys[slot];
+            if (k == 0) break;
+            int home = slot(k);
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        size = hasZeroKey ? 1 : 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) return hasZeroKey;
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == 0) return false;
+            if (k == key) return true;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public long missingValue() {
+        return missingValue;
+    }
+
+    private int slot(long key) {
+        return (int) Hashing.mix(key) & mask;
+    }
+}
@@ -0,0 +1,158 @@
+package org.example.collections;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+public final class LongObjectHashMap<V> {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    private V zeroValue;
+
+    public LongObjectHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size must not be negative");
+        }
+        allocate(Hashing.capacityFor(expectedSize, LOAD_FACTOR));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == 0) return zeroValue;
+        int slot = slot(key);
+        while (true) {
+            Object value = values[slot];
+            if (value == null) return null;
+            if (keys[slot] == key) return (V) value;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        if (key == 0) {
+            V previous = zeroValue;
+            if (previous == null) size++;
+            zeroValue = value;
+            return previous;
+        }
+        int slot = slot(key);
+        while (true) {
+            Object existing = values[slot];
+            if (existing == null) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > resizeAt) rehash();
+                return null;
+            }
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return (V) existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public V computeIfAbsent(long key, LongFunction<? extends V> mapping) {
+        V existing = get(key);
+        if (existing != null) return existing;
+        V created = mapping.apply(key);
+        if (created != null) put(key, created);
+        return created;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == 0) {
+            V previous = zeroValue;
+            if (previous != null) size--;
+            zeroValue = null;
+            return previous;
+        }
+        int slot = slot(key);
+        while (true) {
+            Object existing = values[slot];
+            if (existing == null) return null;
+            if (keys[slot] == key) {
+                shiftBack(slot);
+                size--;
+                return (V) existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void shiftBack(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == null) break;
+            long k = keys[slot];
+            int home = slot(k);
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void rehash() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        size = zeroValue == null ? 0 : 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) put(oldKeys[i], (V) oldValues[i]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(LongObjectConsumer<? super V> consumer) {
+        if (zeroValue != null) consumer.accept(0, zeroValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) consumer.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        zeroValue = null;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    private int slot(long key) {
+        return (int) Hashing.mix(key) & mask;
+    }
+
+    @FunctionalInterface
+    public interface LongObjectConsumer<V> {
+        void accept(long key, V value);
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.collections;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Space-saving heavy hitters over a fixed number of monitored keys. Hits on monitored keys are lock-free; an
+ * unmonitored key replaces the smallest counter only when its frequency estimate (e.g. from a
+ * {@link CountMinSketch}) beats it, so one-off keys do not churn the table.
+ */
+public final class SpaceSavingTopK<K> {
+
+    /**
+     * {@code count} overestimates the true frequency by at most {@code error}.
+     */
+    public record Entry<K>(K key, long count, long error) {
+    }
+
+    private static final class Counter<K> {
+        final K key;
+        final AtomicLong count;
+        final long error;
+
+        Counter(K key, long count, long error) {
+            this.key = key;
+            this.count = new AtomicLong(count);
+            this.error = error;
+        }
+    }
+
+    private final int capacity;
+    private final ConcurrentHashMap<K, Counter<K>> monitored;
+    private volatile long threshold;
+
+    public SpaceSavingTopK(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.monitored = new ConcurrentHashMap<>(capacity * 2);
+    }
+
+    public void offer(K key, long estimate) {
+        Counter<K> counter = monitored.get(key);
+        if (counter != null) {
+            counter.count.incrementAndGet();
+            return;
+        }
+        if (estimate <= threshold) return;
+        synchronized (this) {
+            counter = monitored.get(key);
+            if (counter != null) {
+                counter.count.incrementAndGet();
+                return;
+            }
+            if (monitored.size() < capacity) {
+                monitored.put(key, new Counter<>(key, Math.max(1, estimate), 0));
+                if (monitored.size() == capacity) threshold = smallest().count.get();
+                return;
+            }
+            Counter<K> smallest = smallest();
+            long min = smallest.count.get();
+            if (estimate > min) {
+                monitored.remove(smallest.key);
+                monitored.put(key, new Counter<>(key, Math.max(min + 1, estimate), min));
+                min = smallest().count.get();
+            }
+            threshold = min;
+        }
+    }
+
+    public List<Entry<K>> top(int limit) {
+        List<Entry<K>> entries = new ArrayList<>(monitored.size());
+        for (Counter<K> counter : monitored.values()) {
+            entries.add(new Entry<>(counter.key, counter.count.get(), counter.error));
+        }
+        entries.sort(Comparator.comparingLong((Entry<K> e) -> e.count()).reversed());
+        return entries.size() > limit ? List.copyOf(entries.subList(0, limit)) : entries;
+    }
+
+    /**
+     * Halves every count, following the aging of the sketch that feeds {@link #offer}.
+     */
+    public synchronized void halve() {
+        List<Counter<K>> counters = List.copyOf(monitored.values());
+        monitored.clear();
+        for (Counter<K> counter : counters) {
+            long count = counter.count.get() >>> 1;
+            if (count > 0) monitored.put(counter.key, new Counter<>(counter.key, count, counter.error >>> 1));
+        }
+        threshold = monitored.size() < capacity ? 0 : smallest().count.get();
+    }
+
+    public synchronized void clear() {
+        monitored.clear();
+        threshold = 0;
+    }
+
+    public int size() {
+        return monitored.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private Counter<K> smallest() {
+        Counter<K> smallest = null;
+        for (Counter<K> counter : monitored.values()) {
+            if (smallest == null || counter.count.get() < smallest.count.get()) smallest = counter;
+        }
+        return smallest;
+    }
+}
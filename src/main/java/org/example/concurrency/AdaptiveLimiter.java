@@ -0,0 +1,104 @@
+package org.example.concurrency;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AIMD concurrency limit: grows by one while busy and fast, shrinks by {@code backoffRatio} on a slow or dropped call.
+ * Calls already in flight when the limit shrank can't shrink it again, so one slow burst costs one decrease.
+ */
+public class AdaptiveLimiter {
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    // guarded by this; acquire reads only the volatile copies, so just the AIMD update takes the lock
+    private double limit;
+    private volatile int currentLimit;
+    private volatile long decreases;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                           long latencyThresholdNanos, double backoffRatio) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limiter bounds must satisfy 0 < min <= initial <= max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Limiter backoff ratio must be in (0, 1)");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoffRatio = backoffRatio;
+        this.limit = initialLimit;
+        this.currentLimit = initialLimit;
+    }
+
+    public Permit tryAcquire() {
+        int limitNow = currentLimit;
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limitNow) {
+                rejected.incrementAndGet();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(current + 1, decreases);
+            }
+        }
+    }
+
+    private synchronized void onSample(int inFlightAtStart, long decreasesAtStart, long latencyNanos, boolean dropped) {
+        if (dropped || latencyNanos > latencyThresholdNanos) {
+            if (decreasesAtStart == decreases) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                decreases++;
+            }
+        } else if (inFlightAtStart * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        currentLimit = (int) limit;
+    }
+
+    public int getLimit() {
+        return currentLimit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveLimiter{" + "name='" + name + '\'' + ", limit=" + getLimit() + ", inFlight=" + inFlight.get() + ", rejected=" + rejected.get() + '}';
+    }
+
+    public final class Permit {
+        private final int inFlightAtStart;
+        private final long decreasesAtStart;
+        private boolean released;
+
+        private Permit(int inFlightAtStart, long decreasesAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.decreasesAtStart = decreasesAtStart;
+        }
+
+        public void release(long latencyNanos, boolean dropped) {
+            if (released) return;
+            released = true;
+            inFlight.decrementAndGet();
+            onSample(inFlightAtStart, decreasesAtStart, latencyNanos, dropped);
+        }
+    }
+}
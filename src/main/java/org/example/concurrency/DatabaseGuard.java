@@ -0,0 +1,96 @@
+package org.example.concurrency;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public class DatabaseGuard {
+    private static final Logger log = LogManager.getLogger(DatabaseGuard.class);
+    private static final DatabaseGuard DISABLED = new DatabaseGuard(null, null, RetryPolicy.none());
+
+    public enum Access {
+        READ("reads"), WRITE("writes");
+
+        private final String label;
+
+        Access(String label) {
+            this.label = label;
+        }
+    }
+
+    private final AdaptiveLimiter reads;
+    private final AdaptiveLimiter writes;
+    private final RetryPolicy retryPolicy;
+
+    public DatabaseGuard(AdaptiveLimiter reads, AdaptiveLimiter writes, RetryPolicy retryPolicy) {
+        this.reads = reads;
+        this.writes = writes;
+        this.retryPolicy = retryPolicy;
+    }
+
+    public static DatabaseGuard disabled() {
+        return DISABLED;
+    }
+
+    public static DatabaseGuard standard() {
+        long threshold = TimeUnit.MILLISECONDS.toNanos(250);
+        return new DatabaseGuard(
+                new AdaptiveLimiter("reads", 20, 4, 64, threshold, 0.9),
+                new AdaptiveLimiter("writes", 10, 2, 32, threshold, 0.9),
+                new RetryPolicy(3, Duration.ofMillis(20), Duration.ofMillis(500)));
+    }
+
+    public <T> T call(Access access, String operation, Supplier<T> action) {
+        AdaptiveLimiter limiter = access == Access.READ ? reads : writes;
+        int attempt = 0;
+        while (true) {
+            AdaptiveLimiter.Permit permit = null;
+            if (limiter != null) {
+                permit = limiter.tryAcquire();
+                if (permit == null) {
+                    log.warn("Database {} bulkhead saturated, rejecting {} ({})", access.label, operation, limiter);
+                    throw new IllegalStateException("Too many concurrent database " + access.label + ", try again later");
+                }
+            }
+            long start = System.nanoTime();
+            boolean transientFailure = false;
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                transientFailure = RetryPolicy.isTransient(e);
+                if (!RetryPolicy.isRetryable(e, access == Access.READ) || attempt >= retryPolicy.maxRetries()) {
+                    throw e;
+                }
+                log.info("Transient failure in {} (SQLState={}), retry {}/{}", operation,
+                        RetryPolicy.sqlState(e), attempt + 1, retryPolicy.maxRetries());
+            } finally {
+                if (permit != null) {
+                    permit.release(System.nanoTime() - start, transientFailure);
+                }
+            }
+            backoff(attempt++);
+        }
+    }
+
+    private void backoff(int attempt) {
+        long delay = retryPolicy.backoffMillis(attempt);
+        if (delay == 0) return;
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying database call", e);
+        }
+    }
+
+    public AdaptiveLimiter reads() {
+        return reads;
+    }
+
+    public AdaptiveLimiter writes() {
+        return writes;
+    }
+}
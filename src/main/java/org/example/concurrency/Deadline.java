@@ -0,0 +1,93 @@
+package org.example.concurrency;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+public final class Deadline {
+    private static final Deadline NONE = new Deadline(0, true);
+    private static final ThreadLocal<Deadline> CURRENT = ThreadLocal.withInitial(() -> NONE);
+
+    private final long deadlineNanos;
+    private final boolean none;
+
+    private Deadline(long deadlineNanos, boolean none) {
+        this.deadlineNanos = deadlineNanos;
+        this.none = none;
+    }
+
+    public static Deadline none() {
+        return NONE;
+    }
+
+    public static Deadline after(Duration timeout) {
+        if (timeout == null) return NONE;
+        return new Deadline(System.nanoTime() + timeout.toNanos(), false);
+    }
+
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    public boolean isNone() {
+        return none;
+    }
+
+    public boolean isExpired() {
+        return !none && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public Duration remaining() {
+        if (none) throw new IllegalStateException("Deadline is not set");
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * The remaining time rounded up to whole seconds, at least one: the granularity of JDBC query timeouts.
+     */
+    public int remainingSeconds() {
+        long seconds = (remaining().toNanos() + 999_999_999L) / 1_000_000_000L;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, seconds));
+    }
+
+    public Deadline min(Deadline other) {
+        if (none) return other;
+        if (other.none) return this;
+        return deadlineNanos - other.deadlineNanos <= 0 ? this : other;
+    }
+
+    public Scope bind() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> CURRENT.set(previous);
+    }
+
+    /**
+     * Calls {@code work} with this deadline bound to the current thread, then restores the previous one.
+     */
+    public <T> T call(Supplier<T> work) {
+        Scope scope = bind();
+        try {
+            return work.get();
+        } finally {
+            scope.close();
+        }
+    }
+
+    public void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    @Override
+    public String toString() {
+        return none ? "Deadline{none}" : "Deadline{remaining=" + remaining() + '}';
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.concurrency;
+
+import org.hibernate.JDBCException;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+public record RetryPolicy(int maxRetries, Duration baseDelay, Duration maxDelay) {
+    private static final RetryPolicy NONE = new RetryPolicy(0, Duration.ZERO, Duration.ZERO);
+
+    public RetryPolicy {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Max retries can't be negative");
+        }
+    }
+
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    public long backoffMillis(int attempt) {
+        long cap = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << Math.min(attempt, 20));
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    public static boolean isTransient(Throwable failure) {
+        String state = sqlState(failure);
+        return state != null && (state.equals("40001") || state.equals("40P01") || state.startsWith("08"));
+    }
+
+    /**
+     * Serialization failures and deadlocks were rolled back by the server, so any call can run again. A lost
+     * connection is retried only for reads or when it was never established: a write may have committed just before
+     * the drop and would run twice.
+     */
+    public static boolean isRetryable(Throwable failure, boolean readOnly) {
+        String state = sqlState(failure);
+        if (state == null) return false;
+        if (state.equals("40001") || state.equals("40P01")) return true;
+        return state.startsWith("08") && (readOnly || state.equals("08001") || state.equals("08004"));
+    }
+
+    public static String sqlState(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof JDBCException jdbc && jdbc.getSQLState() != null) {
+                return jdbc.getSQLState();
+            }
+            if (t instanceof SQLException sql && sql.getSQLState() != null) {
+                return sql.getSQLState();
+            }
+            if (t.getCause() == t) break;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.concurrency;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class SingleFlight<K, V> {
+    private static final Logger log = LogManager.getLogger(SingleFlight.class);
+
+    private final String name;
+    private final Duration maxWait;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public SingleFlight(String name, Duration maxWait) {
+        if (maxWait == null || maxWait.isNegative() || maxWait.isZero()) {
+            throw new IllegalArgumentException("Max wait must be positive");
+        }
+        this.name = name;
+        this.maxWait = maxWait;
+    }
+
+    public V execute(K key, Supplier<V> call) {
+        if (key == null) {
+            executed.increment();
+            return call.get();
+        }
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+        if (existing == null) {
+            return lead(key, own, call);
+        }
+        collapsed.increment();
+        return await(key, existing);
+    }
+
+    private V lead(K key, CompletableFuture<V> own, Supplier<V> call) {
+        executed.increment();
+        try {
+            V value = call.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private V await(K key, CompletableFuture<V> existing) {
+        Duration wait = maxWait;
+        Deadline deadline = Deadline.current();
+        if (!deadline.isNone() && deadline.remaining().compareTo(wait) < 0) {
+            wait = deadline.remaining();
+        }
+        try {
+            return existing.get(wait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            log.info("Timed out after {} waiting for in-flight {} of key={}", wait, name, key);
+            throw new IllegalStateException("Timed out waiting for in-flight " + name);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw new IllegalStateException("In-flight " + name + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for in-flight " + name, e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    public long getCollapsed() {
+        return collapsed.sum();
+    }
+
+    public long getTimedOut() {
+        return timedOut.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight{" + "name='" + name + '\'' + ", executed=" + getExecuted() + ", collapsed=" + getCollapsed()
+                + ", timedOut=" + getTimedOut() + '}';
+    }
+}
@@ -0,0 +1,6 @@
+package org.example.dao;
+
+public enum DeleteMode {
+    HARD,
+    SOFT
+}
@@ -0,0 +1,261 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.domain.User;
+import org.example.domain.UserView;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class InMemoryUserDao implements UserDao {
+    private static final Logger log = LogManager.getLogger(InMemoryUserDao.class);
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final DeleteMode deleteMode;
+    private final ConcurrentHashMap<Long, Row> rows;
+    // lower(email) -> id of the active row, the in-memory twin of users_email_ci_uidx
+    private final ConcurrentHashMap<String, Long> activeEmails;
+    private final AtomicLong sequence;
+    private final ReentrantLock[] stripes;
+
+    public InMemoryUserDao() {
+        this(DeleteMode.HARD);
+    }
+
+    public InMemoryUserDao(DeleteMode deleteMode) {
+        this(deleteMode, DEFAULT_STRIPES);
+    }
+
+    public InMemoryUserDao(DeleteMode deleteMode, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        this.deleteMode = deleteMode;
+        this.rows = new ConcurrentHashMap<>();
+        this.activeEmails = new ConcurrentHashMap<>();
+        this.sequence = new AtomicLong();
+        this.stripes = new ReentrantLock[Integer.highestOneBit(concurrency - 1 | 1) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    private InMemoryUserDao(InMemoryUserDao shared, DeleteMode deleteMode) {
+        this.deleteMode = deleteMode;
+        this.rows = shared.rows;
+        this.activeEmails = shared.activeEmails;
+        this.sequence = shared.sequence;
+        this.stripes = shared.stripes;
+    }
+
+    public InMemoryUserDao withDeleteMode(DeleteMode deleteMode) {
+        return new InMemoryUserDao(this, deleteMode);
+    }
+
+    @Override
+    public User create(User user) {
+        UserConstraints.requireUser(user);
+        // the identity sequence is consumed even when the insert fails, as in PostgreSQL
+        long id = sequence.incrementAndGet();
+        UserConstraints.validate(user, "create");
+        Date now = new Date();
+        if (user.getCreatedAt() == null) user.setCreatedAt(now);
+        if (user.getUpdatedAt() == null) user.setUpdatedAt(now);
+
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            reserveEmail(UserConstraints.emailKey(user.getEmail()), id);
+            rows.put(id, Row.of(id, user, null));
+            user.setId(id);
+        } finally {
+            lock.unlock();
+        }
+        log.info("User created {}", user);
+        return user;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        Row row = id == null ? null : rows.get(id);
+        if (row == null || row.isDeleted()) {
+            log.debug("User with id={} not existed", id);
+            return Optional.empty();
+        }
+        return Optional.of(row.toUser());
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        Row row = activeRow(email.trim().toLowerCase(Locale.ROOT));
+        if (row == null) {
+            log.debug("User with email={} not existed", email);
+            return Optional.empty();
+        }
+        return Optional.of(row.toUser());
+    }
+
+    @Override
+    public UserView readView(Long id) {
+        Row row = id == null ? null : rows.get(id);
+        if (row == null || row.isDeleted()) throw UserConstraints.userNotFound(id);
+        return new UserView(row.id(), row.name(), row.email(), row.age(), row.createdAt().toInstant(),
+                row.updatedAt().toInstant());
+    }
+
+    @Override
+    public User update(User user) {
+        UserConstraints.requireUser(user);
+        if (user.getId() == null) return UserConstraints.mergeTransient(user, this::create);
+        UserConstraints.validate(user, "update");
+        if (user.getCreatedAt() == null) {
+            throw new IllegalArgumentException("That field can't be empty");
+        }
+        long id = user.getId();
+        Row updated;
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            Row current = rows.get(id);
+            if (current == null) throw UserConstraints.userNotFound(id);
+            String oldKey = UserConstraints.emailKey(current.email());
+            String newKey = UserConstraints.emailKey(user.getEmail());
+            boolean emailChanged = !oldKey.equals(newKey);
+            if (emailChanged && !current.isDeleted()) reserveEmail(newKey, id);
+            updated = Row.of(id, user, current.deletedAt());
+            if (!updated.sameValues(current)) {
+                updated = updated.withUpdatedAt(new Date());
+            }
+            rows.put(id, updated);
+            if (emailChanged && !current.isDeleted()) activeEmails.remove(oldKey, id);
+        } finally {
+            lock.unlock();
+        }
+        User result = updated.toUser();
+        log.info("User is updated {}", result);
+        return result;
+    }
+
+    @Override
+    public boolean tryDeleteById(Long id) {
+        if (id == null) return false;
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            return delete(id, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryDeleteByEmail(String email) {
+        Long id = activeEmails.get(email);
+        if (id == null) return false;
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            return delete(id, email);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean mailUniqueCheck(String email) {
+        boolean unique = activeRow(email.trim().toLowerCase(Locale.ROOT)) == null;
+        if (unique) {
+            log.info("User with mail={} not existed", email);
+        }
+        return unique;
+    }
+
+    public int size() {
+        return (int) rows.values().stream().filter(row -> !row.isDeleted()).count();
+    }
+
+    public void clear() {
+        rows.clear();
+        activeEmails.clear();
+        sequence.set(0);
+    }
+
+    private boolean delete(long id, String expectedEmailKey) {
+        Row current = rows.get(id);
+        if (current == null || current.isDeleted()) return false;
+        String key = UserConstraints.emailKey(current.email());
+        if (expectedEmailKey != null && !key.equals(expectedEmailKey)) return false;
+        if (deleteMode == DeleteMode.SOFT) {
+            Date now = new Date();
+            rows.put(id, current.withDeletedAt(now).withUpdatedAt(now));
+            log.info("User with id={} is soft-deleted", id);
+        } else {
+            rows.remove(id);
+            log.info("User with id={} is deleted", id);
+        }
+        activeEmails.remove(key, id);
+        return true;
+    }
+
+    private Row activeRow(String normalizedEmail) {
+        Long id = activeEmails.get(normalizedEmail);
+        if (id == null) return null;
+        Row row = rows.get(id);
+        return row == null || row.isDeleted() || !UserConstraints.emailKey(row.email()).equals(normalizedEmail) ? null : row;
+    }
+
+    private void reserveEmail(String key, long id) {
+        Long owner = activeEmails.putIfAbsent(key, id);
+        if (owner != null && owner != id) {
+            log.info("Unique violation: email {} is already used by id={}", key, owner);
+            throw new IllegalStateException("That email is already used");
+        }
+    }
+
+    private ReentrantLock lockFor(long id) {
+        return stripes[Long.hashCode(id * 0x9E3779B97F4A7C15L) & (stripes.length - 1)];
+    }
+
+    private record Row(long id, String name, String email, int age, Date createdAt, Date updatedAt, Date deletedAt) {
+
+        static Row of(long id, User user, Date deletedAt) {
+            return new Row(id, user.getName(), user.getEmail(), user.getAge(), copy(user.getCreatedAt()),
+                    copy(user.getUpdatedAt()), deletedAt);
+        }
+
+        boolean isDeleted() {
+            return deletedAt != null;
+        }
+
+        boolean sameValues(Row other) {
+            return name.equals(other.name) && email.equals(other.email) && age == other.age
+                    && Objects.equals(createdAt, other.createdAt) && Objects.equals(updatedAt, other.updatedAt);
+        }
+
+        Row withUpdatedAt(Date updatedAt) {
+            return new Row(id, name, email, age, createdAt, updatedAt, deletedAt);
+        }
+
+        Row withDeletedAt(Date deletedAt) {
+            return new Row(id, name, email, age, createdAt, updatedAt, deletedAt);
+        }
+
+        User toUser() {
+            User user = new User(name, email, age);
+            user.setId(id);
+            user.setCreatedAt(copy(createdAt));
+            user.setUpdatedAt(copy(updatedAt));
+            return user;
+        }
+
+        private static Date copy(Date date) {
+            return date == null ? null : new Date(date.getTime());
+        }
+    }
+}
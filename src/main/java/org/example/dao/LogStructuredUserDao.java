@@ -0,0 +1,153 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.domain.User;
+import org.example.domain.UserView;
+import org.example.storage.LogStructuredUserStore;
+import org.example.storage.StoredUser;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Optional;
+
+public class LogStructuredUserDao implements UserDao, AutoCloseable {
+    private static final Logger log = LogManager.getLogger(LogStructuredUserDao.class);
+
+    private final LogStructuredUserStore store;
+    private final DeleteMode deleteMode;
+
+    public LogStructuredUserDao(LogStructuredUserStore store) {
+        this(store, DeleteMode.HARD);
+    }
+
+    public LogStructuredUserDao(LogStructuredUserStore store, DeleteMode deleteMode) {
+        this.store = store;
+        this.deleteMode = deleteMode;
+    }
+
+    @Override
+    public User create(User user) {
+        UserConstraints.requireUser(user);
+        long id = store.nextId();
+        UserConstraints.validate(user, "create");
+        Date now = new Date();
+        if (user.getCreatedAt() == null) user.setCreatedAt(now);
+        if (user.getUpdatedAt() == null) user.setUpdatedAt(now);
+        store.insert(new StoredUser(id, user.getName(), user.getEmail(), user.getAge(), user.getCreatedAt().getTime(),
+                user.getUpdatedAt().getTime(), StoredUser.NO_TIME));
+        user.setId(id);
+        log.info("User created {}", user);
+        return user;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        StoredUser stored = id == null ? null : store.get(id);
+        if (stored == null || stored.isDeleted()) {
+            log.debug("User with id={} not existed", id);
+            return Optional.empty();
+        }
+        return Optional.of(toUser(stored));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        StoredUser stored = store.findActiveByEmail(email.trim().toLowerCase(Locale.ROOT));
+        if (stored == null) {
+            log.debug("User with email={} not existed", email);
+            return Optional.empty();
+        }
+        return Optional.of(toUser(stored));
+    }
+
+    @Override
+    public UserView readView(Long id) {
+        StoredUser stored = id == null ? null : store.get(id);
+        if (stored == null || stored.isDeleted()) throw UserConstraints.userNotFound(id);
+        return new UserView(stored.id(), stored.name(), stored.email(), stored.age(),
+                Instant.ofEpochMilli(stored.createdAt()), Instant.ofEpochMilli(stored.updatedAt()));
+    }
+
+    @Override
+    public User update(User user) {
+        UserConstraints.requireUser(user);
+        if (user.getId() == null) return UserConstraints.mergeTransient(user, this::create);
+        UserConstraints.validate(user, "update");
+        if (user.getCreatedAt() == null) {
+            throw new IllegalArgumentException("That field can't be empty");
+        }
+        long updatedAt = user.getUpdatedAt() == null ? StoredUser.NO_TIME : user.getUpdatedAt().getTime();
+        StoredUser result = store.update(user.getId(), current -> {
+            StoredUser next = new StoredUser(current.id(), user.getName(), user.getEmail(), user.getAge(),
+                    user.getCreatedAt().getTime(), updatedAt, current.deletedAt());
+            if (next.equals(current)) return current;
+            return next.withUpdatedAt(System.currentTimeMillis());
+        });
+        if (result == null) throw UserConstraints.userNotFound(user.getId());
+        User updated = toUser(result);
+        log.info("User is updated {}", updated);
+        return updated;
+    }
+
+    @Override
+    public boolean tryDeleteById(Long id) {
+        if (id == null) return false;
+        boolean deleted = delete(id, null);
+        if (deleted) log.info("User with id={} is deleted ({})", id, deleteMode);
+        return deleted;
+    }
+
+    @Override
+    public boolean tryDeleteByEmail(String email) {
+        StoredUser stored = store.findActiveByEmail(email);
+        if (stored == null) return false;
+        boolean deleted = delete(stored.id(), email);
+        if (deleted) log.info("User with email={} (id={}) is deleted ({})", email, stored.id(), deleteMode);
+        return deleted;
+    }
+
+    @Override
+    public boolean mailUniqueCheck(String email) {
+        boolean unique = store.findActiveByEmail(email.trim().toLowerCase(Locale.ROOT)) == null;
+        if (unique) {
+            log.info("User with mail={} not existed", email);
+        }
+        return unique;
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    public LogStructuredUserStore getStore() {
+        return store;
+    }
+
+    private boolean delete(long id, String expectedEmailKey) {
+        if (deleteMode == DeleteMode.HARD) {
+            return store.remove(id, current -> !current.isDeleted()
+                    && (expectedEmailKey == null || current.emailKey().equals(expectedEmailKey)));
+        }
+        boolean[] marked = new boolean[1];
+        store.update(id, current -> {
+            if (current.isDeleted() || expectedEmailKey != null && !current.emailKey().equals(expectedEmailKey)) {
+                return current;
+            }
+            marked[0] = true;
+            long now = System.currentTimeMillis();
+            return current.withDeletedAt(now).withUpdatedAt(now);
+        });
+        return marked[0];
+    }
+
+    private static User toUser(StoredUser stored) {
+        User user = new User(stored.name(), stored.email(), stored.age());
+        user.setId(stored.id());
+        user.setCreatedAt(new Date(stored.createdAt()));
+        user.setUpdatedAt(stored.updatedAt() == StoredUser.NO_TIME ? null : new Date(stored.updatedAt()));
+        return user;
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.dao;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class OperationTimeouts {
+    private static final OperationTimeouts NONE = new OperationTimeouts(Map.of(), null, null);
+
+    private final Map<String, Duration> perOperation;
+    private final Duration fallback;
+    private final Duration lockTimeout;
+
+    private OperationTimeouts(Map<String, Duration> perOperation, Duration fallback, Duration lockTimeout) {
+        this.perOperation = perOperation;
+        this.fallback = fallback;
+        this.lockTimeout = lockTimeout;
+    }
+
+    public static OperationTimeouts none() {
+        return NONE;
+    }
+
+    public static OperationTimeouts defaults() {
+        return new OperationTimeouts(Map.of(
+                "read", Duration.ofSeconds(2),
+                "findById", Duration.ofSeconds(2),
+                "findByEmail", Duration.ofSeconds(2),
+                "mailUniqueCheck", Duration.ofSeconds(1)),
+                Duration.ofSeconds(5), Duration.ofSeconds(1));
+    }
+
+    public OperationTimeouts with(String operation, Duration timeout) {
+        Map<String, Duration> copy = new HashMap<>(perOperation);
+        copy.put(operation, timeout);
+        return new OperationTimeouts(Map.copyOf(copy), fallback, lockTimeout);
+    }
+
+    public OperationTimeouts withFallback(Duration fallback) {
+        return new OperationTimeouts(perOperation, fallback, lockTimeout);
+    }
+
+    public OperationTimeouts withLockTimeout(Duration lockTimeout) {
+        return new OperationTimeouts(perOperation, fallback, lockTimeout);
+    }
+
+    public Duration timeoutFor(String operation) {
+        return perOperation.getOrDefault(operation, fallback);
+    }
+
+    public Duration lockTimeout() {
+        return lockTimeout;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationTimeouts{" + "perOperation=" + perOperation + ", fallback=" + fallback + ", lockTimeout=" + lockTimeout + '}';
+    }
+}
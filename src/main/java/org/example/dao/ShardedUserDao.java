@@ -0,0 +1,454 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.concurrency.Deadline;
+import org.example.domain.User;
+import org.example.domain.UserView;
+import org.example.sharding.ShardCatalog;
+import org.example.sharding.ShardRouter;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static org.example.util.Transactions.safeRollback;
+
+/**
+ * Spreads users over several databases. A user lives on the shard that allocated its id (see {@link ShardRouter});
+ * global email uniqueness comes from {@code users_email_directory}, partitioned by email hash. New users are created
+ * on their email's directory shard, so the common path is one local transaction.
+ */
+public class ShardedUserDao implements UserDao, AutoCloseable {
+    private static final Logger log = LogManager.getLogger(ShardedUserDao.class);
+    private static final String RESERVE_EMAIL_SQL =
+            "INSERT INTO users_email_directory (email_lower, user_id) VALUES (:e, :id) ON CONFLICT (email_lower) DO NOTHING";
+    private static final String DIRECTORY_OWNER_SQL =
+            "SELECT user_id FROM users_email_directory WHERE email_lower = :e";
+    private static final String LOCK_DIRECTORY_OWNER_SQL = DIRECTORY_OWNER_SQL + " FOR SHARE";
+    private static final String LOCK_USER_EMAIL_SQL =
+            "SELECT lower(email) FROM users WHERE id = :id AND deleted_at IS NULL FOR UPDATE";
+    private static final String TAKE_OVER_EMAIL_SQL =
+            "UPDATE users_email_directory SET user_id = :id WHERE email_lower = :e AND user_id = :owner";
+    private static final String RELEASE_EMAIL_SQL =
+            "DELETE FROM users_email_directory WHERE email_lower = :e AND user_id = :id";
+    private static final String LIST_ACTIVE_HQL =
+            "select u.id, u.name, u.email, u.age, u.createdAt, u.updatedAt from User u where u.deletedAt is null and u.id > :after order by u.id";
+    private static final String STATS_SQL =
+            "SELECT count(*) FILTER (WHERE deleted_at IS NULL), count(*) FILTER (WHERE deleted_at IS NOT NULL), coalesce(max(id), 0) FROM users";
+
+    public record ShardStats(int shard, long active, long deleted, long maxId) {
+    }
+
+    private final List<SessionFactory> shards;
+    private final List<UserDaoImpl> daos;
+    private final ShardRouter router;
+    private final ExecutorService scatter;
+
+    public ShardedUserDao(List<SessionFactory> shards) {
+        this(shards, UserDaoSettings.defaults());
+    }
+
+    public ShardedUserDao(List<SessionFactory> shards, UserDaoSettings settings) {
+        this(shards, settings, new ShardRouter(shards.size(), ShardCatalog.loadRanges(shards.get(0))));
+    }
+
+    public ShardedUserDao(List<SessionFactory> shards, UserDaoSettings settings, ShardRouter router) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        if (router.shardCount() != shards.size()) {
+            throw new IllegalArgumentException("Router expects " + router.shardCount() + " shards, got " + shards.size());
+        }
+        this.shards = List.copyOf(shards);
+        this.daos = shards.stream().map(sf -> new UserDaoImpl(sf, settings)).toList();
+        this.router = router;
+        AtomicInteger threads = new AtomicInteger();
+        this.scatter = Executors.newFixedThreadPool(shards.size(), task -> {
+            Thread thread = new Thread(task, "shard-query-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public User create(User user) {
+        if (user == null || user.getEmail() == null) {
+            return daos.get(0).create(user);
+        }
+        Long initialId = user.getId();
+        String key = normalize(user.getEmail());
+        int shard = router.shardForEmail(key);
+        Lock lock = router.writeAccess();
+        lock.lock();
+        try {
+            return onShard(shard, session -> {
+                User created = daos.get(shard).create(user);
+                reserve(session, shard, key, created.getId());
+                return created;
+            });
+        } catch (RuntimeException e) {
+            user.setId(initialId);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        if (id == null) return daos.get(0).findById(null);
+        return routed(id, dao -> dao.findById(id), Optional::isEmpty);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        String key = normalize(email);
+        Long owner = directoryOwner(key);
+        if (owner == null) {
+            log.debug("User with email={} not existed", email);
+            return Optional.empty();
+        }
+        return findById(owner).filter(user -> normalize(user.getEmail()).equals(key));
+    }
+
+    @Override
+    public UserView readView(Long id) {
+        if (id == null) return daos.get(0).readView(null);
+        long version = router.version();
+        try {
+            return dao(id).readView(id);
+        } catch (IllegalArgumentException e) {
+            if (router.version() == version) throw e;
+            return dao(id).readView(id);
+        }
+    }
+
+    @Override
+    public User update(User user) {
+        if (user == null || user.getEmail() == null) {
+            return daos.get(0).update(user);
+        }
+        if (user.getId() == null) return UserConstraints.mergeTransient(user, this::create);
+        long id = user.getId();
+        String newKey = normalize(user.getEmail());
+        int newShard = router.shardForEmail(newKey);
+        boolean moved = false;
+        User result = null;
+        Lock lock = router.writeAccess();
+        lock.lock();
+        try {
+            int home = router.shardForId(id);
+            String[] oldKey = new String[1];
+            boolean[] movedAway = new boolean[1];
+            User[] updated = new User[1];
+            boolean reservedRemotely = false;
+            if (newShard != home && !newKey.equals(currentKey(id))) {
+                onShard(newShard, session -> {
+                    reserve(session, newShard, newKey, id);
+                    return null;
+                });
+                reservedRemotely = true;
+            }
+            boolean checkReservation = reservedRemotely;
+            try {
+                onShard(home, session -> {
+                    oldKey[0] = lockEmail(session, id);
+                    if (oldKey[0] == null && movedAway(id, home)) {
+                        movedAway[0] = true;
+                        return null;
+                    }
+                    // a reserve that found this user stale has locked the row first, so any take-over is visible now
+                    if (checkReservation && oldKey[0] != null && !ownsEntry(newShard, newKey, id)) {
+                        log.info("Directory entry for {} was taken over during the email change of id={}", newKey, id);
+                        throw new IllegalStateException("That email is already used");
+                    }
+                    boolean changed = oldKey[0] != null && !oldKey[0].equals(newKey);
+                    if (changed && newShard == home) reserve(session, home, newKey, id);
+                    updated[0] = daos.get(home).update(user);
+                    if (changed && router.shardForEmail(oldKey[0]) == home) release(session, oldKey[0], id);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                if (reservedRemotely) releaseQuietly(newShard, newKey, id);
+                throw e;
+            }
+            if (oldKey[0] == null && reservedRemotely) {
+                releaseQuietly(newShard, newKey, id);
+            } else if (oldKey[0] != null && !oldKey[0].equals(newKey) && router.shardForEmail(oldKey[0]) != home) {
+                releaseQuietly(router.shardForEmail(oldKey[0]), oldKey[0], id);
+            }
+            moved = movedAway[0];
+            result = updated[0];
+        } finally {
+            lock.unlock();
+        }
+        return moved ? update(user) : result;
+    }
+
+    @Override
+    public boolean tryDeleteById(Long id) {
+        if (id == null) return false;
+        boolean moved;
+        Lock lock = router.writeAccess();
+        lock.lock();
+        try {
+            int home = router.shardForId(id);
+            String[] key = new String[1];
+            boolean deleted = onShard(home, session -> {
+                key[0] = daos.get(home).findById(id).map(current -> normalize(current.getEmail())).orElse(null);
+                if (key[0] == null || !daos.get(home).tryDeleteById(id)) return false;
+                if (router.shardForEmail(key[0]) == home) release(session, key[0], id);
+                return true;
+            });
+            if (deleted && router.shardForEmail(key[0]) != home) releaseQuietly(router.shardForEmail(key[0]), key[0], id);
+            moved = key[0] == null && movedAway(id, home);
+            if (!moved) return deleted;
+        } finally {
+            lock.unlock();
+        }
+        return tryDeleteById(id);
+    }
+
+    @Override
+    public boolean tryDeleteByEmail(String email) {
+        Long owner = directoryOwner(email);
+        if (owner == null) return false;
+        Lock lock = router.writeAccess();
+        lock.lock();
+        try {
+            int home = router.shardForId(owner);
+            int directory = router.shardForEmail(email);
+            boolean deleted = onShard(home, session -> {
+                if (!daos.get(home).tryDeleteByEmail(email)) return false;
+                if (directory == home) release(session, email, owner);
+                return true;
+            });
+            if (deleted && directory != home) releaseQuietly(directory, email, owner);
+            if (deleted || !movedAway(owner, home)) return deleted;
+        } finally {
+            lock.unlock();
+        }
+        return tryDeleteByEmail(email);
+    }
+
+    @Override
+    public boolean mailUniqueCheck(String email) {
+        boolean unique = findByEmail(email).isEmpty();
+        if (unique) {
+            log.info("User with mail={} not existed", email);
+        }
+        return unique;
+    }
+
+    /**
+     * Active users with ids above {@code afterId} in id order, merged from every shard.
+     */
+    public List<UserView> listActive(long afterId, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return scatter("listActive", sf -> readOnly(sf, session -> session.createSelectionQuery(LIST_ACTIVE_HQL, Object[].class)
+                        .setParameter("after", afterId)
+                        .setMaxResults(limit)
+                        .getResultList()))
+                .stream()
+                .flatMap(List::stream)
+                .map(UserView::fromRow)
+                .sorted(Comparator.comparing(UserView::id))
+                .limit(limit)
+                .toList();
+    }
+
+    public List<ShardStats> stats() {
+        List<Object[]> rows = scatter("stats", sf -> readOnly(sf, session ->
+                session.createNativeQuery(STATS_SQL, Object[].class).getSingleResult()));
+        List<ShardStats> stats = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
+            stats.add(new ShardStats(i, ((Number) row[0]).longValue(), ((Number) row[1]).longValue(), ((Number) row[2]).longValue()));
+        }
+        return stats;
+    }
+
+    public long countActive() {
+        return stats().stream().mapToLong(ShardStats::active).sum();
+    }
+
+    /**
+     * Picks up range overrides saved by a resharding run in another process.
+     */
+    public void reloadRanges() {
+        router.replaceOverrides(ShardCatalog.loadRanges(shards.get(0)));
+        log.info("Shard ranges reloaded: {}", router.overrides());
+    }
+
+    public ShardRouter getRouter() {
+        return router;
+    }
+
+    public List<SessionFactory> getShards() {
+        return shards;
+    }
+
+    public UserDaoImpl shard(int index) {
+        return daos.get(index);
+    }
+
+    @Override
+    public void close() {
+        scatter.shutdownNow();
+    }
+
+    private UserDaoImpl dao(long id) {
+        return daos.get(router.shardForId(id));
+    }
+
+    // a miss may race with a range move that has just deleted the source rows, so retry once on the new route
+    private <T> T routed(long id, Function<UserDaoImpl, T> read, Predicate<T> missed) {
+        long version = router.version();
+        T result = read.apply(dao(id));
+        if (missed.test(result) && router.version() != version) {
+            result = read.apply(dao(id));
+        }
+        return result;
+    }
+
+    private String currentKey(long id) {
+        return findById(id).map(user -> normalize(user.getEmail())).orElse(null);
+    }
+
+    private Long directoryOwner(String key) {
+        int shard = router.shardForEmail(key);
+        return readOnly(shards.get(shard), session -> session.createNativeQuery(DIRECTORY_OWNER_SQL, Long.class)
+                .setParameter("e", key)
+                .uniqueResult());
+    }
+
+    private void reserve(Session session, int shard, String key, long id) {
+        if (session.createNativeMutationQuery(RESERVE_EMAIL_SQL).setParameter("e", key).setParameter("id", id).executeUpdate() == 1) {
+            return;
+        }
+        Long owner = session.createNativeQuery(DIRECTORY_OWNER_SQL, Long.class).setParameter("e", key).uniqueResult();
+        if (owner != null && owner == id) return;
+        // an entry whose user is gone was left by a delete that failed between shards and may be taken over; the
+        // owner's row stays locked until the take-over is written, so an email change it has in flight sees it
+        boolean takenOver = owner != null && onShard(router.shardForId(owner), home -> !key.equals(lockEmail(home, owner))
+                && session.createNativeMutationQuery(TAKE_OVER_EMAIL_SQL)
+                .setParameter("e", key)
+                .setParameter("id", id)
+                .setParameter("owner", owner)
+                .executeUpdate() == 1);
+        if (!takenOver) {
+            log.info("Unique violation: email {} is already used by id={} (directory shard {})", key, owner, shard);
+            throw new IllegalStateException("That email is already used");
+        }
+        log.warn("Stale directory entry for {} (id={}) taken over by id={}", key, owner, id);
+    }
+
+    private static String lockEmail(Session session, long id) {
+        return session.createNativeQuery(LOCK_USER_EMAIL_SQL, String.class).setParameter("id", id).uniqueResult();
+    }
+
+    private boolean ownsEntry(int shard, String key, long id) {
+        Long owner = onShard(shard, session -> session.createNativeQuery(LOCK_DIRECTORY_OWNER_SQL, Long.class)
+                .setParameter("e", key)
+                .uniqueResult());
+        return owner != null && owner == id;
+    }
+
+    private static void release(Session session, String key, long id) {
+        session.createNativeMutationQuery(RELEASE_EMAIL_SQL).setParameter("e", key).setParameter("id", id).executeUpdate();
+    }
+
+    private void releaseQuietly(int shard, String key, long id) {
+        try {
+            onShard(shard, session -> {
+                release(session, key, id);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Can't release directory entry {} of id={} on shard {}, it will be taken over on reuse", key, id, shard, e);
+        }
+    }
+
+    private <T> T onShard(int shard, Function<Session, T> work) {
+        SessionFactory sf = shards.get(shard);
+        return new UnitOfWork(sf).execute(() -> {
+            Session session = UnitOfWork.currentSession(sf);
+            ShardCatalog.awaitMoves(session);
+            return work.apply(session);
+        });
+    }
+
+    // a move made by another process is only seen here once the moved rows are gone from the old home
+    private boolean movedAway(long id, int home) {
+        reloadRanges();
+        return router.shardForId(id) != home;
+    }
+
+    private <T> List<T> scatter(String operation, Function<SessionFactory, T> query) {
+        Deadline deadline = Deadline.current();
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (SessionFactory sf : shards) {
+            futures.add(scatter.submit(() -> {
+                return deadline.call(() -> query.apply(sf));
+            }));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(await(futures.get(i), operation, i));
+            }
+            return results;
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static <T> T await(Future<T> future, String operation, int shard) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while " + operation + " on shard " + shard, e);
+        } catch (ExecutionException e) {
+            log.error("Shard {} failed in {}", shard, operation, e.getCause());
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException("Database error while " + operation + " on shard " + shard, e.getCause());
+        }
+    }
+
+    private <T> T readOnly(SessionFactory sf, Function<StatelessSession, T> work) {
+        Transaction transaction = null;
+        try (StatelessSession session = sf.openStatelessSession()) {
+            transaction = session.beginTransaction();
+            T result = work.apply(session);
+            transaction.commit();
+            return result;
+        } catch (HibernateException e) {
+            log.error("Hibernate error in sharded read", e);
+            throw e;
+        } finally {
+            safeRollback(transaction);
+        }
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase();
+    }
+}
@@ -0,0 +1,182 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.domain.User;
+import org.example.metrics.Readiness;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pays the cold-start costs before the app reports ready. One worker per pooled connection holds a unit of work open
+ * at the same time, so the pool has to create them all, and runs create, read by id, lower(email) lookups, update and
+ * delete {@code iterations} times through {@link UserDaoImpl} before rolling everything back. With iterations at or
+ * above pgjdbc's {@code prepareThreshold} (5 by default) each connection ends up with those statements prepared
+ * server-side. Read-only calls then run outside a unit of work to warm the pooled path and the JIT.
+ */
+public class StartupWarmUp {
+    private static final Logger log = LogManager.getLogger(StartupWarmUp.class);
+    private static final long PROBE_ID = 0L;
+    private static final long HOLD_TIMEOUT_SECONDS = 30;
+
+    public record WarmUpReport(int connections, int writeCycles, int syntheticReads, double coldCallMillis,
+                               Duration elapsed) {
+    }
+
+    private final SessionFactory sessionFactory;
+    private final UserDaoImpl userDao;
+    private final int connections;
+    private final int iterations;
+    private final int syntheticReads;
+
+    public StartupWarmUp(SessionFactory sessionFactory, UserDaoImpl userDao, int connections, int iterations, int syntheticReads) {
+        if (connections <= 0 || iterations <= 0 || syntheticReads < 0) {
+            throw new IllegalArgumentException("Warm-up needs positive connections and iterations, and non-negative reads");
+        }
+        this.sessionFactory = sessionFactory;
+        this.userDao = userDao;
+        this.connections = connections;
+        this.iterations = iterations;
+        this.syntheticReads = syntheticReads;
+    }
+
+    /**
+     * Warm-up sized from {@code userapp.warmUp.*} system properties; connections default to the pool's minimum (idle) size.
+     */
+    public static StartupWarmUp standard(SessionFactory sessionFactory, UserDaoImpl userDao) {
+        return new StartupWarmUp(sessionFactory, userDao,
+                Integer.getInteger("userapp.warmUp.connections", minimumPoolSize(sessionFactory)),
+                Integer.getInteger("userapp.warmUp.iterations", 5),
+                Integer.getInteger("userapp.warmUp.reads", 500));
+    }
+
+    static int minimumPoolSize(SessionFactory sessionFactory) {
+        Object size = sessionFactory.getProperties().get("hibernate.hikari.minimumIdle");
+        if (size == null) size = sessionFactory.getProperties().get("hibernate.connection.min_pool_size");
+        if (size == null) size = sessionFactory.getProperties().get("hibernate.connection.initial_pool_size");
+        return size == null ? 1 : Math.max(1, Integer.parseInt(size.toString().trim()));
+    }
+
+    public WarmUpReport run(Readiness readiness) {
+        long start = System.nanoTime();
+        readiness.markWarmingUp();
+        double coldCallMillis = millisSince(probe());
+        int writeCycles = warmConnections();
+        for (int i = 0; i < syntheticReads; i++) {
+            probe();
+            userDao.findByEmail("warm-up-" + i + "@warmup.invalid");
+        }
+        readiness.markReady();
+        WarmUpReport report = new WarmUpReport(connections, writeCycles, syntheticReads, coldCallMillis,
+                Duration.ofNanos(System.nanoTime() - start));
+        log.info("Warm-up finished: {}", report);
+        return report;
+    }
+
+    private long probe() {
+        long start = System.nanoTime();
+        userDao.findById(PROBE_ID);
+        return start;
+    }
+
+    private int warmConnections() {
+        CyclicBarrier allHeld = new CyclicBarrier(connections);
+        AtomicInteger workers = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(connections, runnable -> {
+            Thread thread = new Thread(runnable, "warm-up-" + workers.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int worker = 0; worker < connections; worker++) {
+                futures.add(executor.submit(() -> warmConnection(allHeld)));
+            }
+            int cycles = 0;
+            for (Future<Integer> future : futures) {
+                cycles += future.get();
+            }
+            return cycles;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Warm-up interrupted", e);
+        } catch (ExecutionException e) {
+            log.warn("Connection warm-up failed, continuing cold", e.getCause());
+            return 0;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int warmConnection(CyclicBarrier allHeld) {
+        String nonce = UUID.randomUUID().toString().substring(0, 8);
+        int[] cycles = {0};
+        try {
+            new UnitOfWork(sessionFactory).run(() -> {
+                Session session = UnitOfWork.currentSession(sessionFactory);
+                for (int i = 0; i < iterations; i++) {
+                    writeCycle(session, "warm-up-" + nonce + "-" + i + "@warmup.invalid");
+                    cycles[0]++;
+                }
+                awaitOthers(allHeld);
+                throw new RollBack();
+            });
+        } catch (RollBack expected) {
+            log.debug("Warm-up unit of work rolled back after {} cycles", cycles[0]);
+        } catch (RuntimeException e) {
+            allHeld.reset();
+            throw e;
+        }
+        return cycles[0];
+    }
+
+    private void writeCycle(Session session, String email) {
+        User user = userDao.create(new User("Warm Up", email, 30));
+        session.clear();
+        userDao.findById(user.getId());
+        userDao.findByEmail(email);
+        userDao.mailUniqueCheck(email);
+        session.clear();
+        user.setAge(31);
+        userDao.update(user);
+        session.clear();
+        userDao.tryDeleteById(user.getId());
+        session.clear();
+    }
+
+    private void awaitOthers(CyclicBarrier allHeld) {
+        try {
+            allHeld.await(HOLD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (BrokenBarrierException | TimeoutException e) {
+            log.debug("Not every warm-up connection was held at once", e);
+        }
+    }
+
+    private static double millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static final class RollBack extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        RollBack() {
+            super("warm-up rollback", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.dao;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.concurrency.DatabaseGuard;
+import org.example.concurrency.Deadline;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.util.function.Supplier;
+
+import static org.example.util.Transactions.safeRollback;
+
+public class UnitOfWork {
+    private static final Logger log = LogManager.getLogger(UnitOfWork.class);
+    private static final ThreadLocal<Bound> CURRENT = new ThreadLocal<>();
+    private static final UnitOfWork NONE = new UnitOfWork(null);
+
+    private final SessionFactory sessionFactory;
+    private final DatabaseGuard guard;
+
+    public UnitOfWork(SessionFactory sessionFactory) {
+        this(sessionFactory, DatabaseGuard.disabled());
+    }
+
+    /**
+     * The outermost unit of work takes one {@code guard} write permit for its whole transaction and is retried as a
+     * whole on transient failures; DAO calls that join it skip the guard.
+     */
+    public UnitOfWork(SessionFactory sessionFactory, DatabaseGuard guard) {
+        this.sessionFactory = sessionFactory;
+        this.guard = guard;
+    }
+
+    public static UnitOfWork none() {
+        return NONE;
+    }
+
+    public <T> T execute(Supplier<T> work) {
+        if (sessionFactory == null || currentSession(sessionFactory) != null) {
+            return work.get();
+        }
+        return guard.call(DatabaseGuard.Access.WRITE, "unitOfWork", () -> inTransaction(work));
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        Bound previous = CURRENT.get();
+        Transaction transaction = null;
+        try (Session session = sessionFactory.openSession()) {
+            transaction = session.getTransaction();
+            // joined DAO calls can't set their own query timeout, so the whole unit runs under the caller's deadline
+            Deadline deadline = Deadline.current();
+            if (!deadline.isNone()) transaction.setTimeout(deadline.remainingSeconds());
+            transaction.begin();
+            CURRENT.set(new Bound(sessionFactory, session));
+            T result = work.get();
+            transaction.commit();
+            return result;
+        } catch (HibernateException e) {
+            log.error("Hibernate error in unit of work", e);
+            throw e;
+        } finally {
+            CURRENT.set(previous);
+            if (previous == null) CURRENT.remove();
+            safeRollback(transaction);
+        }
+    }
+
+    public void run(Runnable work) {
+        execute(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Runs {@code action} once the unit of work bound to this thread commits, or right away when none is bound.
+     */
+    public static void afterCommit(Runnable action) {
+        Bound bound = CURRENT.get();
+        if (bound == null) {
+            action.run();
+            return;
+        }
+        bound.session().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != Status.STATUS_COMMITTED) return;
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    log.warn("After-commit action failed", e);
+                }
+            }
+        });
+    }
+
+    static Session currentSession(SessionFactory sessionFactory) {
+        Bound bound = CURRENT.get();
+        return bound != null && bound.sessionFactory() == sessionFactory ? bound.session() : null;
+    }
+
+    private record Bound(SessionFactory sessionFactory, Session session) {
+    }
+}
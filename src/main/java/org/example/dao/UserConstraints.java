@@ -0,0 +1,70 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.domain.User;
+
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+
+// the users table constraints for DAOs that don't have PostgreSQL to enforce them, and the errors every DAO shares
+final class UserConstraints {
+    private static final Logger log = LogManager.getLogger(UserConstraints.class);
+    static final int NAME_MAX_LENGTH = 100;
+    static final int EMAIL_MAX_LENGTH = 254;
+
+    private UserConstraints() {
+    }
+
+    static void validate(User user, String operation) {
+        if (user.getName() == null || user.getEmail() == null || user.getAge() == null) {
+            throw new IllegalArgumentException("That field can't be empty");
+        }
+        if (user.getName().length() > NAME_MAX_LENGTH || user.getEmail().length() > EMAIL_MAX_LENGTH) {
+            log.error("Value too long in {}: {}", operation, user);
+            throw new IllegalStateException("Database error while " + operation + " user");
+        }
+    }
+
+    static String emailKey(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    // the key upsertAll deduplicates on; the unique index compares lower(email)
+    static String upsertKey(User user) {
+        return user.getEmail().trim().toLowerCase(Locale.ROOT);
+    }
+
+    static void requireUpsertFields(User user) {
+        if (user == null || user.getName() == null || user.getEmail() == null || user.getAge() == null) {
+            throw new IllegalArgumentException("That field can't be empty");
+        }
+    }
+
+    static void requireUser(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User can't be null");
+        }
+    }
+
+    // merge() of a transient user inserts a copy of it and leaves the argument without an id
+    static User mergeTransient(User user, UnaryOperator<User> create) {
+        User copy = new User(user.getName(), user.getEmail(), user.getAge());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setUpdatedAt(user.getUpdatedAt());
+        validate(copy, "update");
+        create.apply(copy);
+        log.info("User is updated {}", user);
+        return user;
+    }
+
+    static IllegalArgumentException userNotFound(Long id) {
+        log.info("User with id={} is not existed", id);
+        return new IllegalArgumentException("User with id={" + id + "} is not existed");
+    }
+
+    static IllegalArgumentException emailNotFound(String email) {
+        log.info("User with email={} is not existed", email);
+        return new IllegalArgumentException("User with email={" + email + "} is not existed");
+    }
+}
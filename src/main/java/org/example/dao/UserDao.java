@@ -1,17 +1,79 @@
 package org.example.dao;
 
+import org.example.domain.UpsertResult;
 import org.example.domain.User;
+import org.example.domain.UserView;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 public interface UserDao {
     User create(User user);
 
-    User read(Long id);
+    default User read(Long id) {
+        return findById(id).orElseThrow(() -> UserConstraints.userNotFound(id));
+    }
+
+    Optional<User> findById(Long id);
+
+    Optional<User> findByEmail(String email);
+
+    UserView readView(Long id);
 
     User update(User user);
 
-    void deleteById(Long id);
+    default void deleteById(Long id) {
+        if (!tryDeleteById(id)) throw UserConstraints.userNotFound(id);
+    }
 
-    void deleteByEmail(String email);
+    boolean tryDeleteById(Long id);
+
+    default void deleteByEmail(String email) {
+        if (!tryDeleteByEmail(email)) throw UserConstraints.emailNotFound(email);
+    }
+
+    /**
+     * Deletes the active user whose lower-cased email equals {@code email}. The argument is not normalized, as in
+     * {@code lower(email) = :e}, so only a lower-case email can match.
+     */
+    boolean tryDeleteByEmail(String email);
 
     boolean mailUniqueCheck(String email);
+
+    /**
+     * Creates the user, or updates name and age of the active user with the same email. This fallback is a
+     * check-then-act and can race with concurrent writers; stores with a unique email index do it atomically.
+     */
+    default UpsertResult upsert(User user) {
+        UserConstraints.requireUpsertFields(user);
+        Optional<User> existing = findByEmail(user.getEmail());
+        if (existing.isEmpty()) {
+            return new UpsertResult(create(user), UpsertResult.Outcome.INSERTED);
+        }
+        User current = existing.get();
+        if (Objects.equals(current.getName(), user.getName()) && Objects.equals(current.getAge(), user.getAge())) {
+            return new UpsertResult(current, UpsertResult.Outcome.UNCHANGED);
+        }
+        current.setName(user.getName());
+        current.setAge(user.getAge());
+        return new UpsertResult(update(current), UpsertResult.Outcome.UPDATED);
+    }
+
+    /**
+     * Upserts the users and returns one result per input position. A later entry for the same (case-insensitive)
+     * email wins, and every entry for that email gets its result.
+     */
+    default List<UpsertResult> upsertAll(List<User> users) {
+        Map<String, User> latest = new LinkedHashMap<>();
+        for (User user : users) {
+            UserConstraints.requireUpsertFields(user);
+            latest.put(UserConstraints.upsertKey(user), user);
+        }
+        Map<String, UpsertResult> byEmail = new LinkedHashMap<>();
+        latest.forEach((email, user) -> byEmail.put(email, upsert(user)));
+        return users.stream().map(user -> byEmail.get(UserConstraints.upsertKey(user))).toList();
+    }
 }
@@ -1,29 +1,117 @@
 package org.example.dao;
 
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.example.cache.InvalidationBus;
+import org.example.collections.BloomFilter;
+import org.example.collections.EmailHash;
+import org.example.collections.EmailHashIndex;
+import org.example.concurrency.DatabaseGuard;
+import org.example.concurrency.DatabaseGuard.Access;
+import org.example.concurrency.Deadline;
+import org.example.concurrency.RetryPolicy;
+import org.example.domain.OutboxEvent;
+import org.example.domain.UpsertResult;
 import org.example.domain.User;
+import org.example.domain.UserView;
+import org.example.jfr.DaoOperationEvent;
+import org.example.metrics.OperationMetrics;
 import org.hibernate.*;
 import org.hibernate.exception.ConstraintViolationException;
-import org.hibernate.resource.transaction.spi.TransactionStatus;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static org.example.util.Transactions.safeRollback;
 
 public class UserDaoImpl implements UserDao {
     private static final Logger log = LogManager.getLogger(UserDaoImpl.class);
+    private static final String SOFT_DELETE_BY_ID_SQL =
+            "UPDATE users SET deleted_at = now(), updated_at = now() WHERE id = :id AND deleted_at IS NULL";
+    private static final String SOFT_DELETE_BY_EMAIL_SQL =
+            "UPDATE users SET deleted_at = now(), updated_at = now() WHERE lower(email) = :e AND deleted_at IS NULL RETURNING id";
+    private static final String EMAIL_LOOKUP_SQL =
+            "SELECT user_id, created_at FROM users_email_lookup WHERE email_lower = :e";
+    private static final String EMAIL_LOOKUP_EXISTS_SQL =
+            "SELECT 1 FROM users_email_lookup WHERE email_lower = :e";
+    private static final String DELETE_BY_KEY_SQL =
+            "DELETE FROM users WHERE id = :id AND created_at = :createdAt";
+    private static final String SOFT_DELETE_BY_KEY_SQL =
+            "UPDATE users SET deleted_at = now(), updated_at = now() WHERE id = :id AND created_at = :createdAt AND deleted_at IS NULL";
+    private static final String SOFT_DELETE_BY_ID_AND_EMAIL_SQL =
+            "UPDATE users SET deleted_at = now(), updated_at = now() WHERE id = :id AND lower(email) = :e AND deleted_at IS NULL";
+    private static final String READ_VIEW_HQL =
+            "select u.id, u.name, u.email, u.age, u.createdAt, u.updatedAt from User u where u.id = :id and u.deletedAt is null";
+    private static final String ACTIVE_EMAILS_HQL =
+            "select lower(u.email) from User u where u.deletedAt is null";
+    private static final int EMAIL_SCAN_FETCH_SIZE = 1_000;
+    private static final String RECENTLY_UPDATED_HQL =
+            "from User u where u.deletedAt is null order by u.updatedAt desc nulls last, u.id desc";
+    private static final int WARM_UP_FETCH_SIZE = 500;
+    private static final String UPSERT_SQL = """
+            INSERT INTO users (name, email, age, created_at, updated_at)
+            SELECT u.name, u.email, u.age, now(), now()
+            FROM unnest(?::varchar[], ?::varchar[], ?::int[]) AS u(name, email, age)
+            ON CONFLICT (lower(email)) WHERE deleted_at IS NULL DO UPDATE
+              SET name = EXCLUDED.name, age = EXCLUDED.age, updated_at = statement_timestamp()
+              WHERE (users.name, users.age) IS DISTINCT FROM (EXCLUDED.name, EXCLUDED.age)
+            RETURNING id, name, email, age, created_at, updated_at, (xmax = 0) AS inserted""";
+    private static final String UPSERT_UNCHANGED_SQL = """
+            SELECT id, name, email, age, created_at, updated_at FROM users
+            WHERE deleted_at IS NULL AND lower(email) IN (SELECT lower(e) FROM unnest(?::varchar[]) AS e)""";
+    private static final int UPSERT_CHUNK_SIZE = 1_000;
+    private static final String SET_LOCK_TIMEOUT_SQL = "SELECT set_config('lock_timeout', :lockTimeout, true)";
     private final SessionFactory sessionFactory;
+    private final UserDaoSettings settings;
+    private final OperationMetrics metrics = new OperationMetrics();
+    private volatile boolean emailFilterLoaded;
 
     public UserDaoImpl(SessionFactory sessionFactory) {
+        this(sessionFactory, UserDaoSettings.defaults());
+    }
+
+    public UserDaoImpl(SessionFactory sessionFactory, DeleteMode deleteMode) {
+        this(sessionFactory, UserDaoSettings.defaults().withDeleteMode(deleteMode));
+    }
+
+    public UserDaoImpl(SessionFactory sessionFactory, UserDaoSettings settings) {
         this.sessionFactory = sessionFactory;
+        this.settings = settings;
     }
 
     @Override
     public User create(User user) {
-        Transaction transaction = null;
-        try (Session session = sessionFactory.openSession()) {
-            transaction = session.beginTransaction();
-            session.persist(user);
-            transaction.commit();
+        UserConstraints.requireUser(user);
+        Long initialId = user.getId();
+        return execute(Access.WRITE, "create", user, () -> {
+            user.setId(initialId);
+            return doCreate(user);
+        });
+    }
+
+    private User doCreate(User user) {
+        try {
+            inTransaction(false, session -> {
+                session.persist(user);
+                session.persist(new OutboxEvent(user.getId(), OutboxEvent.Operation.CREATED));
+                return user;
+            });
+            rememberEmail(user.getEmail(), user.getId());
             log.info("User created {}", user);
             return user;
         } catch (ConstraintViolationException e) {
@@ -33,46 +121,240 @@ public class UserDaoImpl implements UserDao {
         } catch (HibernateException e) {
             log.error("Hibernate error in create()", e);
             throw e;
-        } finally {
-            safeRollback(transaction);
         }
         return null;
     }
 
+    /**
+     * One {@code INSERT ... ON CONFLICT (lower(email)) DO UPDATE} against {@code users_email_ci_uidx}, so concurrent
+     * upserts of the same email can't both insert. Only inserted and actually changed rows come back from it; a row
+     * whose name and age already match is left untouched, still locked by the conflict check, and read back after.
+     */
+    @Override
+    public UpsertResult upsert(User user) {
+        return execute(Access.WRITE, "upsert", user, () -> doUpsert(Collections.singletonList(user)).get(0));
+    }
+
+    @Override
+    public List<UpsertResult> upsertAll(List<User> users) {
+        return execute(Access.WRITE, "upsertAll", users.size(), () -> doUpsert(users));
+    }
+
+    private List<UpsertResult> doUpsert(List<User> users) {
+        if (settings.partitionedSchema()) {
+            throw new IllegalStateException("Upsert by email needs the unique lower(email) index of the plain schema");
+        }
+        Map<String, User> latest = new LinkedHashMap<>();
+        for (User user : users) {
+            UserConstraints.requireUpsertFields(user);
+            latest.put(UserConstraints.upsertKey(user), user);
+        }
+        try {
+            Map<String, UpsertResult> results = inTransaction(false, session -> {
+                session.flush();
+                List<User> pending = new ArrayList<>(latest.values());
+                Map<String, UpsertResult> byEmail = new LinkedHashMap<>();
+                for (int from = 0; from < pending.size(); from += UPSERT_CHUNK_SIZE) {
+                    List<User> chunk = pending.subList(from, Math.min(pending.size(), from + UPSERT_CHUNK_SIZE));
+                    byEmail.putAll(session.doReturningWork(connection -> upsertChunk(connection, chunk)));
+                }
+                for (String email : latest.keySet()) {
+                    if (!byEmail.containsKey(email)) {
+                        throw new IllegalStateException("Upsert of " + email + " returned no row");
+                    }
+                }
+                List<Long> updated = new ArrayList<>();
+                for (UpsertResult result : byEmail.values()) {
+                    Long id = result.user().getId();
+                    if (result.inserted()) {
+                        session.persist(new OutboxEvent(id, OutboxEvent.Operation.CREATED));
+                    } else if (result.outcome() == UpsertResult.Outcome.UPDATED) {
+                        session.persist(new OutboxEvent(id, OutboxEvent.Operation.UPDATED));
+                        updated.add(id);
+                    }
+                }
+                if (!updated.isEmpty()) invalidateAfterCommit(session, updated);
+                return byEmail;
+            });
+            for (UpsertResult result : results.values()) {
+                rememberEmail(result.user().getEmail(), result.user().getId());
+            }
+            log.info("Upserted {} users", results.size());
+            return users.stream().map(user -> results.get(UserConstraints.upsertKey(user))).toList();
+        } catch (ConstraintViolationException e) {
+            handleConstraintViolation(e);
+        } catch (JDBCException e) {
+            handleJdbcException("upsert", e);
+        } catch (HibernateException e) {
+            log.error("Hibernate error in upsert()", e);
+            throw e;
+        }
+        return null;
+    }
+
+    private Map<String, UpsertResult> upsertChunk(Connection connection, List<User> chunk) throws SQLException {
+        Map<String, UpsertResult> byEmail = new LinkedHashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(UPSERT_SQL)) {
+            statement.setArray(1, connection.createArrayOf("varchar", chunk.stream().map(User::getName).toArray()));
+            statement.setArray(2, connection.createArrayOf("varchar", chunk.stream().map(User::getEmail).toArray()));
+            statement.setArray(3, connection.createArrayOf("int4", chunk.stream().map(User::getAge).toArray()));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    User user = upsertedUser(rs);
+                    UpsertResult.Outcome outcome = rs.getBoolean("inserted") ? UpsertResult.Outcome.INSERTED : UpsertResult.Outcome.UPDATED;
+                    byEmail.put(UserConstraints.upsertKey(user), new UpsertResult(user, outcome));
+                }
+            }
+        }
+        Object[] unchanged = chunk.stream()
+                .filter(user -> !byEmail.containsKey(UserConstraints.upsertKey(user)))
+                .map(User::getEmail)
+                .toArray();
+        if (unchanged.length == 0) return byEmail;
+        try (PreparedStatement statement = connection.prepareStatement(UPSERT_UNCHANGED_SQL)) {
+            statement.setArray(1, connection.createArrayOf("varchar", unchanged));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    User user = upsertedUser(rs);
+                    byEmail.put(UserConstraints.upsertKey(user), new UpsertResult(user, UpsertResult.Outcome.UNCHANGED));
+                }
+            }
+        }
+        return byEmail;
+    }
+
+    private static User upsertedUser(ResultSet rs) throws SQLException {
+        User user = new User(rs.getString("name"), rs.getString("email"), rs.getInt("age"));
+        user.setId(rs.getLong("id"));
+        user.setCreatedAt(rs.getTimestamp("created_at"));
+        user.setUpdatedAt(rs.getTimestamp("updated_at"));
+        return user;
+    }
+
     @Override
     public User read(Long id) {
-        Transaction transaction = null;
-        try (Session session = sessionFactory.openSession()) {
-            session.setDefaultReadOnly(true);
-            transaction = session.beginTransaction();
-            User user = session.get(User.class, id);
+        return execute(Access.READ, "read", id, () -> doFindById(id)).orElseThrow(() -> UserConstraints.userNotFound(id));
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return execute(Access.READ, "findById", id, () -> doFindById(id));
+    }
+
+    private Optional<User> doFindById(Long id) {
+        try {
+            User user = inTransaction(true, session -> session.get(User.class, id));
+            if (user == null || user.isDeleted()) {
+                log.debug("User with id={} not existed", id);
+                return Optional.empty();
+            }
+            log.debug("User is load: {}", user);
+            return Optional.of(user);
+        } catch (HibernateException e) {
+            log.error("Hibernate error in read(id={})", id, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return execute(Access.READ, "findByEmail", email, () -> doFindByEmail(email));
+    }
+
+    private Optional<User> doFindByEmail(String email) {
+        try {
+            String normalized = email.trim().toLowerCase();
+            User user = inTransaction(true, session -> settings.partitionedSchema()
+                    ? findByEmailKey(session, normalized)
+                    : findByIndexedEmail(session, normalized));
             if (user == null) {
-                log.info("User with id={} not existed", id);
-                transaction.commit();
-                throw new IllegalArgumentException("User with id={" + id + "} is not existed");
-            } else {
-                log.debug("User is load: {}", user);
+                log.debug("User with email={} not existed", email);
+                return Optional.empty();
             }
+            rememberEmail(normalized, user.getId());
+            return Optional.of(user);
+        } catch (HibernateException e) {
+            log.error("Hibernate error in findByEmail(email={})", email, e);
+            throw e;
+        }
+    }
+
+    private User findByEmailKey(Session session, String email) {
+        Object[] key = emailKey(session, email);
+        if (key == null) return null;
+        return session.createSelectionQuery(
+                        "from User u where u.id = :id and u.createdAt = :createdAt and u.deletedAt is null", User.class)
+                .setParameter("id", key[0])
+                .setParameter("createdAt", key[1])
+                .uniqueResult();
+    }
+
+    private User findByIndexedEmail(Session session, String email) {
+        Long indexedId = indexedId(email);
+        if (indexedId != null) {
+            User user = session.get(User.class, indexedId);
+            if (user != null && !user.isDeleted() && email.equals(user.getEmail().toLowerCase())) {
+                return user;
+            }
+            settings.emailIndex().remove(email, indexedId);
+        }
+        return session.createSelectionQuery("from User u where lower(u.email) = :e and u.deletedAt is null", User.class)
+                .setParameter("e", email)
+                .setMaxResults(1)
+                .uniqueResult();
+    }
+
+    @Override
+    public UserView readView(Long id) {
+        UserView view = execute(Access.READ, "readView", id, () -> doReadView(id));
+        if (view == null) throw UserConstraints.userNotFound(id);
+        return view;
+    }
+
+    private UserView doReadView(Long id) {
+        Session joined = UnitOfWork.currentSession(sessionFactory);
+        Object[] row = joined != null ? readViewRow(joined, id) : readViewRowStateless(id);
+        return row == null ? null : UserView.fromRow(row);
+    }
+
+    private Object[] readViewRowStateless(Long id) {
+        Transaction transaction = null;
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            transaction = begin(session, true);
+            Object[] row = readViewRow(session, id);
             transaction.commit();
-            return user;
+            return row;
         } catch (HibernateException e) {
-            log.error("Hibernate error in read(id={})", id, e);
+            log.error("Hibernate error in readView(id={})", id, e);
             throw e;
         } finally {
             safeRollback(transaction);
         }
     }
 
+    private Object[] readViewRow(SharedSessionContract session, Long id) {
+        return session.createSelectionQuery(READ_VIEW_HQL, Object[].class)
+                .setParameter("id", id)
+                .uniqueResult();
+    }
 
     @Override
     public User update(User user) {
-        Transaction transaction = null;
-        try (Session session = sessionFactory.openSession()) {
-            transaction = session.beginTransaction();
-            session.merge(user);
-            transaction.commit();
-            log.info("User is updated {}", user);
-            return user;
+        UserConstraints.requireUser(user);
+        return execute(Access.WRITE, "update", user, () -> doUpdate(user));
+    }
+
+    private User doUpdate(User user) {
+        try {
+            User merged = inTransaction(false, session -> {
+                User result = session.merge(user);
+                session.persist(new OutboxEvent(result.getId(), OutboxEvent.Operation.UPDATED));
+                invalidateAfterCommit(session, List.of(result.getId()));
+                return result;
+            });
+            rememberEmail(merged.getEmail(), merged.getId());
+            log.info("User is updated {}", merged);
+            return merged;
         } catch (ConstraintViolationException e) {
             handleConstraintViolation(e);
         } catch (JDBCException e) {
@@ -80,93 +362,393 @@ public class UserDaoImpl implements UserDao {
         } catch (HibernateException e) {
             log.error("Hibernate error in update()", e);
             throw e;
-        } finally {
-            safeRollback(transaction);
         }
         return null;
     }
 
     @Override
     public void deleteById(Long id) {
-        Transaction transaction = null;
-        try (Session session = sessionFactory.openSession()) {
-            transaction = session.beginTransaction();
-            User user = session.get(User.class, id);
-            if (user == null) {
-                log.info("User with id={} is not existed", id);
-                transaction.commit();
-                throw new IllegalArgumentException("User with id={" + id + "} is not existed");
-            } else {
+        if (!execute(Access.WRITE, "deleteById", id, () -> doDeleteById(id))) {
+            throw UserConstraints.userNotFound(id);
+        }
+    }
+
+    @Override
+    public boolean tryDeleteById(Long id) {
+        return execute(Access.WRITE, "tryDeleteById", id, () -> doDeleteById(id));
+    }
+
+    private boolean doDeleteById(Long id) {
+        try {
+            return inTransaction(false, session -> {
+                if (settings.deleteMode() == DeleteMode.SOFT) {
+                    int marked = session.createNativeMutationQuery(SOFT_DELETE_BY_ID_SQL)
+                            .setParameter("id", id)
+                            .executeUpdate();
+                    if (marked == 0) return false;
+                    session.persist(new OutboxEvent(id, OutboxEvent.Operation.DELETED));
+                    invalidateAfterCommit(session, List.of(id));
+                    log.info("User with id={} is soft-deleted", id);
+                    return true;
+                }
+                User user = session.get(User.class, id);
+                if (user == null || user.isDeleted()) return false;
                 session.remove(user);
-                transaction.commit();
+                session.persist(new OutboxEvent(user.getId(), OutboxEvent.Operation.DELETED));
+                invalidateAfterCommit(session, List.of(user.getId()));
+                if (settings.emailIndex() != null) settings.emailIndex().remove(user.getEmail(), user.getId());
                 log.info("User {} is deleted", user);
-            }
+                return true;
+            });
         } catch (HibernateException e) {
             log.error("Hibernate error in deleteById(id={})", id, e);
             throw e;
-        } finally {
-            safeRollback(transaction);
         }
     }
 
     @Override
     public void deleteByEmail(String email) {
-        Transaction transaction = null;
-        try (Session session = sessionFactory.openSession()) {
-            transaction = session.beginTransaction();
-            User user = session.createQuery("from User u where lower(u.email) = :e", User.class).setParameter("e", email).setMaxResults(1).uniqueResult();
-            if (user == null) {
-                log.info("User with email={} is not existed", email);
-                throw new IllegalArgumentException("User with email={" + email + "} is not existed");
-            } else {
+        if (!execute(Access.WRITE, "deleteByEmail", email, () -> doDeleteByEmail(email))) {
+            throw UserConstraints.emailNotFound(email);
+        }
+    }
+
+    @Override
+    public boolean tryDeleteByEmail(String email) {
+        return execute(Access.WRITE, "tryDeleteByEmail", email, () -> doDeleteByEmail(email));
+    }
+
+    private boolean doDeleteByEmail(String email) {
+        try {
+            return inTransaction(false, session -> {
+                if (settings.partitionedSchema()) {
+                    Long id = deleteByEmailKey(session, email);
+                    if (id == null) return false;
+                    session.persist(new OutboxEvent(id, OutboxEvent.Operation.DELETED));
+                    invalidateAfterCommit(session, List.of(id));
+                    log.info("User with email={} (id={}) is deleted", email, id);
+                    return true;
+                }
+                Long indexedId = indexedId(email);
+                if (indexedId != null && deleteIndexedUser(session, indexedId, email)) {
+                    session.persist(new OutboxEvent(indexedId, OutboxEvent.Operation.DELETED));
+                    invalidateAfterCommit(session, List.of(indexedId));
+                    settings.emailIndex().remove(email, indexedId);
+                    log.info("User with email={} (id={}) is deleted by index", email, indexedId);
+                    return true;
+                }
+                if (settings.deleteMode() == DeleteMode.SOFT) {
+                    List<Long> ids = session.createNativeQuery(SOFT_DELETE_BY_EMAIL_SQL, Long.class)
+                            .setParameter("e", email)
+                            .getResultList();
+                    if (ids.isEmpty()) return false;
+                    for (Long id : ids) {
+                        session.persist(new OutboxEvent(id, OutboxEvent.Operation.DELETED));
+                    }
+                    invalidateAfterCommit(session, ids);
+                    if (settings.emailIndex() != null) settings.emailIndex().remove(email);
+                    log.info("User with email={} is soft-deleted", email);
+                    return true;
+                }
+                User user = session.createQuery("from User u where lower(u.email) = :e and u.deletedAt is null", User.class).setParameter("e", email).setMaxResults(1).uniqueResult();
+                if (user == null) return false;
                 session.remove(user);
-                transaction.commit();
+                session.persist(new OutboxEvent(user.getId(), OutboxEvent.Operation.DELETED));
+                invalidateAfterCommit(session, List.of(user.getId()));
+                if (settings.emailIndex() != null) settings.emailIndex().remove(email);
                 log.info("User {} is deleted", user);
-            }
+                return true;
+            });
         } catch (HibernateException e) {
             log.error("Hibernate error in deleteByEmail(email={})", email, e);
             throw e;
-        } finally {
-            safeRollback(transaction);
         }
     }
 
+    @Override
     public boolean mailUniqueCheck(String email) {
-        Transaction transaction = null;
-        try (Session session = sessionFactory.openSession()) {
-            session.setDefaultReadOnly(true);
-            transaction = session.beginTransaction();
-            Integer search = session.createQuery("select 1 from User u where lower(u.email) = :e", Integer.class)
-                    .setParameter("e", email.trim().toLowerCase())
-                    .setMaxResults(1).uniqueResult();
+        BloomFilter filter = settings.emailFilter();
+        if (filter != null && emailFilterLoaded && email != null && !filter.mightContain(EmailHash.of(email))) {
+            log.debug("User with mail={} is absent in email filter", email);
+            return true;
+        }
+        return execute(Access.READ, "mailUniqueCheck", email, () -> doMailUniqueCheck(email));
+    }
+
+    private boolean doMailUniqueCheck(String email) {
+        try {
+            String normalized = email.trim().toLowerCase();
+            Object search = inTransaction(true, session -> settings.partitionedSchema()
+                    ? session.createNativeQuery(EMAIL_LOOKUP_EXISTS_SQL, Integer.class)
+                    .setParameter("e", normalized)
+                    .uniqueResult()
+                    : findActiveIdByEmail(session, normalized));
             if (search == null) {
                 log.info("User with mail={} not existed", email);
             } else {
                 log.debug("User with mail={} exists", email);
             }
-            transaction.commit();
             return search == null;
-        }  catch (HibernateException e) {
+        } catch (HibernateException e) {
             log.error("Hibernate error in mailUniqueCheck(email={})", email, e);
             throw e;
+        }
+    }
+
+    private Long findActiveIdByEmail(Session session, String email) {
+        Long indexedId = indexedId(email);
+        if (indexedId != null) {
+            Long id = session.createQuery(
+                            "select u.id from User u where u.id = :id and lower(u.email) = :e and u.deletedAt is null", Long.class)
+                    .setParameter("id", indexedId)
+                    .setParameter("e", email)
+                    .uniqueResult();
+            if (id != null) return id;
+            settings.emailIndex().remove(email, indexedId);
+        }
+        Long id = session.createQuery("select u.id from User u where lower(u.email) = :e and u.deletedAt is null", Long.class)
+                .setParameter("e", email)
+                .setMaxResults(1).uniqueResult();
+        if (id != null) rememberEmail(email, id);
+        return id;
+    }
+
+    public long loadEmailFilter() {
+        BloomFilter filter = settings.emailFilter();
+        if (filter == null) {
+            throw new IllegalStateException("Email filter is not configured");
+        }
+        Transaction transaction = null;
+        long loaded = 0;
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            transaction = session.beginTransaction();
+            try (ScrollableResults<String> emails = session.createSelectionQuery(ACTIVE_EMAILS_HQL, String.class)
+                    .setFetchSize(EMAIL_SCAN_FETCH_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (emails.next()) {
+                    filter.put(EmailHash.of(emails.get()));
+                    loaded++;
+                }
+            }
+            transaction.commit();
+            emailFilterLoaded = true;
+            log.info("Email filter loaded with {} emails: {}", loaded, filter);
+            return loaded;
+        } catch (HibernateException e) {
+            log.error("Hibernate error in loadEmailFilter()", e);
+            throw e;
         } finally {
             safeRollback(transaction);
         }
     }
 
-    private void safeRollback(Transaction transaction) {
-        if (transaction == null) return;
+    /**
+     * Streams up to {@code limit} active users, most recently updated first, in one query under the caller's
+     * {@link Deadline}. Stops early once {@code sink} returns false and returns the number of users handed to it.
+     */
+    public long scanRecentlyUpdated(int limit, Predicate<User> sink) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Scan limit must be positive");
+        }
+        Transaction transaction = null;
+        long scanned = 0;
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            transaction = begin(session, true);
+            try (ScrollableResults<User> users = session.createSelectionQuery(RECENTLY_UPDATED_HQL, User.class)
+                    .setMaxResults(limit)
+                    .setFetchSize(WARM_UP_FETCH_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (users.next()) {
+                    scanned++;
+                    if (!sink.test(users.get())) break;
+                }
+            }
+            transaction.commit();
+            return scanned;
+        } catch (HibernateException e) {
+            log.error("Hibernate error in scanRecentlyUpdated(limit={}) after {} users", limit, scanned, e);
+            throw e;
+        } finally {
+            safeRollback(transaction);
+        }
+    }
+
+    // rows seen inside a unit of work may still roll back, and the Bloom filter can't forget an email
+    private void rememberEmail(String email, Long id) {
+        if (email == null) return;
+        if (UnitOfWork.currentSession(sessionFactory) != null) {
+            UnitOfWork.afterCommit(() -> indexEmail(email, id));
+        } else {
+            indexEmail(email, id);
+        }
+    }
+
+    private void indexEmail(String email, Long id) {
+        if (settings.emailIndex() != null) settings.emailIndex().put(email, id);
+        if (settings.emailFilter() != null) settings.emailFilter().put(EmailHash.of(email));
+    }
+
+    private void invalidateAfterCommit(Session session, List<Long> ids) {
+        InvalidationBus bus = settings.invalidationBus();
+        if (bus == null) return;
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != Status.STATUS_COMMITTED) return;
+                try {
+                    bus.publish(ids);
+                } catch (RuntimeException e) {
+                    log.warn("Can't publish invalidation of users {}", ids, e);
+                }
+            }
+        });
+    }
+
+    private Long indexedId(String email) {
+        if (settings.emailIndex() == null || settings.partitionedSchema()) return null;
+        long id = settings.emailIndex().find(email.trim().toLowerCase());
+        return id == EmailHashIndex.MISSING ? null : id;
+    }
+
+    private boolean deleteIndexedUser(Session session, Long id, String email) {
+        String normalized = email.trim().toLowerCase();
+        if (settings.deleteMode() == DeleteMode.SOFT) {
+            boolean marked = session.createNativeMutationQuery(SOFT_DELETE_BY_ID_AND_EMAIL_SQL)
+                    .setParameter("id", id)
+                    .setParameter("e", normalized)
+                    .executeUpdate() > 0;
+            if (!marked) settings.emailIndex().remove(normalized, id);
+            return marked;
+        }
+        User user = session.get(User.class, id);
+        if (user == null || user.isDeleted() || !normalized.equals(user.getEmail().toLowerCase())) {
+            settings.emailIndex().remove(normalized, id);
+            return false;
+        }
+        session.remove(user);
+        return true;
+    }
+
+    private Object[] emailKey(Session session, String email) {
+        return session.createNativeQuery(EMAIL_LOOKUP_SQL, Object[].class)
+                .addScalar("user_id", Long.class)
+                .addScalar("created_at", OffsetDateTime.class)
+                .setParameter("e", email.trim().toLowerCase())
+                .uniqueResult();
+    }
+
+    private Long deleteByEmailKey(Session session, String email) {
+        Object[] key = emailKey(session, email);
+        if (key == null) return null;
+        int affected = session.createNativeMutationQuery(
+                        settings.deleteMode() == DeleteMode.SOFT ? SOFT_DELETE_BY_KEY_SQL : DELETE_BY_KEY_SQL)
+                .setParameter("id", key[0])
+                .setParameter("createdAt", key[1])
+                .executeUpdate();
+        return affected == 0 ? null : (Long) key[0];
+    }
+
+    private <T> T inTransaction(boolean readOnly, Function<Session, T> work) {
+        Session joined = UnitOfWork.currentSession(sessionFactory);
+        if (joined != null) {
+            if (!readOnly) applyLockTimeout(joined);
+            T result = work.apply(joined);
+            if (!readOnly) joined.flush();
+            return result;
+        }
+        Transaction transaction = null;
+        try (Session session = sessionFactory.openSession()) {
+            if (readOnly) session.setDefaultReadOnly(true);
+            transaction = begin(session, readOnly);
+            T result = work.apply(session);
+            transaction.commit();
+            return result;
+        } finally {
+            safeRollback(transaction);
+        }
+    }
+
+    public OperationMetrics getMetrics() {
+        return metrics;
+    }
+
+    private <T> T execute(Access access, String operation, Object key, Supplier<T> action) {
+        DaoOperationEvent event = DaoOperationEvent.start(operation, access.name());
+        Deadline deadline = Deadline.current().min(Deadline.after(settings.timeouts().timeoutFor(operation)));
+        if (deadline.isExpired()) {
+            metrics.record(operation, 0, OperationMetrics.Outcome.TIMEOUT);
+            event.finish(key, 0, null, OperationMetrics.Outcome.TIMEOUT.name());
+            log.info("Deadline exceeded before {}", operation);
+            throw new IllegalStateException("Deadline exceeded before " + operation + " user");
+        }
+        long start = System.nanoTime();
         try {
-            TransactionStatus status = transaction.getStatus();
-            if (status == TransactionStatus.ACTIVE || status == TransactionStatus.MARKED_ROLLBACK) {
-                log.debug("Transaction rollback");
-                transaction.rollback();
+            Supplier<T> guarded = () -> {
+                if (deadline.isExpired()) {
+                    throw new IllegalStateException("Deadline exceeded before " + operation + " user");
+                }
+                return action.get();
+            };
+            // a joined unit of work holds its own guard permit and is retried as a whole, never statement by statement
+            T result = deadline.call(() -> UnitOfWork.currentSession(sessionFactory) != null
+                    ? guarded.get()
+                    : settings.guard().call(access, operation, guarded));
+            metrics.record(operation, System.nanoTime() - start, OperationMetrics.Outcome.SUCCESS);
+            event.finish(key, access == Access.WRITE ? rowsAffected(result) : 0, null, OperationMetrics.Outcome.SUCCESS.name());
+            return result;
+        } catch (IllegalArgumentException e) {
+            metrics.record(operation, System.nanoTime() - start, OperationMetrics.Outcome.REJECTED);
+            event.finish(key, 0, RetryPolicy.sqlState(e), OperationMetrics.Outcome.REJECTED.name());
+            throw e;
+        } catch (RuntimeException e) {
+            if (isTimeout(e) || deadline.isExpired()) {
+                metrics.record(operation, System.nanoTime() - start, OperationMetrics.Outcome.TIMEOUT);
+                event.finish(key, 0, RetryPolicy.sqlState(e), OperationMetrics.Outcome.TIMEOUT.name());
+                if (e instanceof IllegalStateException) throw e;
+                throw new IllegalStateException("Database timeout while " + operation + " user", e);
             }
-        } catch (RuntimeException re) {
-            log.warn("Error in transaction rollback", re);
+            metrics.record(operation, System.nanoTime() - start, OperationMetrics.Outcome.FAILURE);
+            event.finish(key, 0, RetryPolicy.sqlState(e), OperationMetrics.Outcome.FAILURE.name());
+            throw e;
         }
     }
 
+    private static int rowsAffected(Object result) {
+        if (result instanceof Boolean deleted) return deleted ? 1 : 0;
+        if (result instanceof List<?> rows) return rows.size();
+        return result == null ? 0 : 1;
+    }
+
+    private boolean isTimeout(Throwable e) {
+        String state = RetryPolicy.sqlState(e);
+        return "57014".equals(state) || "55P03".equals(state);
+    }
+
+    /**
+     * Begins a transaction whose statements get the remaining deadline as their JDBC query timeout, which costs no
+     * round trip. Only write transactions, the ones that wait on row locks, spend one on {@code lock_timeout}.
+     */
+    private Transaction begin(SharedSessionContract session, boolean readOnly) {
+        Transaction transaction = session.getTransaction();
+        Deadline deadline = Deadline.current();
+        if (!deadline.isNone()) transaction.setTimeout(deadline.remainingSeconds());
+        transaction.begin();
+        if (!readOnly) applyLockTimeout(session);
+        return transaction;
+    }
+
+    private void applyLockTimeout(SharedSessionContract session) {
+        Duration lockTimeout = settings.timeouts().lockTimeout();
+        if (lockTimeout == null || Deadline.current().isNone()) return;
+        session.createNativeQuery(SET_LOCK_TIMEOUT_SQL, String.class)
+                .setParameter("lockTimeout", Math.max(1, lockTimeout.toMillis()) + "ms")
+                .getSingleResult();
+    }
+
     private void handleConstraintViolation(ConstraintViolationException e) {
         SQLException sqlException = e.getSQLException();
         String state = sqlException != null ? sqlException.getSQLState() : null;
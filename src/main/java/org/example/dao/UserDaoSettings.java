@@ -0,0 +1,97 @@
+package org.example.dao;
+
+import org.example.cache.InvalidationBus;
+import org.example.collections.BloomFilter;
+import org.example.collections.EmailHashIndex;
+import org.example.concurrency.DatabaseGuard;
+
+public final class UserDaoSettings {
+    private static final UserDaoSettings DEFAULTS = new UserDaoSettings(DeleteMode.HARD, false, DatabaseGuard.disabled(), OperationTimeouts.none(), null, null, null);
+
+    private final DeleteMode deleteMode;
+    private final boolean partitionedSchema;
+    private final DatabaseGuard guard;
+    private final OperationTimeouts timeouts;
+    private final EmailHashIndex emailIndex;
+    private final BloomFilter emailFilter;
+    private final InvalidationBus invalidationBus;
+
+    private UserDaoSettings(DeleteMode deleteMode, boolean partitionedSchema, DatabaseGuard guard, OperationTimeouts timeouts,
+                            EmailHashIndex emailIndex, BloomFilter emailFilter, InvalidationBus invalidationBus) {
+        this.deleteMode = deleteMode;
+        this.partitionedSchema = partitionedSchema;
+        this.guard = guard;
+        this.timeouts = timeouts;
+        this.emailIndex = emailIndex;
+        this.emailFilter = emailFilter;
+        this.invalidationBus = invalidationBus;
+    }
+
+    public static UserDaoSettings defaults() {
+        return DEFAULTS;
+    }
+
+    public UserDaoSettings withDeleteMode(DeleteMode deleteMode) {
+        return new UserDaoSettings(deleteMode, partitionedSchema, guard, timeouts, emailIndex, emailFilter, invalidationBus);
+    }
+
+    public UserDaoSettings withPartitionedSchema(boolean partitionedSchema) {
+        return new UserDaoSettings(deleteMode, partitionedSchema, guard, timeouts, emailIndex, emailFilter, invalidationBus);
+    }
+
+    public UserDaoSettings withGuard(DatabaseGuard guard) {
+        return new UserDaoSettings(deleteMode, partitionedSchema, guard, timeouts, emailIndex, emailFilter, invalidationBus);
+    }
+
+    public UserDaoSettings withTimeouts(OperationTimeouts timeouts) {
+        return new UserDaoSettings(deleteMode, partitionedSchema, guard, timeouts, emailIndex, emailFilter, invalidationBus);
+    }
+
+    public UserDaoSettings withEmailIndex(EmailHashIndex emailIndex) {
+        return new UserDaoSettings(deleteMode, partitionedSchema, guard, timeouts, emailIndex, emailFilter, invalidationBus);
+    }
+
+    public UserDaoSettings withEmailFilter(BloomFilter emailFilter) {
+        return new UserDaoSettings(deleteMode, partitionedSchema, guard, timeouts, emailIndex, emailFilter, invalidationBus);
+    }
+
+    /**
+     * Bus that hears about every committed update and delete, so other instances can drop the user from their caches.
+     */
+    public UserDaoSettings withInvalidationBus(InvalidationBus invalidationBus) {
+        return new UserDaoSettings(deleteMode, partitionedSchema, guard, timeouts, emailIndex, emailFilter, invalidationBus);
+    }
+
+    public DeleteMode deleteMode() {
+        return deleteMode;
+    }
+
+    public boolean partitionedSchema() {
+        return partitionedSchema;
+    }
+
+    public DatabaseGuard guard() {
+        return guard;
+    }
+
+    public OperationTimeouts timeouts() {
+        return timeouts;
+    }
+
+    public EmailHashIndex emailIndex() {
+        return emailIndex;
+    }
+
+    public BloomFilter emailFilter() {
+        return emailFilter;
+    }
+
+    public InvalidationBus invalidationBus() {
+        return invalidationBus;
+    }
+
+    @Override
+    public String toString() {
+        return "UserDaoSettings{" + "deleteMode=" + deleteMode + ", partitionedSchema=" + partitionedSchema + ", timeouts=" + timeouts + ", emailIndex=" + (emailIndex != null) + ", emailFilter=" + emailFilter + ", invalidationBus=" + (invalidationBus != null) + '}';
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.dataset;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class CsvFileSink implements DatasetSink {
+    static final String HEADER = "name,email,age,created_at,updated_at";
+
+    private final Path file;
+    private final BufferedWriter writer;
+
+    public CsvFileSink(Path file) {
+        this.file = file;
+        try {
+            OutputStream out = Files.newOutputStream(file);
+            if (file.getFileName().toString().endsWith(".gz")) {
+                out = new GZIPOutputStream(out, 1 << 16);
+            }
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            writer.write(HEADER);
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open dataset file " + file, e);
+        }
+    }
+
+    @Override
+    public void write(List<SyntheticUser> batch) {
+        try {
+            for (SyntheticUser user : batch) {
+                writer.write(csvLine(user));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't write dataset file " + file, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't close dataset file " + file, e);
+        }
+    }
+
+    static String csvLine(SyntheticUser user) {
+        return user.name() + ',' + user.email() + ',' + user.age() + ',' + user.createdAt() + ',' + user.updatedAt();
+    }
+}
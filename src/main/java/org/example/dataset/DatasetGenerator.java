@@ -0,0 +1,112 @@
+package org.example.dataset;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+public class DatasetGenerator {
+    private static final String[] FIRST_NAMES = {"Alexander", "Anna", "Maria", "Dmitry", "Elena", "Ivan", "Olga",
+            "Sergey", "Natalia", "Andrey", "Tatiana", "Alexey", "Irina", "Mikhail", "Ekaterina", "Nikolai", "Svetlana",
+            "Pavel", "Yulia", "Artem", "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda",
+            "David", "Sofia", "Lucas", "Emma", "Noah", "Mia", "Liam", "Chen", "Wei", "Yuki", "Hiro", "Ahmed"};
+    private static final String[] LAST_NAMES = {"Ivanov", "Smirnov", "Kuznetsov", "Popov", "Vasiliev", "Petrov",
+            "Sokolov", "Mikhailov", "Novikov", "Fedorov", "Morozov", "Volkov", "Alekseev", "Lebedev", "Semenov",
+            "Egorov", "Pavlov", "Kozlov", "Stepanov", "Nikolaev", "Smith", "Johnson", "Williams", "Brown", "Jones",
+            "Garcia", "Miller", "Davis", "Martinez", "Wilson", "Anderson", "Taylor", "Thomas", "Moore", "Wang",
+            "Li", "Zhang", "Tanaka", "Sato", "Khan"};
+    private static final String[] DOMAINS = {"gmail.com", "mail.ru", "yandex.ru", "outlook.com", "yahoo.com",
+            "icloud.com", "proton.me", "gmx.de", "bk.ru", "example.org"};
+    private static final int[] DOMAIN_WEIGHTS = {34, 18, 16, 9, 7, 6, 3, 3, 2, 2};
+    private static final double NAME_SKEW = 1.1;
+
+    private final long seed;
+    private final Instant from;
+    private final long spanMillis;
+    private final double[] firstNameCdf = zipfCdf(FIRST_NAMES.length, NAME_SKEW);
+    private final double[] lastNameCdf = zipfCdf(LAST_NAMES.length, NAME_SKEW);
+    private final double[] domainCdf = weightCdf(DOMAIN_WEIGHTS);
+
+    public DatasetGenerator(long seed, Instant from, Instant until) {
+        if (from == null || until == null || !from.isBefore(until)) {
+            throw new IllegalArgumentException("Dataset time range must be non-empty");
+        }
+        this.seed = seed;
+        this.from = from;
+        this.spanMillis = Duration.between(from, until).toMillis();
+    }
+
+    public SyntheticUser generate(long index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Dataset index must not be negative");
+        }
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+        String first = FIRST_NAMES[pick(firstNameCdf, random)];
+        String last = LAST_NAMES[pick(lastNameCdf, random)];
+        String domain = DOMAINS[pick(domainCdf, random)];
+        // the index suffix keeps normalized emails unique no matter how names and domains collide
+        String email = (first + "." + last + "." + Long.toString(index, 36) + "@" + domain).toLowerCase(Locale.ROOT);
+
+        // growth curve: sqrt(u) puts more sign-ups towards the end of the range
+        long createdOffset = (long) (spanMillis * Math.sqrt(random.nextDouble()));
+        Instant createdAt = from.plusMillis(createdOffset);
+        long untilEnd = spanMillis - createdOffset;
+        Instant updatedAt = random.nextInt(3) == 0 ? createdAt : createdAt.plusMillis((long) (untilEnd * random.nextDouble()));
+        return new SyntheticUser(index, first + " " + last, email, age(random), createdAt, updatedAt);
+    }
+
+    public Stream<SyntheticUser> stream(long startIndex, long count) {
+        return LongStream.range(startIndex, startIndex + count).parallel().mapToObj(this::generate);
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    private static int age(SplittableRandom random) {
+        // roughly normal around 34 with a long tail, clamped to the adult range
+        double gaussian = 0;
+        for (int i = 0; i < 4; i++) gaussian += random.nextDouble();
+        int age = (int) Math.round(34 + (gaussian - 2) * 24 + (random.nextInt(10) == 0 ? random.nextInt(25) : 0));
+        return Math.clamp(age, 18, 90);
+    }
+
+    private static int pick(double[] cdf, SplittableRandom random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cdf.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cdf[mid] < u) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static double[] zipfCdf(int size, double skew) {
+        double[] weights = new double[size];
+        for (int i = 0; i < size; i++) weights[i] = 1 / Math.pow(i + 1, skew);
+        return normalize(weights);
+    }
+
+    private static double[] weightCdf(int[] weights) {
+        double[] values = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) values[i] = weights[i];
+        return normalize(values);
+    }
+
+    private static double[] normalize(double[] weights) {
+        double total = 0;
+        for (double weight : weights) total += weight;
+        double[] cdf = new double[weights.length];
+        double running = 0;
+        for (int i = 0; i < weights.length; i++) {
+            running += weights[i];
+            cdf[i] = running / total;
+        }
+        cdf[cdf.length - 1] = 1.0;
+        return cdf;
+    }
+}
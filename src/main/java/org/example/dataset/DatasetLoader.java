@@ -0,0 +1,88 @@
+package org.example.dataset;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class DatasetLoader {
+    private static final Logger log = LogManager.getLogger(DatasetLoader.class);
+
+    private final DatasetGenerator generator;
+    private final int batchSize;
+    private final int parallelism;
+
+    public DatasetLoader(DatasetGenerator generator, int batchSize, int parallelism) {
+        if (batchSize < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Batch size and parallelism must be positive");
+        }
+        this.generator = generator;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+    }
+
+    public long load(long startIndex, long count, DatasetSink sink) {
+        boolean concurrent = sink.supportsConcurrentWrites();
+        ArrayDeque<CompletableFuture<List<SyntheticUser>>> window = new ArrayDeque<>();
+        long started = System.nanoTime();
+        long written = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            for (long chunk = startIndex; chunk < startIndex + count; chunk += batchSize) {
+                long from = chunk;
+                int size = (int) Math.min(batchSize, startIndex + count - chunk);
+                window.add(CompletableFuture.supplyAsync(() -> {
+                    List<SyntheticUser> batch = generate(from, size);
+                    if (concurrent) sink.write(batch);
+                    return batch;
+                }, pool));
+                if (window.size() >= parallelism * 2) {
+                    written += drain(window.poll(), sink, concurrent);
+                    report(written, count, started);
+                }
+            }
+            while (!window.isEmpty()) {
+                written += drain(window.poll(), sink, concurrent);
+            }
+        } finally {
+            window.forEach(future -> future.cancel(true));
+            pool.shutdownNow();
+        }
+        log.info("Loaded {} synthetic users (seed={}, start={}) in {} ms", written, generator.seed(), startIndex,
+                (System.nanoTime() - started) / 1_000_000);
+        return written;
+    }
+
+    private List<SyntheticUser> generate(long from, int size) {
+        List<SyntheticUser> batch = new ArrayList<>(size);
+        for (long index = from; index < from + size; index++) {
+            batch.add(generator.generate(index));
+        }
+        return batch;
+    }
+
+    // batches are drained in index order, so sequential sinks get the same output for the same seed
+    private static int drain(CompletableFuture<List<SyntheticUser>> future, DatasetSink sink, boolean concurrent) {
+        List<SyntheticUser> batch;
+        try {
+            batch = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        if (!concurrent) sink.write(batch);
+        return batch.size();
+    }
+
+    private void report(long written, long total, long started) {
+        if (written % (batchSize * 100L) != 0) return;
+        double seconds = Math.max(0.001, (System.nanoTime() - started) / 1e9);
+        log.info("Dataset progress: {}/{} users, {} users/s", written, total, (long) (written / seconds));
+    }
+}
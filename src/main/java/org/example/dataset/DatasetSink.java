@@ -0,0 +1,16 @@
+package org.example.dataset;
+
+import java.util.List;
+
+public interface DatasetSink extends AutoCloseable {
+
+    void write(List<SyntheticUser> batch);
+
+    default boolean supportsConcurrentWrites() {
+        return false;
+    }
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.dataset;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import static org.example.util.Transactions.inTransaction;
+
+public class PostgresCopySink implements DatasetSink {
+    private static final Logger log = LogManager.getLogger(PostgresCopySink.class);
+    private static final String COPY_SQL =
+            "COPY public.users (name, email, age, created_at, updated_at) FROM STDIN WITH (FORMAT csv)";
+
+    private final SessionFactory sessionFactory;
+
+    public PostgresCopySink(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public void write(List<SyntheticUser> batch) {
+        StringBuilder csv = new StringBuilder(batch.size() * 96);
+        for (SyntheticUser user : batch) {
+            csv.append(CsvFileSink.csvLine(user)).append('\n');
+        }
+        long rows = inTransaction(sessionFactory, "dataset batch copy", session -> session.doReturningWork(connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new StringReader(csv.toString()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't stream dataset batch to the database", e);
+            }
+        }));
+        log.debug("Copied {} synthetic users", rows);
+    }
+
+    @Override
+    public boolean supportsConcurrentWrites() {
+        return true;
+    }
+}
@@ -0,0 +1,6 @@
+package org.example.dataset;
+
+import java.time.Instant;
+
+public record SyntheticUser(long index, String name, String email, int age, Instant createdAt, Instant updatedAt) {
+}
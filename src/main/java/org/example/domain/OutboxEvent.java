@@ -0,0 +1,58 @@
+package org.example.domain;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+@Entity
+@Table(name = "users_outbox")
+public class OutboxEvent {
+    public enum Operation {
+        CREATED, UPDATED, DELETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Operation operation;
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+
+    @PrePersist
+    void prePersist() {
+        if (createdAt == null) createdAt = new Date();
+    }
+
+    public OutboxEvent() {}
+
+    public OutboxEvent(Long userId, Operation operation) {
+        this.userId = userId;
+        this.operation = operation;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxEvent{" + "id=" + id + ", userId=" + userId + ", operation=" + operation + ", createdAt=" + createdAt + '}';
+    }
+}
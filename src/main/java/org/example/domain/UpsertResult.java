@@ -0,0 +1,15 @@
+package org.example.domain;
+
+/**
+ * A user after an upsert by email, and what the upsert did to it.
+ */
+public record UpsertResult(User user, Outcome outcome) {
+
+    public enum Outcome {
+        INSERTED, UPDATED, UNCHANGED
+    }
+
+    public boolean inserted() {
+        return outcome == Outcome.INSERTED;
+    }
+}
@@ -5,10 +5,12 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.util.Date;
 
 @Entity
+@DynamicUpdate
 @Table(name = "users")
 public class User {
     @Id
@@ -31,6 +33,10 @@ public class User {
     @Column(name = "updated_at", nullable = false)
     private Date updatedAt;
 
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "deleted_at", updatable = false)
+    private Date deletedAt;
+
     @PrePersist
     void prePersist() {
         Date now = new Date();
@@ -75,6 +81,30 @@ public class User {
         this.age = age;
     }
 
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public Date getDeletedAt() {
+        return deletedAt;
+    }
+
+    public boolean isDeleted() {
+        return deletedAt != null;
+    }
+
     public User() {}
 
     public User(String name, String email, Integer age) {
@@ -83,6 +113,15 @@ public class User {
         this.age = age;
     }
 
+    public User copy() {
+        User copy = new User(name, email, age);
+        copy.id = id;
+        copy.createdAt = createdAt == null ? null : new Date(createdAt.getTime());
+        copy.updatedAt = updatedAt == null ? null : new Date(updatedAt.getTime());
+        copy.deletedAt = deletedAt == null ? null : new Date(deletedAt.getTime());
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "User{" + "id=" + id + ", name='" + name + '\'' + ", email='" + email + '\'' + ", age=" + age + ", createdAt=" + createdAt + ", updatedAt=" + updatedAt + '}';
@@ -0,0 +1,26 @@
+package org.example.domain;
+
+import java.time.Instant;
+import java.util.Date;
+
+public record UserView(long id, String name, String email, int age, Instant createdAt, Instant updatedAt) {
+
+    public static UserView fromRow(Object[] row) {
+        return new UserView((Long) row[0], (String) row[1], (String) row[2], (Integer) row[3],
+                toInstant((Date) row[4]), toInstant((Date) row[5]));
+    }
+
+    public static UserView of(User user) {
+        return new UserView(user.getId(), user.getName(), user.getEmail(), user.getAge(),
+                toInstant(user.getCreatedAt()), toInstant(user.getUpdatedAt()));
+    }
+
+    private static Instant toInstant(Date date) {
+        return date == null ? null : date.toInstant();
+    }
+
+    @Override
+    public String toString() {
+        return "User{" + "id=" + id + ", name='" + name + '\'' + ", email='" + email + '\'' + ", age=" + age + ", createdAt=" + createdAt + ", updatedAt=" + updatedAt + '}';
+    }
+}
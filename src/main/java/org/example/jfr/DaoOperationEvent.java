@@ -0,0 +1,49 @@
+package org.example.jfr;
+
+import jdk.jfr.*;
+
+@Name("org.example.DaoOperation")
+@Label("User DAO Operation")
+@Category({"UserApp", "Database"})
+@Description("One UserDaoImpl call including bulkhead wait, retries and transaction")
+@StackTrace(false)
+public class DaoOperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Access")
+    String access;
+
+    @Label("User Id")
+    long userId;
+
+    @Label("Email Hash")
+    long emailHash;
+
+    @Label("Rows Affected")
+    int rowsAffected;
+
+    @Label("SQL State")
+    String sqlState;
+
+    @Label("Outcome")
+    String outcome;
+
+    public static DaoOperationEvent start(String operation, String access) {
+        DaoOperationEvent event = new DaoOperationEvent();
+        event.operation = operation;
+        event.access = access;
+        event.begin();
+        return event;
+    }
+
+    public void finish(Object key, int rowsAffected, String sqlState, String outcome) {
+        if (!shouldCommit()) return;
+        this.userId = OperationKeys.userId(key);
+        this.emailHash = OperationKeys.emailHash(key);
+        this.rowsAffected = rowsAffected;
+        this.sqlState = sqlState;
+        this.outcome = outcome;
+        commit();
+    }
+}
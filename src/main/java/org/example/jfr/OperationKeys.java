@@ -0,0 +1,21 @@
+package org.example.jfr;
+
+import org.example.collections.EmailHash;
+import org.example.domain.User;
+
+final class OperationKeys {
+    private OperationKeys() {
+    }
+
+    static long userId(Object key) {
+        if (key instanceof Long id) return id;
+        if (key instanceof User user && user.getId() != null) return user.getId();
+        return -1;
+    }
+
+    static long emailHash(Object key) {
+        if (key instanceof String email) return EmailHash.of(email);
+        if (key instanceof User user && user.getEmail() != null) return EmailHash.of(user.getEmail());
+        return 0;
+    }
+}
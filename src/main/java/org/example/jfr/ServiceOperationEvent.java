@@ -0,0 +1,37 @@
+package org.example.jfr;
+
+import jdk.jfr.*;
+
+@Name("org.example.ServiceOperation")
+@Label("User Service Operation")
+@Category({"UserApp", "Service"})
+@Description("One UserService call including validation and all DAO calls it makes")
+@StackTrace(false)
+public class ServiceOperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("User Id")
+    long userId;
+
+    @Label("Email Hash")
+    long emailHash;
+
+    @Label("Outcome")
+    String outcome;
+
+    public static ServiceOperationEvent start(String operation) {
+        ServiceOperationEvent event = new ServiceOperationEvent();
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    public void finish(Object key, String outcome) {
+        if (!shouldCommit()) return;
+        this.userId = OperationKeys.userId(key);
+        this.emailHash = OperationKeys.emailHash(key);
+        this.outcome = outcome;
+        commit();
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.load;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+    // values below 256ns are exact, larger ones land in buckets under 0.8% wide
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * HALF);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        totalCount.incrementAndGet();
+        maxValue.accumulateAndGet(value, Math::max);
+    }
+
+    public void recordCorrected(long nanos, long expectedIntervalNanos) {
+        record(nanos);
+        if (expectedIntervalNanos <= 0) return;
+        for (long missing = nanos - expectedIntervalNanos; missing >= expectedIntervalNanos; missing -= expectedIntervalNanos) {
+            record(missing);
+        }
+    }
+
+    public long count() {
+        return totalCount.get();
+    }
+
+    public long maxNanos() {
+        return maxValue.get();
+    }
+
+    public long percentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long total = totalCount.get();
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(highestEquivalent(i), maxValue.get());
+        }
+        return maxValue.get();
+    }
+
+    public double percentileMillis(double percentile) {
+        return percentileNanos(percentile) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int magnitude = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (magnitude - 1) * HALF + (int) (value >>> magnitude) - HALF;
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int magnitude = (index - SUB_BUCKETS) / HALF + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF + HALF;
+        return ((subBucket + 1) << magnitude) - 1;
+    }
+}
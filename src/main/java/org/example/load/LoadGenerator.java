@@ -0,0 +1,247 @@
+package org.example.load;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.domain.User;
+import org.example.service.UserService;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadGenerator {
+    private static final Logger log = LogManager.getLogger(LoadGenerator.class);
+    private static final String[] NAMES = {"Anna", "Boris", "Clara", "Dmitry", "Elena", "Fedor", "Galina", "Igor",
+            "Julia", "Kirill", "Lena", "Maxim", "Nadia", "Oleg", "Polina", "Roman"};
+
+    private final UserService userService;
+    private final LoadSettings settings;
+    private final String runTag;
+    private final AtomicLong emailSequence = new AtomicLong();
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final ConcurrentLinkedQueue<Long> created = new ConcurrentLinkedQueue<>();
+    private AtomicLongArray seedIds;
+    private AtomicReferenceArray<String> seedEmails;
+    private ZipfianGenerator keys;
+
+    public LoadGenerator(UserService userService, LoadSettings settings) {
+        if (settings.mode() == LoadMode.OPEN && settings.ratePerSecond() == 0) {
+            throw new IllegalArgumentException("Open-loop mode needs a positive rate");
+        }
+        this.userService = userService;
+        this.settings = settings;
+        this.runTag = Long.toString(System.currentTimeMillis() ^ settings.randomSeed(), 36);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public LoadReport run() {
+        seed();
+        log.info("Starting {} load for {} with concurrency={} rate={} mix={}", settings.mode(), settings.duration(),
+                settings.concurrency(), settings.ratePerSecond(), settings.mix());
+        long start = System.nanoTime();
+        long end = start + settings.duration().toNanos();
+        Thread reporter = Thread.ofVirtual().name("load-reporter").start(() -> reportProgress(start, end));
+        try {
+            if (settings.mode() == LoadMode.OPEN) {
+                runOpen(start, end);
+            } else {
+                runClosed(start, end);
+            }
+        } finally {
+            reporter.interrupt();
+        }
+        return report(Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    void seed() {
+        int count = settings.seedUsers();
+        seedIds = new AtomicLongArray(count);
+        seedEmails = new AtomicReferenceArray<>(count);
+        SplittableRandom random = new SplittableRandom(settings.randomSeed());
+        AtomicInteger failures = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Semaphore permits = new Semaphore(settings.concurrency());
+            for (int i = 0; i < count; i++) {
+                int slot = i;
+                int age = 18 + random.nextInt(60);
+                permits.acquireUninterruptibly();
+                executor.submit(() -> {
+                    try {
+                        User user = userService.saveUser(name(slot), nextEmail(), age);
+                        seedIds.set(slot, user.getId());
+                        seedEmails.set(slot, user.getEmail());
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                        log.warn("Failed to seed load user: {}", e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        if (failures.get() > 0) {
+            throw new IllegalStateException("Failed to seed " + failures.get() + " of " + count + " load users");
+        }
+        keys = new ZipfianGenerator(count, settings.zipfTheta());
+        log.info("Seeded {} users for load run {}", count, runTag);
+    }
+
+    private void runClosed(long start, long end) {
+        long pacingNanos = settings.ratePerSecond() == 0 ? 0
+                : settings.concurrency() * 1_000_000_000L / settings.ratePerSecond();
+        long thinkNanos = settings.thinkTime().toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < settings.concurrency(); worker++) {
+                SplittableRandom random = new SplittableRandom(settings.randomSeed() + worker);
+                executor.submit(() -> {
+                    long intended = System.nanoTime();
+                    while (intended < end) {
+                        long began = pacingNanos > 0 ? intended : System.nanoTime();
+                        Operation operation = settings.mix().pick(random);
+                        Operation executed = execute(operation, random);
+                        long latency = System.nanoTime() - began;
+                        if (pacingNanos > 0 || thinkNanos == 0) {
+                            stats.get(executed).histogram.record(latency);
+                        } else {
+                            stats.get(executed).histogram.recordCorrected(latency, thinkNanos);
+                        }
+                        if (pacingNanos > 0) {
+                            intended += pacingNanos;
+                            parkUntil(intended);
+                        } else {
+                            if (thinkNanos > 0) LockSupport.parkNanos(thinkNanos);
+                            intended = System.nanoTime();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private void runOpen(long start, long end) {
+        long intervalNanos = 1_000_000_000L / settings.ratePerSecond();
+        Semaphore inFlight = new Semaphore(settings.concurrency());
+        SplittableRandom dispatcher = new SplittableRandom(settings.randomSeed());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long intended = start; intended < end; intended += intervalNanos) {
+                parkUntil(intended);
+                SplittableRandom random = dispatcher.split();
+                Operation operation = settings.mix().pick(random);
+                long scheduled = intended;
+                inFlight.acquireUninterruptibly();
+                executor.submit(() -> {
+                    try {
+                        Operation executed = execute(operation, random);
+                        stats.get(executed).histogram.record(System.nanoTime() - scheduled);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+    }
+
+    Operation execute(Operation operation, SplittableRandom random) {
+        Operation executed = operation;
+        try {
+            switch (operation) {
+                case CREATE -> create(random);
+                case READ -> userService.readUser(seedIds.get(keys.next(random)));
+                case UPDATE -> userService.updateUser(seedIds.get(keys.next(random)), null, null, 18 + random.nextInt(60));
+                case SEARCH -> userService.findUserByEmail(seedEmails.get(keys.next(random)));
+                case DELETE -> {
+                    Long id = created.poll();
+                    if (id == null) {
+                        executed = Operation.CREATE;
+                        create(random);
+                    } else {
+                        userService.removeUserById(id);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            stats.get(executed).errors.increment();
+            log.debug("Load operation {} failed: {}", executed, e.getMessage());
+        }
+        return executed;
+    }
+
+    private void create(SplittableRandom random) {
+        User user = userService.saveUser(name(random.nextInt(NAMES.length)), nextEmail(), 18 + random.nextInt(60));
+        created.add(user.getId());
+    }
+
+    private String nextEmail() {
+        return "load-" + runTag + "-" + emailSequence.incrementAndGet() + "@load.test";
+    }
+
+    private static String name(int seed) {
+        return NAMES[seed % NAMES.length];
+    }
+
+    private void reportProgress(long start, long end) {
+        long interval = settings.reportInterval() == null ? 0 : settings.reportInterval().toNanos();
+        if (interval <= 0) return;
+        long previous = 0;
+        for (long next = start + interval; next < end && !Thread.currentThread().isInterrupted(); next += interval) {
+            if (!parkUntil(next)) return;
+            long total = 0;
+            long errors = 0;
+            for (OperationStats s : stats.values()) {
+                total += s.histogram.count();
+                errors += s.errors.sum();
+            }
+            LatencyHistogram merged = merged();
+            log.info("Load progress {}s: {} ops/s, total={}, errors={}, p99={} ms",
+                    Duration.ofNanos(next - start).toSeconds(), (total - previous) * 1_000_000_000L / interval,
+                    total, errors, String.format("%.2f", merged.percentileMillis(99)));
+            previous = total;
+        }
+    }
+
+    private LatencyHistogram merged() {
+        LatencyHistogram merged = new LatencyHistogram();
+        stats.values().forEach(s -> merged.add(s.histogram));
+        return merged;
+    }
+
+    LoadReport report(Duration elapsed) {
+        double seconds = Math.max(0.001, elapsed.toNanos() / 1e9);
+        Map<Operation, LoadReport.OperationReport> operations = new EnumMap<>(Operation.class);
+        stats.forEach((operation, s) -> {
+            LatencyHistogram h = s.histogram;
+            if (h.count() == 0 && s.errors.sum() == 0) return;
+            operations.put(operation, new LoadReport.OperationReport(h.count(), s.errors.sum(), h.count() / seconds,
+                    h.percentileMillis(50), h.percentileMillis(90), h.percentileMillis(99), h.percentileMillis(99.9),
+                    h.maxNanos() / 1e6));
+        });
+        return new LoadReport(settings.mode(), elapsed, operations);
+    }
+
+    private static boolean parkUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) return false;
+        }
+        return true;
+    }
+
+    private static final class OperationStats {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,5 @@
+package org.example.load;
+
+public enum LoadMode {
+    OPEN, CLOSED
+}
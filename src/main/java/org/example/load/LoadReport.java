@@ -0,0 +1,30 @@
+package org.example.load;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Map;
+
+public record LoadReport(LoadMode mode, Duration elapsed, Map<Operation, OperationReport> operations) {
+
+    public record OperationReport(long count, long errors, double throughput, double p50Millis, double p90Millis,
+                                  double p99Millis, double p999Millis, double maxMillis) {
+    }
+
+    public long totalCount() {
+        return operations.values().stream().mapToLong(OperationReport::count).sum();
+    }
+
+    public long totalErrors() {
+        return operations.values().stream().mapToLong(OperationReport::errors).sum();
+    }
+
+    public void print(PrintStream out) {
+        out.printf("Mode=%s elapsed=%ss total=%d errors=%d throughput=%.1f ops/s%n", mode, elapsed.toSeconds(),
+                totalCount(), totalErrors(), totalCount() / Math.max(0.001, elapsed.toMillis() / 1000.0));
+        out.printf("%-8s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                "op", "count", "errors", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        operations.forEach((operation, r) -> out.printf("%-8s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                operation, r.count(), r.errors(), r.throughput(), r.p50Millis(), r.p90Millis(), r.p99Millis(),
+                r.p999Millis(), r.maxMillis()));
+    }
+}
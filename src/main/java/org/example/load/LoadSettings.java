@@ -0,0 +1,61 @@
+package org.example.load;
+
+import java.time.Duration;
+
+public record LoadSettings(LoadMode mode, int concurrency, int ratePerSecond, Duration duration, Duration reportInterval,
+                           OperationMix mix, int seedUsers, double zipfTheta, Duration thinkTime, long randomSeed) {
+
+    public LoadSettings {
+        if (concurrency < 1) throw new IllegalArgumentException("Concurrency must be positive");
+        if (ratePerSecond < 0) throw new IllegalArgumentException("Rate must not be negative");
+        if (duration == null || duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Duration must be positive");
+        }
+        if (seedUsers < 1) throw new IllegalArgumentException("At least one seed user is required");
+    }
+
+    public static LoadSettings defaults() {
+        return new LoadSettings(LoadMode.CLOSED, 32, 0, Duration.ofSeconds(60), Duration.ofSeconds(10),
+                OperationMix.defaults(), 1_000, 0.99, Duration.ZERO, 42L);
+    }
+
+    public LoadSettings withMode(LoadMode mode) {
+        return new LoadSettings(mode, concurrency, ratePerSecond, duration, reportInterval, mix, seedUsers, zipfTheta, thinkTime, randomSeed);
+    }
+
+    public LoadSettings withConcurrency(int concurrency) {
+        return new LoadSettings(mode, concurrency, ratePerSecond, duration, reportInterval, mix, seedUsers, zipfTheta, thinkTime, randomSeed);
+    }
+
+    public LoadSettings withRate(int ratePerSecond) {
+        return new LoadSettings(mode, concurrency, ratePerSecond, duration, reportInterval, mix, seedUsers, zipfTheta, thinkTime, randomSeed);
+    }
+
+    public LoadSettings withDuration(Duration duration) {
+        return new LoadSettings(mode, concurrency, ratePerSecond, duration, reportInterval, mix, seedUsers, zipfTheta, thinkTime, randomSeed);
+    }
+
+    public LoadSettings withReportInterval(Duration reportInterval) {
+        return new LoadSettings(mode, concurrency, ratePerSecond, duration, reportInterval, mix, seedUsers, zipfTheta, thinkTime, randomSeed);
+    }
+
+    public LoadSettings withMix(OperationMix mix) {
+        return new LoadSettings(mode, concurrency, ratePerSecond, duration, reportInterval, mix, seedUsers, zipfTheta, thinkTime, randomSeed);
+    }
+
+    public LoadSettings withSeedUsers(int seedUsers) {
+        return new LoadSettings(mode, concurrency, ratePerSecond, duration, reportInterval, mix, seedUsers, zipfTheta, thinkTime, randomSeed);
+    }
+
+    public LoadSettings withZipfTheta(double zipfTheta) {
+        return new LoadSettings(mode, concurrency, ratePerSecond, duration, reportInterval, mix, seedUsers, zipfTheta, thinkTime, randomSeed);
+    }
+
+    public LoadSettings withThinkTime(Duration thinkTime) {
+        return new LoadSettings(mode, concurrency, ratePerSecond, duration, reportInterval, mix, seedUsers, zipfTheta, thinkTime, randomSeed);
+    }
+
+    public LoadSettings withRandomSeed(long randomSeed) {
+        return new LoadSettings(mode, concurrency, ratePerSecond, duration, reportInterval, mix, seedUsers, zipfTheta, thinkTime, randomSeed);
+    }
+}
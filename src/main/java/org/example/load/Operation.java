@@ -0,0 +1,5 @@
+package org.example.load;
+
+public enum Operation {
+    CREATE, READ, UPDATE, DELETE, SEARCH
+}
@@ -0,0 +1,66 @@
+package org.example.load;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+public final class OperationMix {
+    private final Map<Operation, Integer> weights;
+    private final Operation[] operations;
+    private final int[] cumulative;
+    private final int total;
+
+    private OperationMix(Map<Operation, Integer> weights) {
+        this.weights = weights;
+        this.operations = weights.keySet().toArray(new Operation[0]);
+        this.cumulative = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += weights.get(operations[i]);
+            cumulative[i] = sum;
+        }
+        this.total = sum;
+    }
+
+    public static OperationMix parse(String spec) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Mix entry must look like read=70, got '" + part + "'");
+            }
+            Operation operation = Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT));
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Mix weight must not be negative: " + part);
+            }
+            if (weight > 0) weights.put(operation, weight);
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Mix must contain at least one positive weight");
+        }
+        return new OperationMix(weights);
+    }
+
+    public static OperationMix defaults() {
+        return parse("create=10,read=60,update=15,delete=5,search=10");
+    }
+
+    public Operation pick(RandomGenerator random) {
+        int roll = random.nextInt(total);
+        for (int i = 0; i < cumulative.length; i++) {
+            if (roll < cumulative[i]) return operations[i];
+        }
+        return operations[operations.length - 1];
+    }
+
+    public Map<Operation, Integer> weights() {
+        return Map.copyOf(weights);
+    }
+
+    @Override
+    public String toString() {
+        return weights.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.load;
+
+import java.util.random.RandomGenerator;
+
+public class ZipfianGenerator {
+    private final int items;
+    private final double theta;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+    private final double half;
+
+    public ZipfianGenerator(int items, double theta) {
+        if (items < 1) {
+            throw new IllegalArgumentException("Zipfian item count must be positive");
+        }
+        if (!(theta > 0 && theta < 1)) {
+            throw new IllegalArgumentException("Zipfian theta must be between 0 and 1");
+        }
+        this.items = items;
+        this.theta = theta;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zetaN = zeta(items, theta);
+        double zeta2 = zeta(2, theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetaN);
+        this.half = 1 + Math.pow(0.5, theta);
+    }
+
+    public int next(RandomGenerator random) {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) return 0;
+        if (uz < half) return Math.min(1, items - 1);
+        return Math.min(items - 1, (int) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    public int items() {
+        return items;
+    }
+
+    public double theta() {
+        return theta;
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
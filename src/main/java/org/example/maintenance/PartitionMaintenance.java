@@ -0,0 +1,144 @@
+package org.example.maintenance;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.example.util.Transactions.inTransaction;
+
+public class PartitionMaintenance {
+    private static final Logger log = LogManager.getLogger(PartitionMaintenance.class);
+    private static final String PREFIX = "users_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String LIST_PARTITIONS_SQL = """
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'public.users'::regclass
+            ORDER BY c.relname""";
+    private static final String DEFAULT_PARTITION_SQL = """
+            SELECT c.relname FROM pg_partitioned_table t
+            JOIN pg_class c ON c.oid = t.partdefid
+            WHERE t.partrelid = 'public.users'::regclass""";
+    private static final String USER_COLUMNS = "id, name, email, age, created_at, updated_at, deleted_at";
+
+    public record ArchivedPartition(String name, Path file, long rows) {
+    }
+
+    private final SessionFactory sessionFactory;
+
+    public PartitionMaintenance(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PREFIX + month.format(SUFFIX);
+    }
+
+    static YearMonth partitionMonth(String name) {
+        if (!name.startsWith(PREFIX)) return null;
+        try {
+            return YearMonth.parse(name.substring(PREFIX.length()), SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public List<String> listPartitions() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createNativeQuery(LIST_PARTITIONS_SQL, String.class).getResultList();
+        }
+    }
+
+    public List<String> ensureMonthlyPartitions(YearMonth from, int monthsAhead) {
+        List<String> existing = listPartitions();
+        List<String> created = new ArrayList<>();
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = from.plusMonths(i);
+            String name = partitionName(month);
+            if (existing.contains(name)) continue;
+            int moved = inTransaction(sessionFactory, "partition maintenance", session -> createPartition(session, name, month));
+            created.add(name);
+            log.info("Partition {} created, {} rows moved from the default partition", name, moved);
+        }
+        return created;
+    }
+
+    /**
+     * A new range can't be attached while the default partition holds rows in it, so those rows are moved into the
+     * new table first, under a lock that keeps new ones from landing there meanwhile.
+     */
+    private int createPartition(Session session, String name, YearMonth month) {
+        String range = "FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')";
+        String inRange = "created_at >= '" + month.atDay(1) + "' AND created_at < '" + month.plusMonths(1).atDay(1) + "'";
+        String defaultPartition = session.createNativeQuery(DEFAULT_PARTITION_SQL, String.class).uniqueResult();
+        if (defaultPartition != null) {
+            session.createNativeMutationQuery("LOCK TABLE public." + defaultPartition + " IN EXCLUSIVE MODE").executeUpdate();
+        }
+        boolean stranded = defaultPartition != null && !session.createNativeQuery(
+                "SELECT 1 FROM public." + defaultPartition + " WHERE " + inRange + " LIMIT 1", Integer.class).getResultList().isEmpty();
+        if (!stranded) {
+            session.createNativeMutationQuery("CREATE TABLE public." + name + " PARTITION OF public.users " + range).executeUpdate();
+            return 0;
+        }
+        session.createNativeMutationQuery("CREATE TABLE public." + name + " (LIKE public.users INCLUDING DEFAULTS)").executeUpdate();
+        int moved = session.createNativeMutationQuery("WITH moved AS (DELETE FROM public." + defaultPartition + " WHERE " + inRange
+                + " RETURNING " + USER_COLUMNS + ") INSERT INTO public." + name + " (" + USER_COLUMNS + ") SELECT "
+                + USER_COLUMNS + " FROM moved").executeUpdate();
+        session.createNativeMutationQuery("ALTER TABLE public.users ATTACH PARTITION public." + name + " " + range).executeUpdate();
+        // the lookup trigger fired for the delete from the default partition but not for the insert into the bare table
+        session.createNativeMutationQuery("INSERT INTO public.users_email_lookup (email_lower, user_id, created_at) "
+                + "SELECT lower(email), id, created_at FROM public." + name + " WHERE deleted_at IS NULL").executeUpdate();
+        return moved;
+    }
+
+    public List<ArchivedPartition> archiveOlderThan(YearMonth cutoff, Path directory) {
+        List<ArchivedPartition> archived = new ArrayList<>();
+        for (String name : listPartitions()) {
+            YearMonth month = partitionMonth(name);
+            if (month == null || !month.isBefore(cutoff)) continue;
+            archived.add(archive(name, directory));
+        }
+        return archived;
+    }
+
+    /**
+     * Export, lookup cleanup and drop commit together: the partition is locked against writes while it's exported,
+     * and a failed export rolls back with the partition still attached, so the next run simply retries it.
+     */
+    private ArchivedPartition archive(String name, Path directory) {
+        Path file = directory.resolve(name + ".csv.gz");
+        long rows = inTransaction(sessionFactory, "partition maintenance", session -> {
+            session.createNativeMutationQuery("LOCK TABLE public." + name + " IN SHARE MODE").executeUpdate();
+            long exported = session.doReturningWork(connection -> {
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+                    return connection.unwrap(PGConnection.class).getCopyAPI()
+                            .copyOut("COPY public." + name + " TO STDOUT WITH (FORMAT csv, HEADER)", out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Can't export partition " + name + " to " + file, e);
+                }
+            });
+            log.info("Partition {} exported to {} ({} rows)", name, file, exported);
+            session.createNativeMutationQuery(
+                    "DELETE FROM public.users_email_lookup l USING public." + name + " p WHERE l.user_id = p.id").executeUpdate();
+            session.createNativeMutationQuery("ALTER TABLE public.users DETACH PARTITION public." + name).executeUpdate();
+            session.createNativeMutationQuery("DROP TABLE public." + name).executeUpdate();
+            return exported;
+        });
+        log.info("Partition {} detached and dropped", name);
+        return new ArchivedPartition(name, file, rows);
+    }
+}
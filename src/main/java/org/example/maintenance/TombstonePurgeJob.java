@@ -0,0 +1,168 @@
+package org.example.maintenance;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.example.util.Transactions.safeRollback;
+
+public class TombstonePurgeJob implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(TombstonePurgeJob.class);
+    private static final String PURGE_BATCH_SQL = """
+            DELETE FROM users WHERE id IN (
+              SELECT id FROM users
+              WHERE deleted_at IS NOT NULL AND deleted_at < :cutoff
+              ORDER BY deleted_at
+              LIMIT :limit
+              FOR UPDATE SKIP LOCKED)""";
+
+    public record Settings(int batchSize,
+                           int maxBatchesPerRun,
+                           Duration retention,
+                           Duration pauseBetweenBatches,
+                           LocalTime windowStart,
+                           LocalTime windowEnd) {
+        public Settings {
+            if (batchSize <= 0 || maxBatchesPerRun <= 0) {
+                throw new IllegalArgumentException("Purge batch size and batch count must be positive");
+            }
+            if (retention.isNegative() || pauseBetweenBatches.isNegative()) {
+                throw new IllegalArgumentException("Purge retention and pause can't be negative");
+            }
+        }
+
+        public static Settings defaults() {
+            return new Settings(500, 200, Duration.ofDays(7), Duration.ofMillis(200),
+                    LocalTime.of(1, 0), LocalTime.of(5, 0));
+        }
+    }
+
+    private final SessionFactory sessionFactory;
+    private final Settings settings;
+    private final Clock clock;
+    private final AtomicLong purgedRows = new AtomicLong();
+    private final AtomicLong completedRuns = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+
+    public TombstonePurgeJob(SessionFactory sessionFactory, Settings settings) {
+        this(sessionFactory, settings, Clock.systemDefaultZone());
+    }
+
+    public TombstonePurgeJob(SessionFactory sessionFactory, Settings settings, Clock clock) {
+        this.sessionFactory = sessionFactory;
+        this.settings = settings;
+        this.clock = clock;
+    }
+
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tombstone-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runSafely, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Tombstone purge scheduled every {} ({})", interval, settings);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+        log.info("Tombstone purge stopped. Purged {} rows in {} runs", purgedRows.get(), completedRuns.get());
+    }
+
+    private void runSafely() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            log.warn("Tombstone purge run failed", e);
+        }
+    }
+
+    public int runOnce() {
+        if (!inWindow(LocalTime.now(clock))) {
+            log.debug("Outside purge window {}-{}, skipping", settings.windowStart(), settings.windowEnd());
+            return 0;
+        }
+        OffsetDateTime cutoff = OffsetDateTime.ofInstant(Instant.now(clock).minus(settings.retention()), clock.getZone());
+        int total = 0;
+        for (int batch = 0; batch < settings.maxBatchesPerRun(); batch++) {
+            int deleted = purgeBatch(cutoff);
+            total += deleted;
+            if (deleted < settings.batchSize() || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (!pause()) {
+                break;
+            }
+        }
+        purgedRows.addAndGet(total);
+        completedRuns.incrementAndGet();
+        if (total > 0) {
+            log.info("Purged {} tombstoned users older than {}", total, cutoff);
+        }
+        return total;
+    }
+
+    boolean inWindow(LocalTime now) {
+        LocalTime start = settings.windowStart();
+        LocalTime end = settings.windowEnd();
+        if (start.equals(end)) return true;
+        if (start.isBefore(end)) {
+            return !now.isBefore(start) && now.isBefore(end);
+        }
+        return !now.isBefore(start) || now.isBefore(end);
+    }
+
+    private int purgeBatch(OffsetDateTime cutoff) {
+        Transaction transaction = null;
+        try (Session session = sessionFactory.openSession()) {
+            transaction = session.beginTransaction();
+            int deleted = session.createNativeMutationQuery(PURGE_BATCH_SQL)
+                    .setParameter("cutoff", cutoff)
+                    .setParameter("limit", settings.batchSize())
+                    .executeUpdate();
+            transaction.commit();
+            return deleted;
+        } catch (HibernateException e) {
+            log.error("Hibernate error in purgeBatch(cutoff={})", cutoff, e);
+            throw e;
+        } finally {
+            safeRollback(transaction);
+        }
+    }
+
+    private boolean pause() {
+        if (settings.pauseBetweenBatches().isZero()) return true;
+        try {
+            Thread.sleep(settings.pauseBetweenBatches().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public long getPurgedRows() {
+        return purgedRows.get();
+    }
+
+    public long getCompletedRuns() {
+        return completedRuns.get();
+    }
+}
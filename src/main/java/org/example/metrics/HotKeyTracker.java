@@ -0,0 +1,67 @@
+package org.example.metrics;
+
+import org.example.collections.CountMinSketch;
+import org.example.collections.SpaceSavingTopK;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+public class HotKeyTracker<K> {
+    private final String operation;
+    private final ToLongFunction<K> hasher;
+    private final CountMinSketch sketch;
+    private final SpaceSavingTopK<K> topK;
+    private final LongAdder observations = new LongAdder();
+    private volatile long agedAt;
+
+    public HotKeyTracker(String operation, ToLongFunction<K> hasher, int sketchWidth, int topK) {
+        this.operation = operation;
+        this.hasher = hasher;
+        this.sketch = new CountMinSketch(sketchWidth, 10L * sketchWidth);
+        this.topK = new SpaceSavingTopK<>(topK);
+    }
+
+    public int record(K key) {
+        if (key == null) return 0;
+        observations.increment();
+        int estimate = sketch.add(hasher.applyAsLong(key));
+        long resets = sketch.getResets();
+        if (resets != agedAt) {
+            synchronized (this) {
+                if (resets != agedAt) {
+                    topK.halve();
+                    agedAt = resets;
+                }
+            }
+        }
+        topK.offer(key, estimate);
+        return estimate;
+    }
+
+    public int estimate(K key) {
+        return key == null ? 0 : sketch.estimate(hasher.applyAsLong(key));
+    }
+
+    public List<SpaceSavingTopK.Entry<K>> top(int limit) {
+        return topK.top(limit);
+    }
+
+    public synchronized void reset() {
+        sketch.clear();
+        topK.clear();
+        observations.reset();
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getObservations() {
+        return observations.sum();
+    }
+
+    public CountMinSketch getSketch() {
+        return sketch;
+    }
+}
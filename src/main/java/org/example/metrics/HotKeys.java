@@ -0,0 +1,155 @@
+package org.example.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.collections.EmailHash;
+import org.example.collections.SpaceSavingTopK;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frequency of the keys behind {@code UserService.readUser}, {@code updateUser} and {@code mailValidAndUnique}.
+ * Each operation feeds a decaying count-min sketch and a space-saving top-K; the read sketch doubles as a cache
+ * admission signal. Emails are tracked by {@link EmailHash} only, so reports and JMX never expose an address.
+ */
+public class HotKeys implements HotKeysMXBean {
+    public static final String OBJECT_NAME = "org.example:type=HotKeys";
+    public static final String READ_USER = "readUser";
+    public static final String UPDATE_USER = "updateUser";
+    public static final String MAIL_CHECK = "mailValidAndUnique";
+    private static final Logger log = LogManager.getLogger(HotKeys.class);
+    private static final HotKeys DISABLED = new HotKeys();
+
+    private final HotKeyTracker<Long> reads;
+    private final HotKeyTracker<Long> updates;
+    private final HotKeyTracker<Long> mailChecks;
+    private final int admissionThreshold;
+
+    private HotKeys() {
+        this.reads = null;
+        this.updates = null;
+        this.mailChecks = null;
+        this.admissionThreshold = 0;
+    }
+
+    /**
+     * @param admissionThreshold reads a key needs within the sketch's window before {@link #admit} lets it into a
+     *                           cache; 1 admits everything
+     */
+    public HotKeys(int sketchWidth, int topK, int admissionThreshold) {
+        if (admissionThreshold < 1) {
+            throw new IllegalArgumentException("Admission threshold must be positive");
+        }
+        this.reads = new HotKeyTracker<>(READ_USER, Long::longValue, sketchWidth, topK);
+        this.updates = new HotKeyTracker<>(UPDATE_USER, Long::longValue, sketchWidth, topK);
+        this.mailChecks = new HotKeyTracker<>(MAIL_CHECK, Long::longValue, sketchWidth, topK);
+        this.admissionThreshold = admissionThreshold;
+    }
+
+    public static HotKeys disabled() {
+        return DISABLED;
+    }
+
+    public static HotKeys standard() {
+        return new HotKeys(Integer.getInteger("userapp.hotKeys.width", 8_192), Integer.getInteger("userapp.hotKeys.topK", 32),
+                Integer.getInteger("userapp.hotKeys.admission", 2));
+    }
+
+    public boolean isEnabled() {
+        return reads != null;
+    }
+
+    public void recordRead(Long id) {
+        if (reads != null) reads.record(id);
+    }
+
+    public void recordUpdate(Long id) {
+        if (updates != null) updates.record(id);
+    }
+
+    public void recordMailCheck(String email) {
+        if (mailChecks != null && email != null) mailChecks.record(EmailHash.of(email));
+    }
+
+    public boolean admit(Long id) {
+        return reads == null || reads.estimate(id) >= admissionThreshold;
+    }
+
+    public List<HotKeyTracker<?>> trackers() {
+        return reads == null ? List.of() : List.of(reads, updates, mailChecks);
+    }
+
+    public List<String> report(int limit) {
+        List<String> lines = new ArrayList<>();
+        for (HotKeyTracker<?> tracker : trackers()) {
+            lines.add(tracker.getOperation() + " (" + tracker.getObservations() + " calls):");
+            for (String key : format(tracker.top(limit))) {
+                lines.add("  " + key);
+            }
+        }
+        return lines;
+    }
+
+    public void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(this, name);
+            log.info("Hot key analytics registered as {}", OBJECT_NAME);
+        } catch (JMException e) {
+            log.warn("Can't register hot key analytics MBean", e);
+        }
+    }
+
+    @Override
+    public String[] getOperations() {
+        return trackers().stream().map(HotKeyTracker::getOperation).toArray(String[]::new);
+    }
+
+    @Override
+    public long getObservations(String operation) {
+        return tracker(operation).getObservations();
+    }
+
+    @Override
+    public String[] topKeys(String operation, int limit) {
+        return format(tracker(operation).top(limit)).toArray(String[]::new);
+    }
+
+    @Override
+    public long estimate(String operation, String key) {
+        tracker(operation);
+        if (MAIL_CHECK.equals(operation)) {
+            return mailChecks.estimate(EmailHash.of(key));
+        }
+        return (READ_USER.equals(operation) ? reads : updates).estimate(Long.valueOf(key.trim()));
+    }
+
+    @Override
+    public int getAdmissionThreshold() {
+        return admissionThreshold;
+    }
+
+    @Override
+    public void reset() {
+        trackers().forEach(HotKeyTracker::reset);
+        log.info("Hot key analytics reset");
+    }
+
+    private HotKeyTracker<?> tracker(String operation) {
+        for (HotKeyTracker<?> tracker : trackers()) {
+            if (tracker.getOperation().equals(operation)) return tracker;
+        }
+        throw new IllegalArgumentException("Unknown operation " + operation);
+    }
+
+    private static List<String> format(List<? extends SpaceSavingTopK.Entry<?>> entries) {
+        return entries.stream().map(e -> e.key() + "=" + e.count() + " (+-" + e.error() + ")").toList();
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.metrics;
+
+public interface HotKeysMXBean {
+    String[] getOperations();
+
+    long getObservations(String operation);
+
+    /**
+     * The hottest keys of an operation as {@code key=count (+-error)}, hottest first; mail checks are keyed by
+     * {@code EmailHash}.
+     */
+    String[] topKeys(String operation, int limit);
+
+    long estimate(String operation, String key);
+
+    int getAdmissionThreshold();
+
+    void reset();
+}
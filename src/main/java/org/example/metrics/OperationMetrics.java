@@ -0,0 +1,66 @@
+package org.example.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class OperationMetrics {
+    /**
+     * {@code REJECTED} calls failed on their arguments before doing real work; they are counted apart and left out of
+     * the calls and latency figures.
+     */
+    public enum Outcome {
+        SUCCESS, FAILURE, TIMEOUT, REJECTED
+    }
+
+    public record Snapshot(long calls, long failures, long timeouts, long rejected, long totalNanos, long maxNanos) {
+        public double meanMillis() {
+            return calls == 0 ? 0 : totalNanos / 1_000_000.0 / calls;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Counters> operations = new ConcurrentHashMap<>();
+
+    public void record(String operation, long nanos, Outcome outcome) {
+        Counters counters = operations.computeIfAbsent(operation, k -> new Counters());
+        if (outcome == Outcome.REJECTED) {
+            counters.rejected.increment();
+            return;
+        }
+        counters.calls.increment();
+        counters.totalNanos.add(nanos);
+        counters.maxNanos.accumulate(nanos);
+        if (outcome == Outcome.FAILURE) {
+            counters.failures.increment();
+        } else if (outcome == Outcome.TIMEOUT) {
+            counters.timeouts.increment();
+        }
+    }
+
+    public Snapshot snapshot(String operation) {
+        Counters counters = operations.get(operation);
+        return counters == null ? new Snapshot(0, 0, 0, 0, 0, 0) : counters.snapshot();
+    }
+
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> result = new TreeMap<>();
+        operations.forEach((operation, counters) -> result.put(operation, counters.snapshot()));
+        return result;
+    }
+
+    private static final class Counters {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private Snapshot snapshot() {
+            return new Snapshot(calls.sum(), failures.sum(), timeouts.sum(), rejected.sum(), totalNanos.sum(),
+                    maxNanos.get());
+        }
+    }
+}
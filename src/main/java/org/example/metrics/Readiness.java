@@ -0,0 +1,88 @@
+package org.example.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Readiness implements ReadinessMXBean {
+    public static final String OBJECT_NAME = "org.example:type=Readiness";
+    private static final Logger log = LogManager.getLogger(Readiness.class);
+
+    public enum Phase {
+        STARTING, WARMING_UP, READY
+    }
+
+    private final long startedNanos = System.nanoTime();
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private final AtomicLong firstRequestNanos = new AtomicLong(-1);
+    private volatile Phase phase = Phase.STARTING;
+    private volatile long readyNanos;
+
+    public void markWarmingUp() {
+        if (phase == Phase.READY) {
+            throw new IllegalStateException("Already ready");
+        }
+        phase = Phase.WARMING_UP;
+    }
+
+    public void markReady() {
+        if (phase == Phase.READY) return;
+        readyNanos = System.nanoTime();
+        phase = Phase.READY;
+        ready.countDown();
+        log.info("Ready after {}ms", getMillisToReady());
+    }
+
+    public boolean awaitReady(Duration timeout) throws InterruptedException {
+        return ready.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Keeps only the first latency reported after {@link #markReady}; earlier and later calls are ignored.
+     */
+    public boolean recordFirstRequest(long nanos) {
+        if (phase != Phase.READY || !firstRequestNanos.compareAndSet(-1, Math.max(0, nanos))) return false;
+        log.info("First request after readiness took {}ms", getFirstRequestMillis());
+        return true;
+    }
+
+    public void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            log.warn("Can't register readiness MBean", e);
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return phase == Phase.READY;
+    }
+
+    @Override
+    public String getPhase() {
+        return phase.name();
+    }
+
+    @Override
+    public long getMillisToReady() {
+        return isReady() ? TimeUnit.NANOSECONDS.toMillis(readyNanos - startedNanos) : -1;
+    }
+
+    @Override
+    public double getFirstRequestMillis() {
+        long nanos = firstRequestNanos.get();
+        return nanos < 0 ? -1 : nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.metrics;
+
+public interface ReadinessMXBean {
+    boolean isReady();
+
+    String getPhase();
+
+    /**
+     * Time from construction (app start) to {@link Readiness#markReady}, or -1 while not ready.
+     */
+    long getMillisToReady();
+
+    /**
+     * Latency of the first call served after readiness, or -1 before one was recorded.
+     */
+    double getFirstRequestMillis();
+}
@@ -0,0 +1,10 @@
+package org.example.outbox;
+
+import org.example.domain.OutboxEvent;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface OutboxPublisher {
+    void publish(List<OutboxEvent> events);
+}
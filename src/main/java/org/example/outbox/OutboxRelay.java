@@ -0,0 +1,158 @@
+package org.example.outbox;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.domain.OutboxEvent;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.example.util.Transactions.safeRollback;
+
+public class OutboxRelay implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(OutboxRelay.class);
+    private static final String CLAIM_BATCH_SQL =
+            "SELECT * FROM users_outbox ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED";
+
+    private final SessionFactory sessionFactory;
+    private final OutboxPublisher publisher;
+    private final int batchSize;
+    private final Duration pollInterval;
+
+    private final AtomicLong relayedEvents = new AtomicLong();
+    private final AtomicLong relayedBatches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public OutboxRelay(SessionFactory sessionFactory, OutboxPublisher publisher, int batchSize, Duration pollInterval) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Outbox batch size must be positive");
+        }
+        if (pollInterval == null || pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("Outbox poll interval must be positive");
+        }
+        this.sessionFactory = sessionFactory;
+        this.publisher = publisher;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        worker = new Thread(this::loop, "outbox-relay");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Outbox relay started (batchSize={}, pollInterval={})", batchSize, pollInterval);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) return;
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(pollInterval.toMillis() + 5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Outbox relay stopped. Relayed {} events in {} batches", relayedEvents.get(), relayedBatches.get());
+    }
+
+    private void loop() {
+        while (running) {
+            int drained;
+            try {
+                drained = drainOnce();
+            } catch (RuntimeException e) {
+                failedBatches.incrementAndGet();
+                log.warn("Outbox relay batch failed, will retry after {}", pollInterval, e);
+                drained = 0;
+            }
+            if (drained < batchSize && !sleep()) {
+                return;
+            }
+        }
+    }
+
+    private boolean sleep() {
+        try {
+            Thread.sleep(pollInterval.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public int drainOnce() {
+        Transaction transaction = null;
+        try (Session session = sessionFactory.openSession()) {
+            transaction = session.beginTransaction();
+            List<OutboxEvent> batch = session.createNativeQuery(CLAIM_BATCH_SQL, OutboxEvent.class)
+                    .setParameter("limit", batchSize)
+                    .getResultList();
+            if (batch.isEmpty()) {
+                transaction.commit();
+                lagMillis.set(0);
+                return 0;
+            }
+
+            publisher.publish(batch);
+
+            List<Long> ids = new ArrayList<>(batch.size());
+            for (OutboxEvent event : batch) {
+                ids.add(event.getId());
+            }
+            session.createMutationQuery("delete from OutboxEvent e where e.id in :ids")
+                    .setParameterList("ids", ids)
+                    .executeUpdate();
+            transaction.commit();
+
+            lagMillis.set(Math.max(0, System.currentTimeMillis() - batch.get(0).getCreatedAt().getTime()));
+            relayedEvents.addAndGet(batch.size());
+            relayedBatches.incrementAndGet();
+            log.debug("Relayed {} outbox events, lag={}ms", batch.size(), lagMillis.get());
+            return batch.size();
+        } catch (HibernateException e) {
+            log.error("Hibernate error in outbox drainOnce()", e);
+            throw e;
+        } finally {
+            safeRollback(transaction);
+        }
+    }
+
+    public long pendingLagMillis() {
+        try (Session session = sessionFactory.openSession()) {
+            Long oldest = session.createNativeQuery(
+                            "SELECT (extract(epoch FROM min(created_at)) * 1000)::bigint FROM users_outbox", Long.class)
+                    .getSingleResult();
+            return oldest == null ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+        }
+    }
+
+    public long getRelayedEvents() {
+        return relayedEvents.get();
+    }
+
+    public long getRelayedBatches() {
+        return relayedBatches.get();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.get();
+    }
+
+    public long getLagMillis() {
+        return lagMillis.get();
+    }
+}
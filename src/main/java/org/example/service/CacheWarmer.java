@@ -0,0 +1,100 @@
+package org.example.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.cache.OffHeapUserStore;
+import org.example.concurrency.Deadline;
+import org.example.dao.UserDaoImpl;
+import org.example.domain.User;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Preloads the most recently updated users into a cold cache after startup. Read frequency doesn't survive a
+ * restart, so recency is the only signal available; the loop runs on its own thread while the app serves traffic,
+ * and stops at the first of: {@code maxUsers} rows, the time budget, or the cache reaching {@code maxFill}.
+ */
+public class CacheWarmer {
+    private static final Logger log = LogManager.getLogger(CacheWarmer.class);
+
+    public enum StopReason {
+        EXHAUSTED, COUNT_LIMIT, TIME_BUDGET, CACHE_FULL, FAILED
+    }
+
+    public record WarmUpReport(long scanned, long loaded, long skipped, Duration elapsed, StopReason stopReason) {
+    }
+
+    private final UserDaoImpl userDao;
+    private final OffHeapUserStore cache;
+    private final int maxUsers;
+    private final Duration budget;
+    private final double maxFill;
+
+    public CacheWarmer(UserDaoImpl userDao, OffHeapUserStore cache, int maxUsers, Duration budget) {
+        this(userDao, cache, maxUsers, budget, 0.8);
+    }
+
+    /**
+     * @param maxFill share of the cache's capacity the warm-up may use, leaving the rest to live traffic
+     */
+    public CacheWarmer(UserDaoImpl userDao, OffHeapUserStore cache, int maxUsers, Duration budget, double maxFill) {
+        if (maxUsers <= 0) {
+            throw new IllegalArgumentException("Warm-up user count must be positive");
+        }
+        if (budget == null || budget.isNegative() || budget.isZero()) {
+            throw new IllegalArgumentException("Warm-up time budget must be positive");
+        }
+        if (!(maxFill > 0 && maxFill <= 1)) {
+            throw new IllegalArgumentException("Warm-up fill ratio must be in (0, 1]");
+        }
+        this.userDao = userDao;
+        this.cache = cache;
+        this.maxUsers = maxUsers;
+        this.budget = budget;
+        this.maxFill = maxFill;
+    }
+
+    public CompletableFuture<WarmUpReport> start() {
+        CompletableFuture<WarmUpReport> result = new CompletableFuture<>();
+        Thread worker = new Thread(() -> result.complete(run()), "cache-warmer");
+        worker.setDaemon(true);
+        worker.start();
+        return result;
+    }
+
+    public WarmUpReport run() {
+        long start = System.nanoTime();
+        Deadline deadline = Deadline.after(budget);
+        long fillLimit = (long) (cache.getCapacityBytes() * maxFill);
+        long[] loaded = new long[1];
+        long[] skipped = new long[1];
+        StopReason[] stop = {null};
+        cache.beginWarmUp();
+        try {
+            long scanned = deadline.call(() -> userDao.scanRecentlyUpdated(maxUsers, user -> {
+                if (deadline.isExpired()) {
+                    stop[0] = StopReason.TIME_BUDGET;
+                    return false;
+                }
+                if (cache.warm(user)) loaded[0]++;
+                else skipped[0]++;
+                if (cache.getUsedBytes() >= fillLimit) {
+                    stop[0] = StopReason.CACHE_FULL;
+                    return false;
+                }
+                return true;
+            }));
+            if (stop[0] == null) stop[0] = scanned >= maxUsers ? StopReason.COUNT_LIMIT : StopReason.EXHAUSTED;
+        } catch (RuntimeException e) {
+            stop[0] = deadline.isExpired() ? StopReason.TIME_BUDGET : StopReason.FAILED;
+            if (stop[0] == StopReason.FAILED) log.warn("Cache warm-up failed", e);
+        } finally {
+            cache.endWarmUp();
+        }
+        WarmUpReport report = new WarmUpReport(loaded[0] + skipped[0], loaded[0], skipped[0],
+                Duration.ofNanos(System.nanoTime() - start), stop[0]);
+        log.info("Cache warm-up finished: {}", report);
+        return report;
+    }
+}
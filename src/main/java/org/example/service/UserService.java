@@ -5,28 +5,81 @@ import jakarta.validation.Validation;
 import jakarta.validation.Validator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.example.dao.UserDaoImpl;
+import org.example.cache.OffHeapUserStore;
+import org.example.concurrency.Deadline;
+import org.example.concurrency.SingleFlight;
+import org.example.dao.UnitOfWork;
+import org.example.dao.UserDao;
+import org.example.domain.UpsertResult;
 import org.example.domain.User;
+import org.example.domain.UserView;
+import org.example.jfr.ServiceOperationEvent;
+import org.example.metrics.HotKeys;
+import org.example.metrics.Readiness;
 import org.hibernate.*;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 
 public class UserService {
     private static final Logger log = LogManager.getLogger(UserService.class);
+    private static final Duration MAX_COALESCED_WAIT = Duration.ofSeconds(5);
     private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
-    private final UserDaoImpl userDao;
+    private final UserDao userDao;
+    private final OffHeapUserStore cache;
+    private final UnitOfWork unitOfWork;
+    private final HotKeys hotKeys;
+    private final Readiness readiness;
+    private final SingleFlight<Long, User> readFlight = new SingleFlight<>("readUser", MAX_COALESCED_WAIT);
+    private final SingleFlight<Long, UserView> viewFlight = new SingleFlight<>("viewUser", MAX_COALESCED_WAIT);
+    private final SingleFlight<String, Boolean> mailCheckFlight = new SingleFlight<>("mailUniqueCheck", MAX_COALESCED_WAIT);
 
-    public UserService(UserDaoImpl userDao) {
+    public UserService(UserDao userDao) {
+        this(userDao, null);
+    }
+
+    public UserService(UserDao userDao, OffHeapUserStore cache) {
+        this(userDao, cache, UnitOfWork.none());
+    }
+
+    public UserService(UserDao userDao, OffHeapUserStore cache, UnitOfWork unitOfWork) {
+        this(userDao, cache, unitOfWork, HotKeys.disabled());
+    }
+
+    public UserService(UserDao userDao, OffHeapUserStore cache, UnitOfWork unitOfWork, HotKeys hotKeys) {
+        this(userDao, cache, unitOfWork, hotKeys, null);
+    }
+
+    public UserService(UserDao userDao, OffHeapUserStore cache, UnitOfWork unitOfWork, HotKeys hotKeys, Readiness readiness) {
         this.userDao = userDao;
+        this.cache = cache;
+        this.unitOfWork = unitOfWork;
+        this.hotKeys = hotKeys;
+        this.readiness = readiness;
     }
 
     public User saveUser(String name, String email, Integer age) {
+        return saveUser(name, email, age, Deadline.current());
+    }
+
+    public User saveUser(String name, String email, Integer age, Deadline deadline) {
+        return traced("saveUser", email, () -> doSaveUser(name, email, age, deadline));
+    }
+
+    private User doSaveUser(String name, String email, Integer age, Deadline deadline) {
+        String normalized = email.trim().toLowerCase();
         try {
-            email = email.trim().toLowerCase();
-            mailValidAndUnique(email);
-            User user = new User(name, email, age);
-            userDao.create(user);
-            return user;
+            return deadline.call(() -> unitOfWork.execute(() -> {
+                mailValidAndUnique(normalized);
+                User user = new User(name, normalized, age);
+                userDao.create(user);
+                return user;
+            }));
         } catch (IllegalArgumentException | IllegalStateException e) {
             throw e;
         } catch (HibernateException e) {
@@ -36,8 +89,21 @@ public class UserService {
     }
 
     public User readUser(Long id) {
+        return readUser(id, Deadline.current());
+    }
+
+    public User readUser(Long id, Deadline deadline) {
+        return traced("readUser", id, () -> doReadUser(id, deadline));
+    }
+
+    private User doReadUser(Long id, Deadline deadline) {
+        hotKeys.recordRead(id);
+        if (cache != null && id != null) {
+            User cached = cache.get(id);
+            if (cached != null) return cached;
+        }
         try {
-            return userDao.read(id);
+            return deadline.call(() -> readFlight.execute(id, () -> readThrough(id))).copy();
         } catch (IllegalArgumentException | IllegalStateException e) {
             throw e;
         } catch (HibernateException e) {
@@ -46,7 +112,82 @@ public class UserService {
         }
     }
 
+    private User readThrough(Long id) {
+        long since = cache == null ? 0 : cache.invalidationStamp();
+        User user = userDao.read(id);
+        if (cache != null && hotKeys.admit(id)) cache.putIfNotInvalidatedSince(user, since);
+        return user;
+    }
+
+    public Optional<User> findUser(Long id) {
+        hotKeys.recordRead(id);
+        if (cache != null && id != null) {
+            User cached = cache.get(id);
+            if (cached != null) return Optional.of(cached);
+        }
+        try {
+            long since = cache == null ? 0 : cache.invalidationStamp();
+            Optional<User> user = userDao.findById(id);
+            if (cache != null && hotKeys.admit(id)) user.ifPresent(found -> cache.putIfNotInvalidatedSince(found, since));
+            return user;
+        } catch (HibernateException e) {
+            log.error("DB error on findUser id={}", id, e);
+            throw dbError("reading", e);
+        }
+    }
+
+    public Optional<User> findUserByEmail(String email) {
+        try {
+            return userDao.findByEmail(email.trim().toLowerCase());
+        } catch (HibernateException e) {
+            log.error("DB error on findUserByEmail email={}", email, e);
+            throw dbError("reading", e);
+        }
+    }
+
+    public UserView viewUser(Long id) {
+        return viewUser(id, Deadline.current());
+    }
+
+    public UserView viewUser(Long id, Deadline deadline) {
+        return traced("viewUser", id, () -> doViewUser(id, deadline));
+    }
+
+    private UserView doViewUser(Long id, Deadline deadline) {
+        hotKeys.recordRead(id);
+        if (cache != null && id != null) {
+            User cached = cache.get(id);
+            if (cached != null) return UserView.of(cached);
+        }
+        try {
+            return deadline.call(() -> viewFlight.execute(id, () -> userDao.readView(id)));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw e;
+        } catch (HibernateException e) {
+            log.error("DB error on viewUser id={}", id, e);
+            throw dbError("reading", e);
+        }
+    }
+
     public User updateUser(Long id, String name, String email, Integer age) {
+        return updateUser(id, name, email, age, Deadline.current());
+    }
+
+    public User updateUser(Long id, String name, String email, Integer age, Deadline deadline) {
+        return traced("updateUser", id, () -> doUpdateUser(id, name, email, age, deadline));
+    }
+
+    private User doUpdateUser(Long id, String name, String email, Integer age, Deadline deadline) {
+        hotKeys.recordUpdate(id);
+        try {
+            return deadline.call(() -> unitOfWork.execute(() -> applyUpdate(id, name, email, age)));
+        } catch (HibernateException e) {
+            log.error("DB error on updateUser id={}", id, e);
+            throw dbError("updating", e);
+        }
+    }
+
+    private User applyUpdate(Long id, String name, String email, Integer age) {
         User user;
         try {
             user = userDao.read(id);
@@ -66,7 +207,9 @@ public class UserService {
         if (age != null) user.setAge(age);
 
         try {
-            return userDao.update(user);
+            User updated = userDao.update(user);
+            invalidateAfterCommit(id);
+            return updated;
         } catch (IllegalArgumentException | IllegalStateException e) {
             throw e;
         } catch (HibernateException e) {
@@ -75,9 +218,71 @@ public class UserService {
         }
     }
 
+    public UpsertResult upsertByEmail(String name, String email, Integer age) {
+        return upsertByEmail(name, email, age, Deadline.current());
+    }
+
+    public UpsertResult upsertByEmail(String name, String email, Integer age, Deadline deadline) {
+        return traced("upsertByEmail", email, () -> {
+            User user = normalizedForUpsert(name, email, age);
+            return doUpsert(deadline, () -> List.of(userDao.upsert(user))).get(0);
+        });
+    }
+
+    public List<UpsertResult> upsertAll(List<User> users) {
+        return upsertAll(users, Deadline.current());
+    }
+
+    public List<UpsertResult> upsertAll(List<User> users, Deadline deadline) {
+        return traced("upsertAll", users.size(), () -> {
+            List<User> normalized = new ArrayList<>(users.size());
+            for (User user : users) {
+                if (user == null) throw new IllegalArgumentException("That field can't be empty");
+                normalized.add(normalizedForUpsert(user.getName(), user.getEmail(), user.getAge()));
+            }
+            return doUpsert(deadline, () -> userDao.upsertAll(normalized));
+        });
+    }
+
+    private User normalizedForUpsert(String name, String email, Integer age) {
+        if (email == null) throw new IllegalArgumentException("That field can't be empty");
+        String normalized = email.trim().toLowerCase();
+        mailValid(normalized);
+        return new User(name, normalized, age);
+    }
+
+    private List<UpsertResult> doUpsert(Deadline deadline, Supplier<List<UpsertResult>> upsert) {
+        try {
+            List<UpsertResult> results = deadline.call(upsert);
+            for (UpsertResult result : new LinkedHashSet<>(results)) {
+                if (result.outcome() != UpsertResult.Outcome.UPDATED) continue;
+                hotKeys.recordUpdate(result.user().getId());
+                invalidateAfterCommit(result.user().getId());
+            }
+            return results;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw e;
+        } catch (HibernateException e) {
+            log.error("DB error on upsert", e);
+            throw dbError("upserting", e);
+        }
+    }
+
     public void removeUserById(Long id) {
+        removeUserById(id, Deadline.current());
+    }
+
+    public void removeUserById(Long id, Deadline deadline) {
+        traced("removeUserById", id, () -> {
+            doRemoveUserById(id, deadline);
+            return null;
+        });
+    }
+
+    private void doRemoveUserById(Long id, Deadline deadline) {
         try {
-            userDao.deleteById(id);
+            deadline.run(() -> userDao.deleteById(id));
+            if (id != null) invalidateAfterCommit(id);
         } catch (IllegalArgumentException | IllegalStateException e) {
             throw e;
         } catch (HibernateException e) {
@@ -87,14 +292,26 @@ public class UserService {
     }
 
     public void removeUserByEmail(String email) {
+        removeUserByEmail(email, Deadline.current());
+    }
+
+    public void removeUserByEmail(String email, Deadline deadline) {
+        traced("removeUserByEmail", email, () -> {
+            doRemoveUserByEmail(email, deadline);
+            return null;
+        });
+    }
+
+    private void doRemoveUserByEmail(String email, Deadline deadline) {
+        String normalized = email.trim().toLowerCase();
         try {
-            email = email.trim().toLowerCase();
-            mailValid(email);
-            userDao.deleteByEmail(email);
+            mailValid(normalized);
+            deadline.run(() -> userDao.deleteByEmail(normalized));
+            if (cache != null) UnitOfWork.afterCommit(() -> cache.invalidateByEmail(normalized));
         } catch (IllegalArgumentException | IllegalStateException e) {
             throw e;
         } catch (HibernateException e) {
-            log.error("DB error on removeUserByEmail email={}", email, e);
+            log.error("DB error on removeUserByEmail email={}", normalized, e);
             throw dbError("deleting", e);
         }
     }
@@ -110,11 +327,52 @@ public class UserService {
     public void mailValidAndUnique(String email) {
         String normalizedEmail = email.trim().toLowerCase();
         mailValid(normalizedEmail);
-        if (!userDao.mailUniqueCheck(normalizedEmail)) {
+        hotKeys.recordMailCheck(normalizedEmail);
+        // inside a unit of work the answer depends on that transaction's own writes, so it can't be shared
+        boolean unique = UnitOfWork.isActive() ? userDao.mailUniqueCheck(normalizedEmail)
+                : mailCheckFlight.execute(normalizedEmail, () -> userDao.mailUniqueCheck(normalizedEmail));
+        if (!unique) {
             throw new IllegalArgumentException("User with " + email + " already created");
         }
     }
 
+    public HotKeys getHotKeys() {
+        return hotKeys;
+    }
+
+    public SingleFlight<Long, User> getReadFlight() {
+        return readFlight;
+    }
+
+    public SingleFlight<Long, UserView> getViewFlight() {
+        return viewFlight;
+    }
+
+    public SingleFlight<String, Boolean> getMailCheckFlight() {
+        return mailCheckFlight;
+    }
+
+    private void invalidateAfterCommit(long id) {
+        if (cache != null) UnitOfWork.afterCommit(() -> cache.invalidate(id));
+    }
+
+    private <T> T traced(String operation, Object key, Supplier<T> call) {
+        ServiceOperationEvent event = ServiceOperationEvent.start(operation);
+        long start = System.nanoTime();
+        String outcome = "FAILURE";
+        try {
+            T result = call.get();
+            outcome = "SUCCESS";
+            return result;
+        } catch (IllegalArgumentException e) {
+            outcome = "REJECTED";
+            throw e;
+        } finally {
+            event.finish(key, outcome);
+            if (readiness != null) readiness.recordFirstRequest(System.nanoTime() - start);
+        }
+    }
+
     private IllegalStateException dbError(String operation, Exception cause) {
         return new IllegalStateException("Database error while " + operation + " user. Try again later.", cause);
     }
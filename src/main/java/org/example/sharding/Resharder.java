@@ -0,0 +1,300 @@
+package org.example.sharding;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.sharding.ShardRouter.KeyRange;
+import org.example.util.Transactions;
+import org.hibernate.SessionFactory;
+import org.hibernate.jdbc.ReturningWork;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Moves id ranges between shards while they keep serving traffic. Rows are bulk-copied first; then, with writes
+ * frozen both through the shared {@link ShardRouter} and on every shard (see {@link ShardCatalog#freezeWrites}), the
+ * range is reconciled by row digest, the override is saved and the source rows are deleted. Writers in other
+ * processes wait out the freeze and reload the ranges when a row they expected has moved away.
+ */
+public class Resharder {
+    private static final Logger log = LogManager.getLogger(Resharder.class);
+    private static final int DEFAULT_BATCH_SIZE = 1_000;
+    private static final Duration FREEZE_TIMEOUT = Duration.ofSeconds(30);
+    private static final String COLUMNS = "id, name, email, age, created_at, updated_at, deleted_at";
+    private static final String SELECT_ROWS_SQL =
+            "SELECT " + COLUMNS + " FROM users WHERE id > ? AND id < ? ORDER BY id LIMIT ?";
+    private static final String SELECT_ROWS_BY_ID_SQL =
+            "SELECT " + COLUMNS + " FROM users WHERE id = ANY (?) ORDER BY id";
+    private static final String DIGEST_SQL =
+            "SELECT id, md5(row(name, email, age, extract(epoch FROM created_at), extract(epoch FROM updated_at), "
+                    + "extract(epoch FROM deleted_at))::text) FROM users WHERE id > ? AND id < ? ORDER BY id LIMIT ?";
+    private static final String UPSERT_SQL = "INSERT INTO users (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name, email = EXCLUDED.email, age = EXCLUDED.age, "
+            + "created_at = EXCLUDED.created_at, updated_at = EXCLUDED.updated_at, deleted_at = EXCLUDED.deleted_at";
+    private static final String DELETE_BY_ID_SQL = "DELETE FROM users WHERE id = ANY (?)";
+    private static final String DELETE_RANGE_SQL = "DELETE FROM users WHERE id >= ? AND id < ?";
+    private static final String ACTIVE_EMAILS_SQL =
+            "SELECT id, lower(email) FROM users WHERE deleted_at IS NULL AND id > ? ORDER BY id LIMIT ?";
+    private static final String UPSERT_DIRECTORY_SQL = "INSERT INTO users_email_directory (email_lower, user_id) VALUES (?, ?) "
+            + "ON CONFLICT (email_lower) DO UPDATE SET user_id = EXCLUDED.user_id";
+
+    public record MoveReport(KeyRange range, long copied, long reconciled, long removed) {
+    }
+
+    private record Row(long id, String name, String email, int age, OffsetDateTime createdAt, OffsetDateTime updatedAt,
+                       OffsetDateTime deletedAt) {
+    }
+
+    private final List<SessionFactory> shards;
+    private final ShardRouter router;
+    private final int batchSize;
+
+    public Resharder(List<SessionFactory> shards, ShardRouter router) {
+        this(shards, router, DEFAULT_BATCH_SIZE);
+    }
+
+    public Resharder(List<SessionFactory> shards, ShardRouter router, int batchSize) {
+        if (router.shardCount() != shards.size()) {
+            throw new IllegalArgumentException("Router expects " + router.shardCount() + " shards, got " + shards.size());
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.shards = List.copyOf(shards);
+        this.router = router;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Moves every id in {@code [fromId, toId)} to {@code target}. The range may not reach ids another shard has yet
+     * to allocate, since those would be created on the source after the move.
+     */
+    public MoveReport move(long fromId, long toId, int target) {
+        if (fromId < 1) {
+            throw new IllegalArgumentException("Ids start at 1");
+        }
+        KeyRange range = new KeyRange(fromId, toId, target);
+        if (target >= shards.size()) {
+            throw new IllegalArgumentException("Shard " + target + " is out of range 0.." + (shards.size() - 1));
+        }
+        for (int source = 0; source < shards.size(); source++) {
+            if (source == target) continue;
+            long next = ShardCatalog.nextId(shards.get(source));
+            if (toId > next) {
+                throw new IllegalArgumentException("Range " + range + " reaches ids shard " + source + " has not allocated yet (next " + next + ")");
+            }
+        }
+
+        long copied = 0;
+        for (int source = 0; source < shards.size(); source++) {
+            if (source != target) copied += copy(source, range);
+        }
+        log.info("Range {} bulk-copied: {} rows", range, copied);
+
+        Lock freeze = router.freeze();
+        freeze.lock();
+        ShardCatalog.Freeze frozenShards = null;
+        try {
+            frozenShards = ShardCatalog.freezeWrites(shards, FREEZE_TIMEOUT);
+            long reconciled = 0;
+            for (int source = 0; source < shards.size(); source++) {
+                if (source != target) reconciled += reconcile(source, range);
+            }
+            List<KeyRange> previous = router.overrides();
+            router.assign(range);
+            try {
+                ShardCatalog.saveRanges(shards.get(0), router.mergedOverrides());
+            } catch (RuntimeException e) {
+                router.replaceOverrides(previous);
+                throw e;
+            }
+            long removed = 0;
+            for (int source = 0; source < shards.size(); source++) {
+                if (source == target) continue;
+                removed += inTransaction(source, connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement(DELETE_RANGE_SQL)) {
+                        statement.setLong(1, range.fromId());
+                        statement.setLong(2, range.toId());
+                        return (long) statement.executeUpdate();
+                    }
+                });
+            }
+            MoveReport report = new MoveReport(range, copied, reconciled, removed);
+            log.info("Range moved: {}", report);
+            return report;
+        } finally {
+            if (frozenShards != null) frozenShards.close();
+            freeze.unlock();
+        }
+    }
+
+    /**
+     * Re-registers every active user in the email directory, e.g. after splitting an existing database.
+     */
+    public long rebuildDirectory() {
+        long registered = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            long after = 0;
+            while (true) {
+                long cursor = after;
+                Map<Long, String> emails = inTransaction(shard, connection -> {
+                    Map<Long, String> batch = new LinkedHashMap<>();
+                    try (PreparedStatement statement = connection.prepareStatement(ACTIVE_EMAILS_SQL)) {
+                        statement.setLong(1, cursor);
+                        statement.setInt(2, batchSize);
+                        try (ResultSet rs = statement.executeQuery()) {
+                            while (rs.next()) batch.put(rs.getLong(1), rs.getString(2));
+                        }
+                    }
+                    return batch;
+                });
+                if (emails.isEmpty()) break;
+                Map<Integer, Map<Long, String>> byDirectory = new HashMap<>();
+                emails.forEach((id, email) -> byDirectory.computeIfAbsent(router.shardForEmail(email), s -> new LinkedHashMap<>()).put(id, email));
+                for (Map.Entry<Integer, Map<Long, String>> entry : byDirectory.entrySet()) {
+                    inTransaction(entry.getKey(), connection -> {
+                        try (PreparedStatement statement = connection.prepareStatement(UPSERT_DIRECTORY_SQL)) {
+                            for (Map.Entry<Long, String> email : entry.getValue().entrySet()) {
+                                statement.setString(1, email.getValue());
+                                statement.setLong(2, email.getKey());
+                                statement.addBatch();
+                            }
+                            return statement.executeBatch().length;
+                        }
+                    });
+                }
+                registered += emails.size();
+                after = emails.keySet().stream().mapToLong(Long::longValue).max().orElseThrow();
+            }
+        }
+        log.info("Email directory rebuilt with {} entries", registered);
+        return registered;
+    }
+
+    private long copy(int source, KeyRange range) {
+        long copied = 0;
+        long after = range.fromId() - 1;
+        while (true) {
+            long cursor = after;
+            List<Row> rows = inTransaction(source, connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(SELECT_ROWS_SQL)) {
+                    statement.setLong(1, cursor);
+                    statement.setLong(2, range.toId());
+                    statement.setInt(3, batchSize);
+                    return readRows(statement);
+                }
+            });
+            if (rows.isEmpty()) return copied;
+            upsert(range.shard(), rows);
+            copied += rows.size();
+            after = rows.get(rows.size() - 1).id();
+        }
+    }
+
+    // writes are frozen here, so after this pass the target holds exactly the source's rows of the range
+    private long reconcile(int source, KeyRange range) {
+        long reconciled = 0;
+        long after = range.fromId() - 1;
+        while (true) {
+            Map<Long, String> expected = digests(source, after, range.toId(), batchSize);
+            long upper = expected.size() < batchSize ? range.toId() : lastKey(expected) + 1;
+            Map<Long, String> actual = digests(range.shard(), after, upper, Integer.MAX_VALUE);
+            actual.keySet().removeIf(id -> router.shardForId(id) != source);
+
+            List<Long> changed = new ArrayList<>();
+            expected.forEach((id, digest) -> {
+                if (!Objects.equals(actual.get(id), digest)) changed.add(id);
+            });
+            List<Long> stale = actual.keySet().stream().filter(id -> !expected.containsKey(id)).toList();
+            if (!changed.isEmpty()) {
+                upsert(range.shard(), inTransaction(source, connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement(SELECT_ROWS_BY_ID_SQL)) {
+                        statement.setArray(1, connection.createArrayOf("bigint", changed.toArray()));
+                        return readRows(statement);
+                    }
+                }));
+            }
+            if (!stale.isEmpty()) {
+                inTransaction(range.shard(), connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement(DELETE_BY_ID_SQL)) {
+                        statement.setArray(1, connection.createArrayOf("bigint", stale.toArray()));
+                        return statement.executeUpdate();
+                    }
+                });
+            }
+            reconciled += changed.size() + stale.size();
+            if (expected.size() < batchSize) return reconciled;
+            after = lastKey(expected);
+        }
+    }
+
+    private Map<Long, String> digests(int shard, long after, long before, int limit) {
+        return inTransaction(shard, connection -> {
+            Map<Long, String> digests = new LinkedHashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(DIGEST_SQL)) {
+                statement.setLong(1, after);
+                statement.setLong(2, before);
+                statement.setInt(3, limit);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) digests.put(rs.getLong(1), rs.getString(2));
+                }
+            }
+            return digests;
+        });
+    }
+
+    private void upsert(int shard, List<Row> rows) {
+        inTransaction(shard, connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(UPSERT_SQL)) {
+                for (Row row : rows) {
+                    statement.setLong(1, row.id());
+                    statement.setString(2, row.name());
+                    statement.setString(3, row.email());
+                    statement.setInt(4, row.age());
+                    statement.setObject(5, row.createdAt());
+                    statement.setObject(6, row.updatedAt());
+                    if (row.deletedAt() == null) {
+                        statement.setNull(7, Types.TIMESTAMP_WITH_TIMEZONE);
+                    } else {
+                        statement.setObject(7, row.deletedAt());
+                    }
+                    statement.addBatch();
+                }
+                return statement.executeBatch().length;
+            }
+        });
+    }
+
+    private static List<Row> readRows(PreparedStatement statement) throws SQLException {
+        List<Row> rows = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                rows.add(new Row(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getInt(4),
+                        rs.getObject(5, OffsetDateTime.class), rs.getObject(6, OffsetDateTime.class),
+                        rs.getObject(7, OffsetDateTime.class)));
+            }
+        }
+        return rows;
+    }
+
+    private static long lastKey(Map<Long, String> ordered) {
+        long last = 0;
+        for (long id : ordered.keySet()) last = id;
+        return last;
+    }
+
+    private <T> T inTransaction(int shard, ReturningWork<T> work) {
+        return Transactions.inTransaction(shards.get(shard), "resharding on shard " + shard, session -> session.doReturningWork(work));
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.sharding;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.concurrency.RetryPolicy;
+import org.example.sharding.ShardRouter.KeyRange;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.util.Transactions.inTransaction;
+import static org.example.util.Transactions.safeRollback;
+
+/**
+ * Per-shard id sequences and the range overrides, which are kept in {@code users_shard_ranges} of shard 0. Range
+ * moves and writers coordinate through an advisory lock on every shard, so a move also holds off other processes.
+ */
+public final class ShardCatalog {
+    private static final Logger log = LogManager.getLogger(ShardCatalog.class);
+    private static final String SEQUENCE_SQL = "SELECT pg_get_serial_sequence('public.users', 'id')";
+    private static final String MAX_ID_SQL = "SELECT coalesce(max(id), 0) FROM users";
+    private static final String NEXT_ID_SQL =
+            "SELECT CASE WHEN s.is_called THEN s.last_value + p.increment_by ELSE s.last_value END FROM %s s, pg_sequences p "
+                    + "WHERE p.schemaname || '.' || p.sequencename = :seq";
+    private static final String LOAD_RANGES_SQL = "SELECT from_id, to_id, shard FROM users_shard_ranges ORDER BY from_id";
+    private static final String INSERT_RANGE_SQL = "INSERT INTO users_shard_ranges (from_id, to_id, shard) VALUES (:from, :to, :shard)";
+    private static final long MOVE_LOCK = 0x75736572_73686172L;
+    private static final String AWAIT_MOVES_SQL = "SELECT 1 FROM pg_advisory_xact_lock_shared(:key)";
+    private static final String FREEZE_SQL = "SELECT 1 FROM pg_advisory_xact_lock(:key)";
+    private static final String FREEZE_TIMEOUT_SQL = "SELECT set_config('lock_timeout', :timeout, true)";
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+    private static final Duration FREEZE_ATTEMPT_TIMEOUT = Duration.ofMillis(200);
+
+    private ShardCatalog() {
+    }
+
+    /**
+     * Makes the id sequence of shard {@code index} step by {@code shardCount} from the first stride id above its
+     * existing rows. Returns the largest id already present, which the stride does not describe.
+     */
+    public static long prepare(SessionFactory shard, int index, int shardCount) {
+        if (index < 0 || index >= shardCount) {
+            throw new IllegalArgumentException("Shard " + index + " is out of range 0.." + (shardCount - 1));
+        }
+        return inTransaction(shard, "shard catalog", session -> {
+            String sequence = session.createNativeQuery(SEQUENCE_SQL, String.class).getSingleResult();
+            long maxId = session.createNativeQuery(MAX_ID_SQL, Long.class).getSingleResult();
+            long start = maxId + 1 + Math.floorMod(index - maxId, (long) shardCount);
+            session.createNativeMutationQuery("ALTER SEQUENCE " + sequence + " INCREMENT BY " + shardCount + " RESTART WITH " + start)
+                    .executeUpdate();
+            log.info("Shard {} of {}: sequence {} restarts at {} (max existing id {})", index, shardCount, sequence, start, maxId);
+            return maxId;
+        });
+    }
+
+    /**
+     * The smallest id the shard's sequence may still hand out.
+     */
+    public static long nextId(SessionFactory shard) {
+        return inTransaction(shard, "shard catalog", session -> {
+            String sequence = session.createNativeQuery(SEQUENCE_SQL, String.class).getSingleResult();
+            return session.createNativeQuery(NEXT_ID_SQL.formatted(sequence), Long.class).setParameter("seq", sequence).getSingleResult();
+        });
+    }
+
+    /**
+     * Waits in the session's transaction until no range move holds the shard frozen; every sharded write calls this.
+     */
+    public static void awaitMoves(Session session) {
+        session.createNativeQuery(AWAIT_MOVES_SQL, Integer.class).setParameter("key", MOVE_LOCK).getSingleResult();
+    }
+
+    /**
+     * Holds off writes on every shard until the returned freeze is closed. A writer may wait on one shard while
+     * holding another, which no single database can see as a deadlock, so each shard is only waited for briefly and
+     * everything is released and retried if one stays busy.
+     */
+    public static Freeze freezeWrites(List<SessionFactory> shards, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            Freeze freeze = new Freeze();
+            try {
+                for (SessionFactory shard : shards) {
+                    freeze.lock(shard);
+                }
+                return freeze;
+            } catch (RuntimeException e) {
+                freeze.close();
+                if (!LOCK_NOT_AVAILABLE.equals(RetryPolicy.sqlState(e))) throw e;
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IllegalStateException("Can't freeze shard writes within " + timeout, e);
+                }
+                log.info("A shard is busy, retrying the write freeze");
+            }
+        }
+    }
+
+    public static final class Freeze implements AutoCloseable {
+        private final List<Session> sessions = new ArrayList<>();
+
+        private Freeze() {
+        }
+
+        private void lock(SessionFactory shard) {
+            Session session = shard.openSession();
+            sessions.add(session);
+            session.beginTransaction();
+            session.createNativeQuery(FREEZE_TIMEOUT_SQL, String.class)
+                    .setParameter("timeout", FREEZE_ATTEMPT_TIMEOUT.toMillis() + "ms")
+                    .getSingleResult();
+            session.createNativeQuery(FREEZE_SQL, Integer.class).setParameter("key", MOVE_LOCK).getSingleResult();
+        }
+
+        @Override
+        public void close() {
+            for (Session session : sessions) {
+                safeRollback(session.getTransaction());
+                session.close();
+            }
+            sessions.clear();
+        }
+    }
+
+    public static List<KeyRange> loadRanges(SessionFactory catalog) {
+        return inTransaction(catalog, "shard catalog", session -> session.createNativeQuery(LOAD_RANGES_SQL, Object[].class)
+                .getResultList().stream()
+                .map(row -> new KeyRange(((Number) row[0]).longValue(), ((Number) row[1]).longValue(), ((Number) row[2]).intValue()))
+                .toList());
+    }
+
+    public static void saveRanges(SessionFactory catalog, List<KeyRange> ranges) {
+        inTransaction(catalog, "shard catalog", session -> {
+            session.createNativeMutationQuery("DELETE FROM users_shard_ranges").executeUpdate();
+            for (KeyRange range : ranges) {
+                session.createNativeMutationQuery(INSERT_RANGE_SQL)
+                        .setParameter("from", range.fromId())
+                        .setParameter("to", range.toId())
+                        .setParameter("shard", range.shard())
+                        .executeUpdate();
+            }
+            return null;
+        });
+        log.info("Saved {} shard ranges", ranges.size());
+    }
+}
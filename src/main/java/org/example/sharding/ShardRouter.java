@@ -0,0 +1,158 @@
+package org.example.sharding;
+
+import org.example.collections.EmailHash;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maps user ids and emails to shards. Shard {@code i} of {@code n} allocates ids {@code i + 1, i + 1 + n, ...}, so an
+ * id routes to {@code (id - 1) mod n} unless a moved {@link KeyRange} overrides it. Emails route by hash to the shard
+ * holding their directory entry.
+ */
+public final class ShardRouter {
+
+    /**
+     * Ids in {@code [fromId, toId)} that live on {@code shard} regardless of the stride.
+     */
+    public record KeyRange(long fromId, long toId, int shard) {
+        public KeyRange {
+            if (fromId >= toId) {
+                throw new IllegalArgumentException("Range [" + fromId + ", " + toId + ") is empty");
+            }
+            if (shard < 0) {
+                throw new IllegalArgumentException("Shard must not be negative");
+            }
+        }
+
+        public boolean contains(long id) {
+            return id >= fromId && id < toId;
+        }
+    }
+
+    private final int shardCount;
+    private final ReentrantReadWriteLock moves = new ReentrantReadWriteLock();
+    private volatile NavigableMap<Long, KeyRange> overrides = new TreeMap<>();
+    private volatile long version;
+
+    public ShardRouter(int shardCount) {
+        this(shardCount, List.of());
+    }
+
+    public ShardRouter(int shardCount, List<KeyRange> overrides) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.shardCount = shardCount;
+        replaceOverrides(overrides);
+    }
+
+    public static int strideShard(long id, int shardCount) {
+        return (int) Math.floorMod(id - 1, (long) shardCount);
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public int shardForId(long id) {
+        Map.Entry<Long, KeyRange> entry = overrides.floorEntry(id);
+        if (entry != null && entry.getValue().contains(id)) {
+            return entry.getValue().shard();
+        }
+        return strideShard(id, shardCount);
+    }
+
+    public int shardForEmail(String email) {
+        return (int) Math.floorMod(EmailHash.of(email), (long) shardCount);
+    }
+
+    public List<KeyRange> overrides() {
+        return List.copyOf(overrides.values());
+    }
+
+    /**
+     * Routes every id of {@code range} to its shard, trimming or splitting the overrides it overlaps.
+     */
+    public synchronized void assign(KeyRange range) {
+        checkShard(range.shard());
+        TreeMap<Long, KeyRange> next = new TreeMap<>(overrides);
+        place(next, range);
+        overrides = next;
+        version++;
+    }
+
+    /**
+     * Swaps in {@code ranges} as the whole override set in one step, so concurrent lookups see either the old or the
+     * new routing and never the stride in between.
+     */
+    public synchronized void replaceOverrides(List<KeyRange> ranges) {
+        TreeMap<Long, KeyRange> next = new TreeMap<>();
+        for (KeyRange range : ranges) {
+            checkShard(range.shard());
+            place(next, range);
+        }
+        overrides = next;
+        version++;
+    }
+
+    private static void place(TreeMap<Long, KeyRange> next, KeyRange range) {
+        Map.Entry<Long, KeyRange> before = next.lowerEntry(range.fromId());
+        if (before != null && before.getValue().toId() > range.fromId()) {
+            KeyRange left = before.getValue();
+            next.put(left.fromId(), new KeyRange(left.fromId(), range.fromId(), left.shard()));
+            if (left.toId() > range.toId()) {
+                next.put(range.toId(), new KeyRange(range.toId(), left.toId(), left.shard()));
+            }
+        }
+        for (KeyRange inside : List.copyOf(next.subMap(range.fromId(), true, range.toId(), false).values())) {
+            next.remove(inside.fromId());
+            if (inside.toId() > range.toId()) {
+                next.put(range.toId(), new KeyRange(range.toId(), inside.toId(), inside.shard()));
+            }
+        }
+        next.put(range.fromId(), range);
+    }
+
+    /**
+     * Changes whenever routing changes, so a lookup that missed can tell whether it raced with a move.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Shared lock held by every write; a range move takes {@link #freeze()} while it copies the final delta.
+     */
+    public Lock writeAccess() {
+        return moves.readLock();
+    }
+
+    public Lock freeze() {
+        return moves.writeLock();
+    }
+
+    List<KeyRange> mergedOverrides() {
+        List<KeyRange> merged = new ArrayList<>();
+        for (KeyRange range : overrides.values()) {
+            KeyRange last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last.toId() == range.fromId() && last.shard() == range.shard()) {
+                merged.set(merged.size() - 1, new KeyRange(last.fromId(), range.toId(), range.shard()));
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    private void checkShard(int shard) {
+        if (shard >= shardCount) {
+            throw new IllegalArgumentException("Shard " + shard + " is out of range 0.." + (shardCount - 1));
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package org.example.storage;
+
+public enum FsyncPolicy {
+    /** Leave flushing to the OS; only close() and segment rolls force data to disk. */
+    NEVER,
+    /** Writers wait until a background flusher forces a whole batch of appends at once. */
+    GROUP,
+    /** Force the segment after every append. */
+    ALWAYS
+}
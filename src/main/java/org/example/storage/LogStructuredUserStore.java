@@ -0,0 +1,611 @@
+package org.example.storage;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.collections.LongLongHashMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+public final class LogStructuredUserStore implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(LogStructuredUserStore.class);
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // length(4) crc(4) type(1) id(8) age(4) createdAt(8) updatedAt(8) deletedAt(8) nameLength(2) emailLength(2)
+    static final int RECORD_HEADER_BYTES = 49;
+    private static final int CRC_START = 8;
+    private static final long DURABLE_WAIT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long MISSING = -1;
+
+    private final StorageSettings settings;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final LongLongHashMap locations = new LongLongHashMap(1024, MISSING);
+    private final Map<String, Long> activeEmails = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer scratch = ByteBuffer.allocate(512);
+    private Segment active;
+    private volatile boolean closed;
+
+    private final AtomicLong appended = new AtomicLong();
+    private volatile long durable;
+    private volatile RuntimeException syncFailure;
+    private final AtomicInteger durableWaiters = new AtomicInteger();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private final Thread flusher;
+    private final ScheduledExecutorService compactor;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    private LogStructuredUserStore(StorageSettings settings) {
+        this.settings = settings;
+        recover();
+        if (settings.fsyncPolicy() == FsyncPolicy.GROUP) {
+            flusher = Thread.ofPlatform().daemon().name("user-store-flusher").start(this::flushLoop);
+        } else {
+            flusher = null;
+        }
+        if (settings.compactionInterval() != null && !settings.compactionInterval().isZero()) {
+            compactor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("user-store-compactor").factory());
+            long period = settings.compactionInterval().toMillis();
+            compactor.scheduleWithFixedDelay(this::compactQuietly, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            compactor = null;
+        }
+    }
+
+    public static LogStructuredUserStore open(StorageSettings settings) {
+        return new LogStructuredUserStore(settings);
+    }
+
+    public long nextId() {
+        return sequence.incrementAndGet();
+    }
+
+    public StoredUser get(long id) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            long location = locations.get(id);
+            return location == MISSING ? null : decode(location);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public StoredUser findActiveByEmail(String emailKey) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            Long id = activeEmails.get(emailKey);
+            if (id == null) return null;
+            StoredUser user = decode(locations.get(id));
+            return user.isDeleted() || !user.emailKey().equals(emailKey) ? null : user;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void insert(StoredUser user) {
+        long position;
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            if (locations.containsKey(user.id())) {
+                throw new IllegalStateException("User with id=" + user.id() + " is already stored");
+            }
+            checkEmailFree(user);
+            position = write(user);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(position);
+    }
+
+    public StoredUser update(long id, UnaryOperator<StoredUser> change) {
+        long position;
+        StoredUser updated;
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            long location = locations.get(id);
+            if (location == MISSING) return null;
+            StoredUser current = decode(location);
+            updated = change.apply(current);
+            if (updated == current) return current;
+            if (updated.id() != id) throw new IllegalArgumentException("Update can't change the user id");
+            checkEmailFree(updated);
+            position = write(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(position);
+        return updated;
+    }
+
+    public boolean remove(long id, Predicate<StoredUser> condition) {
+        long position;
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            long location = locations.get(id);
+            if (location == MISSING || !condition.test(decode(location))) return false;
+            position = writeTombstone(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(position);
+        return true;
+    }
+
+    public void sync() {
+        Segment segment;
+        long target;
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            target = appended.get();
+            segment = active;
+        } finally {
+            lock.readLock().unlock();
+        }
+        // earlier segments were forced when they were rolled, so the active one covers everything up to target
+        segment.force();
+        markDurable(target);
+    }
+
+    public int compact() {
+        List<Integer> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.liveBytes < settings.compactionThreshold() * segment.writtenBytes()) {
+                    candidates.add(segment.id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        int compacted = 0;
+        for (int id : candidates) {
+            lock.writeLock().lock();
+            try {
+                if (closed) break;
+                Segment segment = segments.get(id);
+                if (segment == null || segment == active) continue;
+                compactSegment(segment);
+                compacted++;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't compact segment " + id, e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        if (compacted > 0) compactions.add(compacted);
+        return compacted;
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) compactor.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+            for (Segment segment : segments.values()) {
+                segment.force();
+                segment.close();
+            }
+            markDurable(appended.get());
+            log.info("User store in {} closed: {} users, {} segments", settings.directory(), locations.size(), segments.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't close user store in " + settings.directory(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (flusher != null) LockSupport.unpark(flusher);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return locations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    public long getSyncs() {
+        return syncs.sum();
+    }
+
+    public long getCompactions() {
+        return compactions.sum();
+    }
+
+    private void recover() {
+        try {
+            Files.createDirectories(settings.directory());
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(settings.directory())) {
+                files = listing.filter(path -> Segment.parseId(path) > 0).sorted().toList();
+            }
+            long records = 0;
+            for (Path file : files) {
+                Segment segment = Segment.open(file, Segment.parseId(file));
+                segments.put(segment.id, segment);
+                sequence.accumulateAndGet(segment.baseSequence(), Math::max);
+                records += replay(segment, file.equals(files.getLast()));
+            }
+            if (segments.isEmpty()) {
+                active = Segment.create(settings.directory(), 1, settings.segmentBytes(), 0);
+                segments.put(active.id, active);
+            } else {
+                active = segments.lastEntry().getValue();
+            }
+            log.info("User store in {} recovered {} records from {} segments: {} users", settings.directory(), records,
+                    segments.size(), locations.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open user store in " + settings.directory(), e);
+        }
+    }
+
+    private long replay(Segment segment, boolean last) {
+        ByteBuffer buffer = segment.buffer;
+        int position = Segment.HEADER_BYTES;
+        long records = 0;
+        while (position + RECORD_HEADER_BYTES <= segment.capacity) {
+            int length = buffer.getInt(position);
+            if (length == 0) break;
+            if (length < RECORD_HEADER_BYTES || position + length > segment.capacity || !checksumMatches(buffer, position, length)) {
+                log.warn("Segment {} has a torn or corrupt record at offset {}, ignoring the rest", segment.path, position);
+                if (last) {
+                    for (int i = position; i < segment.capacity; i++) buffer.put(i, (byte) 0);
+                }
+                break;
+            }
+            long id = buffer.getLong(position + 9);
+            sequence.accumulateAndGet(id, Math::max);
+            if (buffer.get(position + CRC_START) == PUT) {
+                long location = location(segment.id, position);
+                index(id, location, length, decode(location));
+            } else {
+                unindex(id);
+            }
+            position += length;
+            records++;
+        }
+        segment.writePosition = position;
+        return records;
+    }
+
+    private long write(StoredUser user) {
+        byte[] name = user.name().getBytes(StandardCharsets.UTF_8);
+        byte[] email = user.email().getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xFFFF || email.length > 0xFFFF) {
+            throw new IllegalArgumentException("User fields are too long to store");
+        }
+        int length = RECORD_HEADER_BYTES + name.length + email.length;
+        ByteBuffer record = record(length, PUT, user.id());
+        record.putInt(17, user.age());
+        record.putLong(21, user.createdAt());
+        record.putLong(29, user.updatedAt());
+        record.putLong(37, user.deletedAt());
+        record.putShort(45, (short) name.length);
+        record.putShort(47, (short) email.length);
+        record.put(RECORD_HEADER_BYTES, name);
+        record.put(RECORD_HEADER_BYTES + name.length, email);
+        int offset = append(record, length);
+        index(user.id(), location(active.id, offset), length, user);
+        return committed();
+    }
+
+    private long writeTombstone(long id) {
+        ByteBuffer record = record(RECORD_HEADER_BYTES, DELETE, id);
+        append(record, RECORD_HEADER_BYTES);
+        unindex(id);
+        return committed();
+    }
+
+    private ByteBuffer record(int length, byte type, long id) {
+        if (length > settings.segmentBytes() - Segment.HEADER_BYTES) {
+            throw new IllegalArgumentException("Record of " + length + " bytes doesn't fit a segment");
+        }
+        if (scratch.capacity() < length) scratch = ByteBuffer.allocate(Math.max(length, scratch.capacity() * 2));
+        ByteBuffer record = scratch;
+        record.clear();
+        for (int i = 0; i < RECORD_HEADER_BYTES; i++) record.put(i, (byte) 0);
+        record.putInt(0, length);
+        record.put(CRC_START, type);
+        record.putLong(9, id);
+        return record;
+    }
+
+    private int append(ByteBuffer record, int length) {
+        crc.reset();
+        crc.update(record.array(), CRC_START, length - CRC_START);
+        record.putInt(4, (int) crc.getValue());
+        ensureRoom(length);
+        int offset = active.writePosition;
+        active.buffer.put(offset, record, 0, length);
+        active.writePosition += length;
+        writes.increment();
+        return offset;
+    }
+
+    private long committed() {
+        long position = appended.incrementAndGet();
+        if (settings.fsyncPolicy() == FsyncPolicy.ALWAYS) {
+            active.force();
+            markDurable(position);
+        }
+        return position;
+    }
+
+    private void ensureRoom(int length) {
+        if (active.fits(length)) return;
+        try {
+            active.force();
+            Segment next = Segment.create(settings.directory(), active.id + 1, settings.segmentBytes(), sequence.get());
+            segments.put(next.id, next);
+            active = next;
+            log.debug("User store rolled to segment {}", next.path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't create a new segment in " + settings.directory(), e);
+        }
+    }
+
+    private void index(long id, long location, int length, StoredUser user) {
+        long previous = locations.put(id, location);
+        segment(location).liveBytes += length;
+        if (previous != MISSING) {
+            release(previous);
+        }
+        if (!user.isDeleted()) activeEmails.put(user.emailKey(), id);
+    }
+
+    private void unindex(long id) {
+        long previous = locations.remove(id);
+        if (previous != MISSING) release(previous);
+    }
+
+    private void release(long location) {
+        Segment segment = segment(location);
+        int offset = offset(location);
+        segment.liveBytes -= segment.buffer.getInt(offset);
+        StoredUser user = decode(location);
+        String key = user.emailKey();
+        Long owner = activeEmails.get(key);
+        if (owner != null && owner == user.id() && locations.get(user.id()) != location) {
+            StoredUser current = locations.containsKey(user.id()) ? decode(locations.get(user.id())) : null;
+            if (current == null || current.isDeleted() || !current.emailKey().equals(key)) activeEmails.remove(key);
+        }
+    }
+
+    private void checkEmailFree(StoredUser user) {
+        if (user.isDeleted()) return;
+        Long owner = activeEmails.get(user.emailKey());
+        if (owner != null && owner != user.id()) {
+            log.info("Unique violation: email {} is already used by id={}", user.emailKey(), owner);
+            throw new IllegalStateException("That email is already used");
+        }
+    }
+
+    private void compactSegment(Segment segment) throws IOException {
+        Set<Long> neededTombstones = neededTombstones(segment);
+        ByteBuffer buffer = segment.buffer;
+        int position = Segment.HEADER_BYTES;
+        int moved = 0;
+        while (position < segment.writePosition) {
+            int length = buffer.getInt(position);
+            long id = buffer.getLong(position + 9);
+            boolean put = buffer.get(position + CRC_START) == PUT;
+            if (put && locations.get(id) == location(segment.id, position)) {
+                ensureRoom(length);
+                int offset = active.writePosition;
+                active.buffer.put(offset, buffer, position, length);
+                active.writePosition += length;
+                locations.put(id, location(active.id, offset));
+                active.liveBytes += length;
+                moved++;
+            } else if (!put && neededTombstones.contains(id)) {
+                ensureRoom(length);
+                active.buffer.put(active.writePosition, buffer, position, length);
+                active.writePosition += length;
+            }
+            position += length;
+        }
+        active.force();
+        segments.remove(segment.id);
+        segment.delete();
+        log.info("Compacted segment {}: moved {} live records", segment.path, moved);
+    }
+
+    // a tombstone has to survive only while the id is still deleted and an older segment holds a record of it
+    private Set<Long> neededTombstones(Segment segment) {
+        Set<Long> deleted = new HashSet<>();
+        collectIds(segment, DELETE, id -> !locations.containsKey(id), deleted);
+        Set<Long> needed = new HashSet<>();
+        if (deleted.isEmpty()) return needed;
+        for (Segment older : segments.headMap(segment.id).values()) {
+            collectIds(older, PUT, deleted::contains, needed);
+        }
+        return needed;
+    }
+
+    private static void collectIds(Segment segment, byte type, LongPredicate wanted, Set<Long> ids) {
+        ByteBuffer buffer = segment.buffer;
+        int position = Segment.HEADER_BYTES;
+        while (position < segment.writePosition) {
+            long id = buffer.getLong(position + 9);
+            if (buffer.get(position + CRC_START) == type && wanted.test(id)) ids.add(id);
+            position += buffer.getInt(position);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.warn("Background compaction failed", e);
+        }
+    }
+
+    private void flushLoop() {
+        long intervalNanos = settings.groupCommitInterval().toNanos();
+        while (!closed && syncFailure == null) {
+            LockSupport.parkNanos(this, intervalNanos);
+            if (appended.get() <= durable) continue;
+            try {
+                sync();
+            } catch (RuntimeException e) {
+                if (!closed) failGroupCommit(e);
+            }
+        }
+    }
+
+    // after a failed fsync the page cache can't be trusted to hold the writes, so every later group commit fails too
+    void failGroupCommit(RuntimeException e) {
+        log.error("Group commit flush failed, failing all pending and future writes", e);
+        syncLock.lock();
+        try {
+            if (syncFailure == null) syncFailure = e;
+            synced.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void awaitDurable(long position) {
+        if (settings.fsyncPolicy() != FsyncPolicy.GROUP) return;
+        if (syncFailure != null) throw notDurable();
+        if (durable >= position) return;
+        // a lone writer is flushed at once; writers arriving during that fsync batch up for the next one
+        int waiting = durableWaiters.incrementAndGet();
+        if (waiting == 1 || position - durable >= settings.groupCommitMaxBatch()) LockSupport.unpark(flusher);
+        long remaining = DURABLE_WAIT_NANOS;
+        syncLock.lock();
+        try {
+            while (durable < position && !closed) {
+                if (syncFailure != null) throw notDurable();
+                if (remaining <= 0) {
+                    throw new UncheckedIOException(new IOException("Timed out waiting for group commit"));
+                }
+                remaining = synced.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", e);
+        } finally {
+            syncLock.unlock();
+            durableWaiters.decrementAndGet();
+        }
+    }
+
+    private UncheckedIOException notDurable() {
+        RuntimeException failure = syncFailure;
+        IOException cause = failure instanceof UncheckedIOException unchecked ? unchecked.getCause() : new IOException(failure);
+        return new UncheckedIOException("Write is not durable, group commit failed", cause);
+    }
+
+    private void markDurable(long position) {
+        syncLock.lock();
+        try {
+            if (position > durable) {
+                durable = position;
+                syncs.increment();
+            }
+            synced.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private StoredUser decode(long location) {
+        ByteBuffer buffer = segment(location).buffer;
+        int offset = offset(location);
+        int nameLength = Short.toUnsignedInt(buffer.getShort(offset + 45));
+        int emailLength = Short.toUnsignedInt(buffer.getShort(offset + 47));
+        byte[] name = new byte[nameLength];
+        byte[] email = new byte[emailLength];
+        buffer.get(offset + RECORD_HEADER_BYTES, name);
+        buffer.get(offset + RECORD_HEADER_BYTES + nameLength, email);
+        return new StoredUser(buffer.getLong(offset + 9), new String(name, StandardCharsets.UTF_8),
+                new String(email, StandardCharsets.UTF_8), buffer.getInt(offset + 17), buffer.getLong(offset + 21),
+                buffer.getLong(offset + 29), buffer.getLong(offset + 37));
+    }
+
+    private boolean checksumMatches(ByteBuffer buffer, int position, int length) {
+        CRC32C check = new CRC32C();
+        check.update(buffer.slice(position + CRC_START, length - CRC_START));
+        return buffer.getInt(position + 4) == (int) check.getValue();
+    }
+
+    private Segment segment(long location) {
+        return segments.get((int) (location >>> 32));
+    }
+
+    private static int offset(long location) {
+        return (int) location;
+    }
+
+    private static long location(int segmentId, int offset) {
+        return (long) segmentId << 32 | offset;
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("User store is closed");
+    }
+
+    @Override
+    public String toString() {
+        return "LogStructuredUserStore{" + "directory=" + settings.directory() + ", users=" + size() + ", segments="
+                + segmentCount() + ", writes=" + getWrites() + ", syncs=" + getSyncs() + ", compactions="
+                + getCompactions() + '}';
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.storage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class Segment {
+    static final int MAGIC = 0x55534C47;
+    static final int VERSION = 1;
+    // magic(4) version(4) baseSequence(8)
+    static final int HEADER_BYTES = 16;
+
+    final int id;
+    final Path path;
+    final MappedByteBuffer buffer;
+    final int capacity;
+    private final FileChannel channel;
+    int writePosition = HEADER_BYTES;
+    long liveBytes;
+
+    private Segment(int id, Path path, FileChannel channel, int capacity) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.capacity = capacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    static Segment create(Path directory, int id, int capacity, long baseSequence) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, path, channel, capacity);
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        segment.buffer.putLong(8, baseSequence);
+        return segment;
+    }
+
+    static Segment open(Path path, int id) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IllegalStateException("Segment " + path + " has invalid size " + size);
+        }
+        Segment segment = new Segment(id, path, channel, (int) size);
+        if (segment.buffer.getInt(0) != MAGIC || segment.buffer.getInt(4) != VERSION) {
+            segment.close();
+            throw new IllegalStateException("Segment " + path + " has an unknown header");
+        }
+        return segment;
+    }
+
+    static String fileName(int id) {
+        return String.format("segment-%08d.log", id);
+    }
+
+    static int parseId(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith("segment-") || !name.endsWith(".log")) return -1;
+        try {
+            return Integer.parseInt(name.substring("segment-".length(), name.length() - ".log".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    long baseSequence() {
+        return buffer.getLong(8);
+    }
+
+    boolean fits(int length) {
+        return writePosition + length <= capacity;
+    }
+
+    long writtenBytes() {
+        return writePosition - HEADER_BYTES;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+}
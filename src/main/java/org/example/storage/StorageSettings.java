@@ -0,0 +1,46 @@
+package org.example.storage;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+public record StorageSettings(Path directory, int segmentBytes, FsyncPolicy fsyncPolicy, Duration groupCommitInterval,
+                              int groupCommitMaxBatch, double compactionThreshold, Duration compactionInterval) {
+
+    public StorageSettings {
+        if (directory == null) throw new IllegalArgumentException("Storage directory is required");
+        if (segmentBytes < 4096) throw new IllegalArgumentException("Segment size must be at least 4096 bytes");
+        if (fsyncPolicy == null) throw new IllegalArgumentException("Fsync policy is required");
+        if (groupCommitInterval == null || groupCommitInterval.isNegative() || groupCommitInterval.isZero()) {
+            throw new IllegalArgumentException("Group commit interval must be positive");
+        }
+        if (groupCommitMaxBatch < 1) throw new IllegalArgumentException("Group commit batch must be positive");
+        if (!(compactionThreshold > 0 && compactionThreshold < 1)) {
+            throw new IllegalArgumentException("Compaction threshold must be between 0 and 1");
+        }
+    }
+
+    public static StorageSettings defaults(Path directory) {
+        return new StorageSettings(directory, 64 * 1024 * 1024, FsyncPolicy.GROUP, Duration.ofMillis(2), 256, 0.5,
+                Duration.ofSeconds(30));
+    }
+
+    public StorageSettings withSegmentBytes(int segmentBytes) {
+        return new StorageSettings(directory, segmentBytes, fsyncPolicy, groupCommitInterval, groupCommitMaxBatch,
+                compactionThreshold, compactionInterval);
+    }
+
+    public StorageSettings withFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        return new StorageSettings(directory, segmentBytes, fsyncPolicy, groupCommitInterval, groupCommitMaxBatch,
+                compactionThreshold, compactionInterval);
+    }
+
+    public StorageSettings withGroupCommit(Duration interval, int maxBatch) {
+        return new StorageSettings(directory, segmentBytes, fsyncPolicy, interval, maxBatch, compactionThreshold,
+                compactionInterval);
+    }
+
+    public StorageSettings withCompaction(double threshold, Duration interval) {
+        return new StorageSettings(directory, segmentBytes, fsyncPolicy, groupCommitInterval, groupCommitMaxBatch,
+                threshold, interval);
+    }
+}
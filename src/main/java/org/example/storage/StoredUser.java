@@ -0,0 +1,23 @@
+package org.example.storage;
+
+import java.util.Locale;
+
+public record StoredUser(long id, String name, String email, int age, long createdAt, long updatedAt, long deletedAt) {
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    public boolean isDeleted() {
+        return deletedAt != NO_TIME;
+    }
+
+    public String emailKey() {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    public StoredUser withUpdatedAt(long updatedAt) {
+        return new StoredUser(id, name, email, age, createdAt, updatedAt, deletedAt);
+    }
+
+    public StoredUser withDeletedAt(long deletedAt) {
+        return new StoredUser(id, name, email, age, createdAt, updatedAt, deletedAt);
+    }
+}
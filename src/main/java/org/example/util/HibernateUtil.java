@@ -1,24 +1,27 @@
 package org.example.util;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.SessionFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
 public final class HibernateUtil {
+    public static final String SHARDS_PROPERTY = "userapp.shards";
+
     private static final SessionFactory SESSION_FACTORY;
     private static final Logger log = LogManager.getLogger(HibernateUtil.class);
 
     static {
         try {
             log.info("Initialisation SessionFactory...");
-            StandardServiceRegistry registry = new org.hibernate.boot.registry.StandardServiceRegistryBuilder()
-                    .configure()
-                    .build();
-            SESSION_FACTORY = new org.hibernate.boot.MetadataSources(registry)
-                    .addAnnotatedClass(org.example.domain.User.class)
-                    .buildMetadata()
-                    .buildSessionFactory();
+            SESSION_FACTORY = buildSessionFactory(Map.of());
             log.info("SessionFactory successfully created.");
         } catch (RuntimeException ex) {
             LogManager.getLogger(HibernateUtil.class).fatal("Initialisation of SessionFactory is failed", ex);
@@ -32,4 +35,59 @@ public final class HibernateUtil {
     public static SessionFactory getSessionFactory() {
         return SESSION_FACTORY;
     }
+
+    /**
+     * Builds another SessionFactory from hibernate.cfg.xml and the layered {@link TuningConfig}, with the given settings
+     * overridden, e.g. a different {@code hibernate.connection.url} for a shard. The caller owns and closes it.
+     */
+    public static SessionFactory buildSessionFactory(Map<String, Object> overrides) {
+        TuningConfig config = TuningConfig.load();
+        applyLogLevels(config.logLevels());
+        log.info("Effective configuration (profiles {}):", config.profiles().isEmpty() ? "none" : config.profiles());
+        for (String line : config.describe()) {
+            log.info("  {}", line);
+        }
+        if (!overrides.isEmpty()) log.info("  overridden: {}", overrides.keySet());
+        StandardServiceRegistry registry = new org.hibernate.boot.registry.StandardServiceRegistryBuilder()
+                .configure()
+                .applySettings(config.hibernateSettings())
+                .applySettings(overrides)
+                .build();
+        return new org.hibernate.boot.MetadataSources(registry)
+                .addAnnotatedClass(org.example.domain.User.class)
+                .addAnnotatedClass(org.example.domain.OutboxEvent.class)
+                .buildMetadata()
+                .buildSessionFactory();
+    }
+
+    private static void applyLogLevels(Map<String, String> levels) {
+        levels.forEach((logger, level) -> {
+            Level parsed = Level.getLevel(level.toUpperCase(Locale.ROOT));
+            if (parsed == null) {
+                throw new IllegalArgumentException("Unknown log level " + level + " for " + logger);
+            }
+            Configurator.setLevel(logger, parsed);
+        });
+    }
+
+    /**
+     * One SessionFactory per JDBC url in the comma-separated {@value #SHARDS_PROPERTY} system property, in shard order.
+     */
+    public static List<SessionFactory> buildShardSessionFactories() {
+        String urls = System.getProperty(SHARDS_PROPERTY, "").trim();
+        if (urls.isEmpty()) {
+            throw new IllegalStateException("System property " + SHARDS_PROPERTY + " is not set");
+        }
+        List<SessionFactory> shards = new ArrayList<>();
+        try {
+            for (String url : urls.split(",")) {
+                shards.add(buildSessionFactory(Map.of("hibernate.connection.url", url.trim())));
+                log.info("Shard {} SessionFactory created for {}", shards.size() - 1, url.trim());
+            }
+            return shards;
+        } catch (RuntimeException e) {
+            shards.forEach(SessionFactory::close);
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,50 @@
+package org.example.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+
+import java.util.function.Function;
+
+public final class Transactions {
+    private static final Logger log = LogManager.getLogger(Transactions.class);
+
+    private Transactions() {
+    }
+
+    /**
+     * Runs {@code work} in its own session and transaction and commits it; {@code description} names the work in the
+     * error log.
+     */
+    public static <T> T inTransaction(SessionFactory sessionFactory, String description, Function<Session, T> work) {
+        Transaction transaction = null;
+        try (Session session = sessionFactory.openSession()) {
+            transaction = session.beginTransaction();
+            T result = work.apply(session);
+            transaction.commit();
+            return result;
+        } catch (HibernateException e) {
+            log.error("Hibernate error in {}", description, e);
+            throw e;
+        } finally {
+            safeRollback(transaction);
+        }
+    }
+
+    public static void safeRollback(Transaction transaction) {
+        if (transaction == null) return;
+        try {
+            TransactionStatus status = transaction.getStatus();
+            if (status == TransactionStatus.ACTIVE || status == TransactionStatus.MARKED_ROLLBACK) {
+                log.debug("Transaction rollback");
+                transaction.rollback();
+            }
+        } catch (RuntimeException re) {
+            log.warn("Error in transaction rollback", re);
+        }
+    }
+}
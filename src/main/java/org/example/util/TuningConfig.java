@@ -0,0 +1,176 @@
+package org.example.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Hibernate, JDBC, pool and log settings merged from layers, each overriding the previous one:
+ * <ol>
+ *     <li>{@code config/default.properties} on the classpath;</li>
+ *     <li>{@code config/<profile>.properties} for every profile in {@value #PROFILES_PROPERTY}
+ *     (or {@code USERAPP_PROFILES}), in order;</li>
+ *     <li>the file named by {@value #CONFIG_FILE_PROPERTY} (or {@code USERAPP_CONFIG});</li>
+ *     <li>environment variables named after a known key, upper-cased with every other character turned into
+ *     {@code _}, e.g. {@code HIBERNATE_JDBC_BATCH_SIZE};</li>
+ *     <li>system properties starting with {@code hibernate.}, {@code jakarta.persistence.} or {@value #LOG_PREFIX}.</li>
+ * </ol>
+ * {@value #LOG_PREFIX}{@code <logger>=<level>} entries set log levels instead of reaching Hibernate.
+ */
+public final class TuningConfig {
+    public static final String PROFILES_PROPERTY = "userapp.profiles";
+    public static final String CONFIG_FILE_PROPERTY = "userapp.config";
+    public static final String LOG_PREFIX = "userapp.log.";
+    private static final String PROFILE_RESOURCE = "config/%s.properties";
+    private static final List<String> TUNABLE_KEYS = List.of(
+            "hibernate.connection.url", "hibernate.connection.username", "hibernate.connection.password",
+            "hibernate.connection.pool_size", "hibernate.connection.min_pool_size",
+            "hibernate.connection.prepareThreshold", "hibernate.connection.reWriteBatchedInserts",
+            "hibernate.hikari.maximumPoolSize", "hibernate.hikari.minimumIdle",
+            "hibernate.hikari.dataSource.prepareThreshold", "hibernate.hikari.dataSource.reWriteBatchedInserts",
+            "hibernate.jdbc.batch_size", "hibernate.jdbc.fetch_size", "hibernate.order_inserts",
+            "hibernate.order_updates", "hibernate.show_sql", "hibernate.format_sql", "hibernate.generate_statistics");
+
+    private final List<String> profiles;
+    private final Map<String, String> settings;
+    private final Map<String, String> sources;
+
+    private TuningConfig(List<String> profiles, Map<String, String> settings, Map<String, String> sources) {
+        this.profiles = List.copyOf(profiles);
+        this.settings = settings;
+        this.sources = sources;
+    }
+
+    public static TuningConfig load() {
+        return load(System.getenv(), System.getProperties());
+    }
+
+    static TuningConfig load(Map<String, String> env, Properties system) {
+        String profileList = system.getProperty(PROFILES_PROPERTY, env.getOrDefault("USERAPP_PROFILES", ""));
+        List<String> profiles = new ArrayList<>();
+        for (String profile : profileList.split(",")) {
+            if (!profile.isBlank()) profiles.add(profile.trim());
+        }
+        Map<String, String> settings = new LinkedHashMap<>();
+        Map<String, String> sources = new LinkedHashMap<>();
+
+        apply(settings, sources, resource("default", true), "default");
+        for (String profile : profiles) {
+            apply(settings, sources, resource(profile, false), "profile " + profile);
+        }
+        String file = system.getProperty(CONFIG_FILE_PROPERTY, env.get("USERAPP_CONFIG"));
+        if (file != null && !file.isBlank()) {
+            apply(settings, sources, file(Path.of(file.trim())), file.trim());
+        }
+        Set<String> known = new LinkedHashSet<>(TUNABLE_KEYS);
+        known.addAll(settings.keySet());
+        for (String key : known) {
+            String value = env.get(envName(key));
+            if (value != null) put(settings, sources, key, value, "env " + envName(key));
+        }
+        for (String key : system.stringPropertyNames()) {
+            if (key.startsWith("hibernate.") || key.startsWith("jakarta.persistence.") || key.startsWith(LOG_PREFIX)) {
+                put(settings, sources, key, system.getProperty(key), "system property");
+            }
+        }
+        return new TuningConfig(profiles, settings, sources);
+    }
+
+    static String envName(String key) {
+        return key.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]", "_");
+    }
+
+    public List<String> profiles() {
+        return profiles;
+    }
+
+    public String get(String key) {
+        return settings.get(key);
+    }
+
+    public String sourceOf(String key) {
+        return sources.get(key);
+    }
+
+    public Map<String, Object> hibernateSettings() {
+        Map<String, Object> hibernate = new LinkedHashMap<>();
+        settings.forEach((key, value) -> {
+            if (!key.startsWith(LOG_PREFIX)) hibernate.put(key, value);
+        });
+        return hibernate;
+    }
+
+    /**
+     * Logger name to level, from the {@value #LOG_PREFIX} entries.
+     */
+    public Map<String, String> logLevels() {
+        Map<String, String> levels = new LinkedHashMap<>();
+        settings.forEach((key, value) -> {
+            if (key.startsWith(LOG_PREFIX)) levels.put(key.substring(LOG_PREFIX.length()), value);
+        });
+        return levels;
+    }
+
+    /**
+     * Effective settings as {@code key = value (source)}, sorted, with passwords masked.
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        new TreeMap<>(settings).forEach((key, value) -> lines.add(key + " = "
+                + (key.toLowerCase(Locale.ROOT).contains("password") ? "****" : value) + " (" + sources.get(key) + ")"));
+        return lines;
+    }
+
+    private static void apply(Map<String, String> settings, Map<String, String> sources, Properties layer, String source) {
+        for (String key : layer.stringPropertyNames()) {
+            put(settings, sources, key, layer.getProperty(key), source);
+        }
+    }
+
+    private static void put(Map<String, String> settings, Map<String, String> sources, String key, String value, String source) {
+        settings.put(key, value.trim());
+        sources.put(key, source);
+    }
+
+    private static Properties resource(String profile, boolean optional) {
+        String name = String.format(PROFILE_RESOURCE, profile);
+        Properties properties = new Properties();
+        try (InputStream in = TuningConfig.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                if (optional) return properties;
+                throw new IllegalArgumentException("Unknown configuration profile " + profile);
+            }
+            properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            return properties;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read " + name, e);
+        }
+    }
+
+    private static Properties file(Path path) {
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("Configuration file " + path + " doesn't exist");
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            return properties;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read " + path, e);
+        }
+    }
+}
@@ -4,7 +4,27 @@ CREATE TABLE IF NOT EXISTS public.users (
   email       VARCHAR(254)  NOT NULL,
   age         INTEGER       NOT NULL,
   created_at  TIMESTAMPTZ   NOT NULL DEFAULT now(),
-  updated_at  TIMESTAMPTZ   NOT NULL DEFAULT now()
+  updated_at  TIMESTAMPTZ   NOT NULL DEFAULT now(),
+  deleted_at  TIMESTAMPTZ
 );
 
-CREATE UNIQUE INDEX IF NOT EXISTS users_email_ci_uidx ON public.users (lower(email));
+ALTER TABLE public.users ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMPTZ;
+
+-- Databases created before soft delete have a full unique index under this name; replace it with the partial one.
+DO $$
+BEGIN
+  IF EXISTS (SELECT 1 FROM pg_index i
+             WHERE i.indexrelid = to_regclass('public.users_email_ci_uidx') AND i.indpred IS NULL) THEN
+    DROP INDEX public.users_email_ci_uidx;
+  END IF;
+END $$;
+
+CREATE UNIQUE INDEX IF NOT EXISTS users_email_ci_uidx ON public.users (lower(email)) WHERE deleted_at IS NULL;
+CREATE INDEX IF NOT EXISTS users_deleted_at_idx ON public.users (deleted_at) WHERE deleted_at IS NOT NULL;
+
+CREATE TABLE IF NOT EXISTS public.users_outbox (
+  id          BIGSERIAL PRIMARY KEY,
+  user_id     BIGINT        NOT NULL,
+  operation   VARCHAR(16)   NOT NULL,
+  created_at  TIMESTAMPTZ   NOT NULL DEFAULT now()
+);
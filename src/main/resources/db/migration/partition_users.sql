@@ -0,0 +1,69 @@
+-- One transaction: the swap to the partitioned table happens completely or not at all,
+-- and once public.users is partitioned a re-run changes nothing.
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS public.users_email_lookup (
+  email_lower  VARCHAR(254)  PRIMARY KEY,
+  user_id      BIGINT        NOT NULL,
+  created_at   TIMESTAMPTZ   NOT NULL
+);
+
+CREATE OR REPLACE FUNCTION public.users_email_lookup_sync() RETURNS trigger AS $$
+BEGIN
+  IF TG_OP IN ('UPDATE', 'DELETE') THEN
+    DELETE FROM public.users_email_lookup WHERE email_lower = lower(OLD.email) AND user_id = OLD.id;
+  END IF;
+  IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.deleted_at IS NULL THEN
+    INSERT INTO public.users_email_lookup (email_lower, user_id, created_at)
+    VALUES (lower(NEW.email), NEW.id, NEW.created_at);
+  END IF;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DO $$
+DECLARE
+  m     DATE;
+  last  DATE := (date_trunc('month', now()) + interval '3 months')::date;
+BEGIN
+  IF (SELECT c.relkind FROM pg_class c WHERE c.oid = to_regclass('public.users')) = 'p' THEN
+    RETURN;
+  END IF;
+
+  LOCK TABLE public.users IN ACCESS EXCLUSIVE MODE;
+
+  CREATE TABLE IF NOT EXISTS public.users_partitioned (
+    id          BIGINT        NOT NULL DEFAULT nextval('public.users_id_seq'),
+    name        VARCHAR(100)  NOT NULL,
+    email       VARCHAR(254)  NOT NULL,
+    age         INTEGER       NOT NULL,
+    created_at  TIMESTAMPTZ   NOT NULL DEFAULT now(),
+    updated_at  TIMESTAMPTZ   NOT NULL DEFAULT now(),
+    deleted_at  TIMESTAMPTZ,
+    PRIMARY KEY (id, created_at)
+  ) PARTITION BY RANGE (created_at);
+
+  CREATE INDEX IF NOT EXISTS users_partitioned_email_ci_idx ON public.users_partitioned (lower(email));
+  CREATE INDEX IF NOT EXISTS users_partitioned_deleted_at_idx ON public.users_partitioned (deleted_at) WHERE deleted_at IS NOT NULL;
+
+  CREATE TABLE IF NOT EXISTS public.users_p_default PARTITION OF public.users_partitioned DEFAULT;
+
+  m := date_trunc('month', coalesce((SELECT min(created_at) FROM public.users), now()))::date;
+  WHILE m <= last LOOP
+    EXECUTE format('CREATE TABLE IF NOT EXISTS public.%I PARTITION OF public.users_partitioned FOR VALUES FROM (%L) TO (%L)',
+                   'users_p' || to_char(m, 'YYYY_MM'), m, (m + interval '1 month')::date);
+    m := (m + interval '1 month')::date;
+  END LOOP;
+
+  CREATE OR REPLACE TRIGGER users_email_lookup_sync
+    AFTER INSERT OR UPDATE OF email, deleted_at OR DELETE ON public.users_partitioned
+    FOR EACH ROW EXECUTE FUNCTION public.users_email_lookup_sync();
+
+  INSERT INTO public.users_partitioned (id, name, email, age, created_at, updated_at, deleted_at)
+  SELECT id, name, email, age, created_at, updated_at, deleted_at FROM public.users;
+  ALTER TABLE public.users RENAME TO users_unpartitioned;
+  ALTER TABLE public.users_partitioned RENAME TO users;
+  ALTER SEQUENCE public.users_id_seq OWNED BY public.users.id;
+END $$;
+
+COMMIT;
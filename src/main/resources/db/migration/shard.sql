@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS public.users_email_directory (
+  email_lower VARCHAR(254)  PRIMARY KEY,
+  user_id     BIGINT        NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS public.users_shard_ranges (
+  from_id     BIGINT        PRIMARY KEY,
+  to_id       BIGINT        NOT NULL,
+  shard       INTEGER       NOT NULL,
+  CHECK (from_id < to_id)
+);
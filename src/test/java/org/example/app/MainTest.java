@@ -3,6 +3,8 @@ package org.example.app;
 import org.example.dao.UserDao;
 import org.example.dao.UserDaoImpl;
 import org.example.domain.User;
+import org.example.domain.UserView;
+import org.example.metrics.HotKeys;
 import org.example.service.UserService;
 import org.example.util.HibernateUtil;
 import org.example.util.InputUtil;
@@ -75,7 +77,7 @@ class MainTest {
         verify(service).saveUser("name", "mail@mail.ru", 23);
 
         String[] lines = stdout.split("\n");
-        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | exit");
+        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | hot | exit");
         assertThat(lines[1]).isEqualTo("Enter user name");
         assertThat(lines[2]).isEqualTo("Enter user email");
         assertThat(lines[3]).isEqualTo("Enter user age");
@@ -114,8 +116,8 @@ class MainTest {
 
     @Test
     void readTest() {
-        when(service.readUser(12L))
-                .thenReturn(new User("name", "mail@mail.ru", 23));
+        when(service.viewUser(12L))
+                .thenReturn(new UserView(12L, "name", "mail@mail.ru", 23, null, null));
 
         String script = String.join("\n",
                 "read",
@@ -125,17 +127,17 @@ class MainTest {
 
         String stdout = runWithInput(script);
 
-        verify(service).readUser(12L);
+        verify(service).viewUser(12L);
 
         String[] lines = stdout.split("\n");
-        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | exit");
+        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | hot | exit");
         assertThat(lines[1]).isEqualTo("Enter user id");
-        assertThat(lines[2]).isEqualTo("User by your id: User{id=null, name='name', email='mail@mail.ru', age=23, createdAt=null, updatedAt=null}");
+        assertThat(lines[2]).isEqualTo("User by your id: User{id=12, name='name', email='mail@mail.ru', age=23, createdAt=null, updatedAt=null}");
     }
 
     @Test
     void readIllegalArgumentException() {
-        when(service.readUser(any())).thenThrow(new IllegalArgumentException());
+        when(service.viewUser(any())).thenThrow(new IllegalArgumentException());
 
         String script = String.join("\n",
                 "read",
@@ -172,7 +174,7 @@ class MainTest {
         verify(service).updateUser(12L, null, "new@mail.ru", null);
 
         String[] lines = stdout.split("\n");
-        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | exit");
+        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | hot | exit");
         assertThat(lines[1]).isEqualTo("Enter user id");
         assertThat(lines[2]).isEqualTo("Enter new name (optional)");
         assertThat(lines[3]).isEqualTo("Enter new age (optional)");
@@ -201,7 +203,7 @@ class MainTest {
         verify(service).updateUser(12L, null, "new@mail.ru", null);
 
         String[] lines = outputStream.toString().split("\n");
-        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | exit");
+        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | hot | exit");
         assertThat(lines[1]).isEqualTo("Enter user id");
         assertThat(lines[2]).isEqualTo("Enter new name (optional)");
         assertThat(lines[3]).isEqualTo("Enter new age (optional)");
@@ -230,7 +232,7 @@ class MainTest {
         verify(service).updateUser(12L, null, "new@mail.ru", null);
 
         String[] lines = outputStream.toString().split("\n");
-        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | exit");
+        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | hot | exit");
         assertThat(lines[1]).isEqualTo("Enter user id");
         assertThat(lines[2]).isEqualTo("Enter new name (optional)");
         assertThat(lines[3]).isEqualTo("Enter new age (optional)");
@@ -251,7 +253,7 @@ class MainTest {
         verify(service).removeUserById(12L);
 
         String[] lines = stdout.split("\n");
-        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | exit");
+        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | hot | exit");
         assertThat(lines[1]).isEqualTo("Enter user id");
         assertThat(lines[2]).isEqualTo("User deleted.");
     }
@@ -271,7 +273,7 @@ class MainTest {
         Main.run(service, sc);
 
         String[] lines = outputStream.toString().split("\n");
-        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | exit");
+        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | hot | exit");
         assertThat(lines[1]).isEqualTo("Enter user id");
         assertThat(lines[2]).isEqualTo("Error while deleting null");
 
@@ -286,8 +288,32 @@ class MainTest {
         String stdout = runWithInput(script);
 
         String[] lines = stdout.split("\n");
-        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | exit");
-        assertThat(lines[1]).isEqualTo("Unknown command. Use: create | read | update | delete | exit");
+        assertThat(lines[0]).isEqualTo("Commands: create | read | update | delete | hot | exit");
+        assertThat(lines[1]).isEqualTo("Unknown command. Use: create | read | update | delete | hot | exit");
+    }
+
+    @Test
+    void hotCommandPrintsTopKeys() {
+        HotKeys hotKeys = new HotKeys(1024, 4, 1);
+        for (int i = 0; i < 5; i++) hotKeys.recordRead(7L);
+        hotKeys.recordRead(8L);
+        when(service.getHotKeys()).thenReturn(hotKeys);
+
+        String[] lines = runWithInput("hot\nexit\n").split("\n");
+
+        assertThat(lines[1]).isEqualTo("readUser (6 calls):");
+        assertThat(lines[2]).isEqualTo("  7=5 (+-0)");
+        assertThat(lines[3]).isEqualTo("  8=1 (+-0)");
+        assertThat(lines[4]).isEqualTo("updateUser (0 calls):");
+    }
+
+    @Test
+    void hotCommandWithoutAnalytics() {
+        when(service.getHotKeys()).thenReturn(HotKeys.disabled());
+
+        String[] lines = runWithInput("hot\nexit\n").split("\n");
+
+        assertThat(lines[1]).isEqualTo("Hot key analytics is disabled");
     }
 
     ByteArrayOutputStream inputHelper(String input) {
@@ -313,7 +339,7 @@ class MainTest {
             doThrow(new RuntimeException()).when(sf).close();
             Main.main(new String[0]);
 
-            assertThat(output.toString()).contains("Commands: create | read | update | delete | exit");
+            assertThat(output.toString()).contains("Commands: create | read | update | delete | hot | exit");
             assertThat(output.toString()).contains("Error closing SessionFactory");
             verify(sf).close();
         }
@@ -328,7 +354,7 @@ class MainTest {
              MockedConstruction<org.example.service.UserService> userServiceMockedConstruction = mockConstruction(org.example.service.UserService.class)) {
             st.when(HibernateUtil::getSessionFactory).thenReturn(null);
             Main.main(new String[0]);
-            assertThat(output.toString()).contains("Commands: create | read | update | delete | exit");
+            assertThat(output.toString()).contains("Commands: create | read | update | delete | hot | exit");
         }
     }
 
@@ -0,0 +1,104 @@
+package org.example.cache;
+
+import org.example.domain.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class InvalidationBusTest {
+
+    private static User user(long id) {
+        User user = new User("user" + id, "user" + id + "@mail.ru", 30);
+        user.setId(id);
+        user.setCreatedAt(new Date(1_700_000_000_000L));
+        user.setUpdatedAt(new Date(1_700_000_000_000L));
+        return user;
+    }
+
+    @Test
+    void inProcessBusInvalidatesSubscribedCaches() {
+        OffHeapUserStore first = new OffHeapUserStore(4096);
+        OffHeapUserStore second = new OffHeapUserStore(4096);
+        for (long id = 1; id <= 3; id++) {
+            first.put(user(id));
+            second.put(user(id));
+        }
+        InProcessInvalidationBus bus = new InProcessInvalidationBus();
+        bus.subscribe(InvalidationListener.forCache(first));
+        bus.subscribe(InvalidationListener.forCache(second));
+
+        bus.publish(List.of(1L, 2L, 2L));
+
+        assertThat(first.get(1)).isNull();
+        assertThat(second.get(2)).isNull();
+        assertThat(second.get(3)).isNotNull();
+        InvalidationStats stats = bus.stats();
+        assertThat(stats.published()).isEqualTo(1);
+        assertThat(stats.batches()).isEqualTo(1);
+        assertThat(stats.invalidated()).isEqualTo(2);
+
+        bus.flushAll();
+
+        assertThat(first.size()).isZero();
+        assertThat(second.size()).isZero();
+        assertThat(bus.stats().flushes()).isEqualTo(1);
+    }
+
+    @Test
+    void failingListenerIsFlushedWithoutBlockingOthers() {
+        List<String> calls = new ArrayList<>();
+        InProcessInvalidationBus bus = new InProcessInvalidationBus();
+        bus.subscribe(new InvalidationListener() {
+            @Override
+            public void invalidate(java.util.Collection<Long> userIds) {
+                throw new IllegalStateException("boom");
+            }
+
+            @Override
+            public void flush() {
+                calls.add("flush");
+            }
+        });
+        OffHeapUserStore cache = new OffHeapUserStore(4096);
+        cache.put(user(5));
+        bus.subscribe(InvalidationListener.forCache(cache));
+
+        bus.publish(List.of(5L));
+
+        assertThat(calls).containsExactly("flush");
+        assertThat(cache.get(5)).isNull();
+    }
+
+    @Test
+    void payloadsRoundTripAndSplitUnderTheSizeLimit() {
+        List<Long> ids = LongStream.rangeClosed(1_000_000, 1_002_000).boxed().toList();
+
+        List<String> payloads = PgNotifyInvalidationBus.encode(1_700_000_000_123L, ids, 1_000);
+
+        assertThat(payloads).hasSizeGreaterThan(1).allSatisfy(p -> assertThat(p.length()).isLessThanOrEqualTo(1_000));
+        Set<Long> decoded = new LinkedHashSet<>();
+        for (String payload : payloads) {
+            assertThat(PgNotifyInvalidationBus.decode(payload, decoded)).isEqualTo(1_700_000_000_123L);
+        }
+        assertThat(decoded).containsExactlyElementsOf(ids);
+        assertThat(PgNotifyInvalidationBus.encode(1L, List.of(), 1_000)).isEmpty();
+    }
+
+    @Test
+    void malformedPayloadsAreRejected() {
+        List<Long> into = new ArrayList<>();
+        for (String payload : new String[]{null, "", "17", ":1", "17:", "17:1,,2", "x:1", "17:abc"}) {
+            assertThatThrownBy(() -> PgNotifyInvalidationBus.decode(payload, into))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThatThrownBy(() -> new PgNotifyInvalidationBus("jdbc:postgresql://localhost/db", "u", "p", "Bad-Channel",
+                java.time.Duration.ofMillis(10), java.time.Duration.ofSeconds(1))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.cache;
+
+import org.example.domain.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapUserStoreTest {
+
+    private static User user(long id, String name, String email, int age) {
+        User user = new User(name, email, age);
+        user.setId(id);
+        user.setCreatedAt(new Date(1_700_000_000_000L));
+        user.setUpdatedAt(new Date(1_700_000_500_000L));
+        return user;
+    }
+
+    @Test
+    void putAndGetRoundTripsAllFields() {
+        OffHeapUserStore store = new OffHeapUserStore(4096);
+        assertTrue(store.put(user(7, "Иван", "ivan@mail.ru", 31)));
+
+        User cached = store.get(7);
+
+        assertThat(cached.getId()).isEqualTo(7L);
+        assertThat(cached.getName()).isEqualTo("Иван");
+        assertThat(cached.getEmail()).isEqualTo("ivan@mail.ru");
+        assertThat(cached.getAge()).isEqualTo(31);
+        assertThat(cached.getCreatedAt()).isEqualTo(new Date(1_700_000_000_000L));
+        assertThat(cached.getUpdatedAt()).isEqualTo(new Date(1_700_000_500_000L));
+        assertNull(store.get(8));
+        assertThat(store.getHits()).isEqualTo(1);
+        assertThat(store.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void replacingAndInvalidatingLeavesDeadBytes() {
+        OffHeapUserStore store = new OffHeapUserStore(4096);
+        store.put(user(1, "a", "a@mail.ru", 1));
+        store.put(user(1, "b", "b@mail.ru", 2));
+
+        assertThat(store.get(1).getName()).isEqualTo("b");
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.getDeadBytes()).isPositive();
+
+        assertTrue(store.invalidate(1));
+        assertFalse(store.invalidate(1));
+        assertNull(store.get(1));
+        assertThat(store.getUsedBytes()).isZero();
+    }
+
+    @Test
+    void compactsInsteadOfGrowingPastCapacity() {
+        int recordBytes = OffHeapUserStore.HEADER_BYTES + "name".length() + "u0@mail.ru".length();
+        OffHeapUserStore store = new OffHeapUserStore(recordBytes * 3L);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(store.put(user(i, "name", "u" + i + "@mail.ru", 20)));
+        }
+        assertFalse(store.put(user(3, "name", "u3@mail.ru", 20)));
+
+        store.invalidate(1);
+        assertTrue(store.put(user(3, "name", "u3@mail.ru", 20)));
+
+        assertThat(store.getCompactions()).isEqualTo(1);
+        assertThat(store.getRejected()).isEqualTo(1);
+        assertThat(store.getDeadBytes()).isZero();
+        assertThat(store.get(0).getEmail()).isEqualTo("u0@mail.ru");
+        assertNull(store.get(1));
+        assertThat(store.get(2).getEmail()).isEqualTo("u2@mail.ru");
+        assertThat(store.get(3).getEmail()).isEqualTo("u3@mail.ru");
+    }
+
+    @Test
+    void invalidateByEmailRemovesOnlyMatchingUser() {
+        OffHeapUserStore store = new OffHeapUserStore(4096);
+        store.put(user(1, "a", "a@mail.ru", 1));
+        store.put(user(2, "b", "b@mail.ru", 2));
+
+        assertTrue(store.invalidateByEmail("b@mail.ru"));
+        assertFalse(store.invalidateByEmail("c@mail.ru"));
+
+        assertNotNull(store.get(1));
+        assertNull(store.get(2));
+    }
+
+    @Test
+    void rejectsUnpersistedUserAndBadCapacity() {
+        OffHeapUserStore store = new OffHeapUserStore(4096);
+        assertThrows(IllegalArgumentException.class, () -> store.put(new User("a", "a@mail.ru", 1)));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapUserStore(0));
+    }
+
+    @Test
+    void putIfNotInvalidatedSinceSkipsUsersInvalidatedAfterTheStamp() {
+        OffHeapUserStore store = new OffHeapUserStore(4096);
+        long before = store.invalidationStamp();
+        store.invalidate(7);
+        store.invalidateByEmail("petr@mail.ru");
+
+        assertFalse(store.putIfNotInvalidatedSince(user(7, "Иван", "ivan@mail.ru", 31), before));
+        assertFalse(store.putIfNotInvalidatedSince(user(8, "Петр", "petr@mail.ru", 40), before));
+        assertNull(store.get(7));
+
+        long after = store.invalidationStamp();
+        assertTrue(store.putIfNotInvalidatedSince(user(7, "Иван", "ivan@mail.ru", 31), after));
+        store.clear();
+        assertFalse(store.putIfNotInvalidatedSince(user(9, "Анна", "anna@mail.ru", 25), after));
+    }
+
+    @Test
+    void warmUpSkipsUsersInvalidatedSinceItBegan() {
+        OffHeapUserStore store = new OffHeapUserStore(4096);
+        store.beginWarmUp();
+        store.invalidateByEmail("ivan@mail.ru");
+
+        assertFalse(store.warm(user(7, "Иван", "ivan@mail.ru", 31)));
+        assertTrue(store.warm(user(8, "Петр", "petr@mail.ru", 40)));
+        assertThrows(IllegalStateException.class, store::beginWarmUp);
+
+        store.clear();
+
+        assertFalse(store.warm(user(9, "Анна", "anna@mail.ru", 25)));
+        store.endWarmUp();
+        assertTrue(store.put(user(9, "Анна", "anna@mail.ru", 25)));
+        assertThrows(IllegalStateException.class, () -> store.warm(user(10, "Олег", "oleg@mail.ru", 50)));
+    }
+}
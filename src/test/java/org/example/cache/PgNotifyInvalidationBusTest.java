@@ -0,0 +1,176 @@
+package org.example.cache;
+
+import org.example.dao.DeleteMode;
+import org.example.dao.UnitOfWork;
+import org.example.dao.UserDaoImpl;
+import org.example.dao.UserDaoSettings;
+import org.example.domain.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.service.ServiceRegistry;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PgNotifyInvalidationBusTest {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18").withDatabaseName("userdb").withUsername("userapp").withPassword("password");
+
+    private SessionFactory sessionFactory;
+    private PgNotifyInvalidationBus writerBus;
+    private PgNotifyInvalidationBus readerBus;
+    private OffHeapUserStore readerCache;
+    private UserDaoImpl userDao;
+
+    @BeforeAll
+    void setUpAll() {
+        sessionFactory = buildSessionFactory();
+    }
+
+    @AfterAll
+    void tearDownAll() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        try (Session s = sessionFactory.openSession()) {
+            Transaction transaction = s.beginTransaction();
+            s.createNativeMutationQuery(
+                    "TRUNCATE TABLE users, users_outbox RESTART IDENTITY CASCADE"
+            ).executeUpdate();
+            transaction.commit();
+        }
+        writerBus = newBus();
+        readerBus = newBus();
+        readerCache = new OffHeapUserStore(64 * 1024);
+        readerBus.subscribe(InvalidationListener.forCache(readerCache));
+        writerBus.start();
+        readerBus.start();
+        await(readerBus::isListening);
+        userDao = new UserDaoImpl(sessionFactory, UserDaoSettings.defaults()
+                .withDeleteMode(DeleteMode.SOFT)
+                .withInvalidationBus(writerBus));
+    }
+
+    @AfterEach
+    void tearDown() {
+        writerBus.close();
+        readerBus.close();
+    }
+
+    @Test
+    void committedWritesInvalidateOtherInstancesCaches() {
+        User first = userDao.create(new User("Ann", "ann@mail.ru", 30));
+        User second = userDao.create(new User("Bob", "bob@mail.ru", 40));
+        readerCache.put(first);
+        readerCache.put(second);
+
+        first.setName("Anna");
+        userDao.update(first);
+        await(() -> readerCache.get(first.getId()) == null);
+        assertThat(readerCache.get(second.getId())).isNotNull();
+
+        userDao.deleteByEmail("bob@mail.ru");
+        await(() -> readerCache.get(second.getId()) == null);
+
+        InvalidationStats stats = readerBus.stats();
+        assertThat(stats.received()).isEqualTo(2);
+        assertThat(stats.invalidated()).isEqualTo(2);
+        assertThat(stats.lagMaxMillis()).isGreaterThanOrEqualTo(0);
+        assertThat(writerBus.stats().published()).isEqualTo(2);
+    }
+
+    @Test
+    void rolledBackWritesAreNotPublished() {
+        InProcessInvalidationBus bus = new InProcessInvalidationBus();
+        OffHeapUserStore cache = new OffHeapUserStore(64 * 1024);
+        bus.subscribe(InvalidationListener.forCache(cache));
+        UserDaoImpl dao = new UserDaoImpl(sessionFactory, UserDaoSettings.defaults().withInvalidationBus(bus));
+        User user = dao.create(new User("Ann", "ann@mail.ru", 30));
+        cache.put(user);
+
+        assertThatThrownBy(() -> new UnitOfWork(sessionFactory).run(() -> {
+            dao.deleteById(user.getId());
+            throw new IllegalStateException("abort");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.get(user.getId())).isNotNull();
+        assertThat(bus.stats().published()).isZero();
+
+        dao.deleteById(user.getId());
+
+        assertThat(cache.get(user.getId())).isNull();
+    }
+
+    @Test
+    void listenerReconnectsAndFlushesAfterLosingItsConnection() throws Exception {
+        User user = userDao.create(new User("Ann", "ann@mail.ru", 30));
+        readerCache.put(user);
+
+        try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE application_name = '"
+                    + PgNotifyInvalidationBus.LISTENER_APPLICATION_NAME + "'");
+        }
+
+        await(() -> readerBus.stats().reconnects() >= 1 && readerBus.isListening());
+        assertThat(readerCache.size()).isZero();
+
+        readerCache.put(user);
+        user.setAge(31);
+        userDao.update(user);
+        await(() -> readerCache.get(user.getId()) == null);
+    }
+
+    private PgNotifyInvalidationBus newBus() {
+        return new PgNotifyInvalidationBus(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword(),
+                PgNotifyInvalidationBus.DEFAULT_CHANNEL, Duration.ofMillis(50), Duration.ofMillis(200));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail("Condition not met within 10s");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+
+    private SessionFactory buildSessionFactory() {
+        Configuration configuration = new Configuration();
+
+        configuration.addAnnotatedClass(org.example.domain.User.class);
+        configuration.addAnnotatedClass(org.example.domain.OutboxEvent.class);
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("jakarta.persistence.validation.mode", "none");
+
+        ServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build();
+        return configuration.buildSessionFactory(registry);
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.collections;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void neverReportsInsertedEmailAsAbsent() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(EmailHash.of("user" + i + "@mail.ru"));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(EmailHash.of("USER" + i + "@mail.ru")));
+        }
+        assertThat(filter.getInsertions()).isEqualTo(10_000);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearConfiguredTarget() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(EmailHash.of("user" + i + "@mail.ru"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(EmailHash.of("other" + i + "@mail.ru"))) falsePositives++;
+        }
+
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(filter.estimatedFalsePositiveRate()).isCloseTo(0.01, within(0.005));
+    }
+
+    @Test
+    void sizesBitsAndHashFunctionsFromRate() {
+        BloomFilter filter = new BloomFilter(1_000_000, 0.01);
+
+        assertThat(filter.hashFunctions()).isEqualTo(7);
+        assertThat(filter.memoryBytes()).isBetween(1_190_000L, 1_200_000L);
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.collections;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimatesNeverUndercountAndStayCloseForHotKeys() {
+        CountMinSketch sketch = new CountMinSketch(4096, Long.MAX_VALUE);
+        Random random = new Random(1);
+        int[] truth = new int[20_000];
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(10) < 5 ? random.nextInt(10) : random.nextInt(truth.length);
+            truth[key]++;
+            sketch.add(key);
+        }
+
+        for (int key = 0; key < truth.length; key++) {
+            assertThat(sketch.estimate(key)).isGreaterThanOrEqualTo(truth[key]);
+        }
+        for (int key = 0; key < 10; key++) {
+            assertThat(sketch.estimate(key)).isCloseTo(truth[key], within(truth[key] / 50));
+        }
+    }
+
+    @Test
+    void countersAreHalvedAfterSampleSize() {
+        CountMinSketch sketch = new CountMinSketch(64, 100);
+        for (int i = 0; i < 99; i++) {
+            sketch.add(42);
+        }
+        assertThat(sketch.estimate(42)).isEqualTo(99);
+
+        sketch.add(42);
+
+        assertThat(sketch.getResets()).isEqualTo(1);
+        assertThat(sketch.estimate(42)).isEqualTo(50);
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws Exception {
+        CountMinSketch sketch = new CountMinSketch(1024, Long.MAX_VALUE);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = java.util.stream.IntStream.range(0, 8)
+                    .<Future<?>>mapToObj(t -> executor.submit(() -> {
+                        for (int i = 0; i < 10_000; i++) sketch.add(7);
+                    }))
+                    .toList();
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(sketch.estimate(7)).isEqualTo(80_000);
+    }
+
+    @Test
+    void invalidArgumentsAreRejected() {
+        assertThatThrownBy(() -> new CountMinSketch(0, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CountMinSketch(16, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(new CountMinSketch(1000, 10).width()).isEqualTo(1024);
+    }
+
+    @Test
+    void topKKeepsHeavyHittersAndIgnoresOneOffKeys() {
+        CountMinSketch sketch = new CountMinSketch(4096, Long.MAX_VALUE);
+        SpaceSavingTopK<Integer> topK = new SpaceSavingTopK<>(5);
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(4) == 0 ? 1_000 + random.nextInt(50_000) : random.nextInt(5);
+            topK.offer(key, sketch.add(key));
+        }
+
+        assertThat(topK.top(5)).extracting(SpaceSavingTopK.Entry::key).containsExactlyInAnyOrder(0, 1, 2, 3, 4);
+        assertThat(topK.top(5)).allSatisfy(entry -> assertThat(entry.count()).isBetween(14_000L, 16_000L));
+        assertThat(topK.top(2)).hasSize(2);
+
+        topK.halve();
+
+        assertThat(topK.top(1).get(0).count()).isBetween(7_000L, 8_000L);
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.collections;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailHashIndexTest {
+
+    @Test
+    void emailHashIgnoresCaseAndSurroundingWhitespace() {
+        assertEquals(EmailHash.of("user@mail.ru"), EmailHash.of("  USER@Mail.ru "));
+        assertNotEquals(EmailHash.of("user@mail.ru"), EmailHash.of("user@mail.com"));
+    }
+
+    @Test
+    void findPutAndConditionalRemove() {
+        EmailHashIndex index = new EmailHashIndex(16, 3);
+        assertThat(index.stripeCount()).isEqualTo(4);
+
+        index.put("a@mail.ru", 1);
+        index.put("b@mail.ru", 2);
+
+        assertEquals(1, index.find("A@mail.ru"));
+        assertEquals(EmailHashIndex.MISSING, index.find("c@mail.ru"));
+        assertFalse(index.remove("a@mail.ru", 2));
+        assertTrue(index.remove("a@mail.ru", 1));
+        assertEquals(2, index.remove("b@mail.ru"));
+        assertThat(index.size()).isZero();
+        assertThat(index.getHits()).isEqualTo(1);
+        assertThat(index.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentWritersAndReadersSeeConsistentEntries() throws Exception {
+        EmailHashIndex index = new EmailHashIndex(1_000, 8);
+        AtomicInteger mismatches = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 10_000;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    index.put("user" + (offset + i) + "@mail.ru", offset + i);
+                    if (index.find("user" + (offset + i) + "@mail.ru") != offset + i) mismatches.incrementAndGet();
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        assertThat(mismatches.get()).isZero();
+        assertThat(index.size()).isEqualTo(40_000);
+        assertEquals(12_345, index.find("user12345@mail.ru"));
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.collections;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveHashMapsTest {
+
+    @Test
+    void longLongMapMatchesHashMapUnderRandomOperations() {
+        LongLongHashMap map = new LongLongHashMap(4, -1L);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000) - 10;
+            if (random.nextInt(3) == 0) {
+                assertEquals((long) expected.getOrDefault(key, -1L), map.remove(key));
+                expected.remove(key);
+            } else {
+                long value = random.nextLong();
+                assertEquals((long) expected.getOrDefault(key, -1L), map.put(key, value));
+                expected.put(key, value);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = -10; key < 1_990; key++) {
+            assertEquals((long) expected.getOrDefault(key, -1L), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+    }
+
+    @Test
+    void longIntMapHandlesZeroKeyAndClear() {
+        LongIntHashMap map = new LongIntHashMap(0, Integer.MIN_VALUE);
+        assertEquals(Integer.MIN_VALUE, map.put(0, 5));
+        assertEquals(5, map.put(0, 6));
+        map.put(Long.MAX_VALUE, 7);
+        map.put(Long.MIN_VALUE, 8);
+
+        assertThat(map.size()).isEqualTo(3);
+        assertEquals(6, map.get(0));
+        assertEquals(8, map.get(Long.MIN_VALUE));
+
+        map.clear();
+        assertThat(map.size()).isZero();
+        assertEquals(Integer.MIN_VALUE, map.get(0));
+        assertEquals(Integer.MIN_VALUE, map.get(Long.MAX_VALUE));
+    }
+
+    @Test
+    void longObjectMapGrowsRemovesAndIterates() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>(2);
+        for (long i = 0; i < 1_000; i++) {
+            map.put(i, "v" + i);
+        }
+        for (long i = 0; i < 1_000; i += 2) {
+            assertEquals("v" + i, map.remove(i));
+        }
+
+        assertThat(map.size()).isEqualTo(500);
+        assertNull(map.get(10));
+        assertEquals("v11", map.get(11));
+        assertEquals("new", map.computeIfAbsent(10, key -> "new"));
+
+        long[] sum = {0};
+        map.forEach((key, value) -> sum[0] += key);
+        assertThat(sum[0]).isEqualTo(250_000L + 10);
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+    }
+}
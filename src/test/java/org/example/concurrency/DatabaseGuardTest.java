@@ -0,0 +1,144 @@
+package org.example.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseGuardTest {
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void saturatedBulkheadFailsFastAndKeepsOtherBulkheadOpen() throws Exception {
+        DatabaseGuard guard = new DatabaseGuard(
+                new AdaptiveLimiter("reads", 1, 1, 1, SLOW, 0.5),
+                new AdaptiveLimiter("writes", 1, 1, 1, SLOW, 0.5),
+                RetryPolicy.none());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread reader = new Thread(() -> guard.call(DatabaseGuard.Access.READ, "read", () -> {
+            started.countDown();
+            await(release);
+            return null;
+        }));
+        reader.start();
+        started.await();
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> guard.call(DatabaseGuard.Access.READ, "read", () -> "second"));
+        assertEquals("Too many concurrent database reads, try again later", exception.getMessage());
+        assertThat(guard.call(DatabaseGuard.Access.WRITE, "create", () -> "write")).isEqualTo("write");
+
+        release.countDown();
+        reader.join();
+        assertThat(guard.reads().getRejected()).isEqualTo(1);
+        assertThat(guard.reads().getInFlight()).isZero();
+    }
+
+    @Test
+    void retriesTransientSqlStates() {
+        DatabaseGuard guard = new DatabaseGuard(null, null, new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(2)));
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = guard.call(DatabaseGuard.Access.WRITE, "update", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("Database error while update user", new SQLException("deadlock", "40P01"));
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() {
+        DatabaseGuard guard = new DatabaseGuard(null, null, new RetryPolicy(2, Duration.ZERO, Duration.ZERO));
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> guard.call(DatabaseGuard.Access.READ, "read", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("connection lost", new SQLException("io", "08006"));
+        }));
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void writesAreNotRetriedAfterLosingTheConnection() {
+        DatabaseGuard guard = new DatabaseGuard(null, null, new RetryPolicy(3, Duration.ZERO, Duration.ZERO));
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> guard.call(DatabaseGuard.Access.WRITE, "create", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("connection lost", new SQLException("io", "08006"));
+        }));
+        assertThat(attempts).hasValue(1);
+
+        String result = guard.call(DatabaseGuard.Access.WRITE, "create", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("refused", new SQLException("connect", "08001"));
+            }
+            return "ok";
+        });
+        assertThat(result).isEqualTo("ok");
+    }
+
+    @Test
+    void doesNotRetryNonTransientFailures() {
+        DatabaseGuard guard = new DatabaseGuard(null, null, new RetryPolicy(3, Duration.ZERO, Duration.ZERO));
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> guard.call(DatabaseGuard.Access.WRITE, "create", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("That email is already used", new SQLException("dup", "23505"));
+        }));
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void limiterBacksOffOnSlowCallsAndGrowsWhenBusy() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("reads", 10, 2, 12, SLOW, 0.5);
+
+        limiter.tryAcquire().release(SLOW * 2, false);
+        assertThat(limiter.getLimit()).isEqualTo(5);
+        limiter.tryAcquire().release(0, true);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+        limiter.tryAcquire().release(0, true);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+
+        AdaptiveLimiter.Permit first = limiter.tryAcquire();
+        AdaptiveLimiter.Permit second = limiter.tryAcquire();
+        assertThat(limiter.tryAcquire()).isNull();
+        second.release(0, false);
+        first.release(0, false);
+        assertThat(limiter.getLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentSlowCallsShrinkTheLimitOnce() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("reads", 16, 2, 16, SLOW, 0.5);
+        java.util.List<AdaptiveLimiter.Permit> burst = new java.util.ArrayList<>();
+        for (int i = 0; i < 8; i++) burst.add(limiter.tryAcquire());
+
+        burst.forEach(permit -> permit.release(SLOW * 2, false));
+        assertThat(limiter.getLimit()).isEqualTo(8);
+
+        limiter.tryAcquire().release(SLOW * 2, false);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
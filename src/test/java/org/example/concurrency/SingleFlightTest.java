@@ -0,0 +1,111 @@
+package org.example.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallsForSameKeyShareOneExecution() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>("read", Duration.ofSeconds(5));
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> flight.execute(1L, () -> {
+                    calls.incrementAndGet();
+                    await(release);
+                    return "user";
+                })));
+            }
+            while (flight.getCollapsed() < 7) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("user");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(flight.getExecuted()).isEqualTo(1);
+        assertThat(flight.getInFlight()).isZero();
+    }
+
+    @Test
+    void waitersReceiveLeaderFailure() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>("read", Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread leader = new Thread(() -> assertThrows(IllegalArgumentException.class, () -> flight.execute(1L, () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalArgumentException("User with id={1} is not existed");
+        })));
+        leader.start();
+        started.await();
+
+        CompletableFuture<Throwable> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                flight.execute(1L, () -> "unexpected");
+                return null;
+            } catch (RuntimeException e) {
+                return e;
+            }
+        });
+        while (flight.getCollapsed() < 1) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        leader.join();
+
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("User with id={1} is not existed");
+    }
+
+    @Test
+    void waitingIsBoundedByDeadline() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>("read", Duration.ofSeconds(30));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread leader = new Thread(() -> flight.execute(1L, () -> {
+            started.countDown();
+            await(release);
+            return "slow";
+        }));
+        leader.start();
+        started.await();
+
+        try {
+            IllegalStateException exception = assertThrows(IllegalStateException.class,
+                    () -> Deadline.after(Duration.ofMillis(50)).call(() -> flight.execute(1L, () -> "unexpected")));
+            assertEquals("Timed out waiting for in-flight read", exception.getMessage());
+        } finally {
+            release.countDown();
+            leader.join();
+        }
+        assertThat(flight.getTimedOut()).isEqualTo(1);
+        assertThat(flight.execute(1L, () -> "fresh")).isEqualTo("fresh");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.dao;
+
+import org.example.domain.User;
+import org.example.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryUserDaoTest extends UserDaoContractTest {
+    private InMemoryUserDao userDao;
+    private InMemoryUserDao softDeleteDao;
+
+    @BeforeEach
+    void setUp() {
+        userDao = new InMemoryUserDao();
+        softDeleteDao = userDao.withDeleteMode(DeleteMode.SOFT);
+    }
+
+    @Override
+    protected UserDao dao() {
+        return userDao;
+    }
+
+    @Override
+    protected UserDao softDeleteDao() {
+        return softDeleteDao;
+    }
+
+    @Test
+    void concurrentCreatesWithSameEmailAdmitExactlyOne() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger duplicates = new AtomicInteger();
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String email = (i % 2 == 0 ? "same@mail.ru" : "SAME@mail.ru");
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        userDao.create(new User("name", email, 20));
+                    } catch (IllegalStateException e) {
+                        duplicates.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(duplicates.get()).isEqualTo(63);
+        assertThat(userDao.size()).isEqualTo(1);
+        assertThat(userDao.mailUniqueCheck("same@mail.ru")).isFalse();
+    }
+
+    @Test
+    void returnedUsersAreDetachedCopies() {
+        User saved = userDao.create(new User("name", "name@mail.ru", 20));
+
+        User read = userDao.read(saved.getId());
+        read.setName("changed");
+        saved.setAge(99);
+
+        assertThat(userDao.read(saved.getId())).extracting(User::getName, User::getAge).containsExactly("name", 20);
+    }
+
+    @Test
+    void clearResetsDataAndSequence() {
+        userDao.create(new User("name", "name@mail.ru", 20));
+        softDeleteDao.create(new User("name", "other@mail.ru", 20));
+
+        userDao.clear();
+
+        assertThat(softDeleteDao.size()).isZero();
+        assertThat(userDao.create(new User("name", "name@mail.ru", 20)).getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void userServiceRunsWithoutDatabase() {
+        UserService service = new UserService(userDao);
+
+        User saved = service.saveUser("name", "name@mail.ru", 20);
+        service.updateUser(saved.getId(), "new", null, 21);
+
+        assertThat(service.readUser(saved.getId())).extracting(User::getName, User::getAge).containsExactly("new", 21);
+        assertThat(service.findUserByEmail("NAME@mail.ru")).isPresent();
+        service.removeUserByEmail("name@mail.ru");
+        assertThat(service.findUser(saved.getId())).isEmpty();
+    }
+
+    @Test
+    void rejectsNonPositiveConcurrency() {
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryUserDao(DeleteMode.HARD, 0));
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.dao;
+
+import org.example.domain.User;
+import org.example.storage.FsyncPolicy;
+import org.example.storage.LogStructuredUserStore;
+import org.example.storage.StorageSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStructuredUserDaoTest extends UserDaoContractTest {
+    @TempDir
+    Path directory;
+
+    private LogStructuredUserStore store;
+    private LogStructuredUserDao userDao;
+    private LogStructuredUserDao softDeleteDao;
+
+    @BeforeEach
+    void setUp() {
+        open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Override
+    protected UserDao dao() {
+        return userDao;
+    }
+
+    @Override
+    protected UserDao softDeleteDao() {
+        return softDeleteDao;
+    }
+
+    @Test
+    void dataSurvivesRestart() {
+        User kept = userDao.create(new User("name", "Kept@mail.ru", 20));
+        User removed = userDao.create(new User("name", "removed@mail.ru", 20));
+        User hidden = userDao.create(new User("name", "hidden@mail.ru", 20));
+        kept.setAge(21);
+        userDao.update(kept);
+        userDao.deleteById(removed.getId());
+        softDeleteDao.deleteById(hidden.getId());
+
+        store.close();
+        open();
+
+        assertThat(userDao.read(kept.getId())).extracting(User::getEmail, User::getAge).containsExactly("Kept@mail.ru", 21);
+        assertThat(userDao.findById(removed.getId())).isEmpty();
+        assertThat(userDao.findById(hidden.getId())).isEmpty();
+        assertFalse(userDao.mailUniqueCheck("kept@mail.ru"));
+        assertTrue(userDao.mailUniqueCheck("removed@mail.ru"));
+        assertTrue(userDao.mailUniqueCheck("hidden@mail.ru"));
+        assertThat(userDao.create(new User("name", "next@mail.ru", 20)).getId()).isEqualTo(4L);
+    }
+
+    @Test
+    void rejectedUserCanNotBeStoredTwiceUnderConcurrentCreates() throws Exception {
+        Thread[] threads = new Thread[8];
+        int[] failures = new int[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            int slot = t;
+            threads[t] = Thread.ofVirtual().start(() -> {
+                try {
+                    userDao.create(new User("name", "same@mail.ru", 20));
+                } catch (IllegalStateException e) {
+                    failures[slot] = 1;
+                }
+            });
+        }
+        for (Thread thread : threads) thread.join();
+
+        int total = 0;
+        for (int failure : failures) total += failure;
+        assertThat(total).isEqualTo(threads.length - 1);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    private void open() {
+        store = LogStructuredUserStore.open(StorageSettings.defaults(directory)
+                .withSegmentBytes(1 << 20)
+                .withFsyncPolicy(FsyncPolicy.NEVER)
+                .withCompaction(0.5, Duration.ZERO));
+        userDao = new LogStructuredUserDao(store);
+        softDeleteDao = new LogStructuredUserDao(store, DeleteMode.SOFT);
+    }
+}
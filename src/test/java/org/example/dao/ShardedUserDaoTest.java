@@ -0,0 +1,343 @@
+package org.example.dao;
+
+import org.example.domain.User;
+import org.example.domain.UserView;
+import org.example.sharding.Resharder;
+import org.example.sharding.ShardCatalog;
+import org.example.sharding.ShardRouter;
+import org.example.sharding.ShardRouter.KeyRange;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.service.ServiceRegistry;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ShardedUserDaoTest {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18").withDatabaseName("userdb").withUsername("userapp").withPassword("password");
+
+    private static final int SHARDS = 3;
+
+    private final List<String> urls = new ArrayList<>();
+    private final List<SessionFactory> shards = new ArrayList<>();
+    private ShardedUserDao dao;
+
+    @BeforeAll
+    void setUpAll() throws Exception {
+        urls.add(postgres.getJdbcUrl());
+        for (int i = 1; i < SHARDS; i++) {
+            execute(urls.get(0), "CREATE DATABASE shard_" + i);
+            urls.add(postgres.getJdbcUrl().replace("/userdb", "/shard_" + i));
+        }
+        for (String url : urls) {
+            execute(url, resource("/db/migration/init.sql"));
+            execute(url, resource("/db/migration/shard.sql"));
+            shards.add(buildSessionFactory(url));
+        }
+    }
+
+    @AfterAll
+    void tearDownAll() {
+        shards.forEach(SessionFactory::close);
+    }
+
+    @BeforeEach
+    void cleanShards() {
+        for (int i = 0; i < SHARDS; i++) {
+            try (Session s = shards.get(i).openSession()) {
+                Transaction transaction = s.beginTransaction();
+                s.createNativeMutationQuery(
+                        "TRUNCATE TABLE users, users_outbox, users_email_directory, users_shard_ranges RESTART IDENTITY CASCADE"
+                ).executeUpdate();
+                transaction.commit();
+            }
+            ShardCatalog.prepare(shards.get(i), i, SHARDS);
+        }
+        dao = new ShardedUserDao(shards);
+    }
+
+    @AfterEach
+    void closeDao() {
+        dao.close();
+    }
+
+    @Test
+    void usersAreCreatedOnTheirEmailShardWithStrideIds() {
+        ShardRouter router = dao.getRouter();
+        for (int i = 0; i < 30; i++) {
+            User user = dao.create(new User("name", "user" + i + "@mail.ru", 20));
+
+            assertThat(ShardRouter.strideShard(user.getId(), SHARDS)).isEqualTo(router.shardForEmail(user.getEmail()));
+            assertThat(dao.read(user.getId()).getEmail()).isEqualTo("user" + i + "@mail.ru");
+            assertThat(dao.findByEmail("USER" + i + "@mail.ru")).map(User::getId).contains(user.getId());
+        }
+        assertThat(dao.stats()).allSatisfy(stats -> assertThat(stats.active()).isPositive());
+    }
+
+    @Test
+    void emailStaysUniqueAcrossShards() {
+        User first = dao.create(new User("first", emailOnShard(0, "first"), 20));
+        User second = dao.create(new User("second", emailOnShard(1, "second"), 20));
+
+        assertThatThrownBy(() -> dao.create(new User("copy", first.getEmail().toUpperCase(), 20)))
+                .isInstanceOf(IllegalStateException.class).hasMessage("That email is already used");
+        second.setEmail(first.getEmail());
+        assertThatThrownBy(() -> dao.update(second))
+                .isInstanceOf(IllegalStateException.class).hasMessage("That email is already used");
+        assertThat(dao.read(second.getId()).getEmail()).startsWith("second");
+        assertThat(directorySize()).isEqualTo(2);
+    }
+
+    @Test
+    void emailChangeToAnotherDirectoryShardMovesTheEntry() {
+        String oldEmail = emailOnShard(0, "old");
+        String newEmail = emailOnShard(2, "new");
+        User user = dao.create(new User("name", oldEmail, 20));
+
+        user.setEmail(newEmail);
+        dao.update(user);
+
+        assertThat(ShardRouter.strideShard(user.getId(), SHARDS)).isEqualTo(0);
+        assertThat(dao.findByEmail(newEmail)).map(User::getId).contains(user.getId());
+        assertThat(dao.mailUniqueCheck(oldEmail)).isTrue();
+        assertThat(dao.create(new User("other", oldEmail, 30)).getId()).isNotEqualTo(user.getId());
+        assertThat(directorySize()).isEqualTo(2);
+    }
+
+    @Test
+    void deletesReleaseTheEmail() {
+        User user = dao.create(new User("name", "name@mail.ru", 20));
+        dao.deleteById(user.getId());
+
+        assertThat(dao.mailUniqueCheck("name@mail.ru")).isTrue();
+        assertThat(directorySize()).isZero();
+
+        User again = dao.create(new User("name", "name@mail.ru", 20));
+        assertThat(dao.tryDeleteByEmail("NAME@mail.ru")).isFalse();
+        assertThat(dao.tryDeleteByEmail("name@mail.ru")).isTrue();
+        assertThat(dao.findById(again.getId())).isEmpty();
+        assertThatThrownBy(() -> dao.deleteById(again.getId()))
+                .isInstanceOf(IllegalArgumentException.class).hasMessage("User with id={" + again.getId() + "} is not existed");
+
+        try (ShardedUserDao soft = new ShardedUserDao(shards, UserDaoSettings.defaults().withDeleteMode(DeleteMode.SOFT))) {
+            User third = soft.create(new User("name", "name@mail.ru", 20));
+            soft.deleteByEmail("name@mail.ru");
+            assertThat(soft.findById(third.getId())).isEmpty();
+            assertThat(soft.stats().stream().mapToLong(ShardedUserDao.ShardStats::deleted).sum()).isEqualTo(1);
+        }
+        assertThat(directorySize()).isZero();
+    }
+
+    @Test
+    void staleDirectoryEntryIsTakenOver() {
+        int shard = dao.getRouter().shardForEmail("ghost@mail.ru");
+        try (Session s = shards.get(shard).openSession()) {
+            Transaction transaction = s.beginTransaction();
+            s.createNativeMutationQuery("INSERT INTO users_email_directory (email_lower, user_id) VALUES ('ghost@mail.ru', 999)")
+                    .executeUpdate();
+            transaction.commit();
+        }
+
+        assertThat(dao.mailUniqueCheck("ghost@mail.ru")).isTrue();
+        User user = dao.create(new User("ghost", "ghost@mail.ru", 20));
+
+        assertThat(dao.findByEmail("ghost@mail.ru")).map(User::getId).contains(user.getId());
+    }
+
+    @Test
+    void reservedEmailIsNotTakenOverWhileTheOwnerChangesToIt() throws Exception {
+        String newEmail = emailOnShard(2, "wanted");
+        User user = dao.create(new User("name", emailOnShard(0, "old"), 20));
+        // the first half of a cross-shard email change: the new email is reserved, the user row not yet updated
+        try (Session s = shards.get(2).openSession()) {
+            Transaction transaction = s.beginTransaction();
+            s.createNativeMutationQuery("INSERT INTO users_email_directory (email_lower, user_id) VALUES (:e, :id)")
+                    .setParameter("e", newEmail)
+                    .setParameter("id", user.getId())
+                    .executeUpdate();
+            transaction.commit();
+        }
+
+        CompletableFuture<User> other;
+        try (Connection home = DriverManager.getConnection(urls.get(0), postgres.getUsername(), postgres.getPassword())) {
+            home.setAutoCommit(false);
+            try (Statement statement = home.createStatement()) {
+                statement.executeUpdate("UPDATE users SET email = '" + newEmail + "' WHERE id = " + user.getId());
+            }
+            other = CompletableFuture.supplyAsync(() -> dao.create(new User("other", newEmail, 30)));
+            while (!other.isDone() && lockWaiters() == 0) {
+                Thread.onSpinWait();
+            }
+            home.commit();
+        }
+
+        assertThatThrownBy(other::join).hasCauseInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("That email is already used");
+        assertThat(dao.findByEmail(newEmail)).map(User::getId).contains(user.getId());
+    }
+
+    @Test
+    void writesOfAnotherProcessWaitForTheFreezeAndFollowMovedRows() throws Exception {
+        User user = dao.create(new User("name", emailOnShard(0, "moving"), 20));
+        long toId = Math.min(ShardCatalog.nextId(shards.get(0)), ShardCatalog.nextId(shards.get(1)));
+        try (ShardedUserDao otherProcess = new ShardedUserDao(shards)) {
+            ShardCatalog.Freeze freeze = ShardCatalog.freezeWrites(shards, Duration.ofSeconds(5));
+            CompletableFuture<User> blocked;
+            try {
+                blocked = CompletableFuture.supplyAsync(() -> otherProcess.create(new User("late", "late@mail.ru", 20)));
+                while (!blocked.isDone() && lockWaiters() == 0) {
+                    Thread.onSpinWait();
+                }
+                assertThat(blocked).isNotDone();
+            } finally {
+                freeze.close();
+            }
+            assertThat(blocked.get(5, TimeUnit.SECONDS).getId()).isPositive();
+
+            new Resharder(shards, dao.getRouter()).move(1, toId, 2);
+            user.setAge(42);
+            otherProcess.update(user);
+
+            assertThat(otherProcess.getRouter().shardForId(user.getId())).isEqualTo(2);
+        }
+        assertThat(dao.read(user.getId()).getAge()).isEqualTo(42);
+        assertThat(dao.stats().stream().mapToLong(ShardedUserDao.ShardStats::active).sum()).isEqualTo(2);
+    }
+
+    @Test
+    void listingAndStatsGatherAllShards() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ids.add(dao.create(new User("name", "list" + i + "@mail.ru", 20)).getId());
+        }
+        dao.deleteById(ids.get(0));
+        List<Long> active = ids.subList(1, ids.size()).stream().sorted().toList();
+
+        assertThat(dao.listActive(0, 5)).extracting(UserView::id).containsExactlyElementsOf(active.subList(0, 5));
+        assertThat(dao.listActive(active.get(4), 100)).extracting(UserView::id).containsExactlyElementsOf(active.subList(5, active.size()));
+        assertThat(dao.countActive()).isEqualTo(19);
+        assertThat(dao.stats()).extracting(ShardedUserDao.ShardStats::shard).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void rangeMovesOnlineAndSurvivesRestart() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            users.add(dao.create(new User("name", "move" + i + "@mail.ru", 20)));
+        }
+        long toId = Math.min(ShardCatalog.nextId(shards.get(0)), ShardCatalog.nextId(shards.get(1)));
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger updates = new AtomicInteger();
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            while (running.get()) {
+                User user = users.get(updates.get() % users.size());
+                user.setAge(30 + updates.incrementAndGet() % 50);
+                dao.update(user);
+            }
+        });
+
+        Resharder.MoveReport report;
+        try {
+            report = new Resharder(shards, dao.getRouter(), 7).move(1, toId, 2);
+        } finally {
+            running.set(false);
+            writer.get();
+        }
+
+        assertThat(updates.get()).isPositive();
+        assertThat(report.removed()).isEqualTo(report.copied());
+        assertThat(dao.stats().get(0).active() + dao.stats().get(1).active())
+                .isEqualTo(users.stream().filter(u -> u.getId() >= toId && ShardRouter.strideShard(u.getId(), SHARDS) != 2).count());
+        for (User user : users) {
+            assertThat(dao.read(user.getId())).extracting(User::getEmail, User::getAge).containsExactly(user.getEmail(), user.getAge());
+        }
+        assertThat(ShardCatalog.loadRanges(shards.get(0))).containsExactly(new KeyRange(1, toId, 2));
+
+        try (ShardedUserDao restarted = new ShardedUserDao(shards)) {
+            assertThat(restarted.findByEmail("move0@mail.ru")).map(User::getId).contains(users.get(0).getId());
+            User created = restarted.create(new User("after", "after@mail.ru", 20));
+            assertThat(restarted.read(created.getId()).getName()).isEqualTo("after");
+            assertThat(restarted.countActive()).isEqualTo(61);
+        }
+        assertThatThrownBy(() -> new Resharder(shards, dao.getRouter()).move(1, Long.MAX_VALUE, 0))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("has not allocated yet");
+    }
+
+    private String emailOnShard(int shard, String prefix) {
+        for (int i = 0; ; i++) {
+            String email = prefix + i + "@mail.ru";
+            if (dao.getRouter().shardForEmail(email) == shard) return email;
+        }
+    }
+
+    private long directorySize() {
+        long size = 0;
+        for (SessionFactory shard : shards) {
+            try (Session s = shard.openSession()) {
+                size += s.createNativeQuery("SELECT count(*) FROM users_email_directory", Long.class).getSingleResult();
+            }
+        }
+        return size;
+    }
+
+    private long lockWaiters() {
+        try (Session s = shards.get(0).openSession()) {
+            return s.createNativeQuery("SELECT count(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock'", Long.class)
+                    .getSingleResult();
+        }
+    }
+
+    private String resource(String name) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void execute(String url, String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, postgres.getUsername(), postgres.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private SessionFactory buildSessionFactory(String url) {
+        Configuration configuration = new Configuration();
+
+        configuration.addAnnotatedClass(org.example.domain.User.class);
+        configuration.addAnnotatedClass(org.example.domain.OutboxEvent.class);
+        configuration.setProperty("hibernate.connection.url", url);
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "none");
+        configuration.setProperty("jakarta.persistence.validation.mode", "none");
+
+        ServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build();
+        return configuration.buildSessionFactory(registry);
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.dao;
+
+import org.example.collections.BloomFilter;
+import org.example.collections.EmailHashIndex;
+import org.example.metrics.Readiness;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.service.ServiceRegistry;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class StartupWarmUpTest {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18").withDatabaseName("userdb").withUsername("userapp").withPassword("password");
+
+    private SessionFactory sessionFactory;
+
+    @BeforeAll
+    void setUpAll() {
+        sessionFactory = buildSessionFactory();
+    }
+
+    @AfterAll
+    void tearDownAll() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    void warmsEveryConnectionRollsBackAndReportsReadiness() {
+        UserDaoImpl userDao = new UserDaoImpl(sessionFactory, DeleteMode.SOFT);
+        Readiness readiness = new Readiness();
+
+        StartupWarmUp.WarmUpReport report = new StartupWarmUp(sessionFactory, userDao, 3, 5, 10).run(readiness);
+
+        assertThat(report.writeCycles()).isEqualTo(15);
+        assertThat(report.coldCallMillis()).isPositive();
+        assertTrue(readiness.isReady());
+        assertThat(readiness.getMillisToReady()).isGreaterThanOrEqualTo(0);
+        assertThat(readiness.getFirstRequestMillis()).isEqualTo(-1);
+        assertTrue(readiness.recordFirstRequest(1_000));
+        assertThat(count("SELECT count(*) FROM users")).isZero();
+        assertThat(count("SELECT count(*) FROM users_outbox")).isZero();
+        assertThat(count("SELECT count(*) FROM pg_stat_activity WHERE datname = current_database() AND backend_type = 'client backend'"))
+                .isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void rolledBackWarmUpWritesStayOutOfTheEmailIndexAndFilter() {
+        EmailHashIndex index = new EmailHashIndex(16, 2);
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        UserDaoImpl userDao = new UserDaoImpl(sessionFactory, UserDaoSettings.defaults().withEmailIndex(index).withEmailFilter(filter));
+
+        new StartupWarmUp(sessionFactory, userDao, 2, 5, 0).run(new Readiness());
+
+        assertThat(index.size()).isZero();
+        assertThat(filter.getInsertions()).isZero();
+    }
+
+    @Test
+    void readinessWaitsForWarmUpAndRejectsBadSizes() {
+        Readiness readiness = new Readiness();
+        assertThat(readiness.getPhase()).isEqualTo("STARTING");
+        assertFalse(readiness.recordFirstRequest(1_000));
+        assertThat(readiness.getMillisToReady()).isEqualTo(-1);
+
+        readiness.markWarmingUp();
+        assertThat(readiness.getPhase()).isEqualTo("WARMING_UP");
+        readiness.markReady();
+        assertThrows(IllegalStateException.class, readiness::markWarmingUp);
+        assertThrows(IllegalArgumentException.class, () -> new StartupWarmUp(sessionFactory, null, 0, 5, 0));
+        assertThat(StartupWarmUp.minimumPoolSize(sessionFactory)).isEqualTo(3);
+    }
+
+    private long count(String sql) {
+        try (Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            Number count = session.createNativeQuery(sql, Number.class).getSingleResult();
+            transaction.commit();
+            return count.longValue();
+        }
+    }
+
+    private SessionFactory buildSessionFactory() {
+        Configuration configuration = new Configuration();
+
+        configuration.addAnnotatedClass(org.example.domain.User.class);
+        configuration.addAnnotatedClass(org.example.domain.OutboxEvent.class);
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.connection.pool_size", "5");
+        configuration.setProperty("hibernate.connection.min_pool_size", "3");
+        configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("jakarta.persistence.validation.mode", "none");
+
+        ServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build();
+        return configuration.buildSessionFactory(registry);
+    }
+}
@@ -0,0 +1,379 @@
+package org.example.dao;
+
+import org.example.domain.UpsertResult;
+import org.example.domain.User;
+import org.example.domain.UserView;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scenarios every {@link UserDao} must pass with identical results and messages. Implementations start each test
+ * with an empty store whose ids begin at 1.
+ */
+abstract class UserDaoContractTest {
+
+    protected abstract UserDao dao();
+
+    protected abstract UserDao softDeleteDao();
+
+    @Test
+    void createUser() {
+        for (Long i = 1L; i < 10; i++) {
+            User user = dao().create(new User("name", i + "user@mail.ru", 20));
+            assertThat(user.getId()).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void createUserUniqueEmail() {
+        User u1 = new User("name", "user@mail.ru", 20);
+        User u2 = new User("name", "user@mail.ru", 20);
+        dao().create(u1);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> dao().create(u2));
+
+        assertEquals("That email is already used", exception.getMessage());
+    }
+
+    @Test
+    void createUserNullEmail() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> dao().create(new User("name", null, 123)));
+
+        assertEquals("That field can't be empty", exception.getMessage());
+    }
+
+    @Test
+    void createAndReadUser() {
+        User saved = dao().create(new User("name", "name@mail.ru", 20));
+        assertThat(saved.getId()).isEqualTo(1L);
+
+        User found = dao().read(saved.getId());
+        assertThat(found).extracting(User::getName, User::getEmail, User::getAge).containsExactly("name", "name@mail.ru", 20);
+    }
+
+    @Test
+    void readViewProjectsUser() {
+        User saved = dao().create(new User("name", "name@mail.ru", 20));
+
+        UserView view = dao().readView(saved.getId());
+
+        assertThat(view).extracting(UserView::id, UserView::name, UserView::email, UserView::age)
+                .containsExactly(1L, "name", "name@mail.ru", 20);
+        assertThat(view.createdAt()).isNotNull();
+        assertThat(view.updatedAt()).isNotNull();
+    }
+
+    @Test
+    void readViewNotExistingOrDeletedUser() {
+        dao().create(new User("name", "name@mail.ru", 20));
+        softDeleteDao().deleteById(1L);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> dao().readView(1L));
+        assertEquals("User with id={1} is not existed", exception.getMessage());
+    }
+
+    @Test
+    void readNotExistingUser() {
+        User saved = dao().create(new User("name", "name@mail.ru", 20));
+        assertThat(saved.getId()).isEqualTo(1L);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> dao().read(12L));
+        assertEquals("User with id={" + 12L + "} is not existed", exception.getMessage());
+    }
+
+    @Test
+    void createLongEmailJDBCException() {
+        String sb = "mail".repeat(100) + "@mail.ru";
+        User user = new User("name", sb, 20);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> dao().create(user));
+
+        assertEquals("Database error while create user", exception.getMessage());
+    }
+
+    @Test
+    void updateUser() {
+        User saved = dao().create(new User("old", "old@mail.ru", 12));
+        saved.setName("new");
+        saved.setEmail("new@mail.ru");
+        saved.setAge(123);
+        User updated = dao().update(saved);
+
+        assertThat(updated.getId()).isEqualTo(saved.getId());
+        assertThat(updated.getName()).isEqualTo("new");
+        assertThat(updated.getEmail()).isEqualTo("new@mail.ru");
+        assertThat(updated.getAge()).isEqualTo(123);
+
+        User reread = dao().read(saved.getId());
+        assertThat(reread.getName()).isEqualTo("new");
+        assertThat(reread.getEmail()).isEqualTo("new@mail.ru");
+        assertThat(reread.getAge()).isEqualTo(123);
+        assertThat(updated.getUpdatedAt().getTime()).isEqualTo(reread.getUpdatedAt().getTime());
+    }
+
+    @Test
+    void updateDuplicateEmail() {
+        dao().create(new User("old", "old@mail.ru", 12));
+        User updated = dao().create(new User("new", "new@mail.ru", 123));
+        updated.setEmail("old@mail.ru");
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> dao().update(updated));
+
+        assertEquals("That email is already used", exception.getMessage());
+    }
+
+    @Test
+    void updateEmptyEmail() {
+        dao().create(new User("old", "old@mail.ru", 12));
+        User updated = dao().create(new User("new", "new@mail.ru", 123));
+        updated.setEmail(null);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> dao().update(updated));
+
+        assertEquals("That field can't be empty", exception.getMessage());
+    }
+
+    @Test
+    void updateLongEmailJDBCException() {
+        String sb = "mail".repeat(100) + "@mail.ru";
+        User user = new User("name", "mail@mail.ru", 20);
+        user.setEmail(sb);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> dao().update(user));
+
+        assertEquals("Database error while update user", exception.getMessage());
+    }
+
+    @Test
+    void createNullUser() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> dao().create(null));
+
+        assertEquals("User can't be null", exception.getMessage());
+    }
+
+    @Test
+    void updateNullUser() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> dao().update(null));
+
+        assertEquals("User can't be null", exception.getMessage());
+    }
+
+    @Test
+    void deleteById() {
+        User user = dao().create(new User("name", "name@mail.ru", 12));
+        dao().deleteById(user.getId());
+        assertThat(user.getId()).isEqualTo(1L);
+
+        Long id = user.getId();
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> dao().read(id));
+
+        assertEquals("User with id={1} is not existed", exception.getMessage());
+    }
+
+    @Test
+    void deleteByNotExistedId() {
+        dao().create(new User("name", "name@mail.ru", 12));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> dao().deleteById(123L));
+
+        assertEquals("User with id={123} is not existed", exception.getMessage());
+
+    }
+
+    @Test
+    void deleteByEmail() {
+        User user1 = dao().create(new User("name", "name@mail.ru", 12));
+        User user2 = dao().create(new User("name", "name1@mail.ru", 12));
+
+        assertThat(dao().read(1L).getId()).isEqualTo(user1.getId());
+        dao().deleteByEmail("name@mail.ru");
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> dao().read(1L));
+        assertEquals("User with id={1} is not existed", exception.getMessage());
+        assertThat(dao().read(2L).getId()).isEqualTo(user2.getId());
+    }
+
+    @Test
+    void deleteByNotExistedEmail() {
+        dao().create(new User("name", "name@mail.ru", 12));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> dao().deleteByEmail("wrong@mail.ru"));
+
+        assertEquals("User with email={wrong@mail.ru} is not existed", exception.getMessage());
+    }
+
+    @Test
+    void mailUniqueCheck() {
+        assertThat(dao().mailUniqueCheck("mail@mail.ru")).isTrue();
+        dao().create(new User("name", "mail@mail.ru", 12));
+        assertThat(dao().mailUniqueCheck("mail@mail.ru")).isFalse();
+        assertThat(dao().mailUniqueCheck("newmail@mail.ru")).isTrue();
+    }
+
+    @Test
+    void softDeleteByIdTwiceThrows() {
+        dao().create(new User("name", "name@mail.ru", 12));
+        softDeleteDao().deleteById(1L);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> softDeleteDao().deleteById(1L));
+        assertEquals("User with id={1} is not existed", exception.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> dao().deleteById(1L));
+    }
+
+    @Test
+    void findReturnsOptionalInsteadOfThrowing() {
+        User saved = dao().create(new User("name", "Name@mail.ru", 20));
+
+        assertThat(dao().findById(saved.getId())).map(User::getEmail).contains("Name@mail.ru");
+        assertThat(dao().findByEmail("name@MAIL.ru")).map(User::getId).contains(saved.getId());
+        assertThat(dao().findById(99L)).isEmpty();
+        assertThat(dao().findByEmail("missing@mail.ru")).isEmpty();
+
+        softDeleteDao().deleteById(saved.getId());
+        assertThat(dao().findById(saved.getId())).isEmpty();
+        assertThat(dao().findByEmail("name@mail.ru")).isEmpty();
+    }
+
+    @Test
+    void softDeleteFreesEmailForReuse() {
+        dao().create(new User("name", "name@mail.ru", 12));
+        softDeleteDao().deleteById(1L);
+
+        assertThrows(IllegalArgumentException.class, () -> dao().read(1L));
+        assertThat(dao().mailUniqueCheck("name@mail.ru")).isTrue();
+        assertThat(dao().create(new User("name", "name@mail.ru", 12)).getId()).isEqualTo(2L);
+    }
+
+    @Test
+    void softDeleteByEmailHidesOnlyThatUser() {
+        dao().create(new User("name", "name@mail.ru", 12));
+        dao().create(new User("name", "name1@mail.ru", 12));
+
+        softDeleteDao().deleteByEmail("name@mail.ru");
+
+        assertThrows(IllegalArgumentException.class, () -> dao().read(1L));
+        assertThat(dao().read(2L).getEmail()).isEqualTo("name1@mail.ru");
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> softDeleteDao().deleteByEmail("name@mail.ru"));
+        assertEquals("User with email={name@mail.ru} is not existed", exception.getMessage());
+    }
+
+    @Test
+    void tryDeleteReportsOutcomeWithoutThrowing() {
+        User first = dao().create(new User("name", "first@mail.ru", 20));
+        dao().create(new User("name", "second@mail.ru", 20));
+
+        assertTrue(dao().tryDeleteById(first.getId()));
+        assertFalse(dao().tryDeleteById(first.getId()));
+        assertTrue(softDeleteDao().tryDeleteByEmail("second@mail.ru"));
+        assertFalse(softDeleteDao().tryDeleteByEmail("second@mail.ru"));
+        assertFalse(dao().tryDeleteByEmail("second@mail.ru"));
+    }
+
+    @Test
+    void failedCreateConsumesIdLikeIdentitySequence() {
+        dao().create(new User("name", "user@mail.ru", 20));
+        assertThrows(IllegalStateException.class, () -> dao().create(new User("name", "USER@mail.ru", 20)));
+
+        assertThat(dao().create(new User("name", "other@mail.ru", 20)).getId()).isEqualTo(3L);
+    }
+
+    @Test
+    void updateChangingEmailReleasesOldAddress() {
+        User user = dao().create(new User("name", "old@mail.ru", 20));
+        user.setEmail("new@mail.ru");
+        dao().update(user);
+
+        assertThat(dao().mailUniqueCheck("old@mail.ru")).isTrue();
+        assertThat(dao().mailUniqueCheck("new@mail.ru")).isFalse();
+        assertThat(dao().findByEmail("NEW@mail.ru")).map(User::getId).contains(user.getId());
+        assertThat(dao().create(new User("name", "old@mail.ru", 20)).getId()).isEqualTo(2L);
+    }
+
+    @Test
+    void upsertInsertsThenUpdatesThenLeavesUnchanged() {
+        UpsertResult inserted = dao().upsert(new User("name", "user@mail.ru", 20));
+        UpsertResult updated = dao().upsert(new User("other", "USER@mail.ru", 21));
+        UpsertResult unchanged = dao().upsert(new User("other", "user@mail.ru", 21));
+
+        assertThat(inserted.inserted()).isTrue();
+        assertThat(inserted.user().getId()).isEqualTo(1L);
+        assertThat(updated.outcome()).isEqualTo(UpsertResult.Outcome.UPDATED);
+        assertThat(updated.user()).extracting(User::getId, User::getName, User::getEmail, User::getAge)
+                .containsExactly(1L, "other", "user@mail.ru", 21);
+        assertThat(unchanged.outcome()).isEqualTo(UpsertResult.Outcome.UNCHANGED);
+        assertThat(unchanged.user().getId()).isEqualTo(1L);
+        assertThat(dao().read(1L)).extracting(User::getName, User::getAge).containsExactly("other", 21);
+    }
+
+    @Test
+    void upsertAllReportsOneOutcomePerInput() {
+        dao().create(new User("name", "existing@mail.ru", 20));
+        dao().create(new User("same", "same@mail.ru", 30));
+
+        List<UpsertResult> results = dao().upsertAll(List.of(
+                new User("first", "new@mail.ru", 1),
+                new User("renamed", "existing@mail.ru", 20),
+                new User("same", "same@mail.ru", 30),
+                new User("second", "NEW@mail.ru", 2)));
+
+        assertThat(results).extracting(UpsertResult::outcome).containsExactly(
+                UpsertResult.Outcome.INSERTED, UpsertResult.Outcome.UPDATED,
+                UpsertResult.Outcome.UNCHANGED, UpsertResult.Outcome.INSERTED);
+        assertThat(results.get(0).user()).extracting(User::getName, User::getAge).containsExactly("second", 2);
+        assertThat(results.get(3)).isEqualTo(results.get(0));
+        assertThat(results.get(1).user().getId()).isEqualTo(1L);
+        assertThat(results.get(2).user().getId()).isEqualTo(2L);
+        assertThat(dao().findByEmail("new@mail.ru")).map(User::getName).contains("second");
+        assertThat(dao().findByEmail("existing@mail.ru")).map(User::getName).contains("renamed");
+    }
+
+    @Test
+    void upsertAllTreatsPaddedEmailsAsOneKey() {
+        List<UpsertResult> results = dao().upsertAll(List.of(
+                new User("first", " padded@mail.ru", 1),
+                new User("second", "PADDED@mail.ru ", 2)));
+
+        assertThat(results).hasSize(2).doesNotContainNull();
+        assertThat(results.get(0)).isEqualTo(results.get(1));
+        assertThat(results.get(0).outcome()).isEqualTo(UpsertResult.Outcome.INSERTED);
+        assertThat(results.get(0).user().getName()).isEqualTo("second");
+    }
+
+    @Test
+    void upsertAfterSoftDeleteInsertsNewUser() {
+        User gone = dao().create(new User("name", "gone@mail.ru", 20));
+        softDeleteDao().deleteById(gone.getId());
+
+        UpsertResult result = dao().upsert(new User("back", "gone@mail.ru", 20));
+
+        assertThat(result.inserted()).isTrue();
+        assertThat(result.user().getId()).isNotEqualTo(gone.getId());
+    }
+
+    @Test
+    void upsertNullField() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> dao().upsert(new User("name", "user@mail.ru", null)));
+
+        assertEquals("That field can't be empty", exception.getMessage());
+        assertThat(dao().findByEmail("user@mail.ru")).isEmpty();
+    }
+}
@@ -1,6 +1,15 @@
 package org.example.dao;
 
+import org.example.collections.BloomFilter;
+import org.example.collections.EmailHashIndex;
+import org.example.concurrency.AdaptiveLimiter;
+import org.example.concurrency.DatabaseGuard;
+import org.example.concurrency.Deadline;
+import org.example.concurrency.RetryPolicy;
+import org.example.domain.OutboxEvent;
+import org.example.domain.UpsertResult;
 import org.example.domain.User;
+import org.example.metrics.OperationMetrics;
 import org.hibernate.*;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
@@ -10,28 +19,35 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 @Testcontainers
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
-class UserDaoImplTest {
+class UserDaoImplTest extends UserDaoContractTest {
 
     @Container
     static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18").withDatabaseName("userdb").withUsername("userapp").withPassword("password");
 
     private SessionFactory sessionFactory;
     private UserDaoImpl userDao;
+    private UserDaoImpl softDeleteDao;
 
     @BeforeAll
     void setUpAll() {
         sessionFactory = buildSessionFactory();
         userDao = new UserDaoImpl(sessionFactory);
+        softDeleteDao = new UserDaoImpl(sessionFactory, DeleteMode.SOFT);
 
         try (Session s = sessionFactory.openSession()) {
             s.beginTransaction();
             s.createNativeMutationQuery(
-                    "CREATE UNIQUE INDEX IF NOT EXISTS users_email_ci_uidx ON users (lower(email))"
+                    "CREATE UNIQUE INDEX IF NOT EXISTS users_email_ci_uidx ON users (lower(email)) WHERE deleted_at IS NULL"
             ).executeUpdate();
             s.createNativeMutationQuery(
                     "ALTER TABLE users ALTER COLUMN email SET NOT NULL"
@@ -40,6 +56,16 @@ class UserDaoImplTest {
         }
     }
 
+    @Override
+    protected UserDao dao() {
+        return userDao;
+    }
+
+    @Override
+    protected UserDao softDeleteDao() {
+        return softDeleteDao;
+    }
+
     @AfterAll
     void tearDownAll() {
         if (sessionFactory != null) {
@@ -52,239 +78,383 @@ class UserDaoImplTest {
         try (Session s = sessionFactory.openSession()) {
             Transaction transaction = s.beginTransaction();
             s.createNativeMutationQuery(
-                    "TRUNCATE TABLE users RESTART IDENTITY CASCADE"
+                    "TRUNCATE TABLE users, users_outbox RESTART IDENTITY CASCADE"
             ).executeUpdate();
             transaction.commit();
         }
     }
 
     @Test
-    void createUser() {
-        for (Long i = 1L; i < 10; i++) {
-            User user = userDao.create(new User("name", i + "user@mail.ru", 20));
-            assertThat(user.getId()).isEqualTo(i);
+    void createConstraintException() {
+        try (Session s = sessionFactory.openSession()) {
+            s.beginTransaction();
+            s.createNativeMutationQuery("ALTER TABLE users DROP CONSTRAINT IF EXISTS users_age_check").executeUpdate();
+            s.createNativeMutationQuery(
+                    "ALTER TABLE users ADD CONSTRAINT users_age_check CHECK (age BETWEEN 0 AND 120)"
+            ).executeUpdate();
+            s.getTransaction().commit();
+        }
+        try {
+            IllegalStateException exception = assertThrows(IllegalStateException.class,
+                    () -> userDao.create(new User("name", "mail@mail.ru", 1234)));
+            assertEquals("Constraint violation in db", exception.getMessage());
+        } finally {
+            try (Session s = sessionFactory.openSession()) {
+                s.beginTransaction();
+                s.createNativeMutationQuery("ALTER TABLE users DROP CONSTRAINT IF EXISTS users_age_check").executeUpdate();
+                s.getTransaction().commit();
+            }
         }
     }
 
     @Test
-    void createUserUniqueEmail() {
-        User u1 = new User("name", "user@mail.ru", 20);
-        User u2 = new User("name", "user@mail.ru", 20);
-        userDao.create(u1);
-
-        IllegalStateException exception = assertThrows(IllegalStateException.class,
-                () -> userDao.create(u2));
+    void mailUniqueHibernateException() {
+        try (var s = sessionFactory.openSession()) {
+            s.beginTransaction();
+            s.createNativeMutationQuery("DROP INDEX IF EXISTS users_email_ci_uidx").executeUpdate();
+            s.createNativeMutationQuery(
+                    "ALTER TABLE users ALTER COLUMN email TYPE uuid USING email::uuid"
+            ).executeUpdate();
+            s.getTransaction().commit();
+        }
 
-        assertEquals("That email is already used", exception.getMessage());
+        try {
+            assertThrows(HibernateException.class,
+                    () -> userDao.mailUniqueCheck("mail@mail.ru"));
+        } finally {
+            try (var s = sessionFactory.openSession()) {
+                s.beginTransaction();
+                s.createNativeMutationQuery(
+                        "ALTER TABLE users ALTER COLUMN email TYPE varchar(254) USING email::text"
+                ).executeUpdate();
+                s.createNativeMutationQuery(
+                        "ALTER TABLE users ALTER COLUMN email SET NOT NULL"
+                ).executeUpdate();
+                s.createNativeMutationQuery(
+                        "DROP INDEX IF EXISTS users_email_ci_uidx"
+                ).executeUpdate();
+                s.createNativeMutationQuery(
+                        "CREATE UNIQUE INDEX IF NOT EXISTS users_email_ci_uidx ON users (lower(email)) WHERE deleted_at IS NULL"
+                ).executeUpdate();
+                s.getTransaction().commit();
+            }
+        }
     }
 
     @Test
-    void createUserNullEmail() {
-        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
-                () -> userDao.create(new User("name", null, 123)));
+    void writesOutboxEventsInSameTransaction() {
+        User user = userDao.create(new User("name", "name@mail.ru", 12));
+        user.setName("new");
+        userDao.update(user);
+        userDao.deleteById(user.getId());
 
-        assertEquals("That field can't be empty", exception.getMessage());
+        assertThat(outboxEvents())
+                .extracting(OutboxEvent::getUserId, OutboxEvent::getOperation)
+                .containsExactly(
+                        tuple(1L, OutboxEvent.Operation.CREATED),
+                        tuple(1L, OutboxEvent.Operation.UPDATED),
+                        tuple(1L, OutboxEvent.Operation.DELETED));
     }
 
     @Test
-    void createAndReadUser() {
-        User saved = userDao.create(new User("name", "name@mail.ru", 20));
-        assertThat(saved.getId()).isEqualTo(1L);
-
-        User found = userDao.read(saved.getId());
-        assertThat(found).extracting(User::getName, User::getEmail, User::getAge).containsExactly("name", "name@mail.ru", 20);
+    void upsertWritesOutboxEventsOnlyForChangedRows() {
+        userDao.create(new User("name", "kept@mail.ru", 20));
+        userDao.create(new User("name", "changed@mail.ru", 20));
+
+        userDao.upsertAll(java.util.List.of(
+                new User("name", "kept@mail.ru", 20),
+                new User("new", "changed@mail.ru", 20),
+                new User("name", "added@mail.ru", 20)));
+
+        assertThat(outboxEvents())
+                .extracting(OutboxEvent::getUserId, OutboxEvent::getOperation)
+                .containsExactly(
+                        tuple(1L, OutboxEvent.Operation.CREATED),
+                        tuple(2L, OutboxEvent.Operation.CREATED),
+                        tuple(2L, OutboxEvent.Operation.UPDATED),
+                        tuple(findId("added@mail.ru"), OutboxEvent.Operation.CREATED));
+        assertThat(userDao.getMetrics().snapshot("upsertAll").calls()).isEqualTo(1);
     }
 
     @Test
-    void readNotExistingUser() {
-        User saved = userDao.create(new User("name", "name@mail.ru", 20));
-        assertThat(saved.getId()).isEqualTo(1L);
-
-        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
-                () -> userDao.read(12L));
-        assertEquals("User with id={" + 12L + "} is not existed", exception.getMessage());
+    void upsertRepeatedInOneUnitOfWorkReportsUnchangedAndKeepsUpdatedAt() {
+        userDao.create(new User("name", "user@mail.ru", 20));
+
+        List<UpsertResult> results = new UnitOfWork(sessionFactory).execute(() -> List.of(
+                userDao.upsert(new User("other", "user@mail.ru", 21)),
+                userDao.upsert(new User("other", "user@mail.ru", 21))));
+
+        assertThat(results).extracting(UpsertResult::outcome)
+                .containsExactly(UpsertResult.Outcome.UPDATED, UpsertResult.Outcome.UNCHANGED);
+        assertThat(results.get(1).user().getUpdatedAt()).isEqualTo(results.get(0).user().getUpdatedAt());
+        assertThat(outboxEvents()).extracting(OutboxEvent::getOperation)
+                .containsExactly(OutboxEvent.Operation.CREATED, OutboxEvent.Operation.UPDATED);
     }
 
     @Test
-    void createLongEmailJDBCException() {
-        String sb = "mail".repeat(100) + "@mail.ru";
-        User user = new User("name", sb, 20);
+    void upsertJoinsUnitOfWorkAndRollsBackWithIt() {
+        assertThrows(IllegalStateException.class, () -> new UnitOfWork(sessionFactory).run(() -> {
+            userDao.upsert(new User("name", "user@mail.ru", 20));
+            throw new IllegalStateException("abort");
+        }));
+
+        assertThat(userDao.findByEmail("user@mail.ru")).isEmpty();
+        assertThat(outboxEvents()).isEmpty();
+    }
 
-        IllegalStateException exception = assertThrows(IllegalStateException.class,
-                () -> userDao.create(user));
+    @Test
+    void upsertOnPartitionedSchemaThrows() {
+        UserDaoImpl partitioned = new UserDaoImpl(sessionFactory, UserDaoSettings.defaults().withPartitionedSchema(true));
 
-        assertEquals("Database error while create user", exception.getMessage());
+        assertThrows(IllegalStateException.class, () -> partitioned.upsert(new User("name", "user@mail.ru", 20)));
     }
 
     @Test
-    void updateUser() {
-        User saved = userDao.create(new User("old", "old@mail.ru", 12));
-        saved.setName("new");
-        saved.setEmail("new@mail.ru");
-        saved.setAge(123);
-        User updated = userDao.update(saved);
-
-        assertThat(updated.getId()).isEqualTo(saved.getId());
-        assertThat(updated.getName()).isEqualTo("new");
-        assertThat(updated.getEmail()).isEqualTo("new@mail.ru");
-        assertThat(updated.getAge()).isEqualTo(123);
-
-        User reread = userDao.read(saved.getId());
-        assertThat(reread.getName()).isEqualTo("new");
-        assertThat(reread.getEmail()).isEqualTo("new@mail.ru");
-        assertThat(reread.getAge()).isEqualTo(123);
+    void failedWriteLeavesNoOutboxEvent() {
+        userDao.create(new User("name", "user@mail.ru", 20));
+
+        assertThrows(IllegalStateException.class,
+                () -> userDao.create(new User("name", "user@mail.ru", 20)));
+
+        assertThat(outboxEvents()).hasSize(1);
     }
 
     @Test
-    void updateDuplicateEmail() {
-        userDao.create(new User("old", "old@mail.ru", 12));
-        User updated = userDao.create(new User("new", "new@mail.ru", 123));
-        updated.setEmail("old@mail.ru");
+    void softDeleteByIdHidesUserAndFreesEmail() {
+        userDao.create(new User("name", "name@mail.ru", 12));
+        softDeleteDao.deleteById(1L);
 
-        IllegalStateException exception = assertThrows(IllegalStateException.class,
-                () -> userDao.update(updated));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> userDao.read(1L));
+        assertEquals("User with id={1} is not existed", exception.getMessage());
+        assertThat(userDao.mailUniqueCheck("name@mail.ru")).isTrue();
+        assertThat(userDao.create(new User("name", "name@mail.ru", 12)).getId()).isEqualTo(2L);
 
-        assertEquals("That email is already used", exception.getMessage());
+        try (Session s = sessionFactory.openSession()) {
+            Long tombstones = s.createNativeQuery("select count(*) from users where deleted_at is not null", Long.class)
+                    .getSingleResult();
+            assertThat(tombstones).isEqualTo(1L);
+        }
     }
 
     @Test
-    void updateEmptyEmail() {
-        userDao.create(new User("old", "old@mail.ru", 12));
-        User updated = userDao.create(new User("new", "new@mail.ru", 123));
-        updated.setEmail(null);
+    void softDeleteByEmail() {
+        userDao.create(new User("name", "name@mail.ru", 12));
+        userDao.create(new User("name", "name1@mail.ru", 12));
 
-        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
-                () -> userDao.update(updated));
+        softDeleteDao.deleteByEmail("name@mail.ru");
 
-        assertEquals("That field can't be empty", exception.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> userDao.read(1L));
+        assertThat(userDao.read(2L).getEmail()).isEqualTo("name1@mail.ru");
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> softDeleteDao.deleteByEmail("name@mail.ru"));
+        assertEquals("User with email={name@mail.ru} is not existed", exception.getMessage());
+        assertThat(outboxEvents()).extracting(OutboxEvent::getOperation)
+                .containsExactly(OutboxEvent.Operation.CREATED, OutboxEvent.Operation.CREATED, OutboxEvent.Operation.DELETED);
     }
 
     @Test
-    void updateLongEmailJDBCException() {
-        String sb = "mail".repeat(100) + "@mail.ru";
-        User user = new User("name", "mail@mail.ru", 20);
-        user.setEmail(sb);
+    void expiredDeadlineFailsBeforeOpeningSession() {
+        SessionFactory unusedFactory = mock(SessionFactory.class);
+        UserDaoImpl dao = new UserDaoImpl(unusedFactory);
 
-        IllegalStateException exception = assertThrows(IllegalStateException.class,
-                () -> userDao.update(user));
+        Deadline.after(Duration.ZERO).run(() -> {
+            IllegalStateException exception = assertThrows(IllegalStateException.class, () -> dao.read(1L));
+            assertEquals("Deadline exceeded before read user", exception.getMessage());
+        });
 
-        assertEquals("Database error while update user", exception.getMessage());
+        verify(unusedFactory, never()).openSession();
+        assertThat(dao.getMetrics().snapshot("read").timeouts()).isEqualTo(1);
     }
 
     @Test
-    void createConstraintException() {
-        try (Session s = sessionFactory.openSession()) {
-            s.beginTransaction();
-            s.createNativeMutationQuery("ALTER TABLE users DROP CONSTRAINT IF EXISTS users_age_check").executeUpdate();
-            s.createNativeMutationQuery(
-                    "ALTER TABLE users ADD CONSTRAINT users_age_check CHECK (age BETWEEN 0 AND 120)"
-            ).executeUpdate();
-            s.getTransaction().commit();
-        }
-        try {
-            IllegalStateException exception = assertThrows(IllegalStateException.class,
-                    () -> userDao.create(new User("name", "mail@mail.ru", 1234)));
-            assertEquals("Constraint violation in db", exception.getMessage());
-        } finally {
-            try (Session s = sessionFactory.openSession()) {
-                s.beginTransaction();
-                s.createNativeMutationQuery("ALTER TABLE users DROP CONSTRAINT IF EXISTS users_age_check").executeUpdate();
-                s.getTransaction().commit();
-            }
+    void lockTimeoutIsReportedAsTimeout() {
+        User user = userDao.create(new User("name", "name@mail.ru", 12));
+        UserDaoImpl dao = new UserDaoImpl(sessionFactory, UserDaoSettings.defaults()
+                .withTimeouts(OperationTimeouts.defaults().withLockTimeout(Duration.ofMillis(100))));
+
+        try (Session locker = sessionFactory.openSession()) {
+            Transaction lock = locker.beginTransaction();
+            locker.createNativeQuery("select id from users where id = :id for update", Long.class)
+                    .setParameter("id", user.getId())
+                    .getSingleResult();
+
+            user.setName("new");
+            assertThrows(IllegalStateException.class, () -> dao.update(user));
+            lock.rollback();
         }
+
+        OperationMetrics.Snapshot update = dao.getMetrics().snapshot("update");
+        assertThat(update.calls()).isEqualTo(1);
+        assertThat(update.timeouts()).isEqualTo(1);
+        assertThat(dao.read(user.getId()).getName()).isEqualTo("name");
     }
 
     @Test
-    void createNullUser() {
-        assertThrows(IllegalArgumentException.class,
-                () -> userDao.create(null));
+    void recordsPerOperationMetrics() {
+        UserDaoImpl dao = new UserDaoImpl(sessionFactory, UserDaoSettings.defaults().withTimeouts(OperationTimeouts.defaults()));
+        dao.create(new User("name", "name@mail.ru", 12));
+        dao.read(1L);
+        assertThrows(IllegalArgumentException.class, () -> dao.read(2L));
+        assertThrows(IllegalArgumentException.class, () -> dao.readView(2L));
+        assertThrows(IllegalArgumentException.class, () -> dao.upsert(new User("name", "other@mail.ru", null)));
+
+        assertThat(dao.getMetrics().snapshot("create").calls()).isEqualTo(1);
+        assertThat(dao.getMetrics().snapshot("read").calls()).isEqualTo(2);
+        assertThat(dao.getMetrics().snapshot("read").failures()).isZero();
+        assertThat(dao.getMetrics().snapshot("readView")).extracting(OperationMetrics.Snapshot::calls,
+                OperationMetrics.Snapshot::rejected).containsExactly(1L, 0L);
+        assertThat(dao.getMetrics().snapshot("upsert")).extracting(OperationMetrics.Snapshot::calls,
+                OperationMetrics.Snapshot::rejected).containsExactly(0L, 1L);
     }
 
     @Test
-    void deleteById() {
-        User user = userDao.create(new User("name", "name@mail.ru", 12));
-        userDao.deleteById(user.getId());
-        assertThat(user.getId()).isEqualTo(1L);
-
-        Long id = user.getId();
-        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
-                () -> userDao.read(id));
+    void tryDeleteReportsWhetherUserWasDeleted() {
+        User first = userDao.create(new User("name", "first@mail.ru", 20));
+        userDao.create(new User("name", "second@mail.ru", 20));
+
+        assertTrue(userDao.tryDeleteById(first.getId()));
+        assertFalse(userDao.tryDeleteById(first.getId()));
+        assertTrue(softDeleteDao.tryDeleteByEmail("second@mail.ru"));
+        assertFalse(softDeleteDao.tryDeleteByEmail("second@mail.ru"));
+        assertFalse(userDao.tryDeleteByEmail("second@mail.ru"));
+        assertThat(userDao.getMetrics().snapshot("tryDeleteById").failures()).isZero();
+    }
 
-        assertEquals("User with id={1} is not existed", exception.getMessage());
+    @Test
+    void unitOfWorkCommitsAllOperationsInOneTransaction() {
+        UnitOfWork unitOfWork = new UnitOfWork(sessionFactory);
+
+        User updated = unitOfWork.execute(() -> {
+            User user = userDao.create(new User("name", "name@mail.ru", 20));
+            assertTrue(userDao.mailUniqueCheck("other@mail.ru"));
+            User loaded = userDao.read(user.getId());
+            loaded.setAge(21);
+            return userDao.update(loaded);
+        });
+
+        assertFalse(UnitOfWork.isActive());
+        assertThat(userDao.read(updated.getId()).getAge()).isEqualTo(21);
+        assertThat(outboxEvents()).extracting(OutboxEvent::getOperation)
+                .containsExactly(OutboxEvent.Operation.CREATED, OutboxEvent.Operation.UPDATED);
     }
 
     @Test
-    void deleteByNotExistedId() {
-        userDao.create(new User("name", "name@mail.ru", 12));
-        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
-                () -> userDao.deleteById(123L));
+    void unitOfWorkRollsBackEveryOperationOnFailure() {
+        UnitOfWork unitOfWork = new UnitOfWork(sessionFactory);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> unitOfWork.run(() -> {
+            userDao.create(new User("name", "first@mail.ru", 20));
+            userDao.create(new User("name", "second@mail.ru", 20));
+            throw new IllegalStateException("Abort");
+        }));
+
+        assertEquals("Abort", exception.getMessage());
+        assertTrue(userDao.mailUniqueCheck("first@mail.ru"));
+        assertTrue(userDao.mailUniqueCheck("second@mail.ru"));
+        assertThat(outboxEvents()).isEmpty();
+    }
 
-        assertEquals("User with id={123} is not existed", exception.getMessage());
+    @Test
+    void unitOfWorkHoldsOneGuardPermitForAllOperations() {
+        AdaptiveLimiter writes = new AdaptiveLimiter("writes", 1, 1, 1, Long.MAX_VALUE, 0.5);
+        DatabaseGuard guard = new DatabaseGuard(null, writes, RetryPolicy.none());
+        UserDaoImpl guardedDao = new UserDaoImpl(sessionFactory, UserDaoSettings.defaults().withGuard(guard));
+        UnitOfWork unitOfWork = new UnitOfWork(sessionFactory, guard);
+
+        unitOfWork.run(() -> {
+            assertThat(writes.getInFlight()).isEqualTo(1);
+            guardedDao.create(new User("name", "first@mail.ru", 20));
+            guardedDao.create(new User("name", "second@mail.ru", 20));
+        });
+
+        assertThat(writes.getInFlight()).isZero();
+        assertThat(writes.getRejected()).isZero();
+        assertFalse(guardedDao.mailUniqueCheck("second@mail.ru"));
+    }
 
+    @Test
+    void afterCommitActionsRunOnlyOnceTheUnitOfWorkCommits() {
+        UnitOfWork unitOfWork = new UnitOfWork(sessionFactory);
+        List<String> actions = new ArrayList<>();
+
+        unitOfWork.run(() -> {
+            UnitOfWork.afterCommit(() -> actions.add("committed"));
+            assertThat(actions).isEmpty();
+        });
+        assertThrows(IllegalStateException.class, () -> unitOfWork.run(() -> {
+            UnitOfWork.afterCommit(() -> actions.add("rolled back"));
+            throw new IllegalStateException("Abort");
+        }));
+        UnitOfWork.afterCommit(() -> actions.add("unbound"));
+
+        assertThat(actions).containsExactly("committed", "unbound");
     }
 
     @Test
-    void deleteByEmail() {
-        User user1 = userDao.create(new User("name", "name@mail.ru", 12));
-        User user2 = userDao.create(new User("name", "name1@mail.ru", 12));
+    void emailIndexResolvesDeleteAndUniqueCheck() {
+        EmailHashIndex index = new EmailHashIndex(16, 2);
+        UserDaoImpl dao = new UserDaoImpl(sessionFactory, UserDaoSettings.defaults().withEmailIndex(index));
+        User user = dao.create(new User("name", "name@mail.ru", 12));
 
-        assertThat(userDao.read(1L).getId()).isEqualTo(user1.getId());
-        userDao.deleteByEmail("name@mail.ru");
+        assertThat(index.find("name@mail.ru")).isEqualTo(user.getId());
+        assertFalse(dao.mailUniqueCheck("NAME@mail.ru"));
 
-        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
-                () -> userDao.read(1L));
-        assertEquals("User with id={1} is not existed", exception.getMessage());
-        assertThat(userDao.read(2L).getId()).isEqualTo(user2.getId());
+        dao.deleteByEmail("name@mail.ru");
+
+        assertThat(index.find("name@mail.ru")).isEqualTo(EmailHashIndex.MISSING);
+        assertTrue(dao.mailUniqueCheck("name@mail.ru"));
+        assertThat(outboxEvents()).extracting(OutboxEvent::getOperation)
+                .containsExactly(OutboxEvent.Operation.CREATED, OutboxEvent.Operation.DELETED);
     }
 
     @Test
-    void deleteByNotExistedEmail() {
-        userDao.create(new User("name", "name@mail.ru", 12));
-        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
-                () -> userDao.deleteByEmail("wrong@mail.ru"));
+    void staleEmailIndexEntryFallsBackToDatabase() {
+        EmailHashIndex index = new EmailHashIndex(16, 2);
+        UserDaoImpl dao = new UserDaoImpl(sessionFactory, UserDaoSettings.defaults().withEmailIndex(index));
+        User first = dao.create(new User("name", "first@mail.ru", 12));
+        User second = userDao.create(new User("name", "second@mail.ru", 12));
+        index.put("second@mail.ru", first.getId());
+
+        assertFalse(dao.mailUniqueCheck("second@mail.ru"));
+        assertThat(index.find("second@mail.ru")).isEqualTo(second.getId());
 
-        assertEquals("User with email={wrong@mail.ru} is not existed", exception.getMessage());
+        index.put("second@mail.ru", first.getId());
+        dao.deleteByEmail("second@mail.ru");
+
+        assertThat(dao.read(first.getId()).getEmail()).isEqualTo("first@mail.ru");
+        assertThrows(IllegalArgumentException.class, () -> dao.read(second.getId()));
     }
 
     @Test
-    void mailUniqueCheck() {
-        assertThat(userDao.mailUniqueCheck("mail@mail.ru")).isTrue();
-        userDao.create(new User("name", "mail@mail.ru", 12));
-        assertThat(userDao.mailUniqueCheck("mail@mail.ru")).isFalse();
-        assertThat(userDao.mailUniqueCheck("newmail@mail.ru")).isTrue();
+    void emailFilterSkipsDatabaseForAbsentEmails() {
+        userDao.create(new User("name", "old@mail.ru", 12));
+        BloomFilter filter = new BloomFilter(1_000, 0.001);
+        UserDaoImpl dao = new UserDaoImpl(sessionFactory, UserDaoSettings.defaults().withEmailFilter(filter));
+
+        assertThat(dao.loadEmailFilter()).isEqualTo(1);
+        dao.create(new User("name", "new@mail.ru", 12));
+
+        assertTrue(dao.mailUniqueCheck("absent@mail.ru"));
+        assertThat(dao.getMetrics().snapshot("mailUniqueCheck").calls()).isZero();
+        assertFalse(dao.mailUniqueCheck("OLD@mail.ru"));
+        assertFalse(dao.mailUniqueCheck("new@mail.ru"));
+        assertThat(dao.getMetrics().snapshot("mailUniqueCheck").calls()).isEqualTo(2);
     }
 
     @Test
-    void mailUniqueHibernateException() {
-        try (var s = sessionFactory.openSession()) {
-            s.beginTransaction();
-            s.createNativeMutationQuery("DROP INDEX IF EXISTS users_email_ci_uidx").executeUpdate();
-            s.createNativeMutationQuery(
-                    "ALTER TABLE users ALTER COLUMN email TYPE uuid USING email::uuid"
-            ).executeUpdate();
-            s.getTransaction().commit();
-        }
+    void loadEmailFilterWithoutFilterThrows() {
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> userDao.loadEmailFilter());
+        assertEquals("Email filter is not configured", exception.getMessage());
+    }
 
-        try {
-            assertThrows(HibernateException.class,
-                    () -> userDao.mailUniqueCheck("mail@mail.ru"));
-        } finally {
-            try (var s = sessionFactory.openSession()) {
-                s.beginTransaction();
-                s.createNativeMutationQuery(
-                        "ALTER TABLE users ALTER COLUMN email TYPE varchar(254) USING email::text"
-                ).executeUpdate();
-                s.createNativeMutationQuery(
-                        "ALTER TABLE users ALTER COLUMN email SET NOT NULL"
-                ).executeUpdate();
-                s.createNativeMutationQuery(
-                        "DROP INDEX IF EXISTS users_email_ci_uidx"
-                ).executeUpdate();
-                s.createNativeMutationQuery(
-                        "CREATE UNIQUE INDEX IF NOT EXISTS users_email_ci_uidx ON users (lower(email))"
-                ).executeUpdate();
-                s.getTransaction().commit();
-            }
+    private Long findId(String email) {
+        return userDao.findByEmail(email).map(User::getId).orElseThrow();
+    }
+
+    private java.util.List<OutboxEvent> outboxEvents() {
+        try (Session s = sessionFactory.openSession()) {
+            return s.createSelectionQuery("from OutboxEvent e order by e.id", OutboxEvent.class).getResultList();
         }
     }
 
@@ -292,6 +462,7 @@ class UserDaoImplTest {
         Configuration configuration = new Configuration();
 
         configuration.addAnnotatedClass(org.example.domain.User.class);
+        configuration.addAnnotatedClass(org.example.domain.OutboxEvent.class);
         configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
         configuration.setProperty("hibernate.connection.username", postgres.getUsername());
         configuration.setProperty("hibernate.connection.password", postgres.getPassword());
@@ -0,0 +1,67 @@
+package org.example.dataset;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+class DatasetGeneratorTest {
+    private static final Instant FROM = Instant.parse("2023-01-01T00:00:00Z");
+    private static final Instant UNTIL = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    void sameSeedAndIndexProduceSameUser() {
+        DatasetGenerator first = new DatasetGenerator(7, FROM, UNTIL);
+        DatasetGenerator second = new DatasetGenerator(7, FROM, UNTIL);
+
+        assertThat(first.generate(12_345)).isEqualTo(second.generate(12_345));
+        assertThat(first.generate(12_345)).isNotEqualTo(new DatasetGenerator(8, FROM, UNTIL).generate(12_345));
+    }
+
+    @Test
+    void normalizedEmailsAreUniqueAndValuesStayInRange() {
+        DatasetGenerator generator = new DatasetGenerator(1, FROM, UNTIL);
+        List<SyntheticUser> users = generator.stream(0, 200_000).toList();
+
+        Set<String> emails = new HashSet<>();
+        for (SyntheticUser user : users) {
+            assertThat(emails.add(user.email().trim().toLowerCase(Locale.ROOT))).isTrue();
+            assertThat(user.email()).matches("[a-z]+\\.[a-z]+\\.[0-9a-z]+@[a-z.]+");
+            assertThat(user.age()).isBetween(18, 90);
+            assertThat(user.createdAt()).isBetween(FROM, UNTIL);
+            assertThat(user.updatedAt()).isBetween(user.createdAt(), UNTIL);
+        }
+    }
+
+    @Test
+    void distributionsAreSkewedLikeRealData() {
+        DatasetGenerator generator = new DatasetGenerator(3, FROM, UNTIL);
+        Instant middle = FROM.plusMillis((UNTIL.toEpochMilli() - FROM.toEpochMilli()) / 2);
+        int gmail = 0;
+        int recent = 0;
+        long ageSum = 0;
+        int samples = 50_000;
+        for (int i = 0; i < samples; i++) {
+            SyntheticUser user = generator.generate(i);
+            if (user.email().endsWith("@gmail.com")) gmail++;
+            if (user.createdAt().isAfter(middle)) recent++;
+            ageSum += user.age();
+        }
+
+        assertThat(gmail / (double) samples).isBetween(0.30, 0.38);
+        assertThat(recent / (double) samples).isBetween(0.70, 0.80);
+        assertThat(ageSum / (double) samples).isBetween(32.0, 40.0);
+    }
+
+    @Test
+    void rejectsEmptyRangeAndNegativeIndex() {
+        assertThatThrownBy(() -> new DatasetGenerator(1, UNTIL, FROM)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DatasetGenerator(1, FROM, UNTIL).generate(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
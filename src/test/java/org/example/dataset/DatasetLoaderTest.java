@@ -0,0 +1,126 @@
+package org.example.dataset;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.service.ServiceRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class DatasetLoaderTest {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18").withDatabaseName("userdb").withUsername("userapp").withPassword("password");
+
+    private static final Instant FROM = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Instant UNTIL = Instant.parse("2025-01-01T00:00:00Z");
+
+    private SessionFactory sessionFactory;
+
+    @BeforeAll
+    void setUpAll() throws Exception {
+        runScript("/db/migration/init.sql");
+        sessionFactory = buildSessionFactory();
+    }
+
+    @AfterAll
+    void tearDownAll() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    void parallelFileOutputIsReproducibleAndOrdered(@TempDir Path directory) throws IOException {
+        DatasetGenerator generator = new DatasetGenerator(11, FROM, UNTIL);
+        Path parallel = directory.resolve("parallel.csv.gz");
+        Path sequential = directory.resolve("sequential.csv.gz");
+
+        try (CsvFileSink sink = new CsvFileSink(parallel)) {
+            assertThat(new DatasetLoader(generator, 1_000, 8).load(0, 25_500, sink)).isEqualTo(25_500);
+        }
+        try (CsvFileSink sink = new CsvFileSink(sequential)) {
+            new DatasetLoader(generator, 25_500, 1).load(0, 25_500, sink);
+        }
+
+        List<String> lines = readGzip(parallel);
+        assertThat(lines).hasSize(25_501).first().isEqualTo(CsvFileSink.HEADER);
+        assertThat(lines.get(1)).isEqualTo(CsvFileSink.csvLine(generator.generate(0)));
+        assertThat(lines).isEqualTo(readGzip(sequential));
+    }
+
+    @Test
+    void copySinkLoadsRowsThatSatisfyUniqueEmailIndex() {
+        DatasetGenerator generator = new DatasetGenerator(5, FROM, UNTIL);
+        DatasetLoader loader = new DatasetLoader(generator, 2_000, 4);
+
+        assertThat(loader.load(0, 10_000, new PostgresCopySink(sessionFactory))).isEqualTo(10_000);
+        assertThat(loader.load(10_000, 5_000, new PostgresCopySink(sessionFactory))).isEqualTo(5_000);
+
+        try (Session session = sessionFactory.openSession()) {
+            Long rows = session.createNativeQuery("select count(distinct lower(email)) from public.users", Long.class)
+                    .getSingleResult();
+            assertThat(rows).isEqualTo(15_000L);
+            String email = session.createNativeQuery("select email from public.users where email = :email", String.class)
+                    .setParameter("email", generator.generate(12_345).email())
+                    .getSingleResult();
+            assertThat(email).isEqualTo(generator.generate(12_345).email());
+        }
+
+        assertThatThrownBy(() -> loader.load(0, 2_000, new PostgresCopySink(sessionFactory)))
+                .isInstanceOf(RuntimeException.class);
+    }
+
+    private static List<String> readGzip(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    private void runScript(String resource) throws IOException, SQLException {
+        String sql;
+        try (InputStream in = getClass().getResourceAsStream(resource)) {
+            sql = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private SessionFactory buildSessionFactory() {
+        Configuration configuration = new Configuration();
+
+        configuration.addAnnotatedClass(org.example.domain.User.class);
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "none");
+        configuration.setProperty("jakarta.persistence.validation.mode", "none");
+
+        ServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build();
+        return configuration.buildSessionFactory(registry);
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.example.collections.EmailHash;
+import org.example.domain.User;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class OperationEventsTest {
+
+    @Test
+    void recordsOperationKeysAndOutcome() throws Exception {
+        Path file = Files.createTempFile("operations", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(DaoOperationEvent.class).withThreshold(java.time.Duration.ZERO);
+            recording.enable(ServiceOperationEvent.class).withThreshold(java.time.Duration.ZERO);
+            recording.start();
+
+            User user = new User("name", "Mail@mail.ru", 20);
+            user.setId(7L);
+            DaoOperationEvent.start("update", "WRITE").finish(user, 1, null, "SUCCESS");
+            ServiceOperationEvent.start("removeUserByEmail").finish("mail@mail.ru", "REJECTED");
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.deleteIfExists(file);
+
+        RecordedEvent dao = events.stream().filter(e -> e.getEventType().getName().equals("org.example.DaoOperation")).findFirst().orElseThrow();
+        assertThat(dao.getString("operation")).isEqualTo("update");
+        assertThat(dao.getLong("userId")).isEqualTo(7L);
+        assertThat(dao.getLong("emailHash")).isEqualTo(EmailHash.of("mail@mail.ru"));
+        assertThat(dao.getInt("rowsAffected")).isEqualTo(1);
+
+        RecordedEvent service = events.stream().filter(e -> e.getEventType().getName().equals("org.example.ServiceOperation")).findFirst().orElseThrow();
+        assertThat(service.getString("outcome")).isEqualTo("REJECTED");
+        assertThat(service.getLong("userId")).isEqualTo(-1L);
+    }
+}
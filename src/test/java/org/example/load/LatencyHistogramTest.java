@@ -0,0 +1,76 @@
+package org.example.load;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsCoverEveryValueWithBoundedError() {
+        long[] samples = {0, 1, 255, 256, 257, 511, 512, 1_000, 123_456, 1_000_000, 987_654_321L, Long.MAX_VALUE / 3};
+        for (long value : samples) {
+            int index = LatencyHistogram.index(value);
+            long upper = LatencyHistogram.highestEquivalent(index);
+            assertThat(upper).isGreaterThanOrEqualTo(value);
+            assertThat(upper - value).isLessThanOrEqualTo(Math.max(0, value / 128));
+            if (index > 0) {
+                assertThat(LatencyHistogram.highestEquivalent(index - 1)).isLessThan(value);
+            }
+        }
+    }
+
+    @Test
+    void percentilesFollowRecordedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1_000; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+
+        assertThat(histogram.count()).isEqualTo(1_000);
+        assertThat(histogram.percentileMillis(50)).isCloseTo(500, within(5.0));
+        assertThat(histogram.percentileMillis(99)).isCloseTo(990, within(8.0));
+        assertThat(histogram.percentileMillis(100)).isEqualTo(1_000.0);
+        assertThat(histogram.maxNanos()).isEqualTo(1_000_000_000L);
+    }
+
+    @Test
+    void correctedRecordingBackfillsSamplesMissedDuringStall() {
+        LatencyHistogram raw = new LatencyHistogram();
+        LatencyHistogram corrected = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            raw.record(1_000_000L);
+            corrected.recordCorrected(1_000_000L, 10_000_000L);
+        }
+        raw.record(1_000_000_000L);
+        corrected.recordCorrected(1_000_000_000L, 10_000_000L);
+
+        assertThat(raw.count()).isEqualTo(100);
+        assertThat(raw.percentileMillis(90)).isLessThan(2);
+        assertThat(corrected.count()).isEqualTo(100 + 99);
+        assertThat(corrected.percentileMillis(90)).isGreaterThan(700);
+    }
+
+    @Test
+    void addMergesCountsAndMax() {
+        LatencyHistogram left = new LatencyHistogram();
+        LatencyHistogram right = new LatencyHistogram();
+        left.record(100);
+        right.record(5_000);
+        right.record(7_000);
+
+        left.add(right);
+
+        assertThat(left.count()).isEqualTo(3);
+        assertThat(left.maxNanos()).isEqualTo(7_000);
+        assertThat(left.percentileNanos(0)).isEqualTo(100);
+    }
+
+    @Test
+    void emptyHistogramReportsZeroAndRejectsBadPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.percentileNanos(99)).isZero();
+        assertThatThrownBy(() -> histogram.percentileNanos(101)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
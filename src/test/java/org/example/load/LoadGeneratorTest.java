@@ -0,0 +1,96 @@
+package org.example.load;
+
+import org.example.domain.User;
+import org.example.service.UserService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LoadGeneratorTest {
+
+    @Test
+    void mixParsesWeightsAndSkipsZeroes() {
+        OperationMix mix = OperationMix.parse("read=3, update=1, delete=0");
+
+        assertThat(mix.weights()).containsOnlyKeys(Operation.READ, Operation.UPDATE);
+        SplittableRandom random = new SplittableRandom(1);
+        int reads = 0;
+        for (int i = 0; i < 4_000; i++) {
+            if (mix.pick(random) == Operation.READ) reads++;
+        }
+        assertThat(reads).isBetween(2_800, 3_200);
+    }
+
+    @Test
+    void mixRejectsMalformedSpec() {
+        assertThatThrownBy(() -> OperationMix.parse("read")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> OperationMix.parse("read=0")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> OperationMix.parse("scan=1")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void openModeRequiresRate() {
+        LoadSettings settings = LoadSettings.defaults().withMode(LoadMode.OPEN);
+
+        assertThatThrownBy(() -> new LoadGenerator(mock(UserService.class), settings))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void closedLoopRunReportsEveryOperationInMix() {
+        UserService service = stubbedService();
+        LoadSettings settings = LoadSettings.defaults()
+                .withConcurrency(4)
+                .withSeedUsers(20)
+                .withDuration(Duration.ofMillis(300))
+                .withReportInterval(Duration.ZERO)
+                .withMix(OperationMix.parse("create=1,read=1,update=1,delete=1,search=1"));
+
+        LoadReport report = new LoadGenerator(service, settings).run();
+
+        assertThat(report.operations()).containsKeys(Operation.CREATE, Operation.READ, Operation.UPDATE,
+                Operation.DELETE, Operation.SEARCH);
+        assertThat(report.totalErrors()).isZero();
+        assertThat(report.operations().get(Operation.READ).p99Millis()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void openLoopMeasuresFromIntendedStartAndCountsErrors() {
+        UserService service = stubbedService();
+        when(service.readUser(anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            throw new IllegalArgumentException("User is not existed");
+        });
+        LoadSettings settings = LoadSettings.defaults()
+                .withMode(LoadMode.OPEN)
+                .withRate(200)
+                .withConcurrency(1)
+                .withSeedUsers(5)
+                .withDuration(Duration.ofMillis(300))
+                .withReportInterval(Duration.ZERO)
+                .withMix(OperationMix.parse("read=1"));
+
+        LoadReport report = new LoadGenerator(service, settings).run();
+
+        LoadReport.OperationReport reads = report.operations().get(Operation.READ);
+        assertThat(reads.errors()).isEqualTo(reads.count());
+        assertThat(reads.maxMillis()).isGreaterThan(100);
+    }
+
+    private static UserService stubbedService() {
+        UserService service = mock(UserService.class);
+        AtomicLong ids = new AtomicLong();
+        when(service.saveUser(anyString(), anyString(), anyInt())).thenAnswer(invocation -> {
+            User user = new User(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            user.setId(ids.incrementAndGet());
+            return user;
+        });
+        return service;
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.load;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ZipfianGeneratorTest {
+
+    @Test
+    void smallRanksDominateAndAllValuesStayInRange() {
+        ZipfianGenerator generator = new ZipfianGenerator(1_000, 0.99);
+        SplittableRandom random = new SplittableRandom(7);
+        int[] counts = new int[1_000];
+        for (int i = 0; i < 100_000; i++) {
+            int next = generator.next(random);
+            assertThat(next).isBetween(0, 999);
+            counts[next]++;
+        }
+
+        int top10 = 0;
+        for (int i = 0; i < 10; i++) top10 += counts[i];
+        assertThat(counts[0]).isGreaterThan(counts[1]);
+        assertThat(counts[1]).isGreaterThan(counts[100]);
+        assertThat(top10).isGreaterThan(30_000);
+    }
+
+    @Test
+    void sameSeedProducesSameSequence() {
+        ZipfianGenerator generator = new ZipfianGenerator(500, 0.8);
+        SplittableRandom first = new SplittableRandom(42);
+        SplittableRandom second = new SplittableRandom(42);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(generator.next(first)).isEqualTo(generator.next(second));
+        }
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThatThrownBy(() -> new ZipfianGenerator(0, 0.99)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ZipfianGenerator(10, 1.0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,190 @@
+package org.example.maintenance;
+
+import org.example.dao.UserDaoImpl;
+import org.example.dao.UserDaoSettings;
+import org.example.domain.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.service.ServiceRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PartitionMaintenanceTest {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18").withDatabaseName("userdb").withUsername("userapp").withPassword("password");
+
+    private SessionFactory sessionFactory;
+    private UserDaoImpl userDao;
+    private PartitionMaintenance maintenance;
+
+    @BeforeAll
+    void setUpAll() throws Exception {
+        runScript("/db/migration/init.sql");
+        runScript("/db/migration/partition_users.sql");
+        sessionFactory = buildSessionFactory();
+        userDao = new UserDaoImpl(sessionFactory, UserDaoSettings.defaults().withPartitionedSchema(true));
+        maintenance = new PartitionMaintenance(sessionFactory);
+    }
+
+    @AfterAll
+    void tearDownAll() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    void emailUniquenessIsGlobalAcrossPartitions() {
+        userDao.create(new User("name", "global@mail.ru", 20));
+
+        assertThat(userDao.mailUniqueCheck("GLOBAL@mail.ru")).isFalse();
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> userDao.create(new User("name", "Global@mail.ru", 20)));
+        assertEquals("That email is already used", exception.getMessage());
+
+        userDao.deleteByEmail("global@mail.ru");
+        assertThat(userDao.mailUniqueCheck("global@mail.ru")).isTrue();
+    }
+
+    @Test
+    void ensureCreatesOnlyMissingPartitions() {
+        YearMonth month = YearMonth.of(2019, 3);
+
+        assertThat(maintenance.ensureMonthlyPartitions(month, 1))
+                .containsExactly("users_p2019_03", "users_p2019_04");
+        assertThat(maintenance.ensureMonthlyPartitions(month, 1)).isEmpty();
+        assertThat(maintenance.listPartitions()).contains("users_p2019_03", "users_p2019_04", "users_p_default");
+    }
+
+    @Test
+    void archiveDetachesExportsAndDropsOldPartitions(@TempDir Path directory) throws IOException {
+        maintenance.ensureMonthlyPartitions(YearMonth.of(2020, 1), 0);
+        try (Session s = sessionFactory.openSession()) {
+            Transaction transaction = s.beginTransaction();
+            s.createNativeMutationQuery(
+                    "INSERT INTO users (name, email, age, created_at, updated_at) VALUES ('old', 'old@mail.ru', 30, '2020-01-15', '2020-01-15')"
+            ).executeUpdate();
+            transaction.commit();
+        }
+        assertThat(userDao.mailUniqueCheck("old@mail.ru")).isFalse();
+
+        List<PartitionMaintenance.ArchivedPartition> archived = maintenance.archiveOlderThan(YearMonth.of(2020, 2), directory);
+
+        assertThat(archived).extracting(PartitionMaintenance.ArchivedPartition::name).containsExactly("users_p2020_01");
+        assertThat(archived.get(0).rows()).isEqualTo(1);
+        assertThat(Files.size(directory.resolve("users_p2020_01.csv.gz"))).isPositive();
+        assertThat(maintenance.listPartitions()).doesNotContain("users_p2020_01");
+        assertThat(userDao.mailUniqueCheck("old@mail.ru")).isTrue();
+    }
+
+    @Test
+    void ensureMovesRowsOutOfTheDefaultPartition() {
+        insertUser("stranded@mail.ru", "2021-06-10");
+
+        assertThat(maintenance.ensureMonthlyPartitions(YearMonth.of(2021, 6), 0)).containsExactly("users_p2021_06");
+
+        try (Session s = sessionFactory.openSession()) {
+            assertThat(s.createNativeQuery("SELECT count(*) FROM users_p2021_06", Long.class).getSingleResult()).isEqualTo(1);
+            assertThat(s.createNativeQuery("SELECT count(*) FROM users_p_default WHERE email = 'stranded@mail.ru'", Long.class)
+                    .getSingleResult()).isZero();
+        }
+        assertThat(userDao.mailUniqueCheck("stranded@mail.ru")).isFalse();
+    }
+
+    @Test
+    void failedExportLeavesPartitionAttached(@TempDir Path directory) {
+        maintenance.ensureMonthlyPartitions(YearMonth.of(2017, 1), 0);
+        insertUser("kept@mail.ru", "2017-01-15");
+
+        assertThrows(UncheckedIOException.class,
+                () -> maintenance.archiveOlderThan(YearMonth.of(2017, 2), directory.resolve("missing")));
+
+        assertThat(maintenance.listPartitions()).contains("users_p2017_01");
+        assertThat(userDao.mailUniqueCheck("kept@mail.ru")).isFalse();
+        assertThat(maintenance.archiveOlderThan(YearMonth.of(2017, 2), directory))
+                .extracting(PartitionMaintenance.ArchivedPartition::rows).containsExactly(1L);
+    }
+
+    @Test
+    void rerunningThePartitionScriptChangesNothing() throws Exception {
+        User kept = userDao.create(new User("name", "rerun@mail.ru", 20));
+        List<String> partitions = maintenance.listPartitions();
+
+        runScript("/db/migration/partition_users.sql");
+
+        assertThat(maintenance.listPartitions()).containsExactlyInAnyOrderElementsOf(partitions);
+        assertThat(userDao.findByEmail("rerun@mail.ru")).map(User::getId).contains(kept.getId());
+        assertThat(userDao.mailUniqueCheck("rerun@mail.ru")).isFalse();
+    }
+
+    @Test
+    void partitionNamesRoundTrip() {
+        assertThat(PartitionMaintenance.partitionName(YearMonth.of(2024, 7))).isEqualTo("users_p2024_07");
+        assertThat(PartitionMaintenance.partitionMonth("users_p2024_07")).isEqualTo(YearMonth.of(2024, 7));
+        assertThat(PartitionMaintenance.partitionMonth("users_p_default")).isNull();
+    }
+
+    private void insertUser(String email, String createdAt) {
+        try (Session s = sessionFactory.openSession()) {
+            Transaction transaction = s.beginTransaction();
+            s.createNativeMutationQuery("INSERT INTO users (name, email, age, created_at, updated_at) VALUES ('old', :email, 30, "
+                            + "cast(:createdAt as timestamptz), cast(:createdAt as timestamptz))")
+                    .setParameter("email", email)
+                    .setParameter("createdAt", createdAt)
+                    .executeUpdate();
+            transaction.commit();
+        }
+    }
+
+    private void runScript(String resource) throws IOException, SQLException {
+        String sql;
+        try (InputStream in = getClass().getResourceAsStream(resource)) {
+            sql = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private SessionFactory buildSessionFactory() {
+        Configuration configuration = new Configuration();
+
+        configuration.addAnnotatedClass(org.example.domain.User.class);
+        configuration.addAnnotatedClass(org.example.domain.OutboxEvent.class);
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "none");
+        configuration.setProperty("jakarta.persistence.validation.mode", "none");
+
+        ServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build();
+        return configuration.buildSessionFactory(registry);
+    }
+}
@@ -0,0 +1,162 @@
+package org.example.maintenance;
+
+import org.example.dao.DeleteMode;
+import org.example.dao.UserDaoImpl;
+import org.example.domain.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.service.ServiceRegistry;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TombstonePurgeJobTest {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18").withDatabaseName("userdb").withUsername("userapp").withPassword("password");
+
+    private static final Clock NIGHT = Clock.fixed(
+            LocalDate.now(ZoneOffset.UTC).atTime(2, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    private static final Clock NOON = Clock.fixed(
+            LocalDate.now(ZoneOffset.UTC).atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+    private SessionFactory sessionFactory;
+    private UserDaoImpl userDao;
+
+    @BeforeAll
+    void setUpAll() {
+        sessionFactory = buildSessionFactory();
+        userDao = new UserDaoImpl(sessionFactory, DeleteMode.SOFT);
+    }
+
+    @AfterAll
+    void tearDownAll() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @BeforeEach
+    void cleanDb() {
+        try (Session s = sessionFactory.openSession()) {
+            Transaction transaction = s.beginTransaction();
+            s.createNativeMutationQuery(
+                    "TRUNCATE TABLE users, users_outbox RESTART IDENTITY CASCADE"
+            ).executeUpdate();
+            transaction.commit();
+        }
+    }
+
+    @Test
+    void purgesOnlyExpiredTombstonesInBatches() {
+        for (int i = 0; i < 5; i++) {
+            userDao.create(new User("name", i + "user@mail.ru", 20));
+        }
+        for (long id = 1; id <= 4; id++) {
+            userDao.deleteById(id);
+        }
+        backdateTombstones(1L, 3L);
+
+        TombstonePurgeJob job = new TombstonePurgeJob(sessionFactory, settings(2), NIGHT);
+
+        assertThat(job.runOnce()).isEqualTo(3);
+        assertThat(countRows()).isEqualTo(2L);
+        assertThat(job.getPurgedRows()).isEqualTo(3);
+        assertThat(userDao.read(5L).getEmail()).isEqualTo("4user@mail.ru");
+    }
+
+    @Test
+    void respectsMaxBatchesPerRun() {
+        for (int i = 0; i < 5; i++) {
+            userDao.create(new User("name", i + "user@mail.ru", 20));
+            userDao.deleteById((long) i + 1);
+        }
+        backdateTombstones(1L, 5L);
+
+        TombstonePurgeJob job = new TombstonePurgeJob(sessionFactory,
+                new TombstonePurgeJob.Settings(2, 1, Duration.ofDays(7), Duration.ZERO, LocalTime.of(1, 0), LocalTime.of(5, 0)),
+                NIGHT);
+
+        assertThat(job.runOnce()).isEqualTo(2);
+        assertThat(countRows()).isEqualTo(3L);
+    }
+
+    @Test
+    void skipsRunOutsideWindow() {
+        userDao.create(new User("name", "user@mail.ru", 20));
+        userDao.deleteById(1L);
+        backdateTombstones(1L, 1L);
+
+        TombstonePurgeJob job = new TombstonePurgeJob(sessionFactory, settings(10), NOON);
+
+        assertThat(job.runOnce()).isZero();
+        assertThat(countRows()).isEqualTo(1L);
+    }
+
+    @Test
+    void windowMayWrapMidnight() {
+        TombstonePurgeJob job = new TombstonePurgeJob(sessionFactory,
+                new TombstonePurgeJob.Settings(10, 1, Duration.ZERO, Duration.ZERO, LocalTime.of(22, 0), LocalTime.of(4, 0)));
+
+        assertTrue(job.inWindow(LocalTime.of(23, 30)));
+        assertTrue(job.inWindow(LocalTime.of(3, 59)));
+        assertFalse(job.inWindow(LocalTime.of(4, 0)));
+        assertFalse(job.inWindow(LocalTime.of(12, 0)));
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TombstonePurgeJob.Settings(0, 1, Duration.ZERO, Duration.ZERO, LocalTime.MIN, LocalTime.MIN));
+    }
+
+    private TombstonePurgeJob.Settings settings(int batchSize) {
+        return new TombstonePurgeJob.Settings(batchSize, 100, Duration.ofDays(7), Duration.ZERO,
+                LocalTime.of(1, 0), LocalTime.of(5, 0));
+    }
+
+    private void backdateTombstones(long fromId, long toId) {
+        try (Session s = sessionFactory.openSession()) {
+            Transaction transaction = s.beginTransaction();
+            s.createNativeMutationQuery(
+                            "UPDATE users SET deleted_at = now() - interval '30 days' WHERE id BETWEEN :from AND :to")
+                    .setParameter("from", fromId)
+                    .setParameter("to", toId)
+                    .executeUpdate();
+            transaction.commit();
+        }
+    }
+
+    private long countRows() {
+        try (Session s = sessionFactory.openSession()) {
+            return s.createNativeQuery("select count(*) from users", Long.class).getSingleResult();
+        }
+    }
+
+    private SessionFactory buildSessionFactory() {
+        Configuration configuration = new Configuration();
+
+        configuration.addAnnotatedClass(org.example.domain.User.class);
+        configuration.addAnnotatedClass(org.example.domain.OutboxEvent.class);
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("jakarta.persistence.validation.mode", "none");
+
+        ServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build();
+        return configuration.buildSessionFactory(registry);
+    }
+}
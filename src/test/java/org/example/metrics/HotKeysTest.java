@@ -0,0 +1,74 @@
+package org.example.metrics;
+
+import org.example.collections.EmailHash;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.*;
+
+class HotKeysTest {
+
+    @Test
+    void topKeysAreQueryableOverJmx() throws Exception {
+        HotKeys hotKeys = new HotKeys(1024, 4, 1);
+        for (long id = 1; id <= 3; id++) {
+            for (int i = 0; i < id * 10; i++) hotKeys.recordRead(id);
+        }
+        hotKeys.registerMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(HotKeys.OBJECT_NAME);
+
+        String[] top = (String[]) server.invoke(name, "topKeys", new Object[]{HotKeys.READ_USER, 2},
+                new String[]{String.class.getName(), int.class.getName()});
+        Object estimate = server.invoke(name, "estimate", new Object[]{HotKeys.READ_USER, "2"},
+                new String[]{String.class.getName(), String.class.getName()});
+
+        assertThat(top).containsExactly("3=30 (+-0)", "2=20 (+-0)");
+        assertThat(estimate).isEqualTo(20L);
+        assertThat((String[]) server.getAttribute(name, "Operations"))
+                .containsExactly(HotKeys.READ_USER, HotKeys.UPDATE_USER, HotKeys.MAIL_CHECK);
+
+        server.invoke(name, "reset", new Object[0], new String[0]);
+        assertThat(hotKeys.getObservations(HotKeys.READ_USER)).isZero();
+        server.unregisterMBean(name);
+    }
+
+    @Test
+    void mailCheckKeysAreReportedAsEmailHashes() {
+        HotKeys hotKeys = new HotKeys(1024, 4, 1);
+        hotKeys.recordMailCheck("Secret@Mail.ru");
+        hotKeys.recordMailCheck("secret@mail.ru");
+
+        assertThat(hotKeys.topKeys(HotKeys.MAIL_CHECK, 1))
+                .containsExactly(EmailHash.of("secret@mail.ru") + "=2 (+-0)");
+        assertThat(hotKeys.report(1)).noneMatch(line -> line.contains("secret"));
+        assertThat(hotKeys.estimate(HotKeys.MAIL_CHECK, " SECRET@mail.ru")).isEqualTo(2);
+    }
+
+    @Test
+    void admissionNeedsRepeatedReads() {
+        HotKeys hotKeys = new HotKeys(1024, 4, 3);
+        hotKeys.recordRead(9L);
+        hotKeys.recordRead(9L);
+        assertThat(hotKeys.admit(9L)).isFalse();
+
+        hotKeys.recordRead(9L);
+        assertThat(hotKeys.admit(9L)).isTrue();
+        assertThat(hotKeys.admit(10L)).isFalse();
+    }
+
+    @Test
+    void disabledTrackerAdmitsEverythingAndReportsNothing() {
+        HotKeys disabled = HotKeys.disabled();
+        disabled.recordRead(1L);
+
+        assertThat(disabled.admit(1L)).isTrue();
+        assertThat(disabled.report(10)).isEmpty();
+        assertThatThrownBy(() -> disabled.topKeys(HotKeys.READ_USER, 1))
+                .isInstanceOf(IllegalArgumentException.class).hasMessage("Unknown operation readUser");
+        assertThatThrownBy(() -> new HotKeys(1024, 4, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
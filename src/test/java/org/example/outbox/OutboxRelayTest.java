@@ -0,0 +1,140 @@
+package org.example.outbox;
+
+import org.example.dao.UserDaoImpl;
+import org.example.domain.OutboxEvent;
+import org.example.domain.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.service.ServiceRegistry;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OutboxRelayTest {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18").withDatabaseName("userdb").withUsername("userapp").withPassword("password");
+
+    private SessionFactory sessionFactory;
+    private UserDaoImpl userDao;
+
+    @BeforeAll
+    void setUpAll() {
+        sessionFactory = buildSessionFactory();
+        userDao = new UserDaoImpl(sessionFactory);
+    }
+
+    @AfterAll
+    void tearDownAll() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @BeforeEach
+    void cleanDb() {
+        try (Session s = sessionFactory.openSession()) {
+            Transaction transaction = s.beginTransaction();
+            s.createNativeMutationQuery(
+                    "TRUNCATE TABLE users, users_outbox RESTART IDENTITY CASCADE"
+            ).executeUpdate();
+            transaction.commit();
+        }
+    }
+
+    @Test
+    void drainsInBatchesAndDeletesRelayedEvents() {
+        for (int i = 0; i < 5; i++) {
+            userDao.create(new User("name", i + "user@mail.ru", 20));
+        }
+        List<OutboxEvent> published = new ArrayList<>();
+        OutboxRelay relay = new OutboxRelay(sessionFactory, published::addAll, 2, Duration.ofMillis(50));
+
+        assertThat(relay.drainOnce()).isEqualTo(2);
+        assertThat(relay.drainOnce()).isEqualTo(2);
+        assertThat(relay.drainOnce()).isEqualTo(1);
+        assertThat(relay.drainOnce()).isZero();
+
+        assertThat(published).extracting(OutboxEvent::getUserId).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(relay.getRelayedEvents()).isEqualTo(5);
+        assertThat(relay.getRelayedBatches()).isEqualTo(3);
+        assertThat(relay.pendingLagMillis()).isZero();
+    }
+
+    @Test
+    void failedPublishKeepsEventsForRetry() {
+        userDao.create(new User("name", "user@mail.ru", 20));
+        OutboxRelay relay = new OutboxRelay(sessionFactory, events -> {
+            throw new IllegalStateException("broker down");
+        }, 10, Duration.ofMillis(50));
+
+        assertThrows(IllegalStateException.class, relay::drainOnce);
+
+        List<OutboxEvent> published = new ArrayList<>();
+        OutboxRelay retry = new OutboxRelay(sessionFactory, published::addAll, 10, Duration.ofMillis(50));
+        assertThat(retry.drainOnce()).isEqualTo(1);
+        assertThat(published).extracting(OutboxEvent::getOperation).containsExactly(OutboxEvent.Operation.CREATED);
+    }
+
+    @Test
+    void concurrentRelaysDoNotClaimSameEvents() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            userDao.create(new User("name", i + "user@mail.ru", 20));
+        }
+        List<OutboxEvent> second = new ArrayList<>();
+        OutboxRelay inner = new OutboxRelay(sessionFactory, second::addAll, 2, Duration.ofMillis(50));
+        List<OutboxEvent> first = new ArrayList<>();
+        OutboxRelay outer = new OutboxRelay(sessionFactory, events -> {
+            first.addAll(events);
+            Thread t = new Thread(inner::drainOnce);
+            t.start();
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 2, Duration.ofMillis(50));
+
+        outer.drainOnce();
+
+        assertThat(first).extracting(OutboxEvent::getUserId).containsExactly(1L, 2L);
+        assertThat(second).extracting(OutboxEvent::getUserId).containsExactly(3L, 4L);
+    }
+
+    @Test
+    void rejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new OutboxRelay(sessionFactory, events -> { }, 0, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new OutboxRelay(sessionFactory, events -> { }, 10, Duration.ZERO));
+    }
+
+    private SessionFactory buildSessionFactory() {
+        Configuration configuration = new Configuration();
+
+        configuration.addAnnotatedClass(org.example.domain.User.class);
+        configuration.addAnnotatedClass(org.example.domain.OutboxEvent.class);
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("jakarta.persistence.validation.mode", "none");
+
+        ServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build();
+        return configuration.buildSessionFactory(registry);
+    }
+}
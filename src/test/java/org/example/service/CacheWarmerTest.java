@@ -0,0 +1,103 @@
+package org.example.service;
+
+import org.example.cache.OffHeapUserStore;
+import org.example.dao.UserDaoImpl;
+import org.example.domain.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheWarmerTest {
+    UserDaoImpl userDao;
+    OffHeapUserStore cache;
+
+    @BeforeEach
+    void setUp() {
+        userDao = mock(UserDaoImpl.class);
+        cache = new OffHeapUserStore(64 * 1024);
+    }
+
+    private static User user(long id) {
+        User user = new User("user" + id, "user" + id + "@mail.ru", 30);
+        user.setId(id);
+        user.setCreatedAt(new Date(1_700_000_000_000L));
+        user.setUpdatedAt(new Date(1_700_000_000_000L + id));
+        return user;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void streamUsers(long count) {
+        when(userDao.scanRecentlyUpdated(anyInt(), any())).thenAnswer(invocation -> {
+            int limit = invocation.getArgument(0);
+            Predicate<User> sink = invocation.getArgument(1);
+            long scanned = 0;
+            for (long id = count; id >= 1 && scanned < limit; id--) {
+                scanned++;
+                if (!sink.test(user(id))) break;
+            }
+            return scanned;
+        });
+    }
+
+    @Test
+    void loadsUpToTheCountLimitAndReports() throws Exception {
+        streamUsers(50);
+
+        CacheWarmer.WarmUpReport report = new CacheWarmer(userDao, cache, 20, Duration.ofSeconds(5)).start().get();
+
+        assertThat(report.loaded()).isEqualTo(20);
+        assertThat(report.stopReason()).isEqualTo(CacheWarmer.StopReason.COUNT_LIMIT);
+        assertThat(cache.get(50)).isNotNull();
+        assertThat(cache.get(30)).isNull();
+        verify(userDao).scanRecentlyUpdated(eq(20), any());
+    }
+
+    @Test
+    void liveEntriesAndInvalidatedUsersAreNotOverwritten() {
+        User fresh = user(3);
+        fresh.setName("fresh");
+        cache.put(fresh);
+        when(userDao.scanRecentlyUpdated(anyInt(), any())).thenAnswer(invocation -> {
+            Predicate<User> sink = invocation.getArgument(1);
+            sink.test(user(3));
+            cache.invalidate(2);
+            sink.test(user(2));
+            sink.test(user(1));
+            return 3L;
+        });
+
+        CacheWarmer.WarmUpReport report = new CacheWarmer(userDao, cache, 10, Duration.ofSeconds(5)).run();
+
+        assertThat(report.loaded()).isEqualTo(1);
+        assertThat(report.skipped()).isEqualTo(2);
+        assertThat(report.stopReason()).isEqualTo(CacheWarmer.StopReason.EXHAUSTED);
+        assertThat(cache.get(3).getName()).isEqualTo("fresh");
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.get(1)).isNotNull();
+        assertThatThrownBy(() -> cache.warm(user(4))).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void stopsWhenTheCacheFillsOrTheScanFails() {
+        streamUsers(10_000);
+
+        CacheWarmer.WarmUpReport full = new CacheWarmer(userDao, cache, 10_000, Duration.ofSeconds(5), 0.5).run();
+
+        assertThat(full.stopReason()).isEqualTo(CacheWarmer.StopReason.CACHE_FULL);
+        assertThat(cache.getUsedBytes()).isLessThan(cache.getCapacityBytes());
+
+        when(userDao.scanRecentlyUpdated(anyInt(), any())).thenThrow(new IllegalStateException("db down"));
+        CacheWarmer.WarmUpReport failed = new CacheWarmer(userDao, cache, 10, Duration.ofSeconds(5)).run();
+
+        assertThat(failed.stopReason()).isEqualTo(CacheWarmer.StopReason.FAILED);
+        assertThatThrownBy(() -> new CacheWarmer(userDao, cache, 0, Duration.ofSeconds(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
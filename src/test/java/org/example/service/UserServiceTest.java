@@ -1,15 +1,32 @@
 package org.example.service;
 
+import org.example.cache.OffHeapUserStore;
+import org.example.concurrency.Deadline;
+import org.example.dao.UnitOfWork;
 import org.example.dao.UserDaoImpl;
+import org.example.domain.UpsertResult;
 import org.example.domain.User;
+import org.example.domain.UserView;
+import org.example.metrics.HotKeys;
+import org.example.metrics.Readiness;
 import org.example.dao.UserDao;
 
 import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -116,6 +133,289 @@ class UserServiceTest {
         assertInstanceOf(HibernateException.class, exception.getCause());
     }
 
+    @Test
+    void readUserPropagatesDeadlineToDao() {
+        Deadline deadline = Deadline.after(Duration.ofSeconds(5));
+        AtomicReference<Deadline> seenByDao = new AtomicReference<>();
+        when(userDao.read(12L)).thenAnswer(invocation -> {
+            seenByDao.set(Deadline.current());
+            return new User("name", "mail@mail.ru", 20);
+        });
+
+        service.readUser(12L, deadline);
+
+        assertThat(seenByDao.get()).isSameAs(deadline);
+        assertThat(Deadline.current().isNone()).isTrue();
+    }
+
+    @Test
+    void readUserServesRepeatedReadsFromOffHeapStore() {
+        OffHeapUserStore cache = new OffHeapUserStore(4096);
+        UserService cachedService = new UserService((UserDaoImpl) userDao, cache);
+        User user = new User("name", "mail@mail.ru", 20);
+        user.setId(12L);
+        when(userDao.read(12L)).thenReturn(user);
+
+        cachedService.readUser(12L);
+        User cached = cachedService.readUser(12L);
+
+        assertThat(cached.getEmail()).isEqualTo("mail@mail.ru");
+        verify(userDao, times(1)).read(12L);
+
+        cachedService.removeUserById(12L);
+        assertNull(cache.get(12L));
+    }
+
+    @Test
+    void readUserDoesNotCacheRowInvalidatedWhileItWasLoading() {
+        OffHeapUserStore cache = new OffHeapUserStore(4096);
+        UserService cachedService = new UserService(userDao, cache, UnitOfWork.none(), new HotKeys(1024, 8, 1));
+        User stale = new User("name", "mail@mail.ru", 20);
+        stale.setId(12L);
+        when(userDao.read(12L)).thenAnswer(invocation -> {
+            cache.invalidate(12L);
+            return stale;
+        });
+
+        assertThat(cachedService.readUser(12L).getName()).isEqualTo("name");
+
+        assertNull(cache.get(12L));
+        cachedService.readUser(12L);
+        verify(userDao, times(2)).read(12L);
+    }
+
+    @Test
+    void findUserDoesNotCacheRowWhoseEmailWasInvalidatedWhileItWasLoading() {
+        OffHeapUserStore cache = new OffHeapUserStore(4096);
+        UserService cachedService = new UserService(userDao, cache, UnitOfWork.none(), new HotKeys(1024, 8, 1));
+        User stale = new User("name", "mail@mail.ru", 20);
+        stale.setId(12L);
+        when(userDao.findById(12L)).thenAnswer(invocation -> {
+            cache.invalidateByEmail("mail@mail.ru");
+            return Optional.of(stale);
+        });
+
+        assertThat(cachedService.findUser(12L)).contains(stale);
+
+        assertNull(cache.get(12L));
+    }
+
+    @Test
+    void viewUserServesCachedUsersWithoutTheDatabase() {
+        OffHeapUserStore cache = new OffHeapUserStore(4096);
+        HotKeys hotKeys = new HotKeys(1024, 8, 1);
+        UserService cachedService = new UserService(userDao, cache, UnitOfWork.none(), hotKeys);
+        User user = new User("name", "mail@mail.ru", 20);
+        user.setId(12L);
+        when(userDao.read(12L)).thenReturn(user);
+
+        cachedService.readUser(12L);
+        UserView view = cachedService.viewUser(12L);
+
+        assertThat(view).extracting(UserView::id, UserView::email).containsExactly(12L, "mail@mail.ru");
+        verify(userDao, never()).readView(anyLong());
+        assertThat(hotKeys.estimate(HotKeys.READ_USER, "12")).isEqualTo(2);
+    }
+
+    @Test
+    void firstServiceCallAfterReadinessIsRecorded() {
+        Readiness readiness = new Readiness();
+        UserService readyService = new UserService(userDao, null, UnitOfWork.none(), HotKeys.disabled(), readiness);
+        User user = new User("name", "mail@mail.ru", 20);
+        user.setId(12L);
+        when(userDao.read(12L)).thenReturn(user);
+
+        readyService.readUser(12L);
+        assertThat(readiness.getFirstRequestMillis()).isEqualTo(-1);
+        readiness.markReady();
+        readyService.readUser(12L);
+
+        assertThat(readiness.getFirstRequestMillis()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void readUserCachesOnlyKeysThatPassHotKeyAdmission() {
+        OffHeapUserStore cache = new OffHeapUserStore(4096);
+        HotKeys hotKeys = new HotKeys(1024, 8, 2);
+        UserService cachedService = new UserService(userDao, cache, UnitOfWork.none(), hotKeys);
+        User user = new User("name", "mail@mail.ru", 20);
+        user.setId(12L);
+        when(userDao.read(12L)).thenReturn(user);
+
+        cachedService.readUser(12L);
+        assertNull(cache.get(12L));
+        cachedService.readUser(12L);
+        cachedService.readUser(12L);
+
+        verify(userDao, times(2)).read(12L);
+        assertThat(hotKeys.estimate(HotKeys.READ_USER, "12")).isEqualTo(3);
+        assertThat(hotKeys.topKeys(HotKeys.READ_USER, 1)).containsExactly("12=3 (+-0)");
+    }
+
+    @Test
+    void findUserCachesOnlyKeysThatPassHotKeyAdmission() {
+        OffHeapUserStore cache = new OffHeapUserStore(4096);
+        HotKeys hotKeys = new HotKeys(1024, 8, 2);
+        UserService cachedService = new UserService(userDao, cache, UnitOfWork.none(), hotKeys);
+        User user = new User("name", "mail@mail.ru", 20);
+        user.setId(12L);
+        when(userDao.findById(12L)).thenReturn(Optional.of(user));
+
+        cachedService.findUser(12L);
+        assertNull(cache.get(12L));
+        cachedService.findUser(12L);
+
+        assertThat(cache.get(12L)).isNotNull();
+        verify(userDao, times(2)).findById(12L);
+    }
+
+    @Test
+    void hotKeysTrackUpdatesAndMailChecks() {
+        HotKeys hotKeys = new HotKeys(1024, 8, 1);
+        UserService trackedService = new UserService(userDao, null, UnitOfWork.none(), hotKeys);
+        User user = new User("name", "mail@mail.ru", 20);
+        user.setId(5L);
+        when(userDao.read(5L)).thenReturn(user);
+        when(userDao.mailUniqueCheck("new@mail.ru")).thenReturn(true);
+
+        trackedService.updateUser(5L, null, "NEW@mail.ru", null);
+        trackedService.updateUser(5L, "other", null, null);
+
+        assertThat(hotKeys.estimate(HotKeys.UPDATE_USER, "5")).isEqualTo(2);
+        assertThat(hotKeys.estimate(HotKeys.MAIL_CHECK, "New@Mail.ru")).isEqualTo(1);
+        assertThat(hotKeys.getObservations(HotKeys.READ_USER)).isZero();
+    }
+
+    @Test
+    void upsertByEmailNormalizesEmailAndInvalidatesUpdatedUser() {
+        OffHeapUserStore cache = new OffHeapUserStore(4096);
+        HotKeys hotKeys = new HotKeys(1024, 8, 1);
+        UserService cachedService = new UserService(userDao, cache, UnitOfWork.none(), hotKeys);
+        User stale = new User("name", "mail@mail.ru", 20);
+        stale.setId(7L);
+        cache.put(stale);
+        User updated = new User("other", "mail@mail.ru", 21);
+        updated.setId(7L);
+        when(userDao.upsert(argThat(user -> "mail@mail.ru".equals(user.getEmail()))))
+                .thenReturn(new UpsertResult(updated, UpsertResult.Outcome.UPDATED));
+
+        UpsertResult result = cachedService.upsertByEmail("other", " Mail@Mail.ru ", 21);
+
+        assertThat(result.outcome()).isEqualTo(UpsertResult.Outcome.UPDATED);
+        assertNull(cache.get(7L));
+        assertThat(hotKeys.estimate(HotKeys.UPDATE_USER, "7")).isEqualTo(1);
+    }
+
+    @Test
+    void upsertAllCountsAnUpdateSharedByDuplicateEmailsOnce() {
+        HotKeys hotKeys = new HotKeys(1024, 8, 1);
+        UserService countingService = new UserService(userDao, null, UnitOfWork.none(), hotKeys);
+        User updated = new User("second", "mail@mail.ru", 21);
+        updated.setId(7L);
+        UpsertResult result = new UpsertResult(updated, UpsertResult.Outcome.UPDATED);
+        when(userDao.upsertAll(any())).thenReturn(List.of(result, result));
+
+        List<UpsertResult> results = countingService.upsertAll(List.of(
+                new User("first", "mail@mail.ru", 20), new User("second", "MAIL@mail.ru", 21)));
+
+        assertThat(results).containsExactly(result, result);
+        assertThat(hotKeys.estimate(HotKeys.UPDATE_USER, "7")).isEqualTo(1);
+    }
+
+    @Test
+    void upsertAllRejectsInvalidEmailBeforeReachingDao() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> service.upsertAll(List.of(new User("name", "ok@mail.ru", 20), new User("name", "not-an-email", 20))));
+
+        assertEquals("Not valid email", exception.getMessage());
+        verify(userDao, never()).upsertAll(any());
+    }
+
+    @Test
+    void upsertByEmailDbError() {
+        when(userDao.upsert(any())).thenThrow(new HibernateException("db down"));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> service.upsertByEmail("name", "mail@mail.ru", 20));
+
+        assertEquals("Database error while upserting user. Try again later.", exception.getMessage());
+    }
+
+    @Test
+    void concurrentReadsOfSameUserAreCoalesced() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(userDao.read(12L)).thenAnswer(invocation -> {
+            release.await();
+            return new User("name", "mail@mail.ru", 20);
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<User>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(() -> service.readUser(12L)));
+            }
+            while (service.getReadFlight().getCollapsed() < 3) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+            List<User> users = new ArrayList<>();
+            for (Future<User> result : results) {
+                users.add(result.get(5, TimeUnit.SECONDS));
+            }
+            assertThat(users).extracting(User::getEmail).containsOnly("mail@mail.ru");
+            assertThat(users).doesNotHaveDuplicates();
+        } finally {
+            pool.shutdownNow();
+        }
+        verify(userDao, times(1)).read(12L);
+    }
+
+    @Test
+    void mailCheckInsideUnitOfWorkDoesNotJoinAnotherCallersFlight() throws Exception {
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        Session session = mock(Session.class);
+        when(sessionFactory.openSession()).thenReturn(session);
+        when(session.getTransaction()).thenReturn(mock(Transaction.class));
+        UserService transactional = new UserService(userDao, null, new UnitOfWork(sessionFactory), HotKeys.disabled());
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userDao.mailUniqueCheck("new@mail.ru")).thenAnswer(invocation -> {
+            if (UnitOfWork.isActive()) return false;
+            leaderStarted.countDown();
+            release.await();
+            return true;
+        });
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> leader = pool.submit(() -> transactional.mailValidAndUnique("new@mail.ru"));
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> new UnitOfWork(sessionFactory).run(() -> transactional.mailValidAndUnique("new@mail.ru")));
+
+            assertEquals("User with new@mail.ru already created", exception.getMessage());
+            release.countDown();
+            leader.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+        verify(userDao, times(2)).mailUniqueCheck("new@mail.ru");
+    }
+
+    @Test
+    void findUserReturnsEmptyWithoutException() {
+        when(userDao.findById(12L)).thenReturn(Optional.empty());
+        assertThat(service.findUser(12L)).isEmpty();
+    }
+
+    @Test
+    void findUserHibernateException() {
+        when(userDao.findById(12L)).thenThrow(new HibernateException("Hibernate exception"));
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> service.findUser(12L));
+        assertInstanceOf(HibernateException.class, exception.getCause());
+    }
+
     @Test
     void updateUserTest() {
         User existing = new User("Old", "old@mail.ru", 25);
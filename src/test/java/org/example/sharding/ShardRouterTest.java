@@ -0,0 +1,103 @@
+package org.example.sharding;
+
+import org.example.sharding.ShardRouter.KeyRange;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ShardRouterTest {
+
+    @Test
+    void idsFollowTheStrideOfTheShardThatAllocatedThem() {
+        ShardRouter router = new ShardRouter(3);
+
+        assertThat(LongStream.rangeClosed(1, 6).mapToInt(router::shardForId).toArray()).containsExactly(0, 1, 2, 0, 1, 2);
+    }
+
+    @Test
+    void overrideWinsInsideItsRangeOnly() {
+        ShardRouter router = new ShardRouter(3, List.of(new KeyRange(10, 20, 2)));
+
+        assertThat(router.shardForId(9)).isEqualTo(2);
+        assertThat(router.shardForId(10)).isEqualTo(2);
+        assertThat(router.shardForId(13)).isEqualTo(2);
+        assertThat(router.shardForId(19)).isEqualTo(2);
+        assertThat(router.shardForId(20)).isEqualTo(ShardRouter.strideShard(20, 3));
+        assertThat(router.shardForId(22)).isEqualTo(0);
+    }
+
+    @Test
+    void assignSplitsAndTrimsOverlappedRanges() {
+        ShardRouter router = new ShardRouter(3, List.of(new KeyRange(1, 100, 0), new KeyRange(100, 200, 1)));
+        long before = router.version();
+
+        router.assign(new KeyRange(50, 150, 2));
+
+        assertThat(router.overrides()).containsExactly(
+                new KeyRange(1, 50, 0), new KeyRange(50, 150, 2), new KeyRange(150, 200, 1));
+        assertThat(router.version()).isNotEqualTo(before);
+
+        router.assign(new KeyRange(60, 70, 0));
+
+        assertThat(router.overrides()).containsExactly(new KeyRange(1, 50, 0), new KeyRange(50, 60, 2),
+                new KeyRange(60, 70, 0), new KeyRange(70, 150, 2), new KeyRange(150, 200, 1));
+        assertThat(router.shardForId(65)).isEqualTo(0);
+        assertThat(router.shardForId(149)).isEqualTo(2);
+    }
+
+    @Test
+    void replaceOverridesPublishesTheWholeSetAtOnce() throws InterruptedException {
+        ShardRouter router = new ShardRouter(2, List.of(new KeyRange(1, 10, 1), new KeyRange(10, 20, 1)));
+        AtomicBoolean strideSeen = new AtomicBoolean();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                if (router.shardForId(11) != 1) strideSeen.set(true);
+            }
+        });
+        reader.start();
+        long before = router.version();
+        for (int i = 0; i < 10_000; i++) {
+            router.replaceOverrides(List.of(new KeyRange(1, 10, 1), new KeyRange(10, 20, 1)));
+        }
+        done.set(true);
+        reader.join();
+
+        assertThat(strideSeen).isFalse();
+        assertThat(router.version()).isEqualTo(before + 10_000);
+        assertThatThrownBy(() -> router.replaceOverrides(List.of(new KeyRange(1, 10, 0), new KeyRange(10, 20, 5))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(router.overrides()).containsExactly(new KeyRange(1, 10, 1), new KeyRange(10, 20, 1));
+    }
+
+    @Test
+    void mergedOverridesJoinAdjacentRangesOfOneShard() {
+        ShardRouter router = new ShardRouter(2, List.of(new KeyRange(1, 10, 1), new KeyRange(10, 20, 1), new KeyRange(30, 40, 1)));
+
+        assertThat(router.mergedOverrides()).containsExactly(new KeyRange(1, 20, 1), new KeyRange(30, 40, 1));
+    }
+
+    @Test
+    void emailsRouteByNormalizedHash() {
+        ShardRouter router = new ShardRouter(4);
+
+        assertThat(router.shardForEmail(" User@Mail.ru ")).isEqualTo(router.shardForEmail("user@mail.ru"));
+        assertThat(IntStream.range(0, 1_000).map(i -> router.shardForEmail("user" + i + "@mail.ru")).distinct().sorted().toArray())
+                .containsExactly(0, 1, 2, 3);
+    }
+
+    @Test
+    void invalidRangesAndShardsAreRejected() {
+        ShardRouter router = new ShardRouter(2);
+
+        assertThatThrownBy(() -> new KeyRange(5, 5, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> router.assign(new KeyRange(1, 5, 2))).isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Shard 2 is out of range 0..1");
+        assertThatThrownBy(() -> new ShardRouter(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
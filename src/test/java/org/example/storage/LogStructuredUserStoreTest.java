@@ -0,0 +1,218 @@
+package org.example.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStructuredUserStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysLogAfterReopen() {
+        try (LogStructuredUserStore store = open(FsyncPolicy.NEVER)) {
+            for (int i = 0; i < 100; i++) {
+                store.insert(user(store.nextId(), "user" + i + "@mail.ru"));
+            }
+            store.update(5, u -> u.withUpdatedAt(42));
+            store.remove(7, u -> true);
+        }
+
+        try (LogStructuredUserStore store = open(FsyncPolicy.NEVER)) {
+            assertThat(store.size()).isEqualTo(99);
+            assertThat(store.get(5).updatedAt()).isEqualTo(42);
+            assertThat(store.get(7)).isNull();
+            assertThat(store.findActiveByEmail("user6@mail.ru")).isNull();
+            assertThat(store.findActiveByEmail("user8@mail.ru").id()).isEqualTo(9);
+            assertThat(store.nextId()).isEqualTo(101);
+        }
+    }
+
+    @Test
+    void tornTailIsIgnoredAndOverwritten() throws IOException {
+        try (LogStructuredUserStore store = open(FsyncPolicy.ALWAYS)) {
+            store.insert(user(store.nextId(), "first@mail.ru"));
+            store.insert(user(store.nextId(), "second@mail.ru"));
+        }
+        Path segment = segments().getFirst();
+        int secondRecord = Segment.HEADER_BYTES + LogStructuredUserStore.RECORD_HEADER_BYTES + "name".length() + "first@mail.ru".length();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(java.nio.ByteBuffer.wrap(new byte[]{1, 2, 3}), secondRecord + 20);
+        }
+
+        try (LogStructuredUserStore store = open(FsyncPolicy.NEVER)) {
+            assertThat(store.size()).isEqualTo(1);
+            assertThat(store.findActiveByEmail("second@mail.ru")).isNull();
+            store.insert(user(store.nextId(), "third@mail.ru"));
+        }
+        try (LogStructuredUserStore store = open(FsyncPolicy.NEVER)) {
+            assertThat(store.findActiveByEmail("first@mail.ru")).isNotNull();
+            assertThat(store.findActiveByEmail("third@mail.ru")).isNotNull();
+            assertThat(store.size()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void compactionReclaimsDeadSegmentsAndKeepsTombstonesWhileNeeded() throws IOException {
+        try (LogStructuredUserStore store = open(FsyncPolicy.NEVER)) {
+            for (int i = 0; i < 2_000; i++) {
+                store.insert(user(store.nextId(), "user" + i + "@mail.ru"));
+            }
+            for (long id = 1; id <= 2_000; id++) {
+                if (id % 10 != 0) {
+                    store.update(id, u -> u.withUpdatedAt(1));
+                }
+            }
+            for (long id = 10; id <= 2_000; id += 100) {
+                store.remove(id, u -> true);
+            }
+            int before = store.segmentCount();
+
+            assertThat(store.compact()).isPositive();
+
+            assertThat(store.segmentCount()).isLessThan(before);
+            assertThat(segments()).hasSize(store.segmentCount());
+            assertThat(store.size()).isEqualTo(2_000 - 20);
+        }
+
+        try (LogStructuredUserStore store = open(FsyncPolicy.NEVER)) {
+            assertThat(store.size()).isEqualTo(2_000 - 20);
+            assertThat(store.get(10)).isNull();
+            assertThat(store.get(20).email()).isEqualTo("user19@mail.ru");
+            assertThat(store.get(11).updatedAt()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void compactionDropsTombstonesNoOlderSegmentNeeds() {
+        long lastId;
+        try (LogStructuredUserStore store = open(FsyncPolicy.NEVER)) {
+            for (int i = 0; i < 2_000; i++) {
+                store.insert(user(store.nextId(), "keeper" + i + "@mail.ru"));
+            }
+            for (int round = 0; round < 30; round++) {
+                for (int i = 0; i < 500; i++) {
+                    long id = store.nextId();
+                    store.insert(user(id, "temp" + i + "@mail.ru"));
+                    store.remove(id, u -> true);
+                }
+                store.compact();
+            }
+            assertThat(store.segmentCount()).isLessThanOrEqualTo(5);
+            lastId = store.nextId();
+        }
+
+        try (LogStructuredUserStore store = open(FsyncPolicy.NEVER)) {
+            assertThat(store.size()).isEqualTo(2_000);
+            assertThat(store.get(lastId - 1)).isNull();
+            assertThat(store.findActiveByEmail("temp0@mail.ru")).isNull();
+        }
+    }
+
+    @Test
+    void duplicateActiveEmailIsRejected() {
+        try (LogStructuredUserStore store = open(FsyncPolicy.NEVER)) {
+            store.insert(user(store.nextId(), "Same@mail.ru"));
+
+            IllegalStateException exception = assertThrows(IllegalStateException.class,
+                    () -> store.insert(user(store.nextId(), "same@MAIL.ru")));
+            assertEquals("That email is already used", exception.getMessage());
+
+            store.update(1, u -> u.withDeletedAt(1));
+            store.insert(user(store.nextId(), "same@mail.ru"));
+            assertThat(store.findActiveByEmail("same@mail.ru").id()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void groupCommitBatchesConcurrentWriters() throws Exception {
+        try (LogStructuredUserStore store = LogStructuredUserStore.open(StorageSettings.defaults(directory)
+                .withSegmentBytes(1 << 20)
+                .withGroupCommit(Duration.ofMillis(5), 64)
+                .withCompaction(0.5, Duration.ZERO))) {
+            ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor();
+            List<Future<?>> writes = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                int n = i;
+                writes.add(pool.submit(() -> store.insert(user(store.nextId(), "group" + n + "@mail.ru"))));
+            }
+            for (Future<?> write : writes) write.get(10, TimeUnit.SECONDS);
+            pool.shutdown();
+
+            assertThat(store.getWrites()).isEqualTo(500);
+            assertThat(store.getSyncs()).isPositive().isLessThan(500);
+        }
+    }
+
+    @Test
+    void loneGroupCommitWriterDoesNotWaitForTheInterval() {
+        try (LogStructuredUserStore store = LogStructuredUserStore.open(StorageSettings.defaults(directory)
+                .withSegmentBytes(1 << 20)
+                .withGroupCommit(Duration.ofHours(1), 1_000)
+                .withCompaction(0.5, Duration.ZERO))) {
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                for (int i = 0; i < 20; i++) {
+                    store.insert(user(store.nextId(), "alone" + i + "@mail.ru"));
+                }
+            });
+
+            assertThat(store.getSyncs()).isEqualTo(20);
+        }
+    }
+
+    @Test
+    void failedGroupCommitFailsLaterWriters() {
+        try (LogStructuredUserStore store = LogStructuredUserStore.open(StorageSettings.defaults(directory)
+                .withSegmentBytes(1 << 20)
+                .withGroupCommit(Duration.ofHours(1), 1_000)
+                .withCompaction(0.5, Duration.ZERO))) {
+            store.insert(user(1, "first@mail.ru"));
+
+            store.failGroupCommit(new UncheckedIOException(new IOException("disk gone")));
+
+            assertThatThrownBy(() -> store.insert(user(2, "second@mail.ru")))
+                    .isInstanceOf(UncheckedIOException.class)
+                    .hasMessageContaining("group commit failed")
+                    .hasRootCauseMessage("disk gone");
+        }
+    }
+
+    @Test
+    void closedStoreRejectsOperations() {
+        LogStructuredUserStore store = open(FsyncPolicy.NEVER);
+        store.close();
+
+        assertThrows(IllegalStateException.class, () -> store.get(1));
+    }
+
+    private LogStructuredUserStore open(FsyncPolicy policy) {
+        return LogStructuredUserStore.open(StorageSettings.defaults(directory)
+                .withSegmentBytes(64 * 1024)
+                .withFsyncPolicy(policy)
+                .withCompaction(0.5, Duration.ZERO));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static StoredUser user(long id, String email) {
+        return new StoredUser(id, "name", email, 20, 1_000, 1_000, StoredUser.NO_TIME);
+    }
+}
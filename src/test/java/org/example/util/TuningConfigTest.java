@@ -0,0 +1,70 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+class TuningConfigTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void laterLayersOverrideEarlierOnes() throws Exception {
+        Path file = dir.resolve("site.properties");
+        Files.writeString(file, "hibernate.jdbc.fetch_size=1000\nhibernate.jdbc.batch_size=60\nhibernate.connection.url=jdbc:postgresql://db:5432/userdb\n");
+        Properties system = new Properties();
+        system.setProperty(TuningConfig.PROFILES_PROPERTY, "throughput");
+        system.setProperty(TuningConfig.CONFIG_FILE_PROPERTY, file.toString());
+        system.setProperty("hibernate.jdbc.batch_size", "80");
+        system.setProperty("unrelated.key", "x");
+
+        TuningConfig config = TuningConfig.load(Map.of("HIBERNATE_JDBC_FETCH_SIZE", "2000", "HIBERNATE_JDBC_BATCH_SIZE", "70"), system);
+
+        assertThat(config.profiles()).containsExactly("throughput");
+        assertThat(config.get("hibernate.connection.username")).isEqualTo("userapp");
+        assertThat(config.sourceOf("hibernate.connection.username")).isEqualTo("default");
+        assertThat(config.get("hibernate.hikari.dataSource.reWriteBatchedInserts")).isEqualTo("true");
+        assertThat(config.sourceOf("hibernate.hikari.maximumPoolSize")).isEqualTo("profile throughput");
+        assertThat(config.get("hibernate.connection.url")).isEqualTo("jdbc:postgresql://db:5432/userdb");
+        assertThat(config.get("hibernate.jdbc.fetch_size")).isEqualTo("2000");
+        assertThat(config.sourceOf("hibernate.jdbc.fetch_size")).isEqualTo("env HIBERNATE_JDBC_FETCH_SIZE");
+        assertThat(config.get("hibernate.jdbc.batch_size")).isEqualTo("80");
+        assertThat(config.sourceOf("hibernate.jdbc.batch_size")).isEqualTo("system property");
+        assertThat(config.get("unrelated.key")).isNull();
+    }
+
+    @Test
+    void logLevelsAreKeptApartAndPasswordsMasked() {
+        Properties system = new Properties();
+        system.setProperty(TuningConfig.PROFILES_PROPERTY, "debug");
+
+        TuningConfig config = TuningConfig.load(Map.of(), system);
+
+        assertThat(config.logLevels()).containsEntry("org.hibernate.orm.jdbc.bind", "trace");
+        assertThat(config.hibernateSettings()).containsEntry("hibernate.show_sql", "true")
+                .doesNotContainKey("userapp.log.org.hibernate.orm.jdbc.bind");
+        assertThat(config.describe()).contains("hibernate.connection.password = **** (default)")
+                .noneMatch(line -> line.contains("password = password"));
+    }
+
+    @Test
+    void profilesComeFromTheEnvironmentAndMustExist() {
+        TuningConfig config = TuningConfig.load(Map.of("USERAPP_PROFILES", "throughput, debug"), new Properties());
+
+        assertThat(config.profiles()).containsExactly("throughput", "debug");
+        assertThat(config.get("hibernate.show_sql")).isEqualTo("true");
+        assertThat(TuningConfig.envName("hibernate.hikari.maximumPoolSize")).isEqualTo("HIBERNATE_HIKARI_MAXIMUMPOOLSIZE");
+        assertThatThrownBy(() -> TuningConfig.load(Map.of("USERAPP_PROFILES", "turbo"), new Properties()))
+                .isInstanceOf(IllegalArgumentException.class).hasMessage("Unknown configuration profile turbo");
+        Properties missingFile = new Properties();
+        missingFile.setProperty(TuningConfig.CONFIG_FILE_PROPERTY, dir.resolve("absent.properties").toString());
+        assertThatThrownBy(() -> TuningConfig.load(Map.of(), missingFile)).isInstanceOf(IllegalArgumentException.class);
+    }
+}